@@ -0,0 +1,136 @@
+package com.delphi.delphi.components;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.ToolResponseMessage.ToolResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.delphi.delphi.dtos.FetchToolCallDto;
+import com.delphi.delphi.dtos.cache.ChatMessageCacheDto;
+import com.delphi.delphi.utils.CacheUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * Stores a checkpoint of an agent run after each step, so a job that is redelivered after a
+ * crash, a redeploy or a failed attempt picks up where the previous attempt stopped instead of
+ * repeating its model calls and GitHub writes.
+ *
+ * The checkpoint ({@code agent:checkpoint:{job:<id>}}) holds the messages the run has produced
+ * and the step it is at. The responses of the current step's tool calls are recorded in a hash
+ * next to it as each call completes, so a resumed step only runs the calls that had not finished.
+ * Both expire after themus.agent.checkpoint.ttl-hours; writes are best effort and a run whose
+ * checkpoint cannot be read starts from the beginning.
+ */
+@Component
+public class AgentCheckpointStore {
+
+    private static final String TOOL_RESPONSES_SUFFIX = ":tool_responses";
+
+    /**
+     * What an agent run does next.
+     */
+    public enum Stage {
+        // Ask the model for the next response
+        CALL_MODEL,
+        // Run the pending tool calls of the last assistant message
+        RUN_TOOLS,
+        // A streamed model response had started the pending tool calls before it was saved;
+        // save it with those calls, then run them as in RUN_TOOLS
+        STREAM_TOOLS,
+        // The run has finished
+        DONE
+    }
+
+    /**
+     * The state of an agent run after its last completed step.
+     *
+     * @param assessmentId     The assessment the run belongs to
+     * @param contextSize      The number of messages the run started with, before its own
+     * @param stage            The next step
+     * @param messages         The messages the run has produced so far, as saved
+     * @param pendingToolCalls The tool calls to run in a RUN_TOOLS or STREAM_TOOLS step
+     * @param endConversation  Whether the run ends after the pending tool calls
+     */
+    public record AgentCheckpoint(Long assessmentId, int contextSize, Stage stage, List<ChatMessageCacheDto> messages,
+            List<FetchToolCallDto> pendingToolCalls, boolean endConversation) {
+
+        public AgentCheckpoint withStep(Stage stage, List<ChatMessageCacheDto> messages,
+                List<FetchToolCallDto> pendingToolCalls, boolean endConversation) {
+            return new AgentCheckpoint(assessmentId, contextSize, stage, List.copyOf(messages),
+                    List.copyOf(pendingToolCalls), endConversation);
+        }
+    }
+
+    private final Logger log = LoggerFactory.getLogger(AgentCheckpointStore.class);
+    private final RedisService redisService;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+
+    public AgentCheckpointStore(RedisService redisService,
+            @Value("${themus.agent.checkpoint.ttl-hours:24}") long ttlHours) {
+        this.redisService = redisService;
+        this.objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        this.ttl = Duration.ofHours(ttlHours);
+    }
+
+    // The checkpoint of a job, or null if it has none or it cannot be read
+    public AgentCheckpoint load(UUID jobId) {
+        try {
+            String json = redisService.getString(CacheUtils.agentCheckpointKey(jobId));
+            return json != null ? objectMapper.readValue(json, AgentCheckpoint.class) : null;
+        } catch (Exception e) {
+            log.warn("Failed to load agent checkpoint for job {}, error: {}", jobId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the checkpoint of a job. Unless the run is running tool calls, the tool
+     * responses recorded for the previous step are dropped along with it.
+     */
+    public void save(UUID jobId, AgentCheckpoint checkpoint) {
+        String key = CacheUtils.agentCheckpointKey(jobId);
+        try {
+            String json = objectMapper.writeValueAsString(checkpoint);
+            if (checkpoint.stage() == Stage.RUN_TOOLS || checkpoint.stage() == Stage.STREAM_TOOLS) {
+                redisService.setStringWithExpiration(key, json, ttl);
+            } else {
+                redisService.setStringWithExpiration(key, json, ttl, key + TOOL_RESPONSES_SUFFIX);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to save agent checkpoint for job {}, error: {}", jobId, e.getMessage());
+        }
+    }
+
+    // Record the response of a completed tool call; may be called from any thread
+    public void recordToolResponse(UUID jobId, ToolResponse toolResponse) {
+        try {
+            redisService.hashPutWithExpiration(CacheUtils.agentCheckpointKey(jobId) + TOOL_RESPONSES_SUFFIX,
+                    toolResponse.id(), objectMapper.writeValueAsString(toolResponse), ttl);
+        } catch (Exception e) {
+            log.warn("Failed to record tool response {} for job {}, error: {}", toolResponse.id(), jobId, e.getMessage());
+        }
+    }
+
+    // The responses recorded for the current step, by tool call id
+    public Map<String, ToolResponse> toolResponses(UUID jobId) {
+        Map<String, ToolResponse> responses = new HashMap<>();
+        try {
+            for (Map.Entry<String, String> entry : redisService
+                    .hashGetAll(CacheUtils.agentCheckpointKey(jobId) + TOOL_RESPONSES_SUFFIX).entrySet()) {
+                responses.put(entry.getKey(), objectMapper.readValue(entry.getValue(), ToolResponse.class));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to load tool responses for job {}, error: {}", jobId, e.getMessage());
+        }
+        return responses;
+    }
+}
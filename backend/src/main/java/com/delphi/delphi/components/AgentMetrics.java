@@ -0,0 +1,188 @@
+package com.delphi.delphi.components;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.stereotype.Component;
+
+import com.delphi.delphi.entities.Job;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Micrometer meters for agent runs, and a per-job summary of each run for the job's row.
+ *
+ * <ul>
+ * <li>{@code agent.llm.calls} - latency of model calls, tagged by model and {@code outcome=success|error}</li>
+ * <li>{@code agent.llm.tokens} - tokens reported by the model, tagged by model and {@code type=prompt|completion}</li>
+ * <li>{@code agent.iterations} - model calls per agent run, tagged by model</li>
+ * <li>{@code agent.job.queue.wait} - time between a job being published and a worker starting it, tagged by job type</li>
+ * </ul>
+ *
+ * Tool call latency is recorded per tool by {@link ToolCallExecutor} ({@code agent.tool.calls}).
+ * A run is started with {@link #startRun} and its totals are collected with {@link #finishRun},
+ * which the worker running the job calls once the run has ended, whether it succeeded or not.
+ */
+@Component
+public class AgentMetrics {
+
+    /**
+     * Totals of one agent run.
+     *
+     * @param iterations       Model calls that returned a response
+     * @param llmLatencyMs     Time spent waiting for the model, including failed calls
+     * @param promptTokens     Prompt tokens reported by the model
+     * @param completionTokens Completion tokens reported by the model
+     * @param toolCalls        Tool calls run
+     * @param toolLatencyMs    Time spent waiting for tool calls beyond the model's response
+     */
+    public record RunSummary(int iterations, long llmLatencyMs, long promptTokens, long completionTokens,
+            int toolCalls, long toolLatencyMs) {
+
+        // Store the summary on the job's row
+        public void applyTo(Job job) {
+            job.setIterations(iterations);
+            job.setLlmLatencyMs(llmLatencyMs);
+            job.setPromptTokens(promptTokens);
+            job.setCompletionTokens(completionTokens);
+            job.setToolCalls(toolCalls);
+            job.setToolLatencyMs(toolLatencyMs);
+        }
+    }
+
+    // Totals of a run in progress; tool calls may be recorded from other threads
+    private static final class RunStats {
+        private final String model;
+        private final AtomicInteger iterations = new AtomicInteger();
+        private final AtomicLong llmNanos = new AtomicLong();
+        private final AtomicLong promptTokens = new AtomicLong();
+        private final AtomicLong completionTokens = new AtomicLong();
+        private final AtomicInteger toolCalls = new AtomicInteger();
+        private final AtomicLong toolNanos = new AtomicLong();
+
+        private RunStats(String model) {
+            this.model = model;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    // Meters are looked up on every model call, so keep them instead of re-registering
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+    private final Map<UUID, RunStats> runs = new ConcurrentHashMap<>();
+
+    public AgentMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Records how long a job waited in its queue.
+     *
+     * @param publishedAtMillis The time the job was published, from the Kafka record timestamp
+     * @return The wait in milliseconds
+     */
+    public long recordQueueWait(String jobType, long publishedAtMillis) {
+        long waitMs = Math.max(0, System.currentTimeMillis() - publishedAtMillis);
+        timers.computeIfAbsent("queue|" + jobType,
+                id -> Timer.builder("agent.job.queue.wait")
+                        .tag("type", jobType)
+                        .description("Time between a job being published and a worker starting it")
+                        .register(meterRegistry))
+                .record(waitMs, TimeUnit.MILLISECONDS);
+        return waitMs;
+    }
+
+    // Start collecting the totals of a job's agent run
+    public void startRun(UUID jobId, String model) {
+        runs.put(jobId, new RunStats(tag(model)));
+    }
+
+    // Record a model call and the tokens it used; response is null if the call failed
+    public void recordModelCall(UUID jobId, String model, long nanos, ChatResponse response) {
+        String modelTag = tag(model);
+        String outcome = response != null ? "success" : "error";
+        timers.computeIfAbsent("llm|" + modelTag + "|" + outcome,
+                id -> Timer.builder("agent.llm.calls")
+                        .tag("model", modelTag)
+                        .tag("outcome", outcome)
+                        .description("Latency of model calls made by the agent")
+                        .register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+
+        RunStats run = runs.get(jobId);
+        if (run != null) {
+            run.llmNanos.addAndGet(nanos);
+        }
+        if (response == null) {
+            return;
+        }
+        if (run != null) {
+            run.iterations.incrementAndGet();
+        }
+        Usage usage = response.getMetadata() != null ? response.getMetadata().getUsage() : null;
+        if (usage == null) {
+            return;
+        }
+        long prompt = usage.getPromptTokens() != null ? usage.getPromptTokens() : 0;
+        long completion = usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0;
+        tokenCounter(modelTag, "prompt").increment(prompt);
+        tokenCounter(modelTag, "completion").increment(completion);
+        if (run != null) {
+            run.promptTokens.addAndGet(prompt);
+            run.completionTokens.addAndGet(completion);
+        }
+    }
+
+    // Record the tool calls of one step and how long the run waited for them
+    public void recordToolCalls(UUID jobId, int count, long nanos) {
+        RunStats run = runs.get(jobId);
+        if (run != null) {
+            run.toolCalls.addAndGet(count);
+            run.toolNanos.addAndGet(nanos);
+        }
+    }
+
+    /**
+     * Stops collecting a job's run and returns its totals.
+     *
+     * @return The totals, or null if no run was started for the job
+     */
+    public RunSummary finishRun(UUID jobId) {
+        RunStats run = runs.remove(jobId);
+        if (run == null) {
+            return null;
+        }
+        summaries.computeIfAbsent(run.model,
+                id -> DistributionSummary.builder("agent.iterations")
+                        .tag("model", run.model)
+                        .description("Model calls per agent run")
+                        .register(meterRegistry))
+                .record(run.iterations.get());
+        return new RunSummary(run.iterations.get(), TimeUnit.NANOSECONDS.toMillis(run.llmNanos.get()),
+                run.promptTokens.get(), run.completionTokens.get(), run.toolCalls.get(),
+                TimeUnit.NANOSECONDS.toMillis(run.toolNanos.get()));
+    }
+
+    private Counter tokenCounter(String model, String type) {
+        return counters.computeIfAbsent("tokens|" + model + "|" + type,
+                id -> Counter.builder("agent.llm.tokens")
+                        .tag("model", model)
+                        .tag("type", type)
+                        .description("Tokens used by model calls made by the agent")
+                        .register(meterRegistry));
+    }
+
+    private static String tag(String model) {
+        return model != null ? model : "unknown";
+    }
+}
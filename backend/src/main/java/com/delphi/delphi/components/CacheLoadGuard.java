@@ -0,0 +1,265 @@
+package com.delphi.delphi.components;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Protects cache loads against stampedes when a hot entry expires.
+ *
+ * <ul>
+ * <li>Concurrent misses for the same key on one node share a single load.</li>
+ * <li>Across nodes, the loading node holds a short Redis lease; other nodes poll the
+ * cache for a while instead of querying the database themselves.</li>
+ * <li>Hits close to expiry are refreshed in the background with probabilistic early
+ * expiration (XFetch): the chance of refreshing grows as the remaining TTL shrinks
+ * relative to how long the value takes to load, so one request refreshes the entry
+ * before it expires instead of all of them missing at once.</li>
+ * </ul>
+ *
+ * Loads run in a read-only transaction of their own, which joins the caller's if there is one.
+ * Callers should not hold a transaction themselves, so a request waiting for another node's
+ * load does not hold a database connection meanwhile.
+ */
+@Component
+public class CacheLoadGuard {
+
+    private static final String LEASE_PREFIX = "lock:";
+    private static final long POLL_INTERVAL_MILLIS = 50;
+    // Weight of the newest sample in the moving average of load times
+    private static final double LOAD_TIME_WEIGHT = 0.2;
+
+    /**
+     * Result of looking a value up in the cache. A miss has a null value.
+     */
+    public record Lookup<T>(T value, long ttlMillis) {
+
+        public static <T> Lookup<T> miss() {
+            return new Lookup<>(null, -2);
+        }
+
+        public boolean isHit() {
+            return value != null;
+        }
+    }
+
+    private final Logger log = LoggerFactory.getLogger(CacheLoadGuard.class);
+    private final RedisService redisService;
+    private final CacheMetrics cacheMetrics;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService refreshExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    // Moving average of load times in milliseconds, per cache name
+    private final Map<String, Double> loadMillis = new ConcurrentHashMap<>();
+
+    private final double beta;
+    private final Duration leaseTtl;
+    private final Duration leaseWait;
+
+    public CacheLoadGuard(RedisService redisService, CacheMetrics cacheMetrics, PlatformTransactionManager transactionManager,
+            @Value("${themus.cache.stampede.beta:1.0}") double beta,
+            @Value("${themus.cache.stampede.lease-ttl-ms:10000}") long leaseTtlMillis,
+            @Value("${themus.cache.stampede.lease-wait-ms:2000}") long leaseWaitMillis) {
+        this.redisService = redisService;
+        this.cacheMetrics = cacheMetrics;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.beta = beta;
+        this.leaseTtl = Duration.ofMillis(leaseTtlMillis);
+        this.leaseWait = Duration.ofMillis(leaseWaitMillis);
+    }
+
+    /**
+     * Returns the cached value, loading it at most once across the cluster on a miss.
+     *
+     * @param name   The cache name, used to track load times
+     * @param key    The cache key
+     * @param lookup Reads the value and its remaining TTL from the cache
+     * @param loader Loads the value from the source and stores it in the cache
+     * @return The cached or loaded value
+     */
+    public <T> T get(String name, String key, Supplier<Lookup<T>> lookup, Supplier<T> loader) {
+        return get(name, key, lookup, lookup, loader);
+    }
+
+    /**
+     * As {@link #get(String, String, Supplier, Supplier)}, for caches whose lookup may read a
+     * replica: waiting for another node's load polls the primary, where the value shows up first.
+     *
+     * @param poll Reads the value and its remaining TTL from the primary
+     */
+    public <T> T get(String name, String key, Supplier<Lookup<T>> lookup, Supplier<Lookup<T>> poll, Supplier<T> loader) {
+        Lookup<T> cached = lookup.get();
+        if (cached.isHit()) {
+            refreshEarlyIfDue(name, key, cached.ttlMillis(), loader);
+            return cached.value();
+        }
+        return load(name, key, poll, loader);
+    }
+
+    /**
+     * Decides whether a cache hit should be refreshed early and, if so, refreshes it
+     * in the background. At most one refresh per key runs on each node, and only the
+     * node holding the key's lease performs it.
+     */
+    public void refreshEarlyIfDue(String name, String key, long ttlMillis, Supplier<?> loader) {
+        if (!shouldRefreshEarly(name, ttlMillis) || !refreshing.add(key)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                String token = UUID.randomUUID().toString();
+                boolean leased = false;
+                try {
+                    leased = redisService.tryAcquireLease(LEASE_PREFIX + key, token, leaseTtl);
+                    if (leased) {
+                        timedLoad(name, loader);
+                    }
+                } catch (Exception e) {
+                    log.warn("Failed to refresh cache key {} early: {}", key, e.getMessage());
+                } finally {
+                    releaseQuietly(key, token, leased);
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.remove(key);
+            log.warn("Failed to schedule early refresh of cache key {}: {}", key, e.getMessage());
+        }
+    }
+
+    // XFetch: refresh when -delta * beta * ln(rand) reaches the remaining TTL
+    private boolean shouldRefreshEarly(String name, long ttlMillis) {
+        if (ttlMillis <= 0) {
+            return false;
+        }
+        Double delta = loadMillis.get(name);
+        if (delta == null || delta <= 0) {
+            return false;
+        }
+        double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+        return -delta * beta * Math.log(random) >= ttlMillis;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T load(String name, String key, Supplier<Lookup<T>> lookup, Supplier<T> loader) {
+        CompletableFuture<Object> pending = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, pending);
+        if (existing != null) {
+            // Another request on this node is already loading the key
+            try {
+                return (T) existing.get(leaseTtl.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return timedLoad(name, loader);
+            } catch (ExecutionException | TimeoutException e) {
+                return timedLoad(name, loader);
+            }
+        }
+
+        try {
+            T value = loadWithLease(name, key, lookup, loader);
+            pending.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, pending);
+        }
+    }
+
+    private <T> T loadWithLease(String name, String key, Supplier<Lookup<T>> lookup, Supplier<T> loader) {
+        String token = UUID.randomUUID().toString();
+        boolean leased;
+        try {
+            leased = redisService.tryAcquireLease(LEASE_PREFIX + key, token, leaseTtl);
+        } catch (Exception e) {
+            // Without Redis there is nothing to coordinate on
+            log.warn("Failed to acquire cache lease for key {}: {}", key, e.getMessage());
+            return timedLoad(name, loader);
+        }
+
+        if (!leased) {
+            // Another node is loading the key; wait for it to show up in the cache
+            T value = awaitValue(lookup);
+            if (value != null) {
+                return value;
+            }
+        }
+
+        try {
+            return timedLoad(name, loader);
+        } finally {
+            releaseQuietly(key, token, leased);
+        }
+    }
+
+    private <T> T awaitValue(Supplier<Lookup<T>> lookup) {
+        long deadline = System.nanoTime() + leaseWait.toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            Lookup<T> cached = lookup.get();
+            if (cached.isHit()) {
+                return cached.value();
+            }
+        }
+        return null;
+    }
+
+    private <T> T timedLoad(String name, Supplier<T> loader) {
+        return readOnlyTransaction.execute(status -> {
+            long start = System.nanoTime();
+            T value = loader.get();
+            long elapsedNanos = System.nanoTime() - start;
+            cacheMetrics.recordLoad(name, elapsedNanos);
+            double elapsedMillis = elapsedNanos / 1_000_000.0;
+            loadMillis.merge(name, elapsedMillis,
+                    (average, sample) -> average * (1 - LOAD_TIME_WEIGHT) + sample * LOAD_TIME_WEIGHT);
+            return value;
+        });
+    }
+
+    private void releaseQuietly(String key, String token, boolean leased) {
+        if (!leased) {
+            return;
+        }
+        try {
+            redisService.releaseLease(LEASE_PREFIX + key, token);
+        } catch (Exception e) {
+            // The lease expires by itself
+            log.warn("Failed to release cache lease for key {}: {}", key, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+}
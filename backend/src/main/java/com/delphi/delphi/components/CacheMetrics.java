@@ -0,0 +1,103 @@
+package com.delphi.delphi.components;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import com.delphi.delphi.utils.CacheUtils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Micrometer meters for the Redis caches, tagged by cache name and key prefix.
+ *
+ * <ul>
+ * <li>{@code cache.keys.gets} - lookups, tagged {@code result=hit|miss}</li>
+ * <li>{@code cache.keys.payload} - size of serialized values written to Redis, in bytes</li>
+ * <li>{@code cache.keys.evictions} - keys deleted or invalidated</li>
+ * <li>{@code cache.load} - time spent loading a value on a cache miss</li>
+ * </ul>
+ *
+ * Keys written through {@link RedisService} are reported under the cache name {@link #REDIS},
+ * while Spring caches use their own name and a {@code cache:<name>} prefix. Prefixes come from
+ * {@link CacheUtils#keyPrefix(String)} so ids never end up in a tag.
+ */
+@Component
+public class CacheMetrics {
+
+    // Cache name for keys managed directly through RedisService
+    public static final String REDIS = "redis";
+
+    private final MeterRegistry meterRegistry;
+    // Meters are looked up on every cache access, so keep them instead of re-registering
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> payloads = new ConcurrentHashMap<>();
+    private final Map<String, Timer> loadTimers = new ConcurrentHashMap<>();
+
+    public CacheMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Record a lookup of a key managed through RedisService
+    public void recordGet(String key, boolean hit) {
+        recordGet(REDIS, CacheUtils.keyPrefix(key), hit);
+    }
+
+    public void recordGet(String cache, String prefix, boolean hit) {
+        String result = hit ? "hit" : "miss";
+        counters.computeIfAbsent("gets|" + cache + "|" + prefix + "|" + result,
+                id -> Counter.builder("cache.keys.gets")
+                        .tag("cache", cache)
+                        .tag("prefix", prefix)
+                        .tag("result", result)
+                        .description("Cache lookups per key prefix")
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    // Record the serialized size of a value written under a key managed through RedisService
+    public void recordPayload(String key, long bytes) {
+        recordPayload(REDIS, CacheUtils.keyPrefix(key), bytes);
+    }
+
+    public void recordPayload(String cache, String prefix, long bytes) {
+        payloads.computeIfAbsent(cache + "|" + prefix,
+                id -> DistributionSummary.builder("cache.keys.payload")
+                        .tag("cache", cache)
+                        .tag("prefix", prefix)
+                        .baseUnit("bytes")
+                        .description("Serialized size of values written to the cache")
+                        .register(meterRegistry))
+                .record(bytes);
+    }
+
+    // Record keys removed under a key or key pattern managed through RedisService
+    public void recordEvictions(String keyOrPattern, long count) {
+        if (count <= 0) {
+            return;
+        }
+        String prefix = CacheUtils.keyPrefix(keyOrPattern);
+        counters.computeIfAbsent("evictions|" + REDIS + "|" + prefix,
+                id -> Counter.builder("cache.keys.evictions")
+                        .tag("cache", REDIS)
+                        .tag("prefix", prefix)
+                        .description("Cache keys deleted or invalidated")
+                        .register(meterRegistry))
+                .increment(count);
+    }
+
+    // Record how long it took to load a value after a miss
+    public void recordLoad(String cache, long nanos) {
+        loadTimers.computeIfAbsent(cache,
+                id -> Timer.builder("cache.load")
+                        .tag("cache", cache)
+                        .description("Time spent loading values on cache misses")
+                        .register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,312 @@
+package com.delphi.delphi.components;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import com.delphi.delphi.dtos.cache.ChatMessageCacheDto;
+import com.delphi.delphi.utils.CacheUtils;
+
+/**
+ * Append-only cache of an assessment's chat history.
+ *
+ * The history is a Redis list of message ids ({@code cache:chat_history:{assessment:<id>}}) and
+ * each message is stored once as a normalized entity ({@code cache:entity:chat_message:<id>}).
+ * Saving a message costs one RPUSH and one SET, however long the chat is, instead of rewriting
+ * the whole history. Reads take any slice of the list with LRANGE followed by one MGET, so the
+ * most recent messages can be read without loading the rest.
+ *
+ * As with {@link NormalizedCache} indexes, a {@code :loaded} marker says the list holds the full
+ * history, and messages are only appended to lists that are loaded. The list keeps the TTL it
+ * was loaded with; appended messages are stored with the full TTL, so they outlive it.
+ *
+ * Messages written behind by {@link ChatMessageWriter} are in the cache before they are in the
+ * database, so a history loaded from the database could miss them. Their ids are kept in a
+ * {@code :pending} set until they are written and merged into every history loaded meanwhile.
+ * Each append also bumps a {@code :version} counter; a loaded history is only stored if no
+ * message was appended since its load started, so a list rebuilt from a stale load never
+ * replaces a newer one.
+ */
+@Component
+public class ChatHistoryCache {
+
+    private static final String CACHE_NAME = "chat_history";
+    private static final String LOADED_SUFFIX = ":loaded";
+    private static final String VERSION_SUFFIX = ":version";
+    private static final String PENDING_SUFFIX = ":pending";
+    // Matches the default TTL of the chat_messages cache
+    private static final Duration TTL = Duration.ofMinutes(30);
+
+    // KEYS[1] list, KEYS[2] marker; ARGV[1] start, ARGV[2] stop.
+    // Replies with nil if the list is not loaded, otherwise {length, ttl in ms, id...}
+    private static final RedisScript<List<String>> RANGE_SCRIPT = RedisService.listScript("""
+            if redis.call('EXISTS', KEYS[2]) == 0 then
+                return false
+            end
+            local ids = redis.call('LRANGE', KEYS[1], ARGV[1], ARGV[2])
+            table.insert(ids, 1, tostring(redis.call('PTTL', KEYS[2])))
+            table.insert(ids, 1, tostring(redis.call('LLEN', KEYS[1])))
+            return ids
+            """);
+
+    // KEYS[1] list, KEYS[2] marker, KEYS[3] version, KEYS[4] pending; ARGV[1] TTL in ms,
+    // ARGV[2] '1' if the messages are not in the database yet, ARGV ids. An empty history has
+    // no list yet, so a new list takes the marker's remaining TTL
+    private static final String APPEND_SCRIPT = """
+            redis.call('INCR', KEYS[3])
+            redis.call('PEXPIRE', KEYS[3], ARGV[1])
+            if ARGV[2] == '1' then
+                redis.call('SADD', KEYS[4], unpack(ARGV, 3))
+                redis.call('PEXPIRE', KEYS[4], ARGV[1])
+            end
+            if redis.call('EXISTS', KEYS[2]) == 0 then
+                return 0
+            end
+            redis.call('RPUSH', KEYS[1], unpack(ARGV, 3))
+            if redis.call('PTTL', KEYS[1]) == -1 then
+                redis.call('PEXPIRE', KEYS[1], redis.call('PTTL', KEYS[2]))
+            end
+            return 1
+            """;
+
+    // KEYS[1] version, KEYS[2] pending. Replies with {version, pending id...}
+    private static final RedisScript<List<String>> SNAPSHOT_SCRIPT = RedisService.listScript("""
+            local ids = redis.call('SMEMBERS', KEYS[2])
+            table.insert(ids, 1, redis.call('GET', KEYS[1]) or '0')
+            return ids
+            """);
+
+    // KEYS[1] list, KEYS[2] marker, KEYS[3] version; ARGV[1] TTL in ms, ARGV[2] the version the
+    // load started at, ARGV ids. Unless a message was appended since, rebuilds the list and sets
+    // the marker atomically, so no reader sees a partial history; ids are pushed in chunks to
+    // stay below Lua's limit on unpacked values
+    private static final String REPLACE_SCRIPT = """
+            if (redis.call('GET', KEYS[3]) or '0') ~= ARGV[2] then
+                return 0
+            end
+            redis.call('UNLINK', KEYS[1])
+            for i = 3, #ARGV, 1000 do
+                redis.call('RPUSH', KEYS[1], unpack(ARGV, i, math.min(i + 999, #ARGV)))
+            end
+            if #ARGV > 2 then
+                redis.call('PEXPIRE', KEYS[1], ARGV[1])
+            end
+            redis.call('SET', KEYS[2], '1', 'PX', ARGV[1])
+            return 1
+            """;
+
+    private final Logger log = LoggerFactory.getLogger(ChatHistoryCache.class);
+    private final RedisService redisService;
+    private final NormalizedCache normalizedCache;
+    private final CacheLoadGuard cacheLoadGuard;
+    private final CacheMetrics cacheMetrics;
+
+    public ChatHistoryCache(RedisService redisService, NormalizedCache normalizedCache, CacheLoadGuard cacheLoadGuard,
+            CacheMetrics cacheMetrics) {
+        this.redisService = redisService;
+        this.normalizedCache = normalizedCache;
+        this.cacheLoadGuard = cacheLoadGuard;
+        this.cacheMetrics = cacheMetrics;
+    }
+
+    /**
+     * Returns an assessment's whole chat history, oldest message first.
+     *
+     * @param assessmentId The assessment id
+     * @param loader       Loads the history from the database on a miss
+     */
+    public List<ChatMessageCacheDto> getAll(Long assessmentId, Supplier<List<ChatMessageCacheDto>> loader) {
+        return read(assessmentId, 0, -1, loader);
+    }
+
+    /**
+     * Returns a slice of an assessment's chat history, oldest message first.
+     *
+     * @param offset The index of the first message
+     * @param limit  The maximum number of messages
+     */
+    public List<ChatMessageCacheDto> getRange(Long assessmentId, long offset, int limit,
+            Supplier<List<ChatMessageCacheDto>> loader) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        return read(assessmentId, offset, offset + limit - 1, loader);
+    }
+
+    /**
+     * Returns the most recent messages of an assessment's chat history, oldest first.
+     *
+     * @param count The maximum number of messages
+     */
+    public List<ChatMessageCacheDto> getTail(Long assessmentId, int count, Supplier<List<ChatMessageCacheDto>> loader) {
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+        return read(assessmentId, -count, -1, loader);
+    }
+
+    /**
+     * Stores newly saved messages and appends them to the history, if it is loaded.
+     * Runs as a single pipeline.
+     *
+     * @param pending Whether the messages are not in the database yet; they are then merged into
+     *                histories loaded from it until {@link #removePending} is called
+     */
+    public void append(Long assessmentId, List<ChatMessageCacheDto> messages, boolean pending) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        String key = CacheUtils.chatHistoryKey(assessmentId);
+        String[] args = new String[2 + messages.size()];
+        args[0] = Long.toString(TTL.toMillis());
+        args[1] = pending ? "1" : "0";
+        for (int i = 0; i < messages.size(); i++) {
+            args[i + 2] = String.valueOf(messages.get(i).getId());
+        }
+        redisService.executePipelined(batch -> {
+            for (ChatMessageCacheDto message : messages) {
+                batch.setWithExpiration(NormalizedCache.entityKey(CacheUtils.chatMessageEntityType, message.getId()),
+                        message, TTL);
+            }
+            batch.eval(APPEND_SCRIPT, List.of(key, key + LOADED_SUFFIX, key + VERSION_SUFFIX, key + PENDING_SUFFIX),
+                    args);
+        });
+    }
+
+    // Marks messages as written to the database, so loads no longer merge them in
+    public void removePending(Long assessmentId, List<Long> messageIds) {
+        if (messageIds.isEmpty()) {
+            return;
+        }
+        String key = CacheUtils.chatHistoryKey(assessmentId);
+        redisService.executePipelined(batch -> batch.eval("return redis.call('SREM', KEYS[1], unpack(ARGV))",
+                List.of(key + PENDING_SUFFIX), messageIds.stream().map(String::valueOf).toArray(String[]::new)));
+    }
+
+    // Drops the history so that the next read reloads it from the database
+    public void evict(Long assessmentId) {
+        String key = CacheUtils.chatHistoryKey(assessmentId);
+        redisService.executePipelined(batch -> {
+            batch.delete(key + LOADED_SUFFIX);
+            batch.delete(key);
+        });
+    }
+
+    // Read a slice of the list, loading the full history once on a miss
+    private List<ChatMessageCacheDto> read(Long assessmentId, long start, long stop,
+            Supplier<List<ChatMessageCacheDto>> loader) {
+        String key = CacheUtils.chatHistoryKey(assessmentId);
+        Supplier<List<ChatMessageCacheDto>> loadAndStore = () -> load(assessmentId, loader);
+
+        CacheLoadGuard.Lookup<List<ChatMessageCacheDto>> cached = lookup(key, start, stop);
+        if (cached.isHit()) {
+            cacheLoadGuard.refreshEarlyIfDue(CACHE_NAME, key, cached.ttlMillis(), loadAndStore);
+            return cached.value();
+        }
+        List<ChatMessageCacheDto> messages = cacheLoadGuard.get(CACHE_NAME, key, () -> lookup(key, 0, -1), loadAndStore);
+        return slice(messages, start, stop);
+    }
+
+    @SuppressWarnings("unchecked")
+    private CacheLoadGuard.Lookup<List<ChatMessageCacheDto>> lookup(String key, long start, long stop) {
+        try {
+            List<String> reply = redisService.executeScript(RANGE_SCRIPT, List.of(key, key + LOADED_SUFFIX),
+                    Long.toString(start), Long.toString(stop));
+            boolean loaded = reply != null && !reply.isEmpty();
+            cacheMetrics.recordGet(key, loaded);
+            if (loaded) {
+                List<Long> ids = reply.subList(2, reply.size()).stream().map(Long::valueOf).toList();
+                List<Object> messages = normalizedCache.hydrate(CacheUtils.chatMessageEntityType, ids);
+                // A message that expired before the list makes the slice incomplete
+                if (messages != null) {
+                    return new CacheLoadGuard.Lookup<>((List<ChatMessageCacheDto>) (List<?>) messages,
+                            Long.parseLong(reply.get(1)));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to retrieve cached chat history for key: {}, error: {}", key, e.getMessage());
+        }
+        return CacheLoadGuard.Lookup.miss();
+    }
+
+    /**
+     * Loads the history from the database with the messages not written to it yet merged in, and
+     * stores it unless a message was appended meanwhile. The pending ids are read before the
+     * database, so a message written in between is found in both and kept once.
+     */
+    @SuppressWarnings("unchecked")
+    private List<ChatMessageCacheDto> load(Long assessmentId, Supplier<List<ChatMessageCacheDto>> loader) {
+        String key = CacheUtils.chatHistoryKey(assessmentId);
+        List<String> snapshot = null;
+        try {
+            snapshot = redisService.executeScript(SNAPSHOT_SCRIPT, List.of(key + VERSION_SUFFIX, key + PENDING_SUFFIX));
+        } catch (Exception e) {
+            log.warn("Failed to read pending chat messages for assessment {}, error: {}", assessmentId, e.getMessage());
+        }
+        List<ChatMessageCacheDto> messages = loader.get();
+        if (snapshot == null || snapshot.isEmpty()) {
+            // Without the pending messages the history may be incomplete, so it is not stored
+            return messages;
+        }
+
+        Set<Long> loadedIds = messages.stream().map(ChatMessageCacheDto::getId).collect(Collectors.toSet());
+        List<Long> missingIds = snapshot.subList(1, snapshot.size()).stream().map(Long::valueOf)
+                .filter(id -> !loadedIds.contains(id)).toList();
+        if (!missingIds.isEmpty()) {
+            List<Object> pending = normalizedCache.hydrate(CacheUtils.chatMessageEntityType, missingIds);
+            if (pending == null) {
+                log.warn("Pending chat messages of assessment {} expired before they were written", assessmentId);
+                return messages;
+            }
+            messages = new ArrayList<>(messages);
+            messages.addAll((List<ChatMessageCacheDto>) (List<?>) pending);
+            messages.sort(Comparator.comparing(ChatMessageCacheDto::getCreatedDate,
+                    Comparator.nullsFirst(Comparator.naturalOrder())).thenComparing(ChatMessageCacheDto::getId));
+        }
+        store(assessmentId, messages, snapshot.get(0));
+        return messages;
+    }
+
+    // Replace the history with the loaded messages if it is still at the given version; the
+    // messages are stored before the list that references them
+    private void store(Long assessmentId, List<ChatMessageCacheDto> messages, String version) {
+        String key = CacheUtils.chatHistoryKey(assessmentId);
+        String[] args = new String[2 + messages.size()];
+        args[0] = Long.toString(TTL.toMillis());
+        args[1] = version;
+        for (int i = 0; i < messages.size(); i++) {
+            args[i + 2] = String.valueOf(messages.get(i).getId());
+        }
+        try {
+            redisService.executePipelined(batch -> {
+                for (ChatMessageCacheDto message : messages) {
+                    batch.setWithExpiration(NormalizedCache.entityKey(CacheUtils.chatMessageEntityType, message.getId()),
+                            message, TTL);
+                }
+                batch.eval(REPLACE_SCRIPT, List.of(key, key + LOADED_SUFFIX, key + VERSION_SUFFIX), args);
+            });
+        } catch (Exception e) {
+            log.warn("Failed to cache chat history for assessment {}, error: {}", assessmentId, e.getMessage());
+        }
+    }
+
+    // Apply LRANGE start/stop semantics, including negative indexes, to a loaded history
+    private static List<ChatMessageCacheDto> slice(List<ChatMessageCacheDto> messages, long start, long stop) {
+        int size = messages.size();
+        long from = start < 0 ? Math.max(0, size + start) : Math.min(start, size);
+        long to = stop < 0 ? size + stop : Math.min(stop, size - 1L);
+        if (from > to) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(messages.subList((int) from, (int) to + 1));
+    }
+}
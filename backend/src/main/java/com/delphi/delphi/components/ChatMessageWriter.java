@@ -0,0 +1,359 @@
+package com.delphi.delphi.components;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.delphi.delphi.dtos.FetchToolCallDto;
+import com.delphi.delphi.dtos.FetchToolResponseDto;
+import com.delphi.delphi.dtos.cache.ChatMessageCacheDto;
+import com.delphi.delphi.entities.ChatMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Write-behind persistence for chat messages produced by the agent.
+ *
+ * A message gets its id from the chat message sequence as soon as it is produced, is appended
+ * to a Redis stream and added to the cached chat history. A background flush reads the stream
+ * through a consumer group and inserts messages, tool calls and tool responses with JDBC batch
+ * statements, one transaction per batch, before acknowledging the entries. Entries are only
+ * removed once written, so messages survive a crash of the node that produced them: entries a
+ * consumer leaves unacknowledged for themus.chat.write-behind.claim-idle-ms are taken over by
+ * the next flush on any node. Inserts ignore rows that already exist, so writing an entry twice
+ * is harmless.
+ *
+ * A batch the database rejects is retried row by row, so one bad message (e.g. one whose
+ * assessment was deleted) does not hold back the others. A rejected row stays pending and is
+ * retried with the reclaimed entries; once an entry has been delivered
+ * themus.chat.write-behind.max-deliveries times, it is moved to a dead-letter stream and
+ * acknowledged. Reclaiming and reading new entries fail independently of each other.
+ *
+ * Ids are allocated in blocks of {@link #ID_ALLOCATION_SIZE} from themus.chat_messages_id_seq,
+ * the same pooled scheme Hibernate uses for {@link ChatMessage}, since an IDENTITY column would
+ * need a round trip per row to learn each id. Buffered messages stay pending in the cached
+ * history until they are written, see {@link ChatHistoryCache}; the history of an assessment
+ * with a dead-lettered message is evicted, since the message will not be in the database.
+ */
+@Component
+public class ChatMessageWriter {
+
+    // Must match the INCREMENT BY of themus.chat_messages_id_seq and the allocationSize of ChatMessage
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    private static final String STREAM_KEY = "stream:chat_messages";
+    // Entries that could not be written, with the error, for inspection and manual replay
+    private static final String DEAD_LETTER_KEY = "stream:chat_messages:dead";
+    private static final String ERROR_FIELD = "error";
+    private static final String GROUP = "chat-message-writers";
+    private static final String MESSAGE_FIELD = "message";
+
+    private static final String NEXT_ID_BLOCK_SQL = "SELECT nextval('themus.chat_messages_id_seq')";
+    private static final String INSERT_MESSAGE_SQL = """
+            INSERT INTO themus.chat_messages (id, created_at, text, model, assessment_id, message_type)
+            VALUES (?, ?, ?, ?, ?, CAST(? AS themus.message_type))
+            ON CONFLICT (id) DO NOTHING""";
+    private static final String INSERT_TOOL_CALL_SQL = """
+            INSERT INTO themus.openai_tool_calls (id, tool_name, arguments, message_id)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (id) DO NOTHING""";
+    private static final String INSERT_TOOL_RESPONSE_SQL = """
+            INSERT INTO themus.openai_tool_responses (id, name, response_data, message_id)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (id) DO NOTHING""";
+
+    /**
+     * A chat message as buffered in the stream.
+     */
+    record BufferedMessage(long id, long assessmentId, String model, String messageType, String text,
+            String createdAt, List<BufferedToolCall> toolCalls, List<BufferedToolResponse> toolResponses) {
+
+        static BufferedMessage of(ChatMessageCacheDto message) {
+            List<BufferedToolCall> toolCalls = message.getToolCalls() == null ? List.of()
+                    : message.getToolCalls().stream().map(BufferedToolCall::of).toList();
+            List<BufferedToolResponse> toolResponses = message.getToolResponses() == null ? List.of()
+                    : message.getToolResponses().stream().map(BufferedToolResponse::of).toList();
+            return new BufferedMessage(message.getId(), message.getAssessmentId(), message.getModel(),
+                    message.getMessageType().name(), message.getText(), message.getCreatedDate().toString(),
+                    toolCalls, toolResponses);
+        }
+    }
+
+    record BufferedToolCall(String id, String name, String arguments) {
+
+        static BufferedToolCall of(FetchToolCallDto toolCall) {
+            return new BufferedToolCall(toolCall.getId(), toolCall.getName(), toolCall.getArguments());
+        }
+    }
+
+    record BufferedToolResponse(String id, String name, String responseData) {
+
+        static BufferedToolResponse of(FetchToolResponseDto toolResponse) {
+            return new BufferedToolResponse(toolResponse.getId(), toolResponse.getName(), toolResponse.getResponseData());
+        }
+    }
+
+    private final Logger log = LoggerFactory.getLogger(ChatMessageWriter.class);
+    private final RedisService redisService;
+    private final ChatHistoryCache chatHistoryCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Each node reads the stream as its own consumer
+    private final String consumerName = "writer-" + UUID.randomUUID();
+
+    private final int batchSize;
+    private final Duration claimIdle;
+    private final int maxDeliveries;
+
+    private volatile boolean groupCreated;
+    // Guards the block of ids reserved from the sequence that is not used up yet, separately
+    // from flushes, so producing a message never waits for a flush
+    private final Object idLock = new Object();
+    private long nextId = 1;
+    private long maxId = 0;
+
+    public ChatMessageWriter(RedisService redisService, ChatHistoryCache chatHistoryCache, JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${themus.chat.write-behind.batch-size:100}") int batchSize,
+            @Value("${themus.chat.write-behind.claim-idle-ms:30000}") long claimIdleMillis,
+            @Value("${themus.chat.write-behind.max-deliveries:5}") int maxDeliveries) {
+        this.redisService = redisService;
+        this.chatHistoryCache = chatHistoryCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+        this.claimIdle = Duration.ofMillis(claimIdleMillis);
+        this.maxDeliveries = Math.max(1, maxDeliveries);
+    }
+
+    /**
+     * Assigns ids to new messages of an assessment, buffers them for the background writer and
+     * adds them to the cached chat history. If the stream cannot be written, the messages are
+     * inserted right away instead.
+     *
+     * @return The messages as they will be stored, in the given order
+     */
+    public List<ChatMessageCacheDto> enqueue(List<Message> messages, Long assessmentId, String model) {
+        List<ChatMessageCacheDto> saved = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            ChatMessage chatMessage = new ChatMessage(message, assessmentId, model);
+            chatMessage.setId(nextId());
+            chatMessage.setCreatedAt(LocalDateTime.now());
+            saved.add(new ChatMessageCacheDto(chatMessage));
+        }
+        if (saved.isEmpty()) {
+            return saved;
+        }
+
+        List<BufferedMessage> buffered = saved.stream().map(BufferedMessage::of).toList();
+        boolean pending = true;
+        try {
+            for (BufferedMessage message : buffered) {
+                redisService.streamAdd(STREAM_KEY, Map.of(MESSAGE_FIELD, objectMapper.writeValueAsString(message)));
+            }
+        } catch (Exception e) {
+            // Entries already in the stream are written again by the flush, which is harmless
+            log.warn("Failed to buffer chat messages for assessment {}, writing them directly: {}", assessmentId,
+                    e.getMessage());
+            write(buffered);
+            pending = false;
+        }
+
+        try {
+            chatHistoryCache.append(assessmentId, saved, pending);
+        } catch (Exception e) {
+            log.warn("Failed to cache chat messages for assessment {}, error: {}", assessmentId, e.getMessage());
+        }
+        return saved;
+    }
+
+    @Scheduled(fixedDelayString = "${themus.chat.write-behind.flush-interval-ms:500}")
+    public void flushScheduled() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("Failed to flush buffered chat messages: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Writes every buffered message this node can take to the database, in batches of
+     * themus.chat.write-behind.batch-size.
+     *
+     * @return The number of messages written
+     */
+    public synchronized int flush() {
+        if (!groupCreated) {
+            redisService.streamCreateGroup(STREAM_KEY, GROUP);
+            groupCreated = true;
+        }
+        // Entries another consumer (or an earlier failed flush) left behind go first, but failing
+        // to write them must not keep new entries from being read
+        int written = 0;
+        try {
+            written += process(redisService.streamClaimIdle(STREAM_KEY, GROUP, consumerName, claimIdle, batchSize));
+        } catch (Exception e) {
+            log.warn("Failed to write reclaimed chat message entries: {}", e.getMessage());
+        }
+        List<RedisService.StreamEntry> entries;
+        do {
+            entries = redisService.streamReadGroup(STREAM_KEY, GROUP, consumerName, batchSize);
+            written += process(entries);
+        } while (entries.size() >= batchSize);
+        if (written > 0) {
+            log.debug("Flushed {} buffered chat messages", written);
+        }
+        return written;
+    }
+
+    /**
+     * Writes a batch of entries and acknowledges the ones that are done with: written, malformed
+     * or dead-lettered. Entries whose rows the database rejected stay pending for a retry.
+     *
+     * @return The number of messages written
+     */
+    private int process(List<RedisService.StreamEntry> entries) {
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        Map<RedisService.StreamEntry, BufferedMessage> messages = new LinkedHashMap<>();
+        List<String> done = new ArrayList<>(entries.size());
+        for (RedisService.StreamEntry entry : entries) {
+            try {
+                messages.put(entry, objectMapper.readValue(entry.fields().get(MESSAGE_FIELD), BufferedMessage.class));
+            } catch (Exception e) {
+                // Dead-lettered right away since it can never be written
+                deadLetter(entry, "Malformed entry: " + e.getMessage());
+                done.add(entry.id());
+            }
+        }
+
+        List<BufferedMessage> written = new ArrayList<>(messages.size());
+        List<BufferedMessage> deadLettered = new ArrayList<>();
+        try {
+            write(new ArrayList<>(messages.values()));
+            written.addAll(messages.values());
+            messages.keySet().forEach(entry -> done.add(entry.id()));
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Chat message batch of {} rejected, writing it row by row: {}", messages.size(), e.getMessage());
+            messages.forEach((entry, message) -> {
+                try {
+                    write(List.of(message));
+                    written.add(message);
+                    done.add(entry.id());
+                } catch (DataIntegrityViolationException rowError) {
+                    if (entry.deliveries() >= maxDeliveries) {
+                        deadLetter(entry, rowError.getMessage());
+                        deadLettered.add(message);
+                        done.add(entry.id());
+                    } else {
+                        log.warn("Chat message {} rejected on delivery {} of {}, leaving it for a retry: {}",
+                                message.id(), entry.deliveries(), maxDeliveries, rowError.getMessage());
+                    }
+                }
+            });
+        }
+
+        redisService.streamAckAndDelete(STREAM_KEY, GROUP, done);
+
+        Map<Long, List<Long>> settledIds = new LinkedHashMap<>();
+        written.forEach(message -> settledIds.computeIfAbsent(message.assessmentId(), id -> new ArrayList<>())
+                .add(message.id()));
+        deadLettered.forEach(message -> settledIds.computeIfAbsent(message.assessmentId(), id -> new ArrayList<>())
+                .add(message.id()));
+        Set<Long> evicted = new LinkedHashSet<>();
+        deadLettered.forEach(message -> evicted.add(message.assessmentId()));
+        settledIds.forEach((assessmentId, ids) -> {
+            try {
+                chatHistoryCache.removePending(assessmentId, ids);
+                if (evicted.contains(assessmentId)) {
+                    chatHistoryCache.evict(assessmentId);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to update cached chat history for assessment {}, error: {}", assessmentId,
+                        e.getMessage());
+            }
+        });
+        return written.size();
+    }
+
+    // Keep an entry that cannot be written in the dead-letter stream before it is acknowledged
+    private void deadLetter(RedisService.StreamEntry entry, String error) {
+        log.error("Moving chat message entry {} to {} after {} deliveries: {}", entry.id(), DEAD_LETTER_KEY,
+                entry.deliveries(), error);
+        Map<String, String> fields = new LinkedHashMap<>(entry.fields());
+        fields.put(ERROR_FIELD, String.valueOf(error));
+        redisService.streamAdd(DEAD_LETTER_KEY, fields);
+    }
+
+    // Insert messages with their tool calls and tool responses in one transaction
+    private void write(List<BufferedMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        // Each paired with the id of its message
+        List<Map.Entry<BufferedToolCall, Long>> toolCalls = new ArrayList<>();
+        List<Map.Entry<BufferedToolResponse, Long>> toolResponses = new ArrayList<>();
+        for (BufferedMessage message : messages) {
+            message.toolCalls().forEach(toolCall -> toolCalls.add(Map.entry(toolCall, message.id())));
+            message.toolResponses().forEach(toolResponse -> toolResponses.add(Map.entry(toolResponse, message.id())));
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_MESSAGE_SQL, messages, batchSize, (ps, message) -> {
+                ps.setLong(1, message.id());
+                ps.setTimestamp(2, Timestamp.valueOf(LocalDateTime.parse(message.createdAt())));
+                // The column is NOT NULL; assistant messages with only tool calls may have no text
+                ps.setString(3, message.text() != null ? message.text() : "");
+                ps.setString(4, message.model());
+                ps.setLong(5, message.assessmentId());
+                ps.setString(6, message.messageType());
+            });
+            jdbcTemplate.batchUpdate(INSERT_TOOL_CALL_SQL, toolCalls, batchSize, (ps, toolCall) -> {
+                ps.setString(1, toolCall.getKey().id());
+                ps.setString(2, toolCall.getKey().name());
+                ps.setString(3, toolCall.getKey().arguments());
+                ps.setLong(4, toolCall.getValue());
+            });
+            jdbcTemplate.batchUpdate(INSERT_TOOL_RESPONSE_SQL, toolResponses, batchSize, (ps, toolResponse) -> {
+                ps.setString(1, toolResponse.getKey().id());
+                ps.setString(2, toolResponse.getKey().name());
+                ps.setString(3, toolResponse.getKey().responseData());
+                ps.setLong(4, toolResponse.getValue());
+            });
+        });
+    }
+
+    // Take the next id from the reserved block, reserving a new block from the sequence when it is used up
+    private long nextId() {
+        synchronized (idLock) {
+            if (nextId > maxId) {
+                Long hi = jdbcTemplate.queryForObject(NEXT_ID_BLOCK_SQL, Long.class);
+                if (hi == null) {
+                    throw new IllegalStateException("Chat message sequence returned no value");
+                }
+                maxId = hi;
+                nextId = Math.max(1, hi - ID_ALLOCATION_SIZE + 1);
+            }
+            return nextId++;
+        }
+    }
+}
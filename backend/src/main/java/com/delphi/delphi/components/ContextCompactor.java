@@ -0,0 +1,355 @@
+package com.delphi.delphi.components;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.AssistantMessage.ToolCall;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage.ToolResponse;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.delphi.delphi.utils.CacheUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingRegistry;
+import com.knuddels.jtokkit.api.EncodingType;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Keeps the context sent to the model within a token budget.
+ *
+ * Every prompt goes through two stages:
+ * 1. Tool responses older than the last themus.agent.context.recent-messages messages are
+ *    truncated to themus.agent.context.stale-tool-result-chars characters. File contents read
+ *    many turns ago are rarely needed again, and the model can read them again if they are.
+ * 2. If the context is still over the model's budget, the oldest messages are replaced by a
+ *    rolling summary. The summary is cached per assessment together with the number of
+ *    messages it covers, and is only extended with the messages that fall out of the
+ *    window since, so each message is summarized once.
+ *
+ * Tokens are counted with the model's tokenizer when it is known, and otherwise with
+ * cl100k_base as an estimate. The default budget (themus.agent.context.max-tokens) can be set
+ * per model with themus.agent.context.model-max-tokens, e.g.
+ * {@code anthropic/claude-sonnet-4:150000,openai/gpt-4o:100000}. The tokens saved per agent run
+ * are recorded in the {@code agent.context.tokens.saved} summary.
+ */
+@Component
+public class ContextCompactor {
+
+    // Share of the budget kept for the most recent messages when older ones are summarized
+    private static final double RECENT_SHARE = 0.6;
+    // Tokens per message for the role and separators
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+    private static final Duration SUMMARY_TTL = Duration.ofDays(3);
+    private static final String SUMMARY_INSTRUCTIONS = """
+            You maintain a running summary of a conversation in which an assistant builds a coding \
+            assessment in a GitHub repository for a user. Update the summary with the new messages. \
+            Keep the user's requirements and feedback, decisions made, branches and file paths created \
+            or changed, and anything still to be done. Leave out file contents and tool output details. \
+            Reply with the updated summary only.""";
+
+    /**
+     * The context to send to the model.
+     *
+     * @param messages       The compacted messages
+     * @param originalTokens The tokens the messages would have taken as they were
+     * @param tokens         The tokens the compacted messages take
+     */
+    public record CompactedContext(List<Message> messages, int originalTokens, int tokens) {
+
+        public int tokensSaved() {
+            return Math.max(0, originalTokens - tokens);
+        }
+    }
+
+    // The summary of the first coveredMessages messages of an assessment's conversation
+    record CachedSummary(int coveredMessages, String summary) {
+    }
+
+    private final Logger log = LoggerFactory.getLogger(ContextCompactor.class);
+    private final ChatModel chatModel;
+    private final RedisService redisService;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final EncodingRegistry encodingRegistry = Encodings.newDefaultEncodingRegistry();
+    private final Map<String, Encoding> encodings = new ConcurrentHashMap<>();
+
+    private final int defaultMaxTokens;
+    private final Map<String, Integer> modelMaxTokens;
+    private final int recentMessages;
+    private final int staleToolResultChars;
+    private final String summaryModel;
+
+    public ContextCompactor(ChatModel chatModel, RedisService redisService, MeterRegistry meterRegistry,
+            @Value("${themus.agent.context.max-tokens:100000}") int defaultMaxTokens,
+            @Value("${themus.agent.context.model-max-tokens:}") String modelMaxTokens,
+            @Value("${themus.agent.context.recent-messages:6}") int recentMessages,
+            @Value("${themus.agent.context.stale-tool-result-chars:1000}") int staleToolResultChars,
+            @Value("${themus.agent.context.summary-model:}") String summaryModel) {
+        this.chatModel = chatModel;
+        this.redisService = redisService;
+        this.meterRegistry = meterRegistry;
+        this.defaultMaxTokens = defaultMaxTokens;
+        this.modelMaxTokens = parseModelMaxTokens(modelMaxTokens);
+        this.recentMessages = Math.max(1, recentMessages);
+        this.staleToolResultChars = Math.max(0, staleToolResultChars);
+        this.summaryModel = summaryModel;
+    }
+
+    /**
+     * Compacts the context of an assessment's conversation for a model call.
+     *
+     * @param assessmentId The assessment, whose rolling summary is used
+     * @param model        The model the context is sent to
+     * @param messages     The whole conversation, oldest message first
+     */
+    public CompactedContext compact(Long assessmentId, String model, List<Message> messages) {
+        Encoding encoding = encoding(model);
+        int originalTokens = countTokens(encoding, messages);
+        int budget = maxTokens(model);
+
+        List<Message> truncated = truncateStaleToolResults(messages);
+        int tokens = countTokens(encoding, truncated);
+        if (tokens <= budget) {
+            return new CompactedContext(truncated, originalTokens, tokens);
+        }
+
+        List<Message> summarized = summarizeOldest(assessmentId, model, encoding, truncated, budget);
+        int summarizedTokens = countTokens(encoding, summarized);
+        if (summarizedTokens > budget) {
+            log.warn("Context for assessment {} is {} tokens after compaction, over the budget of {} for {}",
+                    assessmentId, summarizedTokens, budget, model);
+        }
+        return new CompactedContext(summarized, originalTokens, summarizedTokens);
+    }
+
+    // Record the prompt tokens compaction saved over the model calls of one agent run
+    public void recordRunSavings(String model, long tokensSaved) {
+        DistributionSummary.builder("agent.context.tokens.saved")
+                .description("Prompt tokens saved by context compaction per agent run")
+                .baseUnit("tokens")
+                .tag("model", model != null ? model : "unknown")
+                .register(meterRegistry)
+                .record(tokensSaved);
+    }
+
+    /* Stale Tool Results */
+
+    private List<Message> truncateStaleToolResults(List<Message> messages) {
+        int recentFrom = Math.max(0, messages.size() - recentMessages);
+        List<Message> result = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            if (i < recentFrom && message instanceof ToolResponseMessage toolResponseMessage) {
+                result.add(truncate(toolResponseMessage));
+            } else {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+
+    private ToolResponseMessage truncate(ToolResponseMessage message) {
+        boolean changed = false;
+        List<ToolResponse> responses = new ArrayList<>(message.getResponses().size());
+        for (ToolResponse response : message.getResponses()) {
+            String data = response.responseData();
+            if (data != null && data.length() > staleToolResultChars) {
+                // Keep the id so the response still answers its tool call
+                data = data.substring(0, staleToolResultChars) + "\n[... " + (data.length() - staleToolResultChars)
+                        + " characters of an earlier tool result omitted; call the tool again if needed]";
+                changed = true;
+            }
+            responses.add(new ToolResponse(response.id(), response.name(), data));
+        }
+        return changed ? new ToolResponseMessage(responses, message.getMetadata()) : message;
+    }
+
+    /* Rolling Summary */
+
+    /**
+     * Replaces the oldest messages with a summary, keeping as many recent messages as fit in
+     * the recent share of the budget. The kept messages never start with a tool response,
+     * which would be cut off from the assistant message that called the tool.
+     */
+    private List<Message> summarizeOldest(Long assessmentId, String model, Encoding encoding, List<Message> messages,
+            int budget) {
+        int recentBudget = (int) (budget * RECENT_SHARE);
+        int split = messages.size();
+        int recentTokens = 0;
+        for (int i = messages.size() - 1; i > 0; i--) {
+            recentTokens += countTokens(encoding, messages.get(i));
+            if (recentTokens > recentBudget && split < messages.size()) {
+                break;
+            }
+            if (!(messages.get(i) instanceof ToolResponseMessage)) {
+                split = i;
+            }
+        }
+        if (split >= messages.size()) {
+            return messages;
+        }
+
+        String key = CacheUtils.contextSummaryKey(assessmentId);
+        CachedSummary cached = loadSummary(key);
+        // A summary that already reaches past the split is kept; it only makes the window smaller
+        if (cached != null && cached.coveredMessages() >= split && cached.coveredMessages() < messages.size()
+                && !(messages.get(cached.coveredMessages()) instanceof ToolResponseMessage)) {
+            split = cached.coveredMessages();
+        } else {
+            String previous = cached != null && cached.coveredMessages() < split ? cached.summary() : null;
+            int from = previous != null ? cached.coveredMessages() : 0;
+            try {
+                String summary = summarize(model, previous, messages.subList(from, split));
+                cached = new CachedSummary(split, summary);
+                saveSummary(key, cached);
+            } catch (Exception e) {
+                log.warn("Failed to summarize the context of assessment {}, sending it unsummarized: {}", assessmentId,
+                        e.getMessage());
+                return messages;
+            }
+        }
+
+        List<Message> result = new ArrayList<>(messages.size() - split + 1);
+        result.add(new SystemMessage("Summary of the earlier conversation:\n" + cached.summary()));
+        result.addAll(messages.subList(split, messages.size()));
+        return result;
+    }
+
+    private String summarize(String model, String previousSummary, List<Message> messages) {
+        StringBuilder request = new StringBuilder("Current summary:\n")
+                .append(previousSummary != null ? previousSummary : "(none)")
+                .append("\n\nNew messages:\n");
+        for (Message message : messages) {
+            request.append(render(message)).append('\n');
+        }
+        String modelName = summaryModel != null && !summaryModel.isBlank() ? summaryModel : model;
+        ChatResponse response = chatModel.call(new Prompt(
+                List.of(new SystemMessage(SUMMARY_INSTRUCTIONS), new UserMessage(request.toString())),
+                OpenAiChatOptions.builder().model(modelName).build()));
+        String summary = response.getResult() != null ? response.getResult().getOutput().getText() : null;
+        if (summary == null || summary.isBlank()) {
+            throw new IllegalStateException("The model returned an empty summary");
+        }
+        return summary.strip();
+    }
+
+    // A message as a line of the summary request, with tool output shortened
+    private String render(Message message) {
+        StringBuilder line = new StringBuilder(message.getMessageType().getValue()).append(": ");
+        if (message.getText() != null) {
+            line.append(message.getText());
+        }
+        if (message instanceof AssistantMessage assistantMessage && assistantMessage.hasToolCalls()) {
+            for (ToolCall toolCall : assistantMessage.getToolCalls()) {
+                line.append("\n  called ").append(toolCall.name()).append(' ').append(shorten(toolCall.arguments(), 300));
+            }
+        }
+        if (message instanceof ToolResponseMessage toolResponseMessage) {
+            for (ToolResponse response : toolResponseMessage.getResponses()) {
+                line.append("\n  ").append(response.name()).append(" returned ").append(shorten(response.responseData(), 300));
+            }
+        }
+        return line.toString();
+    }
+
+    private CachedSummary loadSummary(String key) {
+        try {
+            String json = redisService.getString(key);
+            return json != null ? objectMapper.readValue(json, CachedSummary.class) : null;
+        } catch (Exception e) {
+            log.warn("Failed to load context summary for key: {}, error: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveSummary(String key, CachedSummary summary) {
+        try {
+            redisService.setStringWithExpiration(key, objectMapper.writeValueAsString(summary), SUMMARY_TTL);
+        } catch (Exception e) {
+            log.warn("Failed to cache context summary for key: {}, error: {}", key, e.getMessage());
+        }
+    }
+
+    /* Token Counting */
+
+    private int countTokens(Encoding encoding, List<Message> messages) {
+        int tokens = 0;
+        for (Message message : messages) {
+            tokens += countTokens(encoding, message);
+        }
+        return tokens;
+    }
+
+    private int countTokens(Encoding encoding, Message message) {
+        int tokens = MESSAGE_OVERHEAD_TOKENS + count(encoding, message.getText());
+        if (message instanceof AssistantMessage assistantMessage && assistantMessage.hasToolCalls()) {
+            for (ToolCall toolCall : assistantMessage.getToolCalls()) {
+                tokens += count(encoding, toolCall.name()) + count(encoding, toolCall.arguments());
+            }
+        }
+        if (message instanceof ToolResponseMessage toolResponseMessage) {
+            for (ToolResponse response : toolResponseMessage.getResponses()) {
+                tokens += count(encoding, response.name()) + count(encoding, response.responseData());
+            }
+        }
+        return tokens;
+    }
+
+    private static int count(Encoding encoding, String text) {
+        return text == null || text.isEmpty() ? 0 : encoding.countTokensOrdinary(text);
+    }
+
+    // The model's tokenizer, from its name without the provider prefix; cl100k_base if unknown
+    private Encoding encoding(String model) {
+        String name = model == null ? "" : model.substring(model.indexOf('/') + 1);
+        return encodings.computeIfAbsent(name, n -> encodingRegistry.getEncodingForModel(n)
+                .orElseGet(() -> encodingRegistry.getEncoding(n.startsWith("gpt-4o") || n.startsWith("gpt-4.1")
+                        || n.startsWith("o") ? EncodingType.O200K_BASE : EncodingType.CL100K_BASE)));
+    }
+
+    private int maxTokens(String model) {
+        return modelMaxTokens.getOrDefault(model, defaultMaxTokens);
+    }
+
+    private static String shorten(String text, int maxChars) {
+        if (text == null) {
+            return "";
+        }
+        return text.length() <= maxChars ? text : text.substring(0, maxChars) + "...";
+    }
+
+    // Parse "model:tokens,model:tokens"; the model name itself may contain colons
+    private static Map<String, Integer> parseModelMaxTokens(String value) {
+        Map<String, Integer> result = new HashMap<>();
+        if (value == null || value.isBlank()) {
+            return result;
+        }
+        for (String entry : value.split(",")) {
+            int separator = entry.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid themus.agent.context.model-max-tokens entry: " + entry);
+            }
+            result.put(entry.substring(0, separator).strip(), Integer.parseInt(entry.substring(separator + 1).strip()));
+        }
+        return result;
+    }
+}
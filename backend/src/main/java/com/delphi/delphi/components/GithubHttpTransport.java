@@ -0,0 +1,152 @@
+package com.delphi.delphi.components;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.JdkClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import reactor.core.publisher.Mono;
+
+/**
+ * The HTTP client every WebClient talking to GitHub is built on, with {@link #connector()} and
+ * {@link #exchangeFilter()}.
+ *
+ * One JDK HttpClient is shared, so connections to GitHub are pooled and kept alive across
+ * requests and services instead of per WebClient. It negotiates HTTP/2 (and falls back to
+ * HTTP/1.1 where the server does not offer it), so concurrent requests to api.github.com are
+ * multiplexed over one connection; how many are sent at once is bounded per token by
+ * {@link GithubRequestScheduler}. Its response handling runs on virtual threads, and requests
+ * have explicit connect and response timeouts.
+ *
+ * Meters:
+ * <ul>
+ * <li>{@code github.http.client.requests} - time to the response of each request sent to GitHub, tagged by
+ * method, uri template, status and outcome</li>
+ * <li>{@code github.http.client.active} - requests waiting for their response</li>
+ * </ul>
+ */
+@Component
+public class GithubHttpTransport {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient httpClient;
+    private final Duration responseTimeout;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final AtomicInteger active = new AtomicInteger();
+
+    public GithubHttpTransport(MeterRegistry meterRegistry,
+            @Value("${themus.github.http.connect-timeout-ms:5000}") long connectTimeoutMs,
+            @Value("${themus.github.http.response-timeout-seconds:30}") long responseTimeoutSeconds) {
+        this.meterRegistry = meterRegistry;
+        this.responseTimeout = Duration.ofSeconds(responseTimeoutSeconds);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+
+        Gauge.builder("github.http.client.active", active, AtomicInteger::get)
+                .description("GitHub requests waiting for their response")
+                .register(meterRegistry);
+    }
+
+    // A connector on the shared client; connectors are cheap, the client and its connections are shared
+    public ClientHttpConnector connector() {
+        JdkClientHttpConnector connector = new JdkClientHttpConnector(httpClient);
+        connector.setReadTimeout(responseTimeout);
+        return connector;
+    }
+
+    // Times each request on the wire; applied last, so retries are timed one by one
+    public ExchangeFilterFunction exchangeFilter() {
+        return (request, next) -> {
+            String method = request.method().name();
+            String uri = uriTemplate(request.url().getPath());
+            return Mono.defer(() -> {
+                long start = System.nanoTime();
+                active.incrementAndGet();
+                return next.exchange(request)
+                        .doOnNext(response -> {
+                            int status = response.statusCode().value();
+                            record(method, uri, String.valueOf(status), outcome(status), System.nanoTime() - start);
+                        })
+                        .doOnError(e -> record(method, uri, "IO_ERROR", "UNKNOWN", System.nanoTime() - start))
+                        .doFinally(signal -> active.decrementAndGet());
+            });
+        };
+    }
+
+    private void record(String method, String uri, String status, String outcome, long nanos) {
+        timers.computeIfAbsent(method + "|" + uri + "|" + status,
+                id -> Timer.builder("github.http.client.requests")
+                        .tag("method", method)
+                        .tag("uri", uri)
+                        .tag("status", status)
+                        .tag("outcome", outcome)
+                        .description("Time to the response of requests sent to GitHub")
+                        .register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The path with owners, repositories, ids and everything below the resource kind replaced, so
+     * the uri tag stays bounded: /repos/acme/app/contents/src/Main.java is /repos/{owner}/{repo}/contents.
+     */
+    private static String uriTemplate(String path) {
+        String[] segments = path.split("/");
+        if (segments.length < 2) {
+            return "/";
+        }
+        boolean repos = segments[1].equals("repos");
+        boolean orgs = segments[1].equals("orgs");
+        int limit = repos && segments.length > 4 && segments[4].equals("git") ? 5 : 4;
+        StringBuilder template = new StringBuilder();
+        for (int i = 1; i < segments.length && i <= limit; i++) {
+            String segment = segments[i];
+            if (repos && i == 2) {
+                segment = "{owner}";
+            } else if (repos && i == 3) {
+                segment = "{repo}";
+            } else if (orgs && i == 2) {
+                segment = "{org}";
+            } else if (!segment.isEmpty() && segment.chars().allMatch(Character::isDigit)) {
+                segment = "{id}";
+            }
+            template.append('/').append(segment);
+        }
+        return template.toString();
+    }
+
+    private static String outcome(int status) {
+        if (status >= 500) {
+            return "SERVER_ERROR";
+        } else if (status >= 400) {
+            return "CLIENT_ERROR";
+        } else if (status >= 300) {
+            return "REDIRECTION";
+        }
+        return "SUCCESS";
+    }
+
+    @PreDestroy
+    public void close() {
+        httpClient.shutdownNow();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,478 @@
+package com.delphi.delphi.components;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+/**
+ * Schedules requests to the GitHub API by priority and by the rate limit quota GitHub reports,
+ * applied to the GitHub WebClient with {@link #exchangeFilter()}.
+ *
+ * Requests are grouped by the credentials they are sent with (hashed), which is how GitHub
+ * counts them: per installation, per user token and per personal token. For each group the
+ * X-RateLimit-Remaining / X-RateLimit-Reset headers of its responses are tracked, and requests
+ * wait in a queue ordered by {@link Priority} for one of max-concurrent slots:
+ * <ul>
+ * <li>Background requests leave the last reserve requests of a quota to the others and wait
+ * for the quota to reset instead, so agent jobs cannot use up the quota candidates need to
+ * start an attempt.</li>
+ * <li>A 429, or a 403 that GitHub marks as a primary or secondary rate limit, pauses the whole
+ * group for its Retry-After (or until the reset, or an exponential backoff) and the request is
+ * sent again, up to max-retries times.</li>
+ * <li>A request that would have to wait longer than max-wait-seconds fails right away with a
+ * message saying when the limit resets, instead of holding its caller.</li>
+ * </ul>
+ *
+ * The priority of a request is taken from the Reactor context of the call, set with
+ * {@link #withPriority(Priority, Mono)}, so it also applies to requests a call chains on other threads.
+ *
+ * Meters:
+ * <ul>
+ * <li>{@code github.ratelimit.remaining} - lowest remaining quota of the tracked groups, tagged by token type</li>
+ * <li>{@code github.ratelimit.queue} - requests waiting for a slot, tagged by priority</li>
+ * <li>{@code github.ratelimit.wait} - time requests waited for a slot, tagged by priority</li>
+ * <li>{@code github.ratelimit.retries} - requests sent again after a rate limit response, tagged by status</li>
+ * <li>{@code github.ratelimit.rejected} - requests failed because they would have waited too long, tagged by priority</li>
+ * </ul>
+ */
+@Component
+public class GithubRequestScheduler {
+
+    /**
+     * Priority of a GitHub request; requests of a higher priority are sent first.
+     */
+    public enum Priority {
+        // Requests a candidate or user is waiting for, such as starting an attempt
+        INTERACTIVE,
+        DEFAULT,
+        // Agent jobs and other work nobody waits for
+        BACKGROUND
+    }
+
+    private static final String PRIORITY_KEY = GithubRequestScheduler.class.getName() + ".priority";
+    private static final List<String> TOKEN_TYPES = List.of("installation", "user", "oauth", "personal", "app",
+            "other", "anonymous");
+
+    // A request waiting for or holding a slot of its group
+    private static final class Ticket {
+        private final Priority priority;
+        private final long sequence;
+        private final long enqueuedAt = System.nanoTime();
+        private MonoSink<Void> sink;
+        private boolean granted;
+        private boolean done;
+
+        private Ticket(Priority priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+
+    // The quota and queue of the requests sent with one set of credentials
+    private static final class Scope {
+        private final String tokenType;
+        // Guarded by this
+        private final PriorityQueue<Ticket> queue = new PriorityQueue<>(
+                Comparator.comparing((Ticket ticket) -> ticket.priority).thenComparingLong(ticket -> ticket.sequence));
+        private int inFlight;
+        // Remaining requests of the current quota window, -1 until GitHub reports it
+        private long remaining = -1;
+        // End of the current quota window, in epoch millis
+        private long resetAt;
+        // Nothing is sent before this time, in epoch millis, after a rate limit response
+        private long pausedUntil;
+        // Time of the pending delayed drain, 0 if none
+        private long drainAt;
+        private long lastUsed = System.currentTimeMillis();
+
+        private Scope(String tokenType) {
+            this.tokenType = tokenType;
+        }
+    }
+
+    private final Logger log = LoggerFactory.getLogger(GithubRequestScheduler.class);
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Scope> scopes = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<Priority, Timer> waitTimers = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final int maxConcurrent;
+    private final long reserve;
+    private final int maxRetries;
+    private final long backoffMs;
+    private final long maxWaitMs;
+
+    public GithubRequestScheduler(MeterRegistry meterRegistry,
+            @Value("${themus.github.rate-limit.max-concurrent:8}") int maxConcurrent,
+            @Value("${themus.github.rate-limit.reserve:200}") long reserve,
+            @Value("${themus.github.rate-limit.max-retries:3}") int maxRetries,
+            @Value("${themus.github.rate-limit.backoff-ms:1000}") long backoffMs,
+            @Value("${themus.github.rate-limit.max-wait-seconds:120}") long maxWaitSeconds) {
+        this.meterRegistry = meterRegistry;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.reserve = Math.max(0, reserve);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.backoffMs = Math.max(1, backoffMs);
+        this.maxWaitMs = TimeUnit.SECONDS.toMillis(maxWaitSeconds);
+    }
+
+    // The gauges read this scheduler, so they are registered once it is constructed
+    @PostConstruct
+    public void registerGauges() {
+        for (String tokenType : TOKEN_TYPES) {
+            Gauge.builder("github.ratelimit.remaining", this, scheduler -> scheduler.lowestRemaining(tokenType))
+                    .tag("token", tokenType)
+                    .description("Lowest remaining GitHub rate limit quota of the tracked tokens of this type")
+                    .register(meterRegistry);
+        }
+        for (Priority priority : Priority.values()) {
+            Gauge.builder("github.ratelimit.queue", this, scheduler -> scheduler.queued(priority))
+                    .tag("priority", tag(priority))
+                    .description("GitHub requests waiting to be sent")
+                    .register(meterRegistry);
+        }
+    }
+
+    /* Priorities */
+
+    // Sends the requests of a call with the given priority, including those it makes on other threads
+    public static <T> Mono<T> withPriority(Priority priority, Mono<T> call) {
+        return call.contextWrite(Context.of(PRIORITY_KEY, priority));
+    }
+
+    /* Filter */
+
+    public ExchangeFilterFunction exchangeFilter() {
+        return (request, next) -> Mono.deferContextual(context -> {
+            Priority priority = context.<Priority>getOrEmpty(PRIORITY_KEY).orElse(Priority.DEFAULT);
+            String authorization = request.headers().getFirst(HttpHeaders.AUTHORIZATION);
+            Scope scope = scopes.computeIfAbsent(scopeKey(authorization),
+                    key -> new Scope(tokenType(authorization)));
+            return send(request, next, scope, priority, 0);
+        });
+    }
+
+    private Mono<ClientResponse> send(ClientRequest request, ExchangeFunction next, Scope scope, Priority priority,
+            int attempt) {
+        return Mono.defer(() -> {
+            Ticket ticket = new Ticket(priority, sequence.incrementAndGet());
+            return Mono.<Void>create(sink -> enqueue(scope, ticket, sink))
+                    .then(Mono.defer(() -> next.exchange(request)))
+                    .doOnNext(response -> {
+                        update(scope, response.headers().asHttpHeaders());
+                        finish(scope, ticket);
+                    })
+                    .doFinally(signal -> finish(scope, ticket))
+                    .flatMap(response -> checkRateLimited(request, next, scope, priority, attempt, response));
+        });
+    }
+
+    // Sends the request again if GitHub answered with a rate limit, after pausing its group
+    private Mono<ClientResponse> checkRateLimited(ClientRequest request, ExchangeFunction next, Scope scope,
+            Priority priority, int attempt, ClientResponse response) {
+        int status = response.statusCode().value();
+        if (status != 403 && status != 429) {
+            return Mono.just(response);
+        }
+        HttpHeaders headers = response.headers().asHttpHeaders();
+        if (status == 429 || headers.containsKey(HttpHeaders.RETRY_AFTER) || "0".equals(headers.getFirst("X-RateLimit-Remaining"))) {
+            return retry(request, next, scope, priority, attempt, response, headers, null);
+        }
+        // A 403 is usually a permission error; GitHub only says it is a secondary rate limit in the body
+        return response.bodyToMono(String.class).defaultIfEmpty("").flatMap(body -> {
+            if (body.toLowerCase(Locale.ROOT).contains("rate limit")) {
+                return retry(request, next, scope, priority, attempt, response, headers, body);
+            }
+            return Mono.just(response.mutate().body(body).build());
+        });
+    }
+
+    private Mono<ClientResponse> retry(ClientRequest request, ExchangeFunction next, Scope scope, Priority priority,
+            int attempt, ClientResponse response, HttpHeaders headers, String body) {
+        long now = System.currentTimeMillis();
+        long waitMs = retryAfterMs(headers, scope, now, attempt);
+        if (attempt >= maxRetries || waitMs > maxWaitMs) {
+            log.warn("GitHub rate limited {} {} ({} {} token) after {} attempts, giving up", request.method(),
+                    request.url().getPath(), response.statusCode().value(), scope.tokenType, attempt + 1);
+            return Mono.just(body != null ? response.mutate().body(body).build() : response);
+        }
+        synchronized (scope) {
+            scope.pausedUntil = Math.max(scope.pausedUntil, now + waitMs);
+        }
+        log.warn("GitHub rate limited {} {} ({} {} token), sending again in {} ms", request.method(),
+                request.url().getPath(), response.statusCode().value(), scope.tokenType, waitMs);
+        count("retries", "status", String.valueOf(response.statusCode().value()));
+        Mono<Void> release = body != null ? Mono.empty() : response.releaseBody();
+        return release.then(send(request, next, scope, priority, attempt + 1));
+    }
+
+    // Retry-After if given, the quota reset if the quota is used up, an exponential backoff otherwise
+    private long retryAfterMs(HttpHeaders headers, Scope scope, long now, int attempt) {
+        String retryAfter = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (retryAfter != null) {
+            try {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+            } catch (NumberFormatException e) {
+                log.debug("Unparseable Retry-After header: {}", retryAfter);
+            }
+        }
+        synchronized (scope) {
+            if (scope.remaining == 0 && scope.resetAt > now) {
+                return scope.resetAt - now;
+            }
+        }
+        long backoff = backoffMs << Math.min(attempt, 16);
+        return backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    /* Queue */
+
+    private void enqueue(Scope scope, Ticket ticket, MonoSink<Void> sink) {
+        sink.onCancel(() -> finish(scope, ticket));
+        long waitMs;
+        synchronized (scope) {
+            waitMs = waitMs(scope, ticket.priority, System.currentTimeMillis());
+            if (waitMs <= maxWaitMs) {
+                ticket.sink = sink;
+                scope.queue.add(ticket);
+                scope.lastUsed = System.currentTimeMillis();
+            }
+        }
+        if (waitMs > maxWaitMs) {
+            count("rejected", "priority", tag(ticket.priority));
+            sink.error(new RuntimeException("GitHub rate limit exhausted for this " + scope.tokenType
+                    + " token; it resets in " + Duration.ofMillis(waitMs).toSeconds() + " seconds"));
+            return;
+        }
+        drain(scope);
+    }
+
+    // Hand free slots to the queued requests in priority order
+    private void drain(Scope scope) {
+        List<Ticket> granted = new ArrayList<>();
+        long delayMs = 0;
+        synchronized (scope) {
+            long now = System.currentTimeMillis();
+            while (!scope.queue.isEmpty() && scope.inFlight < maxConcurrent) {
+                Ticket head = scope.queue.peek();
+                long waitMs = waitMs(scope, head.priority, now);
+                if (waitMs > 0) {
+                    if (scope.drainAt == 0 || scope.drainAt > now + waitMs) {
+                        scope.drainAt = now + waitMs;
+                        delayMs = waitMs;
+                    }
+                    break;
+                }
+                scope.queue.poll();
+                head.granted = true;
+                scope.inFlight++;
+                // Count the request against the quota now; its response corrects the count
+                if (scope.remaining > 0) {
+                    scope.remaining--;
+                }
+                granted.add(head);
+            }
+        }
+        if (delayMs > 0) {
+            Schedulers.parallel().schedule(() -> {
+                synchronized (scope) {
+                    scope.drainAt = 0;
+                }
+                drain(scope);
+            }, delayMs, TimeUnit.MILLISECONDS);
+        }
+        for (Ticket ticket : granted) {
+            waitTimers.computeIfAbsent(ticket.priority,
+                    priority -> Timer.builder("github.ratelimit.wait")
+                            .tag("priority", tag(priority))
+                            .description("Time GitHub requests waited to be sent")
+                            .register(meterRegistry))
+                    .record(System.nanoTime() - ticket.enqueuedAt, TimeUnit.NANOSECONDS);
+            ticket.sink.success();
+        }
+    }
+
+    // How long a request of the priority has to wait before it may be sent, ignoring free slots
+    private long waitMs(Scope scope, Priority priority, long now) {
+        long waitMs = Math.max(0, scope.pausedUntil - now);
+        if (scope.resetAt > now && scope.remaining >= 0) {
+            long keep = priority == Priority.BACKGROUND ? reserve : 0;
+            if (scope.remaining <= keep) {
+                waitMs = Math.max(waitMs, scope.resetAt - now);
+            }
+        }
+        return waitMs;
+    }
+
+    // Free the request's slot, or take it out of the queue if it was not sent
+    private void finish(Scope scope, Ticket ticket) {
+        synchronized (scope) {
+            if (ticket.done) {
+                return;
+            }
+            ticket.done = true;
+            if (ticket.granted) {
+                scope.inFlight--;
+            } else {
+                scope.queue.remove(ticket);
+            }
+            scope.lastUsed = System.currentTimeMillis();
+        }
+        drain(scope);
+    }
+
+    // Take the quota GitHub reports for the core API; responses can arrive out of order
+    private void update(Scope scope, HttpHeaders headers) {
+        String resource = headers.getFirst("X-RateLimit-Resource");
+        if (resource != null && !resource.equals("core")) {
+            return;
+        }
+        String remainingHeader = headers.getFirst("X-RateLimit-Remaining");
+        String resetHeader = headers.getFirst("X-RateLimit-Reset");
+        if (remainingHeader == null || resetHeader == null) {
+            return;
+        }
+        try {
+            long remaining = Long.parseLong(remainingHeader.trim());
+            long resetAt = TimeUnit.SECONDS.toMillis(Long.parseLong(resetHeader.trim()));
+            synchronized (scope) {
+                if (resetAt > scope.resetAt || scope.remaining < 0) {
+                    scope.resetAt = resetAt;
+                    scope.remaining = remaining;
+                } else if (resetAt == scope.resetAt) {
+                    scope.remaining = Math.min(scope.remaining, remaining);
+                }
+            }
+        } catch (NumberFormatException e) {
+            log.debug("Unparseable GitHub rate limit headers: {} / {}", remainingHeader, resetHeader);
+        }
+    }
+
+    // Forget groups that have been idle for longer than a quota window
+    @Scheduled(fixedDelayString = "${themus.github.rate-limit.evict-interval-ms:300000}")
+    public void evictIdle() {
+        long idleBefore = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+        scopes.entrySet().removeIf(entry -> {
+            Scope scope = entry.getValue();
+            synchronized (scope) {
+                return scope.inFlight == 0 && scope.queue.isEmpty() && scope.lastUsed < idleBefore;
+            }
+        });
+    }
+
+    /* Metrics */
+
+    private double lowestRemaining(String tokenType) {
+        long now = System.currentTimeMillis();
+        long lowest = -1;
+        for (Scope scope : scopes.values()) {
+            if (!scope.tokenType.equals(tokenType)) {
+                continue;
+            }
+            synchronized (scope) {
+                if (scope.remaining >= 0 && scope.resetAt > now && (lowest < 0 || scope.remaining < lowest)) {
+                    lowest = scope.remaining;
+                }
+            }
+        }
+        return lowest >= 0 ? lowest : Double.NaN;
+    }
+
+    private double queued(Priority priority) {
+        int queued = 0;
+        for (Scope scope : scopes.values()) {
+            synchronized (scope) {
+                for (Ticket ticket : scope.queue) {
+                    if (ticket.priority == priority) {
+                        queued++;
+                    }
+                }
+            }
+        }
+        return queued;
+    }
+
+    private void count(String meter, String tagName, String tagValue) {
+        counters.computeIfAbsent(meter + "|" + tagValue,
+                id -> Counter.builder("github.ratelimit." + meter)
+                        .tag(tagName, tagValue)
+                        .description(meter.equals("retries")
+                                ? "GitHub requests sent again after a rate limit response"
+                                : "GitHub requests failed because the rate limit would have held them too long")
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    /* Scopes */
+
+    // Requests are counted per set of credentials; tokens are only kept hashed
+    private static String scopeKey(String authorization) {
+        if (authorization == null) {
+            return "anonymous";
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(authorization.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String tokenType(String authorization) {
+        if (authorization == null) {
+            return "anonymous";
+        }
+        int space = authorization.indexOf(' ');
+        String token = space >= 0 ? authorization.substring(space + 1).trim() : authorization;
+        if (token.startsWith("ghs_")) {
+            return "installation";
+        } else if (token.startsWith("ghu_")) {
+            return "user";
+        } else if (token.startsWith("gho_")) {
+            return "oauth";
+        } else if (token.startsWith("ghp_") || token.startsWith("github_pat_")) {
+            return "personal";
+        } else if (token.startsWith("eyJ")) {
+            // The app's own JWT
+            return "app";
+        }
+        return "other";
+    }
+
+    private static String tag(Priority priority) {
+        return priority.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,220 @@
+package com.delphi.delphi.components;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Conditional-request cache for reads of the GitHub API, applied to the GitHub WebClient with
+ * {@link #exchangeFilter()}.
+ *
+ * Successful GET responses under /repos/ that carry an ETag or Last-Modified are stored with
+ * their body, keyed by the request's credentials and Accept header (hashed) and its URL. The
+ * next GET of the same key is sent with If-None-Match / If-Modified-Since, and a 304 is answered
+ * from the stored body; 304s do not count against the primary rate limit and carry no body.
+ * The store is an LRU bounded by the total size of the stored bodies
+ * (themus.github.cache.max-bytes). Any successful write to a repository drops the repository's
+ * entries, since a commit moves its branches and changes its contents, so reads after our own
+ * writes are fetched in full.
+ *
+ * Lookups are counted in {@code github.http.cache}, tagged {@code result=hit|miss}.
+ */
+@Component
+public class GithubResponseCache {
+
+    private static final String API_PREFIX = "/repos/";
+
+    private record CachedResponse(String repository, HttpStatusCode status, HttpHeaders headers, byte[] body,
+            String etag, String lastModified) {
+    }
+
+    private final Logger log = LoggerFactory.getLogger(GithubResponseCache.class);
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    // Guarded by itself; access order, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private long bytes;
+
+    public GithubResponseCache(MeterRegistry meterRegistry,
+            @Value("${themus.github.cache.max-bytes:33554432}") long maxBytes) {
+        this.meterRegistry = meterRegistry;
+        this.maxBytes = maxBytes;
+        // Keep a single large file from flushing everything else
+        this.maxEntryBytes = maxBytes / 8;
+    }
+
+    public ExchangeFilterFunction exchangeFilter() {
+        return (request, next) -> {
+            String repository = repository(request);
+            if (repository == null) {
+                return next.exchange(request);
+            }
+            if (request.method() == HttpMethod.GET) {
+                return cachedGet(request, next, repository);
+            }
+            return next.exchange(request).doOnNext(response -> {
+                if (response.statusCode().is2xxSuccessful()) {
+                    invalidate(repository);
+                }
+            });
+        };
+    }
+
+    private Mono<ClientResponse> cachedGet(ClientRequest request, ExchangeFunction next, String repository) {
+        String key = key(request);
+        CachedResponse cached = get(key);
+        ClientRequest conditional = cached == null ? request : ClientRequest.from(request).headers(headers -> {
+            if (cached.etag() != null) {
+                headers.set(HttpHeaders.IF_NONE_MATCH, cached.etag());
+            } else {
+                headers.set(HttpHeaders.IF_MODIFIED_SINCE, cached.lastModified());
+            }
+        }).build();
+
+        return next.exchange(conditional).flatMap(response -> {
+            if (cached != null && response.statusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+                count("hit");
+                // The 304's headers are current (rate limits included); the body's headers come from the cache
+                HttpHeaders headers = new HttpHeaders();
+                headers.addAll(response.headers().asHttpHeaders());
+                cached.headers().forEach((name, values) -> {
+                    if (!headers.containsKey(name)) {
+                        headers.put(name, values);
+                    }
+                });
+                return response.releaseBody().then(Mono.fromSupplier(
+                        () -> rebuild(response, cached.status(), headers, cached.body())));
+            }
+            count("miss");
+            HttpHeaders headers = response.headers().asHttpHeaders();
+            String etag = headers.getETag();
+            String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+            if (!response.statusCode().is2xxSuccessful() || (etag == null && lastModified == null)) {
+                return Mono.just(response);
+            }
+            return response.bodyToMono(byte[].class)
+                    .defaultIfEmpty(new byte[0])
+                    .map(body -> {
+                        HttpHeaders copy = new HttpHeaders();
+                        copy.addAll(headers);
+                        put(key, new CachedResponse(repository, response.statusCode(), copy, body, etag, lastModified));
+                        return rebuild(response, response.statusCode(), copy, body);
+                    });
+        });
+    }
+
+    // A response with the given body, for a response whose own body has been read or released
+    private static ClientResponse rebuild(ClientResponse response, HttpStatusCode status, HttpHeaders headers,
+            byte[] body) {
+        return ClientResponse.create(status, ExchangeStrategies.withDefaults())
+                .headers(target -> target.addAll(headers))
+                .request(response.request())
+                .body(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(body)))
+                .build();
+    }
+
+    private CachedResponse get(String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    private void put(String key, CachedResponse response) {
+        if (response.body().length > maxEntryBytes) {
+            return;
+        }
+        synchronized (entries) {
+            CachedResponse previous = entries.put(key, response);
+            if (previous != null) {
+                bytes -= previous.body().length;
+            }
+            bytes += response.body().length;
+            Iterator<CachedResponse> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().body().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    // Drop every stored response of a repository
+    public void invalidate(String repository) {
+        int removed = 0;
+        synchronized (entries) {
+            Iterator<CachedResponse> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                CachedResponse response = iterator.next();
+                if (response.repository().equals(repository)) {
+                    bytes -= response.body().length;
+                    iterator.remove();
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) {
+            log.debug("Invalidated {} cached GitHub responses of {}", removed, repository);
+        }
+    }
+
+    // owner/repo of a request under /repos/, lower-cased, or null for any other request
+    private static String repository(ClientRequest request) {
+        String path = request.url().getPath();
+        if (!path.startsWith(API_PREFIX)) {
+            return null;
+        }
+        String[] segments = path.substring(API_PREFIX.length()).split("/");
+        if (segments.length < 2) {
+            return null;
+        }
+        return (segments[0] + "/" + segments[1]).toLowerCase(Locale.ROOT);
+    }
+
+    // Responses depend on who asks and in which format, so both are part of the key; tokens are only kept hashed
+    private static String key(ClientRequest request) {
+        String scope = request.headers().getFirst(HttpHeaders.AUTHORIZATION) + "|"
+                + request.headers().getFirst(HttpHeaders.ACCEPT);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(scope.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16) + " " + request.url();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private void count(String result) {
+        counters.computeIfAbsent(result,
+                id -> Counter.builder("github.http.cache")
+                        .tag("result", result)
+                        .description("Conditional GitHub reads answered from the cache (hit) or with a full response (miss)")
+                        .register(meterRegistry))
+                .increment();
+    }
+}
@@ -0,0 +1,178 @@
+package com.delphi.delphi.components;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Caches the GitHub App's JWT and its installation access tokens.
+ *
+ * The app JWT is signed once and reused until it is within jwtMargin of its expiry, instead of
+ * being signed with the app's RSA key for every request. Installation tokens last an hour and
+ * are cached per installation until they are within tokenMargin of their expiry.
+ * {@link #refreshExpiring()} renews tokens that were used during their lifetime before they
+ * expire, so callers rarely wait for one, and drops the others once they have expired. Requests
+ * for a token that is being minted wait for that mint instead of starting another.
+ *
+ * Mints and lookups are counted in {@code github.tokens.minted} and {@code github.tokens.cache}
+ * ({@code result=hit|miss}), both tagged {@code type=app|installation}.
+ */
+public class GithubTokenCache {
+
+    /**
+     * A token and its expiry.
+     */
+    public record Token(String value, Instant expiresAt) {
+    }
+
+    // The cached token of one installation and its refresh in progress, if any
+    private static final class Installation {
+        private volatile Token token;
+        private volatile Instant lastUsed = Instant.EPOCH;
+        private volatile Instant mintedAt = Instant.EPOCH;
+        // Guarded by this
+        private CompletableFuture<Token> refresh;
+    }
+
+    private final Logger log = LoggerFactory.getLogger(GithubTokenCache.class);
+    private final Supplier<Token> appTokenSigner;
+    private final Function<String, Mono<Token>> installationTokenMinter;
+    private final Duration jwtMargin;
+    private final Duration tokenMargin;
+    private final Duration refreshAhead;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Installation> installations = new ConcurrentHashMap<>();
+    private volatile Token appToken;
+
+    /**
+     * @param appTokenSigner          Signs a new app JWT
+     * @param installationTokenMinter Mints a new access token for an installation id
+     * @param jwtMargin               How long before its expiry the app JWT is replaced
+     * @param tokenMargin             How long before its expiry an installation token is no longer handed out
+     * @param refreshAhead            How long before its expiry an installation token is renewed in the background
+     */
+    public GithubTokenCache(Supplier<Token> appTokenSigner, Function<String, Mono<Token>> installationTokenMinter,
+            Duration jwtMargin, Duration tokenMargin, Duration refreshAhead, MeterRegistry meterRegistry) {
+        this.appTokenSigner = appTokenSigner;
+        this.installationTokenMinter = installationTokenMinter;
+        this.jwtMargin = jwtMargin;
+        this.tokenMargin = tokenMargin;
+        this.refreshAhead = refreshAhead;
+        this.meterRegistry = meterRegistry;
+    }
+
+    // The app JWT, signed again only when the cached one is about to expire
+    public String appToken() {
+        Token token = appToken;
+        if (usable(token, jwtMargin)) {
+            count("cache", "app", "hit");
+            return token.value();
+        }
+        synchronized (this) {
+            token = appToken;
+            if (!usable(token, jwtMargin)) {
+                count("cache", "app", "miss");
+                token = appTokenSigner.get();
+                appToken = token;
+                count("minted", "app", null);
+            } else {
+                count("cache", "app", "hit");
+            }
+            return token.value();
+        }
+    }
+
+    /**
+     * An access token for the installation, from the cache unless it is about to expire; otherwise
+     * it completes once the token is minted, or with the error of the mint.
+     */
+    public Mono<String> installationToken(String installationId) {
+        return Mono.defer(() -> {
+            Installation installation = installations.computeIfAbsent(installationId, id -> new Installation());
+            installation.lastUsed = Instant.now();
+            Token token = installation.token;
+            if (usable(token, tokenMargin)) {
+                count("cache", "installation", "hit");
+                return Mono.just(token.value());
+            }
+            count("cache", "installation", "miss");
+            // Waiting callers share the mint; cancelling one must not cancel it for the others
+            CompletableFuture<Token> refresh = refresh(installationId, installation);
+            return Mono.fromFuture(refresh, true).map(Token::value);
+        });
+    }
+
+    /**
+     * Renews installation tokens that expire within refreshAhead and were used since they were
+     * minted, and drops expired tokens nobody used.
+     */
+    public void refreshExpiring() {
+        Instant refreshBefore = Instant.now().plus(refreshAhead);
+        installations.forEach((installationId, installation) -> {
+            Token token = installation.token;
+            if (token == null || token.expiresAt().isAfter(refreshBefore)) {
+                return;
+            }
+            if (installation.lastUsed.isAfter(installation.mintedAt)) {
+                refresh(installationId, installation);
+            } else if (token.expiresAt().isBefore(Instant.now())) {
+                installations.remove(installationId, installation);
+            }
+        });
+    }
+
+    // Start minting a new token for the installation, or join the mint in progress
+    private CompletableFuture<Token> refresh(String installationId, Installation installation) {
+        synchronized (installation) {
+            if (installation.refresh != null) {
+                return installation.refresh;
+            }
+            CompletableFuture<Token> refresh = installationTokenMinter.apply(installationId).toFuture();
+            installation.refresh = refresh;
+            refresh.whenComplete((token, error) -> {
+                synchronized (installation) {
+                    if (token != null) {
+                        installation.token = token;
+                        installation.mintedAt = Instant.now();
+                        count("minted", "installation", null);
+                    } else {
+                        log.warn("Failed to mint installation token for installation {}: {}", installationId,
+                                error != null ? error.getMessage() : "no token");
+                    }
+                    if (installation.refresh == refresh) {
+                        installation.refresh = null;
+                    }
+                }
+            });
+            return refresh;
+        }
+    }
+
+    private static boolean usable(Token token, Duration margin) {
+        return token != null && token.expiresAt().isAfter(Instant.now().plus(margin));
+    }
+
+    private void count(String meter, String type, String result) {
+        counters.computeIfAbsent(meter + "|" + type + "|" + result, id -> {
+            Counter.Builder builder = Counter.builder("github.tokens." + meter).tag("type", type);
+            if (result != null) {
+                builder.tag("result", result);
+            }
+            return builder
+                    .description(result != null ? "GitHub token cache lookups" : "GitHub tokens minted")
+                    .register(meterRegistry);
+        }).increment();
+    }
+}
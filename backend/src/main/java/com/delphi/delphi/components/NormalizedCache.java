@@ -0,0 +1,278 @@
+package com.delphi.delphi.components;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.UnaryOperator;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import com.delphi.delphi.utils.CacheUtils;
+
+/**
+ * Normalized cache layout for per-owner entity lists.
+ *
+ * Each entity is stored once under {@code cache:entity:<type>:<id>}, and a list is a sorted set
+ * of ids ({@code cache:index:<name>}) scored by its sort field. A page is one ZRANGE followed by one
+ * MGET, and adding, updating or removing an entity touches only that entity and its index entries
+ * instead of rewriting every list it appears in.
+ *
+ * Because an empty sorted set does not exist in Redis, every index has a companion
+ * {@code cache:index:<name>:loaded} marker that says the index was fully loaded from the
+ * database. Entities are only added to indexes that are loaded, so an index never holds a
+ * partial view of the list.
+ */
+@Component
+public class NormalizedCache {
+
+    private static final String ENTITY_PREFIX = "cache:entity:";
+    private static final String INDEX_PREFIX = "cache:index:";
+    // Index and marker share a hash tag, so the scripts below may touch both in a cluster
+    private static final String LOADED_SUFFIX = ":loaded";
+
+    // KEYS[1] index, KEYS[2] marker; ARGV[1] start, ARGV[2] stop, ARGV[3] "1" for descending.
+    // Replies with nil if the index is not loaded, otherwise {size, ttl in ms, id...}
+    private static final RedisScript<List<String>> RANGE_SCRIPT = RedisService.listScript("""
+            if redis.call('EXISTS', KEYS[2]) == 0 then
+                return false
+            end
+            local ids
+            if ARGV[3] == '1' then
+                ids = redis.call('ZREVRANGE', KEYS[1], ARGV[1], ARGV[2])
+            else
+                ids = redis.call('ZRANGE', KEYS[1], ARGV[1], ARGV[2])
+            end
+            table.insert(ids, 1, tostring(redis.call('PTTL', KEYS[2])))
+            table.insert(ids, 1, tostring(redis.call('ZCARD', KEYS[1])))
+            return ids
+            """);
+
+    // KEYS[1] index, KEYS[2] marker; ARGV[1] score, ARGV[2] id
+    private static final String ADD_IF_LOADED_SCRIPT = """
+            if redis.call('EXISTS', KEYS[2]) == 1 then
+                redis.call('ZADD', KEYS[1], ARGV[1], ARGV[2])
+            end
+            return 1
+            """;
+
+    // KEYS[1] index, KEYS[2] marker; ARGV[1] TTL in ms, then a score and an id per entry.
+    // Rebuilds the index and sets the marker atomically, so no reader sees a partial index
+    private static final String REPLACE_INDEX_SCRIPT = """
+            redis.call('UNLINK', KEYS[1])
+            for i = 2, #ARGV, 2 do
+                redis.call('ZADD', KEYS[1], ARGV[i], ARGV[i + 1])
+            end
+            if #ARGV > 1 then
+                redis.call('PEXPIRE', KEYS[1], ARGV[1])
+            end
+            redis.call('SET', KEYS[2], '1', 'PX', ARGV[1])
+            return 1
+            """;
+
+    /**
+     * A slice of an index together with the total size and remaining TTL of the index.
+     */
+    public record IndexPage<T>(List<T> content, long total, long ttlMillis) {
+    }
+
+    /**
+     * Entities of one or more types, each with its own TTL, to be stored with a single call.
+     */
+    public static final class Entities {
+        private final Map<String, Object> values = new LinkedHashMap<>();
+        private final Map<String, Duration> ttls = new HashMap<>();
+
+        public <T> Entities add(String type, Collection<T> entities, Function<T, Long> idFn, Duration entityTtl) {
+            for (T entity : entities) {
+                String key = entityKey(type, idFn.apply(entity));
+                values.put(key, entity);
+                ttls.put(key, entityTtl);
+            }
+            return this;
+        }
+    }
+
+    private final RedisService redisService;
+    private final CacheMetrics cacheMetrics;
+
+    public NormalizedCache(RedisService redisService, CacheMetrics cacheMetrics) {
+        this.redisService = redisService;
+        this.cacheMetrics = cacheMetrics;
+    }
+
+    public static String entityKey(String type, Long id) {
+        return ENTITY_PREFIX + type + ":" + id;
+    }
+
+    // Index names carry their owner's hash tag; one is added if not, so the marker shares the index's slot
+    public static String indexKey(String index) {
+        return INDEX_PREFIX + (CacheUtils.hasHashTag(index) ? index : "{" + index + "}");
+    }
+
+    // Sort score for date fields; null dates sort first
+    public static double score(LocalDateTime dateTime) {
+        return dateTime == null ? 0 : dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    // Whether pages in the given order can be read straight from an index scored by scoreField
+    public static boolean canPage(Sort sort, String scoreField) {
+        return sort.isUnsorted() || (sort.stream().count() == 1 && sort.getOrderFor(scoreField) != null);
+    }
+
+    public static boolean isDescending(Sort sort, String scoreField) {
+        Sort.Order order = sort.getOrderFor(scoreField);
+        return order != null && order.isDescending();
+    }
+
+    /**
+     * Replaces an index with the given entities, freshly loaded from the database,
+     * and stores each entity. Runs as a single pipeline; the entities are written first
+     * and the index and its marker are then replaced by one script, so a concurrent read
+     * sees either the old index or the complete new one.
+     *
+     * @param index      The index name, e.g. {@code user_assessments:42}
+     * @param type       The entity type, e.g. {@code assessment}
+     * @param entities   Every entity that belongs in the index
+     * @param idFn       Extracts the entity id
+     * @param scoreFn    Extracts the sort score
+     * @param indexTtl   The TTL of the index
+     * @param entityTtl  The TTL of the entities; should not be shorter than any index that references them
+     */
+    public <T> void storeIndex(String index, String type, List<T> entities, Function<T, Long> idFn,
+            ToDoubleFunction<T> scoreFn, Duration indexTtl, Duration entityTtl) {
+        String indexKey = indexKey(index);
+        String[] args = new String[1 + 2 * entities.size()];
+        args[0] = Long.toString(Math.max(1, indexTtl.toMillis()));
+        redisService.executePipelined(batch -> {
+            int i = 1;
+            for (T entity : entities) {
+                String id = String.valueOf(idFn.apply(entity));
+                batch.setWithExpiration(ENTITY_PREFIX + type + ":" + id, entity, entityTtl);
+                args[i++] = Double.toString(scoreFn.applyAsDouble(entity));
+                args[i++] = id;
+            }
+            batch.eval(REPLACE_INDEX_SCRIPT, List.of(indexKey, indexKey + LOADED_SUFFIX), args);
+        });
+    }
+
+    /**
+     * Returns every entity in an index, in ascending score order, along with the index TTL.
+     *
+     * @return The entities, or null if the index is not loaded or an entity has expired
+     */
+    public <T> IndexPage<T> getIndex(String index, String type) {
+        return getRange(index, type, 0, -1, false);
+    }
+
+    /**
+     * Returns one page of an index, ordered by score.
+     *
+     * @return The page and the index size, or null if the index is not loaded or an entity has expired
+     */
+    public <T> IndexPage<T> getPage(String index, String type, long offset, int size, boolean descending) {
+        return getRange(index, type, offset, offset + size - 1, descending);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> IndexPage<T> getRange(String index, String type, long start, long stop, boolean descending) {
+        String indexKey = indexKey(index);
+        List<String> reply = redisService.executeScript(RANGE_SCRIPT, List.of(indexKey, indexKey + LOADED_SUFFIX),
+                Long.toString(start), Long.toString(stop), descending ? "1" : "0");
+        cacheMetrics.recordGet(indexKey, reply != null && !reply.isEmpty());
+        if (reply == null || reply.isEmpty()) {
+            return null;
+        }
+        long total = Long.parseLong(reply.get(0));
+        long ttlMillis = Long.parseLong(reply.get(1));
+        List<Long> ids = reply.subList(2, reply.size()).stream().map(Long::valueOf).toList();
+        List<T> entities = (List<T>) hydrate(type, ids);
+        return entities != null ? new IndexPage<>(entities, total, ttlMillis) : null;
+    }
+
+    /**
+     * Loads entities by id with a single MGET.
+     *
+     * @return The entities in id order, or null if any of them is not cached
+     */
+    public List<Object> hydrate(String type, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Object> entities = redisService.multiGet(ids.stream().map(id -> entityKey(type, id)).toList());
+        if (entities == null || entities.contains(null)) {
+            return null;
+        }
+        return new ArrayList<>(entities);
+    }
+
+    /**
+     * Stores an entity and adds it to, or moves it within, each given index that is loaded.
+     *
+     * @param type        The entity type
+     * @param id          The entity id
+     * @param entity      The entity
+     * @param entityTtl   The TTL of the entity
+     * @param indexScores The sort score of the entity in each index it belongs to
+     */
+    public void put(String type, Long id, Object entity, Duration entityTtl, Map<String, Double> indexScores) {
+        redisService.executePipelined(batch -> {
+            batch.setWithExpiration(entityKey(type, id), entity, entityTtl);
+            indexScores.forEach((index, score) -> {
+                String indexKey = indexKey(index);
+                batch.eval(ADD_IF_LOADED_SCRIPT, List.of(indexKey, indexKey + LOADED_SUFFIX),
+                        Double.toString(score), String.valueOf(id));
+            });
+        });
+    }
+
+    // Stores entities without touching any index, e.g. entities referenced from another entity
+    public <T> void putAll(String type, Collection<T> entities, Function<T, Long> idFn, Duration entityTtl) {
+        putAll(new Entities().add(type, entities, idFn, entityTtl));
+    }
+
+    // Stores entities of several types, each with its own TTL, without touching any index
+    public void putAll(Entities entities) {
+        redisService.multiSetWithExpiration(entities.values, entities.ttls);
+    }
+
+    /**
+     * Rewrites the cached entities under the given keys, e.g. to keep the id lists they hold in
+     * step with a change to a related entity. Each entity is compared-and-set, so a concurrent
+     * write is never overwritten with a stale copy; entities that are not cached are left alone.
+     *
+     * @param entityTtls The entity keys, see {@link #entityKey}, each with the TTL of its rewritten entity
+     * @param updater    Receives a cached entity and returns the entity to store
+     */
+    public void updateAll(Map<String, Duration> entityTtls, UnaryOperator<Object> updater) {
+        redisService.compareAndUpdate(entityTtls, updater);
+    }
+
+    // Removes an entity and its entries in the given indexes
+    public void remove(String type, Long id, Collection<String> indexes) {
+        redisService.executePipelined(batch -> {
+            batch.delete(entityKey(type, id));
+            for (String index : indexes) {
+                batch.removeFromSortedSet(indexKey(index), String.valueOf(id));
+            }
+        });
+    }
+
+    // Drops an index so that the next read reloads it from the database
+    public void evictIndex(String index) {
+        String indexKey = indexKey(index);
+        redisService.executePipelined(batch -> {
+            batch.delete(indexKey + LOADED_SUFFIX);
+            batch.delete(indexKey);
+        });
+    }
+}
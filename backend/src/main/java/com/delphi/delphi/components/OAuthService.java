@@ -14,9 +14,22 @@ import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import com.delphi.delphi.utils.Blocking;
+
 @Service
 public class OAuthService implements OAuth2UserService<OAuth2UserRequest, OAuth2User> {
 
+    // Built once on the shared GitHub client, instead of a new client and connection pool per lookup
+    private final WebClient webClient;
+
+    public OAuthService(GithubHttpTransport httpTransport) {
+        this.webClient = WebClient.builder()
+                .clientConnector(httpTransport.connector())
+                .baseUrl("https://api.github.com")
+                .filter(httpTransport.exchangeFilter())
+                .build();
+    }
+
     @Override
     public OAuth2User loadUser(OAuth2UserRequest userRequest) throws OAuth2AuthenticationException {
         OAuth2UserService<OAuth2UserRequest, OAuth2User> delegate = new DefaultOAuth2UserService();
@@ -52,16 +65,11 @@ public class OAuthService implements OAuth2UserService<OAuth2UserRequest, OAuth2
     // Helper method to send a request to GitHub API to get user email
     private String fetchGitHubEmail(String accessToken) {
         try {
-            WebClient webClient = WebClient.builder()
-            .baseUrl("https://api.github.com")
-            .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
-            .build();
-        
-        List<Map<String, Object>> emails = webClient.get()
+        List<Map<String, Object>> emails = Blocking.await(webClient.get()
             .uri("/user/emails")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
             .retrieve()
-            .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {})
-            .block();
+            .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {}));
 
         if (emails == null) {
             throw new Exception("Emails list from GitHub API is null");
@@ -0,0 +1,185 @@
+package com.delphi.delphi.components;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.delphi.delphi.configs.RateLimitProperties.LimitClass;
+
+/**
+ * Rate limiter based on the generic cell rate algorithm (GCRA).
+ *
+ * Each client and route group has a theoretical arrival time (TAT) stored in Redis: the time at
+ * which the client's budget would be full again. A request is allowed if it does not push the
+ * TAT further than the burst tolerance into the future. Checking and updating the TAT is a single
+ * Lua script, so a decision costs one round trip and cannot race with concurrent requests, and
+ * there are no window boundaries at which a client could send twice its limit.
+ *
+ * An in-process token bucket with the same rate sits in front of Redis. Since a node only sees a
+ * subset of a client's requests, an empty local bucket means the client is over the global limit
+ * as well, and clients that were just rejected stay rejected locally until they may retry. Both
+ * cases are answered without touching Redis. If Redis is unavailable the local bucket alone
+ * applies, so each node still enforces the limit on its own share of the traffic.
+ */
+@Component
+public class RateLimiter {
+
+    private static final String KEY_PREFIX = "ratelimit:";
+
+    // KEYS[1] TAT key; ARGV[1] emission interval in ms, ARGV[2] burst tolerance in ms.
+    // Replies {allowed, remaining, retry after in ms, reset in ms} as strings
+    private static final RedisScript<List<String>> GCRA_SCRIPT = RedisService.listScript("""
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local interval = tonumber(ARGV[1])
+            local tolerance = tonumber(ARGV[2])
+            local tat = tonumber(redis.call('GET', KEYS[1]))
+            if not tat or tat < now then
+                tat = now
+            end
+            local newTat = tat + interval
+            local allowAt = newTat - tolerance
+            if allowAt > now then
+                return {'0', '0', tostring(allowAt - now), tostring(tat - now)}
+            end
+            redis.call('SET', KEYS[1], newTat, 'PX', newTat - now)
+            return {'1', tostring(math.floor((tolerance - (newTat - now)) / interval)), '0', tostring(newTat - now)}
+            """);
+
+    /**
+     * Outcome of a rate limit check.
+     *
+     * @param allowed          Whether the request may proceed
+     * @param limit            The number of requests allowed per period
+     * @param remaining        The number of requests that may still be sent right away
+     * @param resetMillis      Time until the client's full budget is available again
+     * @param retryAfterMillis Time until the next request would be allowed, 0 if allowed
+     */
+    public record Decision(boolean allowed, int limit, long remaining, long resetMillis, long retryAfterMillis) {
+    }
+
+    private final Logger log = LoggerFactory.getLogger(RateLimiter.class);
+    private final RedisService redisService;
+    private final Map<String, LocalBucket> localBuckets = new ConcurrentHashMap<>();
+
+    public RateLimiter(RedisService redisService) {
+        this.redisService = redisService;
+    }
+
+    /**
+     * Counts a request against a client's budget for a route group.
+     *
+     * @param group  The route group name
+     * @param client Identifies the client, e.g. the user's email
+     * @param limit  The limit of the route group
+     * @return Whether the request is allowed, along with the values for the RateLimit headers
+     */
+    public Decision tryAcquire(String group, String client, LimitClass limit) {
+        String key = KEY_PREFIX + group + ":" + client;
+        long interval = limit.emissionIntervalMillis();
+        long tolerance = interval * limit.getBurst();
+        LocalBucket bucket = localBuckets.computeIfAbsent(key, k -> new LocalBucket(limit.getBurst(), interval));
+
+        Decision local = bucket.precheck(limit.getRequests());
+        if (local != null) {
+            return local;
+        }
+
+        List<String> reply;
+        try {
+            reply = redisService.executeScript(GCRA_SCRIPT, List.of(key),
+                    Long.toString(interval), Long.toString(tolerance));
+        } catch (Exception e) {
+            // Fail open on the global limit; the local bucket still applies
+            log.warn("Rate limit check failed for {}, using local limit only: {}", key, e.getMessage());
+            return bucket.acquireLocally(limit.getRequests());
+        }
+
+        Decision decision = new Decision("1".equals(reply.get(0)), limit.getRequests(),
+                Long.parseLong(reply.get(1)), Long.parseLong(reply.get(3)), Long.parseLong(reply.get(2)));
+        bucket.sync(decision);
+        return decision;
+    }
+
+    // Drop local buckets that have refilled completely, so idle clients do not accumulate
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdleBuckets() {
+        localBuckets.values().removeIf(LocalBucket::isIdle);
+    }
+
+    /**
+     * Token bucket tracking the requests this node has let through for one client and group.
+     */
+    private static final class LocalBucket {
+
+        private final int capacity;
+        private final long intervalNanos;
+        private double tokens;
+        private long refilledAtNanos = System.nanoTime();
+        private long blockedUntilNanos = refilledAtNanos;
+
+        LocalBucket(int capacity, long intervalMillis) {
+            this.capacity = capacity;
+            this.intervalNanos = intervalMillis * 1_000_000;
+            this.tokens = capacity;
+        }
+
+        // Returns a rejection if the request is certainly over the limit, otherwise null
+        synchronized Decision precheck(int limit) {
+            long now = refill();
+            if (now - blockedUntilNanos < 0) {
+                return rejection(limit, blockedUntilNanos - now);
+            }
+            if (tokens < 1) {
+                return rejection(limit, (long) ((1 - tokens) * intervalNanos));
+            }
+            return null;
+        }
+
+        synchronized Decision acquireLocally(int limit) {
+            refill();
+            if (tokens < 1) {
+                return rejection(limit, (long) ((1 - tokens) * intervalNanos));
+            }
+            tokens -= 1;
+            return new Decision(true, limit, (long) tokens, resetMillis(), 0);
+        }
+
+        // Align the local bucket with the decision made in Redis, which has seen every node's requests
+        synchronized void sync(Decision decision) {
+            long now = refill();
+            if (decision.allowed()) {
+                tokens = Math.max(0, Math.min(tokens - 1, decision.remaining()));
+            } else {
+                tokens = 0;
+                blockedUntilNanos = now + decision.retryAfterMillis() * 1_000_000;
+            }
+        }
+
+        synchronized boolean isIdle() {
+            long now = refill();
+            return tokens >= capacity && now - blockedUntilNanos >= 0;
+        }
+
+        private long refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (double) (now - refilledAtNanos) / intervalNanos);
+            refilledAtNanos = now;
+            return now;
+        }
+
+        private Decision rejection(int limit, long retryAfterNanos) {
+            return new Decision(false, limit, 0, resetMillis(), Math.max(1, retryAfterNanos / 1_000_000));
+        }
+
+        private long resetMillis() {
+            return (long) ((capacity - tokens) * intervalNanos / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.delphi.delphi.components;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * Collects write commands that are sent to Redis together in a single pipeline.
+ * Obtained through {@link RedisService#executePipelined}; replies are only available
+ * once the pipeline has been flushed, so none of these methods return a result.
+ */
+public class RedisBatch {
+
+    private final RedisConnection connection;
+    private final RedisSerializer<Object> valueSerializer;
+    private final CacheMetrics cacheMetrics;
+
+    RedisBatch(RedisConnection connection, RedisSerializer<Object> valueSerializer, CacheMetrics cacheMetrics) {
+        this.connection = connection;
+        this.valueSerializer = valueSerializer;
+        this.cacheMetrics = cacheMetrics;
+    }
+
+    // Store a value with a key
+    public RedisBatch set(String key, Object value) {
+        connection.stringCommands().set(rawKey(key), rawValue(key, value));
+        return this;
+    }
+
+    // Store a value with a key and expiration time
+    public RedisBatch setWithExpiration(String key, Object value, Duration ttl) {
+        connection.stringCommands().pSetEx(rawKey(key), Math.max(1, ttl.toMillis()), rawValue(key, value));
+        return this;
+    }
+
+    // Delete a key without blocking the server on large values
+    public RedisBatch delete(String key) {
+        connection.keyCommands().unlink(rawKey(key));
+        return this;
+    }
+
+    // Add an element to the end of a list
+    public RedisBatch rightPush(String key, Object value) {
+        connection.listCommands().rPush(rawKey(key), rawValue(key, value));
+        return this;
+    }
+
+    // Remove a plain string member from a sorted set
+    public RedisBatch removeFromSortedSet(String key, String member) {
+        connection.zSetCommands().zRem(rawKey(key), rawKey(member));
+        return this;
+    }
+
+    // Run a Lua script whose keys and arguments are plain strings
+    public RedisBatch eval(String script, List<String> keys, String... args) {
+        byte[][] keysAndArgs = new byte[keys.size() + args.length][];
+        for (int i = 0; i < keys.size(); i++) {
+            keysAndArgs[i] = rawKey(keys.get(i));
+        }
+        for (int i = 0; i < args.length; i++) {
+            keysAndArgs[keys.size() + i] = rawKey(args[i]);
+        }
+        connection.scriptingCommands().eval(rawKey(script), ReturnType.INTEGER, keys.size(), keysAndArgs);
+        return this;
+    }
+
+    private byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] rawValue(String key, Object value) {
+        byte[] rawValue = valueSerializer.serialize(value);
+        cacheMetrics.recordPayload(key, rawValue.length);
+        return rawValue;
+    }
+}
@@ -1,30 +1,116 @@
 package com.delphi.delphi.components;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
-
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Component;
 
 @Component
 public class RedisService {
+    // Number of times a compare-and-set update is retried before the key is dropped instead
+    private static final int CAS_MAX_ATTEMPTS = 3;
+    // Replaces KEYS[1] only if it still holds ARGV[1]; ARGV[3] is the new TTL in milliseconds
+    private static final byte[] CAS_SCRIPT = """
+            if redis.call('GET', KEYS[1]) ~= ARGV[1] then
+                return 0
+            end
+            redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])
+            return 1
+            """.getBytes(StandardCharsets.UTF_8);
+
+    // Deletes KEYS[1] only if it still holds the caller's token ARGV[1]
+    private static final RedisScript<Long> RELEASE_LEASE_SCRIPT = RedisScript.of("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private static final String GENERATION_PREFIX = "cache:gen:";
+    // Generation counters must outlive every key that embeds them
+    private static final Duration GENERATION_TTL = Duration.ofDays(1);
+    // KEYS[1] counter; ARGV[1] seed, ARGV[2] TTL in milliseconds
+    private static final RedisScript<Long> CURRENT_GENERATION_SCRIPT = RedisScript.of("""
+            local generation = redis.call('GET', KEYS[1])
+            if not generation then
+                generation = ARGV[1]
+                redis.call('SET', KEYS[1], generation, 'PX', ARGV[2])
+            end
+            return tonumber(generation)
+            """, Long.class);
+    // KEYS[1] counter; ARGV[1] seed, ARGV[2] TTL in milliseconds
+    private static final RedisScript<Long> BUMP_GENERATION_SCRIPT = RedisScript.of("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+                return tonumber(ARGV[1])
+            end
+            redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            return redis.call('INCR', KEYS[1])
+            """, Long.class);
+
+    /**
+     * A cached value together with its remaining time to live in milliseconds
+     * (-1 if the key has no expiration). The value is null if the key does not exist.
+     */
+    public record TimedValue(Object value, long ttlMillis) {
+    }
+
+    private final Logger log = LoggerFactory.getLogger(RedisService.class);
     private final RedisTemplate<String, Object> redisTemplate;
+    private final CacheMetrics cacheMetrics;
 
-    public RedisService(RedisTemplate<String, Object> redisTemplate) {
+    public RedisService(RedisTemplate<String, Object> redisTemplate, CacheMetrics cacheMetrics) {
         this.redisTemplate = redisTemplate;
+        this.cacheMetrics = cacheMetrics;
     }
 
     // Store a value with a key
     public void set(String key, Object value) {
-        redisTemplate.opsForValue().set(key, value);
+        byte[] rawValue = rawValue(key, value);
+        redisTemplate.execute((RedisCallback<Object>) connection -> connection.stringCommands().set(rawKey(key), rawValue));
     }
 
     // Store a value with a key and expiration time
     public void setWithExpiration(String key, Object value, long timeout, TimeUnit unit) {
-        redisTemplate.opsForValue().set(key, value, timeout, unit);
+        byte[] rawValue = rawValue(key, value);
+        long ttlMillis = unit.toMillis(timeout);
+        redisTemplate.execute((RedisCallback<Object>) connection -> connection.stringCommands().pSetEx(rawKey(key), ttlMillis, rawValue));
     }
 
     // Set the TTL for a given key
@@ -39,12 +125,29 @@ public class RedisService {
 
     // Retrieve a value by key
     public Object get(String key) {
-        return redisTemplate.opsForValue().get(key);
+        Object value = redisTemplate.opsForValue().get(key);
+        cacheMetrics.recordGet(key, value != null);
+        return value;
+    }
+
+    // Retrieve a value by key along with its remaining TTL, in one round trip
+    public TimedValue getWithTtl(String key) {
+        byte[] rawKey = rawKey(key);
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().get(rawKey);
+            connection.keyCommands().pTtl(rawKey);
+            return null;
+        });
+        Object ttl = replies.get(1);
+        cacheMetrics.recordGet(key, replies.get(0) != null);
+        return new TimedValue(replies.get(0), ttl instanceof Long millis ? millis : -1);
     }
 
     // Delete a key
     public void delete(String key) {
-        redisTemplate.delete(key);
+        if (Boolean.TRUE.equals(redisTemplate.delete(key))) {
+            cacheMetrics.recordEvictions(key, 1);
+        }
     }
 
     // Check if a key exists
@@ -186,31 +289,406 @@ public class RedisService {
     //     });
     // }
 
+    /* Batch Operations */
+
+    // Retrieve several values in one round trip (MGET); missing keys map to null
+    public List<Object> multiGet(Collection<String> keys) {
+        List<Object> values = redisTemplate.opsForValue().multiGet(keys);
+        if (values != null) {
+            int i = 0;
+            for (String key : keys) {
+                cacheMetrics.recordGet(key, values.get(i++) != null);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Sends every command queued on the batch to Redis in a single pipeline.
+     *
+     * @param operations The commands to queue
+     * @return The replies, in the order the commands were queued
+     */
+    public List<Object> executePipelined(Consumer<RedisBatch> operations) {
+        RedisSerializer<Object> valueSerializer = valueSerializer();
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            operations.accept(new RedisBatch(connection, valueSerializer, cacheMetrics));
+            return null;
+        });
+    }
+
+    // Store several values, each with its own expiration time, in one pipeline
+    public void multiSetWithExpiration(Map<String, Object> values, Map<String, Duration> ttls) {
+        executePipelined(batch -> values.forEach((key, value) -> {
+            Duration ttl = ttls.get(key);
+            if (ttl != null) {
+                batch.setWithExpiration(key, value, ttl);
+            } else {
+                batch.set(key, value);
+            }
+        }));
+    }
+
     /**
-     * Evicts a set of cache keys that match a given pattern.
-     * 
-     * @param pattern The pattern of keys to evict
+     * Applies an update to several cached values with optimistic concurrency control.
+     * All values are read with one MGET and all changed values are written back with one
+     * pipeline of Lua compare-and-set scripts, so a value is only replaced if nobody else
+     * changed it in between. Conflicting keys are retried and, if they keep conflicting,
+     * deleted so that the next read rebuilds them from the database.
+     * Keys that are not cached are left alone.
+     *
+     * @param ttls    The keys of the cached values, each with the TTL to apply to its rewritten value
+     * @param updater Receives a cached value and returns the value to store
      */
-    public void evictCache(String pattern) {
-        //String pattern = "cache:user_candidates:" + userId + "*";
-        redisTemplate.execute((RedisCallback<Void>) connection -> {
-            Set<byte[]> keys = connection.keyCommands().keys(pattern.getBytes());
-            if (keys != null && !keys.isEmpty()) {
-                connection.keyCommands().del(keys.toArray(new byte[0][0]));
+    @SuppressWarnings("unchecked")
+    public <T> void compareAndUpdate(Map<String, Duration> ttls, UnaryOperator<T> updater) {
+        RedisSerializer<Object> valueSerializer = valueSerializer();
+        List<String> pending = new ArrayList<>(ttls.keySet());
+
+        for (int attempt = 0; attempt < CAS_MAX_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            byte[][] rawKeys = pending.stream().map(this::rawKey).toArray(byte[][]::new);
+            List<byte[]> current = redisTemplate.execute(
+                    (RedisCallback<List<byte[]>>) connection -> connection.stringCommands().mGet(rawKeys));
+            if (current == null) {
+                return;
+            }
+
+            List<String> written = new ArrayList<>();
+            List<byte[][]> scripts = new ArrayList<>();
+            for (int i = 0; i < pending.size(); i++) {
+                byte[] expected = current.get(i);
+                if (expected == null) {
+                    continue;
+                }
+                String key = pending.get(i);
+                T updated = updater.apply((T) valueSerializer.deserialize(expected));
+                byte[] ttlMillis = Long.toString(Math.max(1, ttls.get(key).toMillis())).getBytes(StandardCharsets.UTF_8);
+                scripts.add(new byte[][] { rawKeys[i], expected, rawValue(key, updated), ttlMillis });
+                written.add(key);
+            }
+            if (scripts.isEmpty()) {
+                return;
             }
+
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (byte[][] keysAndArgs : scripts) {
+                    connection.scriptingCommands().eval(CAS_SCRIPT, ReturnType.INTEGER, 1, keysAndArgs);
+                }
+                return null;
+            });
+
+            pending.clear();
+            for (int i = 0; i < written.size(); i++) {
+                if (!Long.valueOf(1L).equals(results.get(i))) {
+                    pending.add(written.get(i));
+                }
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            log.debug("Dropping cached values after repeated update conflicts: {}", pending);
+            executePipelined(batch -> pending.forEach(batch::delete));
+        }
+    }
+
+    // A script whose reply is a list of strings (or nil), typed once here instead of at every call site
+    @SuppressWarnings("unchecked")
+    public static RedisScript<List<String>> listScript(String script) {
+        return (RedisScript<List<String>>) (RedisScript<?>) RedisScript.of(script, List.class);
+    }
+
+    /**
+     * Runs a Lua script whose arguments and replies are plain strings rather than
+     * serialized values (e.g. ids, counters and timestamps).
+     *
+     * @param script The script to run; Spring loads it once and then calls it by SHA
+     * @param keys   The keys the script touches
+     * @param args   The script arguments
+     * @return The script reply; list replies are lists of strings
+     */
+    public <T> T executeScript(RedisScript<T> script, List<String> keys, String... args) {
+        StringRedisSerializer serializer = StringRedisSerializer.UTF_8;
+        @SuppressWarnings("unchecked")
+        RedisSerializer<T> resultSerializer = (RedisSerializer<T>) serializer;
+        return redisTemplate.execute(script, serializer, resultSerializer, keys, (Object[]) args);
+    }
+
+    /* Leases */
+
+    /**
+     * Acquires a short-lived lock that expires by itself if its holder dies.
+     *
+     * @param key   The lease key
+     * @param token A value unique to the caller, required to release the lease
+     * @param ttl   How long the lease is held at most
+     * @return Whether the lease was acquired
+     */
+    public boolean tryAcquireLease(String key, String token, Duration ttl) {
+        return Boolean.TRUE.equals(redisTemplate.execute((RedisCallback<Boolean>) connection ->
+                connection.stringCommands().set(rawKey(key), rawKey(token), Expiration.from(ttl),
+                        RedisStringCommands.SetOption.ifAbsent())));
+    }
+
+    // Release a lease, unless it already expired and was taken by someone else
+    public void releaseLease(String key, String token) {
+        executeScript(RELEASE_LEASE_SCRIPT, List.of(key), token);
+    }
+
+    /* Generation-Versioned Keys */
+
+    /**
+     * Returns the current generation of a key namespace. Keys that embed the generation
+     * are all invalidated at once by {@link #bumpGeneration}, and the stale ones are left
+     * to expire.
+     *
+     * A missing counter is seeded with the current time in milliseconds rather than 0, so
+     * that a counter which expired and is recreated never goes back to a generation whose
+     * keys may still be live.
+     *
+     * @param namespace The namespace, e.g. {@code user_assessments:42}
+     * @return The generation to embed in keys of the namespace
+     */
+    public long currentGeneration(String namespace) {
+        return executeScript(CURRENT_GENERATION_SCRIPT, List.of(GENERATION_PREFIX + namespace),
+                Long.toString(System.currentTimeMillis()), Long.toString(GENERATION_TTL.toMillis()));
+    }
+
+    // Move a namespace to a new generation, invalidating every key of the previous one with a single INCR
+    public long bumpGeneration(String namespace) {
+        return executeScript(BUMP_GENERATION_SCRIPT, List.of(GENERATION_PREFIX + namespace),
+                Long.toString(System.currentTimeMillis()), Long.toString(GENERATION_TTL.toMillis()));
+    }
+
+    /* Plain Strings and Hashes */
+
+    /*
+     * Stored as UTF-8 strings rather than through the cache value serializer, for data that is
+     * not a cache entry and is (de)serialized by its owner.
+     */
+
+    // Store a plain string with an expiration time, deleting other keys in the same pipeline
+    public void setStringWithExpiration(String key, String value, Duration ttl, String... keysToDelete) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().pSetEx(rawKey(key), ttl.toMillis(), rawKey(value));
+            for (String keyToDelete : keysToDelete) {
+                connection.keyCommands().del(rawKey(keyToDelete));
+            }
+            return null;
+        });
+    }
+
+    // Retrieve a plain string, or null if the key does not exist
+    public String getString(String key) {
+        byte[] value = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(rawKey(key)));
+        return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+    }
+
+    // Set a field of a hash of plain strings and (re)set the hash's expiration time
+    public void hashPutWithExpiration(String key, String field, String value, Duration ttl) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.hashCommands().hSet(rawKey(key), rawKey(field), rawKey(value));
+            connection.keyCommands().pExpire(rawKey(key), ttl.toMillis());
+            return null;
+        });
+    }
+
+    // Retrieve every field of a hash of plain strings
+    public Map<String, String> hashGetAll(String key) {
+        Map<byte[], byte[]> entries = redisTemplate.execute((RedisCallback<Map<byte[], byte[]>>) connection ->
+                connection.hashCommands().hGetAll(rawKey(key)));
+        Map<String, String> fields = new LinkedHashMap<>();
+        if (entries != null) {
+            entries.forEach((field, value) ->
+                    fields.put(new String(field, StandardCharsets.UTF_8), new String(value, StandardCharsets.UTF_8)));
+        }
+        return fields;
+    }
+
+    /* Streams */
+
+    /**
+     * An entry read from a stream, with plain string fields.
+     *
+     * @param deliveries How often the entry has been delivered to a consumer of its group, this
+     *                   delivery included; 0 if it was not read through a group
+     */
+    public record StreamEntry(String id, Map<String, String> fields, long deliveries) {
+    }
+
+    // Append an entry with plain string fields to a stream and return its id
+    public String streamAdd(String key, Map<String, String> fields) {
+        Map<byte[], byte[]> rawFields = new LinkedHashMap<>();
+        fields.forEach((field, value) -> rawFields.put(rawKey(field), rawKey(value)));
+        RecordId id = redisTemplate.execute((RedisCallback<RecordId>) connection ->
+                connection.streamCommands().xAdd(rawKey(key), rawFields));
+        return id != null ? id.getValue() : null;
+    }
+
+    // Create a consumer group that reads the stream from its first entry, creating the stream if needed
+    public void streamCreateGroup(String key, String group) {
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection ->
+                    connection.streamCommands().xGroupCreate(rawKey(key), group, ReadOffset.from("0"), true));
+        } catch (RuntimeException e) {
+            if (e.getMessage() == null || !e.getMessage().contains("BUSYGROUP")) {
+                throw e;
+            }
+            // The group already exists
+        }
+    }
+
+    /**
+     * Reads entries that were never delivered to any consumer of a group. They stay pending
+     * for this consumer until acknowledged.
+     *
+     * @param count The maximum number of entries
+     */
+    public List<StreamEntry> streamReadGroup(String key, String group, String consumer, int count) {
+        List<ByteRecord> records = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                readGroup(connection, org.springframework.data.redis.connection.stream.Consumer.from(group, consumer),
+                        StreamReadOptions.empty().count(count), StreamOffset.create(rawKey(key), ReadOffset.lastConsumed())));
+        // New entries are on their first delivery
+        return toStreamEntries(records, id -> 1L);
+    }
+
+    // XREADGROUP for the given offsets; they are only handed on to Redis, never stored, so the varargs are safe
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    private static List<ByteRecord> readGroup(RedisConnection connection,
+            org.springframework.data.redis.connection.stream.Consumer consumer, StreamReadOptions options,
+            StreamOffset<byte[]>... streams) {
+        return connection.streamCommands().xReadGroup(consumer, options, streams);
+    }
+
+    /**
+     * Takes over entries that were delivered to a consumer of the group, including this one,
+     * but not acknowledged within minIdle, e.g. because the consumer died or failed to process them.
+     * Each entry carries its delivery count, so callers can give up on entries that keep failing.
+     *
+     * @param count The maximum number of entries
+     */
+    public List<StreamEntry> streamClaimIdle(String key, String group, String consumer, Duration minIdle, int count) {
+        Map<String, Long> deliveries = new HashMap<>();
+        List<ByteRecord> records = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection -> {
+            PendingMessages pending = connection.streamCommands().xPending(rawKey(key), group,
+                    Range.unbounded(), (long) count);
+            if (pending == null || pending.isEmpty()) {
+                return List.of();
+            }
+            List<RecordId> ids = new ArrayList<>();
+            for (PendingMessage message : pending) {
+                if (message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0) {
+                    ids.add(message.getId());
+                    // XCLAIM counts as another delivery
+                    deliveries.put(message.getIdAsString(), message.getTotalDeliveryCount() + 1);
+                }
+            }
+            return ids.isEmpty() ? List.of()
+                    : connection.streamCommands().xClaim(rawKey(key), group, consumer, minIdle,
+                            ids.toArray(RecordId[]::new));
+        });
+        return toStreamEntries(records, id -> deliveries.getOrDefault(id, 1L));
+    }
+
+    /**
+     * Reads entries of a stream in id order, starting after the given id.
+     *
+     * @param afterId The id to read after, or null to read from the first entry
+     * @param count   The maximum number of entries
+     */
+    public List<StreamEntry> streamRangeAfter(String key, String afterId, int count) {
+        Range<String> range = afterId == null ? Range.unbounded()
+                : Range.rightUnbounded(Range.Bound.inclusive(nextStreamId(afterId)));
+        List<ByteRecord> records = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                connection.streamCommands().xRange(rawKey(key), range, Limit.limit().count(count)));
+        return toStreamEntries(records, id -> 0L);
+    }
+
+    // The smallest stream id after the given one, so ranges can start after an id on any Redis version
+    private static String nextStreamId(String id) {
+        int separator = id.indexOf('-');
+        if (separator < 0) {
+            return id + "-1";
+        }
+        long millis = Long.parseLong(id.substring(0, separator));
+        long sequence = Long.parseLong(id.substring(separator + 1));
+        return sequence == Long.MAX_VALUE ? (millis + 1) + "-0" : millis + "-" + (sequence + 1);
+    }
+
+    // Acknowledge processed entries and remove them from the stream
+    public void streamAckAndDelete(String key, String group, List<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        RecordId[] recordIds = ids.stream().map(RecordId::of).toArray(RecordId[]::new);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.streamCommands().xAck(rawKey(key), group, recordIds);
+            connection.streamCommands().xDel(rawKey(key), recordIds);
             return null;
         });
     }
 
-    public void appendToLists(String pattern, Object value) {
-        redisTemplate.execute((RedisCallback<Void>) connection -> {
-            Set<byte[]> keys = connection.keyCommands().keys(pattern.getBytes());
-            if (keys != null && !keys.isEmpty()) {
-                for (byte[] key : keys) {
-                    connection.listCommands().rPushX(key, value.toString().getBytes());
+    private List<StreamEntry> toStreamEntries(List<ByteRecord> records, ToLongFunction<String> deliveries) {
+        if (records == null) {
+            return List.of();
+        }
+        List<StreamEntry> entries = new ArrayList<>(records.size());
+        for (ByteRecord record : records) {
+            Map<String, String> fields = new LinkedHashMap<>();
+            record.getValue().forEach((field, value) ->
+                    fields.put(new String(field, StandardCharsets.UTF_8), new String(value, StandardCharsets.UTF_8)));
+            String id = record.getId().getValue();
+            entries.add(new StreamEntry(id, fields, deliveries.applyAsLong(id)));
+        }
+        return entries;
+    }
+
+    /**
+     * Iterates over the keyspace with SCAN. A cluster has no keyspace-wide SCAN, so
+     * there every master node is scanned in turn and the consumer gets one cursor per node.
+     *
+     * @param pattern  The key pattern to match, or null for every key
+     * @param count    The number of keys requested per round trip
+     * @param consumer Reads a cursor; it is closed afterwards
+     */
+    public void scan(String pattern, int count, Consumer<Cursor<byte[]>> consumer) {
+        ScanOptions.ScanOptionsBuilder options = ScanOptions.scanOptions().count(count);
+        if (pattern != null) {
+            options.match(pattern);
+        }
+        ScanOptions scanOptions = options.build();
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            if (connection instanceof RedisClusterConnection clusterConnection) {
+                for (RedisClusterNode node : clusterConnection.clusterGetNodes()) {
+                    if (node.isMaster()) {
+                        try (Cursor<byte[]> cursor = clusterConnection.scan(node, scanOptions)) {
+                            consumer.accept(cursor);
+                        }
+                    }
+                }
+            } else {
+                try (Cursor<byte[]> cursor = connection.keyCommands().scan(scanOptions)) {
+                    consumer.accept(cursor);
                 }
             }
             return null;
         });
     }
-} 
\ No newline at end of file
+
+    private byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Serialize a value, recording its size against the key's prefix
+    private byte[] rawValue(String key, Object value) {
+        byte[] rawValue = valueSerializer().serialize(value);
+        cacheMetrics.recordPayload(key, rawValue.length);
+        return rawValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisSerializer<Object> valueSerializer() {
+        return (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+    }
+}
@@ -0,0 +1,167 @@
+package com.delphi.delphi.components;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.delphi.delphi.utils.Blocking;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * The repository writes of one agent turn, staged instead of committed one by one.
+ *
+ * addFile, editFile and deleteFile calls stage the new content of a file (null for a deleted
+ * file) on their branch, and reads of a staged file within the turn see the staged content.
+ * Once the turn's tool calls have finished, the changes of each branch are committed together
+ * with {@link ToolCallHandler#commitChangeset}, so a turn writing 30 files makes one commit
+ * per branch instead of 30, and its writes no longer race each other for the branch head.
+ *
+ * Writes and reads without a branch go to the repository's default branch. Its name is looked
+ * up once per turn, the first time a call needs it, so e.g. an editFile without a branch and an
+ * addFile on "main" stage into the same commit and a read of "main" sees both.
+ *
+ * Thread-safe: the calls of a turn run concurrently.
+ */
+public class RepoChangeset {
+
+    // Branch key of writes without a branch whose default branch could not be looked up
+    private static final String DEFAULT_BRANCH = "";
+
+    /**
+     * A staged file.
+     *
+     * @param content       The new content, or null if the file is deleted
+     * @param commitMessage The commit message the tool call gave for the change
+     */
+    public record StagedFile(String content, String commitMessage) {
+
+        public boolean deleted() {
+            return content == null;
+        }
+    }
+
+    /**
+     * The staged changes of one branch.
+     *
+     * @param branch  The branch, or null for the repository's default branch
+     * @param files   The staged files by path, in the order they were first staged
+     * @param message The commit message for the changes
+     */
+    public record BranchChanges(String branch, Map<String, StagedFile> files, String message) {
+
+        // New contents by path, with null for deleted files
+        public Map<String, String> contents() {
+            Map<String, String> contents = new LinkedHashMap<>();
+            files.forEach((path, file) -> contents.put(path, file.content()));
+            return contents;
+        }
+    }
+
+    private final Map<String, Map<String, StagedFile>> branches = new LinkedHashMap<>();
+    // Ids of the tool calls whose writes are staged and not yet committed
+    private final Set<String> stagedCallIds = new LinkedHashSet<>();
+    private final Mono<String> defaultBranch;
+
+    // A changeset that keeps writes without a branch apart, for the commit to resolve
+    public RepoChangeset() {
+        this(Mono.empty());
+    }
+
+    /**
+     * @param defaultBranch Looks up the name of the repository's default branch; subscribed to
+     *                      at most once, and an empty result keeps writes without a branch apart
+     */
+    public RepoChangeset(Mono<String> defaultBranch) {
+        this.defaultBranch = defaultBranch.cache();
+    }
+
+    /**
+     * The branch that changes to the given branch are staged on: the branch itself, or the
+     * repository's default branch if none is given. Blocks the first time the default branch is
+     * needed.
+     *
+     * @return The branch name, or "" if the default branch could not be looked up
+     */
+    public String branch(String branch) {
+        if (branch != null && !branch.isBlank()) {
+            return branch;
+        }
+        String name = Blocking.await(defaultBranch);
+        return name != null ? name : DEFAULT_BRANCH;
+    }
+
+    public void stage(String toolCallId, String branch, String path, String content, String commitMessage) {
+        // Looked up outside the lock, so concurrent calls share one lookup without pinning
+        String key = branch(branch);
+        synchronized (this) {
+            branches.computeIfAbsent(key, k -> new LinkedHashMap<>())
+                    .put(normalize(path), new StagedFile(content, commitMessage));
+            stagedCallIds.add(toolCallId);
+        }
+    }
+
+    // The staged version of a file, or null if the turn has not written it
+    public StagedFile staged(String branch, String path) {
+        String key = branch(branch);
+        synchronized (this) {
+            Map<String, StagedFile> files = branches.get(key);
+            return files != null ? files.get(normalize(path)) : null;
+        }
+    }
+
+    // Whether the tool call's write is staged and waiting to be committed
+    public synchronized boolean isStaged(String toolCallId) {
+        return stagedCallIds.contains(toolCallId);
+    }
+
+    // Ids of the tool calls whose writes are staged and waiting to be committed
+    public synchronized Set<String> stagedCallIds() {
+        return Set.copyOf(stagedCallIds);
+    }
+
+    public synchronized boolean isEmpty() {
+        return branches.isEmpty();
+    }
+
+    /**
+     * Takes the staged changes out of the changeset, to be committed.
+     *
+     * @return The changes of each branch that was written
+     */
+    public synchronized List<BranchChanges> drain() {
+        List<BranchChanges> changes = branches.entrySet().stream()
+                .map(entry -> new BranchChanges(entry.getKey().isEmpty() ? null : entry.getKey(),
+                        new LinkedHashMap<>(entry.getValue()), commitMessage(entry.getValue())))
+                .toList();
+        branches.clear();
+        stagedCallIds.clear();
+        return changes;
+    }
+
+    // The tool call's message for a single change; a summary listing each message otherwise
+    private static String commitMessage(Map<String, StagedFile> files) {
+        Set<String> messages = new LinkedHashSet<>();
+        files.values().forEach(file -> {
+            if (file.commitMessage() != null && !file.commitMessage().isBlank()) {
+                messages.add(file.commitMessage().trim());
+            }
+        });
+        if (messages.size() == 1) {
+            return messages.iterator().next();
+        }
+        StringBuilder message = new StringBuilder("Update ").append(files.size())
+                .append(files.size() == 1 ? " file" : " files");
+        if (!messages.isEmpty()) {
+            message.append("\n");
+            messages.forEach(line -> message.append("\n- ").append(line));
+        }
+        return message.toString();
+    }
+
+    private static String normalize(String path) {
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+}
@@ -0,0 +1,132 @@
+package com.delphi.delphi.components;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.ai.chat.messages.AssistantMessage.ToolCall;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Assembles the tool calls of a streamed model response from their fragments.
+ *
+ * A streamed tool call arrives as a fragment carrying its id and name, followed by fragments
+ * that append to its arguments (with an empty id, or repeating the id). A call is complete once
+ * its arguments form a JSON object or the next call starts, and is handed to the consumer right
+ * away, so it can be executed while the rest of the response is still being generated. Calls
+ * are handed over in the order the model started them.
+ *
+ * Not thread-safe; feed it from the thread consuming the stream.
+ */
+public class ToolCallAssembler {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Consumer<ToolCall> onComplete;
+    private final List<PartialToolCall> calls = new ArrayList<>();
+    // Number of calls already handed to the consumer
+    private int emitted;
+
+    public ToolCallAssembler(Consumer<ToolCall> onComplete) {
+        this.onComplete = onComplete;
+    }
+
+    // Add the tool call fragments of one streamed chunk
+    public void accept(List<ToolCall> fragments) {
+        if (fragments == null) {
+            return;
+        }
+        for (ToolCall fragment : fragments) {
+            PartialToolCall call = find(fragment.id());
+            if (call == null) {
+                // A new call starts, so every earlier call is complete
+                calls.forEach(PartialToolCall::complete);
+                call = new PartialToolCall(fragment.id(), fragment.type());
+                calls.add(call);
+            }
+            call.append(fragment);
+        }
+        emitCompleted();
+    }
+
+    // The stream has ended: every call is complete
+    public void finish() {
+        calls.forEach(PartialToolCall::complete);
+        emitCompleted();
+    }
+
+    // All calls seen so far, in the order they were started
+    public List<ToolCall> toolCalls() {
+        return calls.stream().map(PartialToolCall::toToolCall).toList();
+    }
+
+    private PartialToolCall find(String id) {
+        if (id == null || id.isEmpty()) {
+            // Continuation fragments only carry arguments
+            return calls.isEmpty() ? null : calls.get(calls.size() - 1);
+        }
+        for (PartialToolCall call : calls) {
+            if (id.equals(call.id)) {
+                return call;
+            }
+        }
+        return null;
+    }
+
+    private void emitCompleted() {
+        while (emitted < calls.size() && calls.get(emitted).complete) {
+            onComplete.accept(calls.get(emitted).toToolCall());
+            emitted++;
+        }
+    }
+
+    private static final class PartialToolCall {
+
+        private final String id;
+        private final String type;
+        private String name = "";
+        private final StringBuilder arguments = new StringBuilder();
+        private boolean complete;
+
+        PartialToolCall(String id, String type) {
+            this.id = id == null ? "" : id;
+            this.type = type == null || type.isEmpty() ? "function" : type;
+        }
+
+        void append(ToolCall fragment) {
+            if (name.isEmpty() && fragment.name() != null) {
+                name = fragment.name();
+            }
+            if (fragment.arguments() != null) {
+                arguments.append(fragment.arguments());
+            }
+            if (!complete && !name.isEmpty() && isJsonObject(arguments)) {
+                complete = true;
+            }
+        }
+
+        void complete() {
+            complete = true;
+        }
+
+        ToolCall toToolCall() {
+            return new ToolCall(id, type, name, arguments.toString());
+        }
+
+        private static boolean isJsonObject(CharSequence arguments) {
+            // Only try to parse once the arguments could be a closed object
+            String trimmed = arguments.toString().strip();
+            if (!trimmed.startsWith("{") || !trimmed.endsWith("}")) {
+                return false;
+            }
+            try {
+                JsonNode node = OBJECT_MAPPER.readTree(trimmed);
+                return node != null && node.isObject();
+            } catch (Exception e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package com.delphi.delphi.components;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage.ToolCall;
+import org.springframework.ai.chat.messages.ToolResponseMessage.ToolResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs the tool calls of one model turn concurrently on virtual threads.
+ *
+ * Every call declares the repository resources it reads and writes: file paths, branches and
+ * the branch list. A call waits for the earlier calls in the turn that write a resource it
+ * touches, and a write also waits for earlier reads of it, so e.g. an addFile on a new branch
+ * runs after the addBranch creating it and two edits of the same file keep their order. Calls
+ * without a shared resource run in parallel, at most themus.agent.tools.max-concurrency at a
+ * time per turn.
+ *
+ * Each call is bounded by a timeout (themus.agent.tools.timeout-ms, overridable per tool with
+ * themus.agent.tools.&lt;tool&gt;.timeout-ms). A call that times out is interrupted and answered
+ * with an error response so the model can retry it; any other failure is rethrown once the
+ * turn has settled, as with sequential execution. Latencies are recorded in the
+ * {@code agent.tool.calls} timer, tagged by tool and outcome.
+ *
+ * With a {@link RepoChangeset}, the turn's file writes are staged in it rather than committed
+ * one by one, and {@link #commitChangeset} commits them once the turn's calls have finished.
+ */
+@Component
+public class ToolCallExecutor {
+
+    // Timer tag of the commit of a turn's staged writes
+    private static final String COMMIT_CHANGESET = "commitChangeset";
+    private static final Set<String> KNOWN_TOOLS = Set.of("addBranch", "addFile", "getRepositoryContents",
+            "getRepositoryBranches", "editFile", "deleteFile", "getBranchDetails", "sendMessageToUser",
+            COMMIT_CHANGESET);
+    // Resource read by getRepositoryBranches and written by addBranch
+    private static final String BRANCH_LIST = "branches";
+
+    private final Logger log = LoggerFactory.getLogger(ToolCallExecutor.class);
+    private final ToolCallHandler toolCallHandler;
+    private final MeterRegistry meterRegistry;
+    private final Environment environment;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private final int maxConcurrency;
+    private final long defaultTimeoutMillis;
+
+    public ToolCallExecutor(ToolCallHandler toolCallHandler, MeterRegistry meterRegistry, Environment environment,
+            @Value("${themus.agent.tools.max-concurrency:4}") int maxConcurrency,
+            @Value("${themus.agent.tools.timeout-ms:30000}") long defaultTimeoutMillis) {
+        this.toolCallHandler = toolCallHandler;
+        this.meterRegistry = meterRegistry;
+        this.environment = environment;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+    }
+
+    /**
+     * Executes the tool calls of one model turn.
+     *
+     * @param toolCalls            The tool calls, in the order the model returned them
+     * @param encryptedGithubToken The encrypted GitHub token
+     * @param githubUsername       The GitHub username
+     * @param githubRepoName       The GitHub repository name
+     * @return The tool responses in the order of the tool calls, excluding skipped calls
+     */
+    public List<ToolResponse> executeAll(List<ToolCall> toolCalls, String encryptedGithubToken, String githubUsername,
+            String githubRepoName) {
+        return executeAll(toolCalls, encryptedGithubToken, githubUsername, githubRepoName, null);
+    }
+
+    /**
+     * Executes the tool calls of one model turn, handing each response to onResponse as soon
+     * as its call completes, from the thread that ran it.
+     */
+    public List<ToolResponse> executeAll(List<ToolCall> toolCalls, String encryptedGithubToken, String githubUsername,
+            String githubRepoName, Consumer<ToolResponse> onResponse) {
+        return executeAll(toolCalls, encryptedGithubToken, githubUsername, githubRepoName, null, onResponse);
+    }
+
+    /**
+     * Executes the tool calls of one model turn, staging their file writes in the changeset
+     * (unless it is null) and handing each response to onResponse as soon as its call completes.
+     */
+    public List<ToolResponse> executeAll(List<ToolCall> toolCalls, String encryptedGithubToken, String githubUsername,
+            String githubRepoName, RepoChangeset changeset, Consumer<ToolResponse> onResponse) {
+        if (toolCalls.size() <= 1) {
+            return executeSequentially(toolCalls, encryptedGithubToken, githubUsername, githubRepoName, changeset,
+                    onResponse);
+        }
+        Batch batch = newBatch(encryptedGithubToken, githubUsername, githubRepoName, changeset, onResponse);
+        toolCalls.forEach(batch::submit);
+        return batch.await();
+    }
+
+    /**
+     * Starts a batch for the tool calls of one model turn, to which calls can be submitted
+     * while the rest of the turn is still being generated.
+     */
+    public Batch newBatch(String encryptedGithubToken, String githubUsername, String githubRepoName) {
+        return newBatch(encryptedGithubToken, githubUsername, githubRepoName, null);
+    }
+
+    /**
+     * Starts a batch whose responses are also handed to onResponse as soon as each call
+     * completes, from the thread that ran it.
+     */
+    public Batch newBatch(String encryptedGithubToken, String githubUsername, String githubRepoName,
+            Consumer<ToolResponse> onResponse) {
+        return newBatch(encryptedGithubToken, githubUsername, githubRepoName, null, onResponse);
+    }
+
+    // Starts a batch whose file writes are staged in the changeset, unless it is null
+    public Batch newBatch(String encryptedGithubToken, String githubUsername, String githubRepoName,
+            RepoChangeset changeset, Consumer<ToolResponse> onResponse) {
+        return new Batch(encryptedGithubToken, githubUsername, githubRepoName, changeset, onResponse);
+    }
+
+    // A changeset for one turn, which looks up the repository's default branch at most once
+    public RepoChangeset newChangeset(String encryptedGithubToken, String githubUsername, String githubRepoName) {
+        return new RepoChangeset(toolCallHandler.defaultBranch(encryptedGithubToken, githubUsername, githubRepoName));
+    }
+
+    /**
+     * Commits the file writes staged in a turn's changeset, one commit per branch written.
+     *
+     * @return The shas of the commits
+     */
+    public List<String> commitChangeset(RepoChangeset changeset, String encryptedGithubToken, String githubUsername,
+            String githubRepoName) {
+        if (changeset.isEmpty()) {
+            return List.of();
+        }
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            List<String> commits = toolCallHandler.commitChangeset(changeset, encryptedGithubToken, githubUsername,
+                    githubRepoName);
+            outcome = "success";
+            return commits;
+        } finally {
+            timer(COMMIT_CHANGESET, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * The tool calls of one model turn. Each call starts as soon as it is submitted and the
+     * earlier calls it depends on have finished. Calls must be submitted from a single thread,
+     * in the order the model returned them.
+     */
+    public final class Batch {
+
+        private final String encryptedGithubToken;
+        private final String githubUsername;
+        private final String githubRepoName;
+        private final RepoChangeset changeset;
+        // Names the branch a call touches, resolving a missing one to the default branch
+        private final UnaryOperator<String> branchName;
+        private final Consumer<ToolResponse> onResponse;
+        // The model runs one turn of a job at a time, so this caps the job's concurrent calls
+        private final Semaphore permits = new Semaphore(maxConcurrency);
+        private final Map<String, CompletableFuture<ToolResponse>> lastWrites = new HashMap<>();
+        private final Map<String, List<CompletableFuture<ToolResponse>>> readsSinceWrite = new HashMap<>();
+        private final List<CompletableFuture<ToolResponse>> futures = new ArrayList<>();
+
+        private Batch(String encryptedGithubToken, String githubUsername, String githubRepoName,
+                RepoChangeset changeset, Consumer<ToolResponse> onResponse) {
+            this.encryptedGithubToken = encryptedGithubToken;
+            this.githubUsername = githubUsername;
+            this.githubRepoName = githubRepoName;
+            this.changeset = changeset;
+            this.branchName = changeset != null ? changeset::branch
+                    : new RepoChangeset(toolCallHandler.defaultBranch(encryptedGithubToken, githubUsername,
+                            githubRepoName))::branch;
+            this.onResponse = onResponse;
+        }
+
+        public void submit(ToolCall toolCall) {
+            Resources resources = resources(toolCall, changeset != null, branchName);
+            List<CompletableFuture<ToolResponse>> dependencies = new ArrayList<>();
+            for (String resource : resources.reads()) {
+                addIfPresent(dependencies, lastWrites.get(resource));
+            }
+            for (String resource : resources.writes()) {
+                addIfPresent(dependencies, lastWrites.get(resource));
+                dependencies.addAll(readsSinceWrite.getOrDefault(resource, List.of()));
+            }
+
+            CompletableFuture<ToolResponse> future = CompletableFuture.supplyAsync(() -> {
+                awaitQuietly(dependencies);
+                ToolResponse response = executeWithPermit(permits, toolCall, encryptedGithubToken, githubUsername,
+                        githubRepoName, changeset);
+                publishResponse(onResponse, response);
+                return response;
+            }, executor);
+            futures.add(future);
+
+            for (String resource : resources.reads()) {
+                readsSinceWrite.computeIfAbsent(resource, r -> new ArrayList<>()).add(future);
+            }
+            for (String resource : resources.writes()) {
+                lastWrites.put(resource, future);
+                readsSinceWrite.remove(resource);
+            }
+        }
+
+        public int size() {
+            return futures.size();
+        }
+
+        /**
+         * Waits for every submitted call.
+         *
+         * @return The tool responses in submission order, excluding skipped calls
+         */
+        public List<ToolResponse> await() {
+            // Wait for every call before failing, so no call outlives the turn
+            awaitQuietly(futures);
+            List<ToolResponse> responses = new ArrayList<>(futures.size());
+            for (CompletableFuture<ToolResponse> future : futures) {
+                ToolResponse response;
+                try {
+                    response = future.join();
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof RuntimeException runtimeException) {
+                        throw runtimeException;
+                    }
+                    throw e;
+                }
+                if (response != null) {
+                    responses.add(response);
+                }
+            }
+            return responses;
+        }
+    }
+
+    private List<ToolResponse> executeSequentially(List<ToolCall> toolCalls, String encryptedGithubToken,
+            String githubUsername, String githubRepoName, RepoChangeset changeset, Consumer<ToolResponse> onResponse) {
+        List<ToolResponse> responses = new ArrayList<>(toolCalls.size());
+        for (ToolCall toolCall : toolCalls) {
+            ToolResponse response = executeTimed(toolCall, encryptedGithubToken, githubUsername, githubRepoName,
+                    changeset);
+            if (response != null) {
+                publishResponse(onResponse, response);
+                responses.add(response);
+            }
+        }
+        return responses;
+    }
+
+    private void publishResponse(Consumer<ToolResponse> onResponse, ToolResponse response) {
+        if (onResponse == null || response == null) {
+            return;
+        }
+        try {
+            onResponse.accept(response);
+        } catch (Exception e) {
+            log.warn("Tool response listener failed for {} ({}): {}", response.name(), response.id(), e.getMessage());
+        }
+    }
+
+    private ToolResponse executeWithPermit(Semaphore permits, ToolCall toolCall, String encryptedGithubToken,
+            String githubUsername, String githubRepoName, RepoChangeset changeset) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting to execute tool call: " + toolCall.name(), e);
+        }
+        try {
+            return executeTimed(toolCall, encryptedGithubToken, githubUsername, githubRepoName, changeset);
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Run a single tool call with its timeout and record how long it took
+    private ToolResponse executeTimed(ToolCall toolCall, String encryptedGithubToken, String githubUsername,
+            String githubRepoName, RepoChangeset changeset) {
+        long timeoutMillis = timeoutMillis(toolCall.name());
+        long start = System.nanoTime();
+        String outcome = "error";
+        Future<ToolResponse> call = executor.submit(
+                () -> toolCallHandler.executeToolCall(toolCall, encryptedGithubToken, githubUsername, githubRepoName,
+                        changeset));
+        try {
+            ToolResponse response = call.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            outcome = "success";
+            return response;
+        } catch (TimeoutException e) {
+            call.cancel(true);
+            outcome = "timeout";
+            log.warn("Tool call {} ({}) timed out after {} ms", toolCall.name(), toolCall.id(), timeoutMillis);
+            return new ToolResponse(toolCall.id(), toolCall.name(),
+                    "Error: the tool call timed out after " + timeoutMillis + " ms and may not have completed");
+        } catch (InterruptedException e) {
+            call.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while executing tool call: " + toolCall.name(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException("Error executing tool call: " + toolCall.name(), e.getCause());
+        } finally {
+            timer(toolCall.name(), outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private long timeoutMillis(String toolName) {
+        return environment.getProperty("themus.agent.tools." + toolName + ".timeout-ms", Long.class,
+                defaultTimeoutMillis);
+    }
+
+    private Timer timer(String toolName, String outcome) {
+        // Tool names come from the model, so keep unexpected ones out of the tags
+        String tool = KNOWN_TOOLS.contains(toolName) ? toolName : "unknown";
+        return timers.computeIfAbsent(tool + "|" + outcome,
+                id -> Timer.builder("agent.tool.calls")
+                        .tag("tool", tool)
+                        .tag("outcome", outcome)
+                        .description("Latency of tool calls made by the agent")
+                        .register(meterRegistry));
+    }
+
+    /* Dependency Tracking */
+
+    /**
+     * Repository resources a tool call reads and writes. Files are keyed by path, branches by
+     * name, with a call without a branch keyed by the default branch's name, so it is ordered
+     * with the calls that name that branch.
+     */
+    private record Resources(List<String> reads, List<String> writes) {
+    }
+
+    // staged: whether file writes are staged in a changeset rather than committed
+    private Resources resources(ToolCall toolCall, boolean staged, UnaryOperator<String> branchName) {
+        Map<String, Object> args;
+        try {
+            args = objectMapper.readValue(toolCall.arguments(), new TypeReference<Map<String, Object>>() {});
+        } catch (Exception e) {
+            // The handler reports malformed arguments; the call touches nothing
+            return new Resources(List.of(), List.of());
+        }
+        return switch (toolCall.name()) {
+            case "addBranch" -> new Resources(List.of(branch(branchName, args.get("baseBranch"))),
+                    List.of(branch(branchName, args.get("branchName")), BRANCH_LIST));
+            // Every commit moves the head of its branch, so writes to one branch are ordered too;
+            // staged writes only need the branch to exist
+            case "addFile" -> staged
+                    ? new Resources(List.of(branch(branchName, args.get("branch"))),
+                            List.of(path(args.get("filePath"))))
+                    : new Resources(List.of(),
+                            List.of(path(args.get("filePath")), branch(branchName, args.get("branch"))));
+            case "editFile", "deleteFile" -> staged
+                    ? new Resources(List.of(branch(branchName, null)), List.of(path(args.get("filePath"))))
+                    : new Resources(List.of(), List.of(path(args.get("filePath")), branch(branchName, null)));
+            case "getRepositoryContents" -> new Resources(
+                    List.of(path(args.get("filePath")), branch(branchName, args.get("branch"))), List.of());
+            case "getRepositoryBranches" -> new Resources(List.of(BRANCH_LIST), List.of());
+            case "getBranchDetails" -> new Resources(List.of(branch(branchName, args.get("branchName"))), List.of());
+            default -> new Resources(List.of(), List.of());
+        };
+    }
+
+    private static String path(Object filePath) {
+        String path = filePath == null ? "" : filePath.toString();
+        return "path:" + (path.startsWith("/") ? path.substring(1) : path);
+    }
+
+    private static String branch(UnaryOperator<String> branchName, Object branch) {
+        return "branch:" + branchName.apply(branch == null ? null : branch.toString());
+    }
+
+    private static void addIfPresent(List<CompletableFuture<ToolResponse>> dependencies,
+            CompletableFuture<ToolResponse> dependency) {
+        if (dependency != null) {
+            dependencies.add(dependency);
+        }
+    }
+
+    // Wait for calls to finish; a failed call still releases the calls ordered after it
+    private static void awaitQuietly(List<CompletableFuture<ToolResponse>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            // Reported by the failed call itself
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
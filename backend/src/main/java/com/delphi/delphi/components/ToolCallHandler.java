@@ -11,10 +11,13 @@ import org.springframework.ai.chat.messages.ToolResponseMessage.ToolResponse;
 import org.springframework.stereotype.Component;
 
 import com.delphi.delphi.services.GithubService;
+import com.delphi.delphi.utils.Blocking;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import reactor.core.publisher.Mono;
+
 @Component
 /**
  * Handles logic for executing tool calls when the LLM requests to call a tool.
@@ -40,6 +43,17 @@ public class ToolCallHandler {
      * @return ToolResponse if executed, null if skipped
      */
     public ToolResponse executeToolCall(ToolCall toolCall, String encryptedGithubToken, String githubUsername, String githubRepoName) {
+        return executeToolCall(toolCall, encryptedGithubToken, githubUsername, githubRepoName, null);
+    }
+
+    /**
+     * Tool call execution with the turn's file writes staged in a changeset instead of
+     * committed one by one; reads of a file the turn has written see the staged version.
+     * @param changeset The turn's changeset, or null to commit each write right away
+     * @return ToolResponse if executed, null if skipped
+     */
+    public ToolResponse executeToolCall(ToolCall toolCall, String encryptedGithubToken, String githubUsername,
+            String githubRepoName, RepoChangeset changeset) {
         // Check if this tool call should be skipped
         if (shouldSkipToolCall(toolCall)) {
             return null; // Skip this tool call
@@ -49,10 +63,7 @@ public class ToolCallHandler {
             // Parse the JSON arguments
             Map<String, Object> args = objectMapper.readValue(toolCall.arguments(), new TypeReference<Map<String, Object>>() {});
 
-            log.info("Encrypted GitHub Token: {}", encryptedGithubToken);
-            log.info("GitHub Username: {}", githubUsername);
-            log.info("GitHub Repo Name: {}", githubRepoName);
-            log.info("Tool Call Arguments: {}", args.toString());
+            log.debug("Executing tool call {} ({}) on {}/{}", toolCall.name(), toolCall.id(), githubUsername, githubRepoName);
 
             // Execute the tool call based on its name
             switch (toolCall.name()) {
@@ -60,45 +71,60 @@ public class ToolCallHandler {
                     String branchName = (String) args.get("branchName");
                     String baseBranch = (String) args.get("baseBranch");
                     return new ToolResponse(toolCall.id(), toolCall.name(), 
-                        githubService.addBranch(encryptedGithubToken, githubUsername, githubRepoName, branchName, baseBranch).block().toString());
+                        await(githubService.addBranch(encryptedGithubToken, githubUsername, githubRepoName, branchName, baseBranch)).toString());
                 }
                 case "addFile" -> {
                     String filePath = (String) args.get("filePath");
                     String fileContent = (String) args.get("fileContent");
                     String commitMessage = (String) args.get("commitMessage");
                     String branch = (String) args.get("branch");
+                    if (changeset != null) {
+                        return stage(changeset, toolCall, branch, filePath, fileContent, commitMessage);
+                    }
                     return new ToolResponse(toolCall.id(), toolCall.name(), 
-                        githubService.addFileToRepo(encryptedGithubToken, githubUsername, githubRepoName, filePath, branch, fileContent, commitMessage).block().toString());
+                        await(githubService.addFileToRepo(encryptedGithubToken, githubUsername, githubRepoName, filePath, branch, fileContent, commitMessage)).toString());
                 }
                 case "getRepositoryContents" -> {
                     String filePath = (String) args.get("filePath");
                     String branch = (String) args.get("branch");
+                    RepoChangeset.StagedFile staged = changeset != null ? changeset.staged(branch, filePath) : null;
+                    if (staged != null) {
+                        return new ToolResponse(toolCall.id(), toolCall.name(), staged.deleted()
+                                ? String.format("%s was deleted earlier in this turn", filePath)
+                                : String.format("Contents of %s as written earlier in this turn:%n%s", filePath, staged.content()));
+                    }
                     return new ToolResponse(toolCall.id(), toolCall.name(), 
-                        githubService.getRepoContents(encryptedGithubToken, githubUsername, githubRepoName, filePath, branch).toString());
+                        await(githubService.getRepoContents(encryptedGithubToken, githubUsername, githubRepoName, filePath, branch)).toString());
                 }
                 case "getRepositoryBranches" -> {
                     return new ToolResponse(toolCall.id(), toolCall.name(), 
-                        githubService.getRepoBranches(encryptedGithubToken, githubUsername, githubRepoName).block().toString());
+                        await(githubService.getRepoBranches(encryptedGithubToken, githubUsername, githubRepoName)).toString());
                 }
                 case "editFile" -> {
                     String filePath = (String) args.get("filePath");
                     String fileContent = (String) args.get("fileContent");
                     String commitMessage = (String) args.get("commitMessage");
                     String sha = (String) args.get("sha");
+                    if (changeset != null) {
+                        return stage(changeset, toolCall, null, filePath, fileContent, commitMessage);
+                    }
                     return new ToolResponse(toolCall.id(), toolCall.name(), 
-                        githubService.editFile(encryptedGithubToken, githubUsername, githubRepoName, filePath, fileContent, commitMessage, sha).block().toString());
+                        await(githubService.editFile(encryptedGithubToken, githubUsername, githubRepoName, filePath, fileContent, commitMessage, sha)).toString());
                 }
                 case "deleteFile" -> {
                     String filePath = (String) args.get("filePath");
                     String commitMessage = (String) args.get("commitMessage");
                     String sha = (String) args.get("sha");
+                    if (changeset != null) {
+                        return stage(changeset, toolCall, null, filePath, null, commitMessage);
+                    }
                     return new ToolResponse(toolCall.id(), toolCall.name(), 
-                        githubService.deleteFile(encryptedGithubToken, githubUsername, githubRepoName, filePath, commitMessage, sha).block());
+                        await(githubService.deleteFile(encryptedGithubToken, githubUsername, githubRepoName, filePath, commitMessage, sha)));
                 }
                 case "getBranchDetails" -> {
                     String branchName = (String) args.get("branchName");
                     return new ToolResponse(toolCall.id(), toolCall.name(), 
-                        githubService.getBranchDetails(encryptedGithubToken, githubUsername, githubRepoName, branchName).block().toString());
+                        await(githubService.getBranchDetails(encryptedGithubToken, githubUsername, githubRepoName, branchName)).toString());
                 }
                 case "sendMessageToUser" -> {
                     // This is a special case - don't execute, just return a placeholder
@@ -111,6 +137,54 @@ public class ToolCallHandler {
         }
     }
 
+    private ToolResponse stage(RepoChangeset changeset, ToolCall toolCall, String branch, String filePath,
+            String fileContent, String commitMessage) {
+        if (filePath == null || filePath.isBlank()) {
+            throw new IllegalArgumentException("filePath is required for " + toolCall.name());
+        }
+        changeset.stage(toolCall.id(), branch, filePath, fileContent, commitMessage);
+        String change = fileContent == null ? "Deleted " : "Wrote ";
+        return new ToolResponse(toolCall.id(), toolCall.name(), change + filePath
+                + (branch != null ? " on branch " + branch : "")
+                + "; it is committed together with the other changes of this turn");
+    }
+
+    /**
+     * Looks up the name of the repository's default branch, once however often the result is
+     * subscribed to. Completes empty if the lookup fails, leaving the branch to each call.
+     */
+    public Mono<String> defaultBranch(String encryptedGithubToken, String githubUsername, String githubRepoName) {
+        return GithubRequestScheduler.withPriority(GithubRequestScheduler.Priority.BACKGROUND,
+                Mono.defer(() -> githubService.getDefaultBranch(encryptedGithubToken, githubUsername, githubRepoName)))
+                .onErrorResume(e -> {
+                    log.warn("Could not look up the default branch of {}/{}: {}", githubUsername, githubRepoName,
+                            e.getMessage());
+                    return Mono.empty();
+                })
+                .cache();
+    }
+
+    /**
+     * Commits the changes staged in a turn, one commit per branch
+     * @param changeset The turn's changeset; it is empty afterwards
+     * @return The shas of the commits
+     */
+    public List<String> commitChangeset(RepoChangeset changeset, String encryptedGithubToken, String githubUsername,
+            String githubRepoName) {
+        List<String> commits = new ArrayList<>();
+        for (RepoChangeset.BranchChanges changes : changeset.drain()) {
+            commits.add(await(githubService.commitFiles(encryptedGithubToken, githubUsername, githubRepoName,
+                    changes.branch(), changes.contents(), changes.message())));
+        }
+        return commits;
+    }
+
+    // Blocking edge of the agent's GitHub calls, which run on virtual threads; agent requests give way
+    // to the GitHub requests of users and candidates
+    private static <T> T await(Mono<T> call) {
+        return Blocking.await(GithubRequestScheduler.withPriority(GithubRequestScheduler.Priority.BACKGROUND, call));
+    }
+
     /**
      * Execute multiple tool calls with custom filtering
      * @param toolCalls List of tool calls to execute
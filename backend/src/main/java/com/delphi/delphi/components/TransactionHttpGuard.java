@@ -0,0 +1,85 @@
+package com.delphi.delphi.components;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Reports outbound HTTP calls made while the calling thread holds a database transaction.
+ *
+ * A transaction held across a call to the model or the GitHub API keeps a pooled JDBC connection
+ * checked out for as long as the remote service takes, which starves the connection pool for
+ * everything else. Every such call is logged at error level with a stack trace pointing at the
+ * caller and counted in {@code http.client.calls.in.transaction}. With
+ * themus.transactions.fail-on-http-call the call is rejected instead, which is meant for tests
+ * and local runs.
+ *
+ * Applies to clients built from Spring Boot's RestClient and WebClient builders (which includes
+ * the OpenAI client) and to clients that add {@link #exchangeFilter()} themselves.
+ */
+@Component
+public class TransactionHttpGuard {
+
+    private final Logger log = LoggerFactory.getLogger(TransactionHttpGuard.class);
+    private final MeterRegistry meterRegistry;
+    private final boolean failOnHttpCall;
+
+    public TransactionHttpGuard(MeterRegistry meterRegistry,
+            @Value("${themus.transactions.fail-on-http-call:false}") boolean failOnHttpCall) {
+        this.meterRegistry = meterRegistry;
+        this.failOnHttpCall = failOnHttpCall;
+    }
+
+    @Bean
+    public RestClientCustomizer transactionGuardRestClientCustomizer() {
+        return builder -> builder.requestInterceptor((request, body, execution) -> {
+            check(request.getMethod().name(), request.getURI().getHost());
+            return execution.execute(request, body);
+        });
+    }
+
+    @Bean
+    public WebClientCustomizer transactionGuardWebClientCustomizer() {
+        return builder -> builder.filter(exchangeFilter());
+    }
+
+    // Filter for WebClients that are not built from the Spring Boot builder
+    public ExchangeFilterFunction exchangeFilter() {
+        return (request, next) -> {
+            check(request.method().name(), request.url().getHost());
+            return next.exchange(request);
+        };
+    }
+
+    /**
+     * Reports the call if the current thread is in a transaction.
+     *
+     * @throws IllegalStateException if themus.transactions.fail-on-http-call is set
+     */
+    public void check(String method, String host) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return;
+        }
+        String transactionName = TransactionSynchronizationManager.getCurrentTransactionName();
+        Counter.builder("http.client.calls.in.transaction")
+                .description("Outbound HTTP calls made while holding a database transaction")
+                .tag("host", host != null ? host : "unknown")
+                .register(meterRegistry)
+                .increment();
+        IllegalStateException violation = new IllegalStateException(String.format(
+                "%s call to %s made inside transaction %s", method, host, transactionName));
+        if (failOnHttpCall) {
+            throw violation;
+        }
+        log.error("Outbound HTTP call while holding a database transaction: {}", violation.getMessage(), violation);
+    }
+}
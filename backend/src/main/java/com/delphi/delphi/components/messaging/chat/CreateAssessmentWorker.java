@@ -7,8 +7,11 @@ import java.util.UUID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
+import com.delphi.delphi.components.AgentMetrics;
 import com.delphi.delphi.configs.kafka.KafkaTopicsConfig;
 import com.delphi.delphi.dtos.messaging.chat.PublishAssessmentCreationJobDto;
 import com.delphi.delphi.entities.Job;
@@ -24,21 +27,31 @@ import com.delphi.delphi.utils.enums.JobStatus;
 public class CreateAssessmentWorker {
     private final JobRepository jobRepository;
     private final ChatService chatService;
+    private final AgentMetrics agentMetrics;
     private final Logger log = LoggerFactory.getLogger(CreateAssessmentWorker.class);
 
-    public CreateAssessmentWorker(JobRepository jobRepository, ChatService chatService) {
+    public CreateAssessmentWorker(JobRepository jobRepository, ChatService chatService, AgentMetrics agentMetrics) {
         this.jobRepository = jobRepository;
         this.chatService = chatService;
+        this.agentMetrics = agentMetrics;
     }
 
     @KafkaListener(topics = KafkaTopicsConfig.LLM_CREATE_ASSESSMENT, containerFactory = "kafkaListenerContainerFactory")
-    public void processCreateAssessmentJob(PublishAssessmentCreationJobDto publishAssessmentCreationJobDto) {
+    public void processCreateAssessmentJob(PublishAssessmentCreationJobDto publishAssessmentCreationJobDto,
+            @Header(KafkaHeaders.RECEIVED_TIMESTAMP) long publishedAt) {
         final UUID jobId = publishAssessmentCreationJobDto.getJobId();
         Job job = null;
         try {
             job = jobRepository.findById(jobId)
                     .orElseThrow(() -> new RuntimeException("Job not found"));
+            // A redelivered job that already finished is not run again; one that was
+            // interrupted resumes from its agent checkpoint
+            if (job.getStatus() == JobStatus.COMPLETED) {
+                log.info("Job {} already completed, ignoring redelivery", jobId);
+                return;
+            }
             job.setStatus(JobStatus.RUNNING);
+            job.setQueueWaitMs(agentMetrics.recordQueueWait(job.getJobType().name(), publishedAt));
             job = jobRepository.save(job);
 
             // Send SSE event that job is running
@@ -88,6 +101,7 @@ public class CreateAssessmentWorker {
             MessageUtils.handleJobFailure(chatService, jobRepository, job, jobId, e, "Unexpected error: " + e.getMessage());
 
         } finally {
+            MessageUtils.saveRunSummary(agentMetrics, jobRepository, job, jobId);
             // Always complete the SSE emitter, regardless of success or failure
             try {
                 chatService.completeSseEmitter(jobId);
@@ -0,0 +1,361 @@
+package com.delphi.delphi.components.messaging.chat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.delphi.delphi.components.RedisService;
+import com.delphi.delphi.components.RedisService.StreamEntry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Delivers job events to the SSE emitter of the job, whichever node holds it.
+ *
+ * The node that opens a job's SSE stream subscribes to the job's Redis channel
+ * ({@code sse:job:<id>}) for as long as the emitter is open. Events for a job whose emitter is
+ * on this node are sent to it directly; all other events are published to the job's channel,
+ * so the Kafka worker running a job does not need to be on the node the client is connected to.
+ *
+ * Every event is also appended to the job's event log ({@code sse:log:{job:<id>}}), a Redis
+ * stream capped at themus.sse.event-log.max-events entries that expires
+ * themus.sse.event-log.ttl-minutes after the job's last event. The log entry's id is sent as the
+ * SSE event id, so a client that reconnects with Last-Event-ID is sent the events it missed from
+ * the log before live delivery resumes (see {@link #resume}), and an event published while no
+ * node holds the job's emitter is not lost. Live events already sent by the replay are skipped.
+ * Events published with {@link #publishLive}, such as per-token deltas, are not logged, so they
+ * cannot push earlier events out of the capped log; a client that misses them is sent the
+ * complete message that follows.
+ *
+ * Open emitters get a heartbeat comment every themus.sse.heartbeat-interval-ms, which keeps
+ * proxies from closing idle streams and detects clients that went away, so their emitters and
+ * subscriptions are cleaned up.
+ */
+@Component
+public class JobEventBus {
+
+    private static final String CHANNEL_PREFIX = "sse:job:";
+    private static final String COMPLETE_EVENT = "stream_complete";
+
+    // Append an event to a job's log, trim it and push back the expiry of the log and its owner in one round trip
+    private static final RedisScript<String> APPEND_SCRIPT = RedisScript.of(
+            "local id = redis.call('XADD', KEYS[1], 'MAXLEN', '~', ARGV[1], '*', 'event', ARGV[2], 'data', ARGV[3]) " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[4]) " +
+            "redis.call('PEXPIRE', KEYS[2], ARGV[4]) " +
+            "return id", String.class);
+
+    /**
+     * A job's emitter on this node. lastSentId is the log id of the last event sent to it, guarded
+     * by the subscription's monitor, so replayed and live events are sent once and in order.
+     */
+    private static final class Subscription {
+        private final SseEmitter emitter;
+        private final MessageListener listener;
+        private final ChannelTopic topic;
+        private String lastSentId;
+
+        private Subscription(SseEmitter emitter, MessageListener listener, ChannelTopic topic, String lastSentId) {
+            this.emitter = emitter;
+            this.listener = listener;
+            this.topic = topic;
+            this.lastSentId = lastSentId;
+        }
+    }
+
+    private final Logger log = LoggerFactory.getLogger(JobEventBus.class);
+    private final StringRedisTemplate publisher;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final RedisService redisService;
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final Map<UUID, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final int maxLogEvents;
+    private final Duration logTtl;
+
+    public JobEventBus(StringRedisTemplate publisher, RedisMessageListenerContainer listenerContainer,
+            RedisService redisService,
+            @Value("${themus.sse.event-log.max-events:1000}") int maxLogEvents,
+            @Value("${themus.sse.event-log.ttl-minutes:30}") long logTtlMinutes) {
+        this.publisher = publisher;
+        this.listenerContainer = listenerContainer;
+        this.redisService = redisService;
+        this.maxLogEvents = maxLogEvents;
+        this.logTtl = Duration.ofMinutes(logTtlMinutes);
+    }
+
+    // Hold a job's emitter on this node and receive the job's events published by other nodes
+    public void register(UUID jobId, SseEmitter emitter) {
+        subscribe(jobId, newSubscription(jobId, emitter, null));
+        log.info("Registered SSE emitter for job: {}", jobId);
+    }
+
+    /**
+     * Registers the emitter of a client that reconnected to a job's stream and sends it the
+     * events logged after lastEventId (all logged events if it is null), then the live ones. If
+     * the job's stream completed in the meantime, the emitter is completed after the replay.
+     */
+    public void resume(UUID jobId, SseEmitter emitter, String lastEventId) {
+        String afterId = isLogId(lastEventId) ? lastEventId : null;
+        Subscription subscription = newSubscription(jobId, emitter, afterId);
+        int replayed = 0;
+        // Subscribe before reading the log so no event falls between the two, holding the
+        // monitor so live events wait until the replay has been sent
+        synchronized (subscription) {
+            subscribe(jobId, subscription);
+            try {
+                List<StreamEntry> entries = redisService.streamRangeAfter(eventLogKey(jobId), afterId, maxLogEvents);
+                for (StreamEntry entry : entries) {
+                    if (!sendLocked(jobId, subscription, entry.id(), entry.fields().get("event"), entry.fields().get("data"))) {
+                        break;
+                    }
+                    replayed++;
+                }
+            } catch (Exception e) {
+                log.warn("Failed to replay SSE events for job: {} - {}", jobId, e.getMessage());
+            }
+        }
+        log.info("Resumed SSE emitter for job: {} after event {}, replayed {} events", jobId, afterId, replayed);
+    }
+
+    // Remember the user who started a job, so only they can reconnect to its stream
+    public void recordOwner(UUID jobId, Long userId) {
+        try {
+            redisService.setStringWithExpiration(ownerKey(jobId), userId.toString(), logTtl);
+        } catch (Exception e) {
+            log.warn("Failed to record owner of SSE stream for job: {} - {}", jobId, e.getMessage());
+        }
+    }
+
+    // Whether the user started the job; false once the job's event log has expired
+    public boolean isOwner(UUID jobId, Long userId) {
+        return userId.toString().equals(redisService.getString(ownerKey(jobId)));
+    }
+
+    // Forget a job's emitter without completing it, e.g. once it has completed or timed out
+    public void remove(UUID jobId) {
+        Subscription subscription = subscriptions.remove(jobId);
+        if (subscription != null) {
+            unsubscribe(jobId, subscription);
+        }
+    }
+
+    // Forget a job's emitter only if it is still the registered one, so an old connection closing does not drop its replacement
+    public void remove(UUID jobId, SseEmitter emitter) {
+        Subscription subscription = subscriptions.get(jobId);
+        if (subscription != null && subscription.emitter == emitter && subscriptions.remove(jobId, subscription)) {
+            unsubscribe(jobId, subscription);
+        }
+    }
+
+    /**
+     * Appends an event to the job's event log and sends it to the job's emitter, directly if this
+     * node holds it and through the job's channel otherwise.
+     */
+    public void publish(UUID jobId, String eventName, Object data) {
+        deliver(jobId, eventName, data, true);
+    }
+
+    /**
+     * Sends an event to the job's emitter without logging it, for events superseded by a later
+     * logged one, e.g. the text deltas of a message. A client that is not connected misses it.
+     */
+    public void publishLive(UUID jobId, String eventName, Object data) {
+        deliver(jobId, eventName, data, false);
+    }
+
+    private void deliver(UUID jobId, String eventName, Object data, boolean logged) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(data);
+        } catch (Exception e) {
+            log.warn("Failed to serialize SSE event '{}' for job: {} - {}", eventName, jobId, e.getMessage());
+            return;
+        }
+        String id = logged ? appendToLog(jobId, eventName, json) : null;
+        if (subscriptions.containsKey(jobId)) {
+            sendLocal(jobId, id, eventName, json);
+            return;
+        }
+        try {
+            ObjectNode message = objectMapper.createObjectNode();
+            message.put("id", id);
+            message.put("event", eventName);
+            message.put("data", json);
+            publisher.convertAndSend(CHANNEL_PREFIX + jobId, objectMapper.writeValueAsString(message));
+            log.debug("Published SSE event '{}' for job: {}", eventName, jobId);
+        } catch (Exception e) {
+            log.warn("Failed to publish SSE event '{}' for job: {} - {}", eventName, jobId, e.getMessage());
+        }
+    }
+
+    // Send the final event of a job's stream and close it, on whichever node holds it
+    public void complete(UUID jobId) {
+        publish(jobId, COMPLETE_EVENT, Map.of("message", "Stream completed successfully", "jobId", jobId.toString()));
+    }
+
+    // A subscription whose emitter has been sent the events up to lastSentId (none if null)
+    private Subscription newSubscription(UUID jobId, SseEmitter emitter, String lastSentId) {
+        ChannelTopic topic = new ChannelTopic(CHANNEL_PREFIX + jobId);
+        MessageListener listener = (message, pattern) -> onMessage(jobId, message.getBody());
+        return new Subscription(emitter, listener, topic, lastSentId);
+    }
+
+    private void subscribe(UUID jobId, Subscription subscription) {
+        Subscription previous = subscriptions.put(jobId, subscription);
+        if (previous != null) {
+            listenerContainer.removeMessageListener(previous.listener, previous.topic);
+        }
+        listenerContainer.addMessageListener(subscription.listener, subscription.topic);
+    }
+
+    private void unsubscribe(UUID jobId, Subscription subscription) {
+        listenerContainer.removeMessageListener(subscription.listener, subscription.topic);
+        log.info("Removed SSE emitter for job: {}", jobId);
+    }
+
+    // The log id of the appended event, or null if it could not be logged; the event is still delivered live
+    private String appendToLog(UUID jobId, String eventName, String json) {
+        try {
+            return redisService.executeScript(APPEND_SCRIPT, List.of(eventLogKey(jobId), ownerKey(jobId)),
+                    String.valueOf(maxLogEvents), eventName, json, String.valueOf(logTtl.toMillis()));
+        } catch (Exception e) {
+            log.warn("Failed to log SSE event '{}' for job: {} - {}", eventName, jobId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void onMessage(UUID jobId, byte[] body) {
+        try {
+            JsonNode message = objectMapper.readTree(new String(body, StandardCharsets.UTF_8));
+            String id = message.hasNonNull("id") ? message.get("id").asText() : null;
+            sendLocal(jobId, id, message.path("event").asText(), message.path("data").asText());
+        } catch (Exception e) {
+            log.warn("Dropping malformed SSE event for job: {} - {}", jobId, e.getMessage());
+        }
+    }
+
+    private void sendLocal(UUID jobId, String id, String eventName, String json) {
+        Subscription subscription = subscriptions.get(jobId);
+        if (subscription == null) {
+            log.warn("No SSE emitter found for job: {}", jobId);
+            return;
+        }
+        synchronized (subscription) {
+            sendLocked(jobId, subscription, id, eventName, json);
+        }
+    }
+
+    /**
+     * Sends an event to a subscription's emitter unless it was already sent by a replay; the
+     * caller holds the subscription's monitor.
+     *
+     * @return false if the emitter is closed after this event
+     */
+    private boolean sendLocked(UUID jobId, Subscription subscription, String id, String eventName, String json) {
+        if (id != null && subscription.lastSentId != null && compareLogIds(id, subscription.lastSentId) <= 0) {
+            return true;
+        }
+        SseEmitter emitter = subscription.emitter;
+        try {
+            SseEmitter.SseEventBuilder event = SseEmitter.event().name(eventName).data(json, MediaType.APPLICATION_JSON);
+            if (id != null) {
+                event.id(id);
+                subscription.lastSentId = id;
+            }
+            emitter.send(event);
+            if (COMPLETE_EVENT.equals(eventName)) {
+                emitter.complete();
+                log.info("Completed SSE emitter for job: {}", jobId);
+                remove(jobId, emitter);
+                return false;
+            }
+            log.debug("Sent SSE event '{}' for job: {}", eventName, jobId);
+            return true;
+        } catch (IOException e) {
+            log.error("Error sending SSE event '{}' for job: {} - {}", eventName, jobId, e.getMessage());
+            // Complete the emitter properly on IO error to prevent hanging connections
+            try {
+                emitter.completeWithError(e);
+            } catch (Exception ex) {
+                log.error("Error completing SSE emitter with error for job: {}", jobId, ex);
+            }
+            remove(jobId, emitter);
+            return false;
+        } catch (IllegalStateException e) {
+            log.warn("SSE emitter already completed for job: {} - {}", jobId, e.getMessage());
+            remove(jobId, emitter);
+            return false;
+        }
+    }
+
+    private static String eventLogKey(UUID jobId) {
+        return "sse:log:{job:" + jobId + "}";
+    }
+
+    private static String ownerKey(UUID jobId) {
+        return "sse:owner:{job:" + jobId + "}";
+    }
+
+    // Stream ids are <millis>-<sequence>; anything else sent as Last-Event-ID is ignored
+    private static boolean isLogId(String id) {
+        return id != null && id.matches("\\d+-\\d+");
+    }
+
+    private static int compareLogIds(String a, String b) {
+        String[] left = a.split("-");
+        String[] right = b.split("-");
+        int byMillis = Long.compare(Long.parseLong(left[0]), Long.parseLong(right[0]));
+        return byMillis != 0 ? byMillis : Long.compare(Long.parseLong(left[1]), Long.parseLong(right[1]));
+    }
+
+    @Scheduled(fixedDelayString = "${themus.sse.heartbeat-interval-ms:15000}")
+    public void sendHeartbeats() {
+        subscriptions.forEach((jobId, subscription) -> {
+            try {
+                subscription.emitter.send(SseEmitter.event().comment("heartbeat"));
+            } catch (Exception e) {
+                // The client went away
+                log.info("SSE heartbeat failed for job: {}, removing emitter - {}", jobId, e.getMessage());
+                try {
+                    subscription.emitter.completeWithError(e);
+                } catch (Exception ex) {
+                    // Already completed
+                }
+                remove(jobId, subscription.emitter);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Clients reconnect to another node
+        subscriptions.forEach((jobId, subscription) -> {
+            remove(jobId);
+            try {
+                subscription.emitter.complete();
+            } catch (Exception e) {
+                // Already completed
+            }
+        });
+    }
+}
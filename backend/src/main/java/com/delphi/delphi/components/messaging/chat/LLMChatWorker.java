@@ -9,8 +9,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
+import com.delphi.delphi.components.AgentMetrics;
 import com.delphi.delphi.configs.kafka.KafkaTopicsConfig;
 import com.delphi.delphi.dtos.cache.ChatMessageCacheDto;
 import com.delphi.delphi.dtos.messaging.chat.PublishChatJobDto;
@@ -28,22 +31,33 @@ public class LLMChatWorker {
     private final JobRepository jobRepository;
     private final ChatService chatService;
     private final AssessmentService assessmentService;
+    private final AgentMetrics agentMetrics;
     private final Logger log = LoggerFactory.getLogger(LLMChatWorker.class);  
 
-    public LLMChatWorker(JobRepository jobRepository, ChatService chatService, AssessmentService assessmentService) {
+    public LLMChatWorker(JobRepository jobRepository, ChatService chatService, AssessmentService assessmentService,
+            AgentMetrics agentMetrics) {
         this.jobRepository = jobRepository;
         this.chatService = chatService;
         this.assessmentService = assessmentService;
+        this.agentMetrics = agentMetrics;
     }
 
     @KafkaListener(topics = KafkaTopicsConfig.LLM_CHAT, containerFactory = "kafkaListenerContainerFactory")
-    public void processLLMChatJob(PublishChatJobDto publishChatJobDto) {
+    public void processLLMChatJob(PublishChatJobDto publishChatJobDto,
+            @Header(KafkaHeaders.RECEIVED_TIMESTAMP) long publishedAt) {
         final UUID jobId = publishChatJobDto.getJobId();
         Job job = null;
         try {
             job = jobRepository.findById(jobId)
                     .orElseThrow(() -> new RuntimeException("Job not found"));
+            // A redelivered job that already finished is not run again; one that was
+            // interrupted resumes from its agent checkpoint
+            if (job.getStatus() == JobStatus.COMPLETED) {
+                log.info("Job {} already completed, ignoring redelivery", jobId);
+                return;
+            }
             job.setStatus(JobStatus.RUNNING);
+            job.setQueueWaitMs(agentMetrics.recordQueueWait(job.getJobType().name(), publishedAt));
             job = jobRepository.save(job);
 
             // Send SSE event that job is running
@@ -95,6 +109,7 @@ public class LLMChatWorker {
             MessageUtils.handleJobFailure(chatService, jobRepository, job, jobId, e, "Unexpected error: " + e.getMessage());
 
         } finally {
+            MessageUtils.saveRunSummary(agentMetrics, jobRepository, job, jobId);
             // Always complete the SSE emitter, regardless of success or failure
             try {
                 chatService.completeSseEmitter(jobId);
@@ -6,6 +6,7 @@ import java.util.UUID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.delphi.delphi.components.AgentMetrics;
 import com.delphi.delphi.entities.Job;
 import com.delphi.delphi.repositories.JobRepository;
 import com.delphi.delphi.services.ChatService;
@@ -33,4 +34,20 @@ public class MessageUtils {
             log.error("Additional error while handling job failure for {}: {}", jobId, ex.getMessage());
         }
     }
+
+    // Store the totals of the job's agent run, if one was started, on the job's row
+    public static void saveRunSummary(AgentMetrics agentMetrics, JobRepository jobRepository, Job job, UUID jobId) {
+        AgentMetrics.RunSummary summary = agentMetrics.finishRun(jobId);
+        if (summary == null || job == null) {
+            return;
+        }
+        try {
+            summary.applyTo(job);
+            jobRepository.save(job);
+            log.info("Job {} finished after {} model calls, {} prompt and {} completion tokens, {} tool calls",
+                    jobId, summary.iterations(), summary.promptTokens(), summary.completionTokens(), summary.toolCalls());
+        } catch (Exception e) {
+            log.warn("Failed to save run summary for job {}: {}", jobId, e.getMessage());
+        }
+    }
 }
@@ -21,6 +21,8 @@ public class CorsConfig {
         // Specify allowed headers
         //configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "X-Requested-With"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        // Let the browser client read the rate limit headers
+        configuration.setExposedHeaders(Arrays.asList("RateLimit-Limit", "RateLimit-Remaining", "RateLimit-Reset", "RateLimit-Policy", "Retry-After"));
         // Allow credentials (cookies, authorization headers, TLS client certificates, etc.)
         configuration.setAllowCredentials(true);
         // Optionally set the max age (in seconds) to cache the CORS configuration
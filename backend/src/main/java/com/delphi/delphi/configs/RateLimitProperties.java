@@ -0,0 +1,130 @@
+package com.delphi.delphi.configs;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rate limits applied by the rate limit filter, bound from {@code themus.rate-limit.*}.
+ *
+ * Requests are matched against the route groups in order and the first group with a matching
+ * path pattern applies; everything else uses the default limit. Each group keeps its own budget
+ * per user. For example:
+ *
+ * <pre>
+ * themus.rate-limit.default-limit.requests=20
+ * themus.rate-limit.default-limit.period=1m
+ * themus.rate-limit.groups[0].name=agent
+ * themus.rate-limit.groups[0].paths=/api/assessments/new,/api/assessments/chat
+ * themus.rate-limit.groups[0].limit.requests=5
+ * themus.rate-limit.groups[0].limit.burst=2
+ * </pre>
+ */
+@Component
+@ConfigurationProperties(prefix = "themus.rate-limit")
+public class RateLimitProperties {
+
+    /**
+     * A number of requests allowed per period. Up to {@code burst} requests may be sent
+     * back to back; after that they are spaced out evenly over the period.
+     */
+    public static class LimitClass {
+        private int requests = 20;
+        private Duration period = Duration.ofMinutes(1);
+        // Defaults to the number of requests per period
+        private Integer burst;
+
+        public int getRequests() {
+            return requests;
+        }
+
+        public void setRequests(int requests) {
+            this.requests = requests;
+        }
+
+        public Duration getPeriod() {
+            return period;
+        }
+
+        public void setPeriod(Duration period) {
+            this.period = period;
+        }
+
+        public int getBurst() {
+            return burst != null ? burst : requests;
+        }
+
+        public void setBurst(Integer burst) {
+            this.burst = burst;
+        }
+
+        // Time between two requests at the sustained rate, in milliseconds
+        public long emissionIntervalMillis() {
+            return Math.max(1, period.toMillis() / Math.max(1, requests));
+        }
+    }
+
+    /**
+     * A named set of Ant-style path patterns sharing a limit.
+     */
+    public static class RouteGroup {
+        private String name;
+        private List<String> paths = new ArrayList<>();
+        private LimitClass limit = new LimitClass();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public List<String> getPaths() {
+            return paths;
+        }
+
+        public void setPaths(List<String> paths) {
+            this.paths = paths;
+        }
+
+        public LimitClass getLimit() {
+            return limit;
+        }
+
+        public void setLimit(LimitClass limit) {
+            this.limit = limit;
+        }
+    }
+
+    private boolean enabled = true;
+    private LimitClass defaultLimit = new LimitClass();
+    private List<RouteGroup> groups = new ArrayList<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public LimitClass getDefaultLimit() {
+        return defaultLimit;
+    }
+
+    public void setDefaultLimit(LimitClass defaultLimit) {
+        this.defaultLimit = defaultLimit;
+    }
+
+    public List<RouteGroup> getGroups() {
+        return groups;
+    }
+
+    public void setGroups(List<RouteGroup> groups) {
+        this.groups = groups;
+    }
+}
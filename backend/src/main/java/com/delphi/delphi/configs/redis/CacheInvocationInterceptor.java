@@ -0,0 +1,61 @@
+package com.delphi.delphi.configs.redis;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+/**
+ * Outermost advice on {@code @Cacheable} methods that remembers the call in progress on the
+ * current thread. {@link StampedeProtectedCache} uses it to load or refresh an entry by calling
+ * the method again through its proxy, so the load gets the method's transaction and other
+ * advice instead of re-running the value loader of a call that has already returned.
+ */
+class CacheInvocationInterceptor implements MethodInterceptor {
+
+    /**
+     * A call in progress. looked up is set by the first cache lookup made during the call, which
+     * is the caching advice's own; lookups made later, e.g. by the method body, are not the call's.
+     */
+    private static final class Call {
+        private final ProxyMethodInvocation invocation;
+        private boolean lookedUp;
+
+        private Call(ProxyMethodInvocation invocation) {
+            this.invocation = invocation;
+        }
+    }
+
+    private static final ThreadLocal<Call> CURRENT = new ThreadLocal<>();
+
+    // The innermost @Cacheable call on this thread if this is its first cache lookup, otherwise null
+    @Nullable
+    static ProxyMethodInvocation claimLookup() {
+        Call call = CURRENT.get();
+        if (call == null || call.lookedUp) {
+            return null;
+        }
+        call.lookedUp = true;
+        return call.invocation;
+    }
+
+    @Override
+    @Nullable
+    public Object invoke(@NonNull MethodInvocation invocation) throws Throwable {
+        if (!(invocation instanceof ProxyMethodInvocation proxyInvocation)) {
+            return invocation.proceed();
+        }
+        Call previous = CURRENT.get();
+        CURRENT.set(new Call(proxyInvocation));
+        try {
+            return invocation.proceed();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.delphi.delphi.configs.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.delphi.delphi.components.RedisService;
+import com.delphi.delphi.utils.CacheUtils;
+
+/**
+ * Actuator endpoint ({@code /actuator/cachekeyspace}) that samples the Redis keyspace with SCAN
+ * and reports, per key prefix, how many keys there are, how much memory they use and how their
+ * remaining TTLs are distributed. Prefixes holding keys without a TTL are flagged, since those
+ * keys never leave Redis on their own.
+ *
+ * Only exposed over HTTP when listed in {@code management.endpoints.web.exposure.include}.
+ */
+@Component
+@Endpoint(id = "cachekeyspace")
+public class CacheKeyspaceEndpoint {
+
+    // Number of keys requested per SCAN round trip and inspected per pipeline
+    private static final int SCAN_BATCH_SIZE = 500;
+    private static final int MAX_SAMPLE_LIMIT = 100_000;
+    // KEYS[1] key; replies {memory usage in bytes, ttl in ms}
+    private static final byte[] INSPECT_SCRIPT = """
+            return {redis.call('MEMORY', 'USAGE', KEYS[1]) or 0, redis.call('PTTL', KEYS[1])}
+            """.getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Result of a keyspace sample.
+     *
+     * @param sampledKeys The number of keys inspected
+     * @param complete    Whether the scan covered the whole keyspace
+     * @param prefixes    Statistics per key prefix, largest memory usage first
+     */
+    public record KeyspaceReport(int sampledKeys, boolean complete, List<PrefixReport> prefixes) {
+    }
+
+    /**
+     * Statistics for the sampled keys sharing a prefix.
+     *
+     * @param prefix          The key prefix, see {@link CacheUtils#keyPrefix(String)}
+     * @param keys            The number of sampled keys
+     * @param memoryBytes     Their total memory usage as reported by MEMORY USAGE
+     * @param keysWithoutTtl  The number of sampled keys that never expire
+     * @param missingTtl      Whether any sampled key never expires
+     * @param ttlDistribution Number of keys per remaining TTL range
+     */
+    public record PrefixReport(String prefix, long keys, long memoryBytes, long keysWithoutTtl, boolean missingTtl,
+            Map<String, Long> ttlDistribution) {
+    }
+
+    private final RedisService redisService;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final int defaultSampleLimit;
+
+    public CacheKeyspaceEndpoint(RedisService redisService, RedisTemplate<String, Object> redisTemplate,
+            @Value("${themus.cache.keyspace.sample-limit:10000}") int defaultSampleLimit) {
+        this.redisService = redisService;
+        this.redisTemplate = redisTemplate;
+        this.defaultSampleLimit = defaultSampleLimit;
+    }
+
+    /**
+     * Samples up to {@code limit} keys (or themus.cache.keyspace.sample-limit if not given).
+     */
+    @ReadOperation
+    public KeyspaceReport sample(@Nullable Integer limit) {
+        int sampleLimit = limit != null && limit > 0 ? Math.min(limit, MAX_SAMPLE_LIMIT) : defaultSampleLimit;
+        Map<String, PrefixStats> stats = new HashMap<>();
+        int[] sampled = {0};
+        boolean[] complete = {true};
+        // In a cluster there is one cursor per master node
+        redisService.scan(null, SCAN_BATCH_SIZE, cursor -> {
+            List<byte[]> batch = new ArrayList<>(SCAN_BATCH_SIZE);
+            while (sampled[0] < sampleLimit && cursor.hasNext()) {
+                batch.add(cursor.next());
+                sampled[0]++;
+                if (batch.size() >= SCAN_BATCH_SIZE) {
+                    inspect(batch, stats);
+                    batch.clear();
+                }
+            }
+            inspect(batch, stats);
+            complete[0] &= !cursor.hasNext();
+        });
+
+        List<PrefixReport> prefixes = stats.entrySet().stream()
+                .map(entry -> entry.getValue().toReport(entry.getKey()))
+                .sorted(Comparator.comparingLong(PrefixReport::memoryBytes).reversed())
+                .toList();
+        return new KeyspaceReport(sampled[0], complete[0], prefixes);
+    }
+
+    // Read the memory usage and TTL of a batch of keys in one pipeline
+    private void inspect(List<byte[]> keys, Map<String, PrefixStats> stats) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (byte[] key : keys) {
+                connection.scriptingCommands().eval(INSPECT_SCRIPT, ReturnType.MULTI, 1, key);
+            }
+            return null;
+        }, null);
+
+        for (int i = 0; i < keys.size(); i++) {
+            if (!(replies.get(i) instanceof List<?> reply) || reply.size() < 2
+                    || !(reply.get(0) instanceof Long memory) || !(reply.get(1) instanceof Long ttlMillis)
+                    || ttlMillis == -2) {
+                // The key expired or was deleted after it was scanned
+                continue;
+            }
+            String prefix = CacheUtils.keyPrefix(new String(keys.get(i), StandardCharsets.UTF_8));
+            stats.computeIfAbsent(prefix, p -> new PrefixStats()).add(memory, ttlMillis);
+        }
+    }
+
+    private static class PrefixStats {
+
+        private long keys;
+        private long memoryBytes;
+        private long keysWithoutTtl;
+        private final Map<String, Long> ttlDistribution = new LinkedHashMap<>();
+
+        PrefixStats() {
+            for (String bucket : List.of("none", "<1m", "1m-10m", "10m-1h", "1h-1d", ">1d")) {
+                ttlDistribution.put(bucket, 0L);
+            }
+        }
+
+        void add(long memory, long ttlMillis) {
+            keys++;
+            memoryBytes += memory;
+            if (ttlMillis < 0) {
+                keysWithoutTtl++;
+            }
+            ttlDistribution.merge(ttlBucket(ttlMillis), 1L, Long::sum);
+        }
+
+        PrefixReport toReport(String prefix) {
+            return new PrefixReport(prefix, keys, memoryBytes, keysWithoutTtl, keysWithoutTtl > 0, ttlDistribution);
+        }
+
+        private static String ttlBucket(long ttlMillis) {
+            if (ttlMillis < 0) {
+                return "none";
+            }
+            long minutes = ttlMillis / 60_000;
+            if (minutes < 1) {
+                return "<1m";
+            }
+            if (minutes < 10) {
+                return "1m-10m";
+            }
+            if (minutes < 60) {
+                return "10m-1h";
+            }
+            return minutes < 24 * 60 ? "1h-1d" : ">1d";
+        }
+    }
+}
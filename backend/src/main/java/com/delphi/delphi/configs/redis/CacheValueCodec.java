@@ -0,0 +1,19 @@
+package com.delphi.delphi.configs.redis;
+
+/**
+ * Encodes cache values to the bytes stored in Redis and back.
+ * Several codecs can be active for reading at once so that the stored format can be
+ * migrated without flushing the cache; see {@link CacheValueRedisSerializer}.
+ */
+public interface CacheValueCodec {
+
+    // Name used to select the codec in configuration
+    String name();
+
+    byte[] encode(Object value);
+
+    Object decode(byte[] bytes);
+
+    // Whether the given bytes were produced by this codec
+    boolean canDecode(byte[] bytes);
+}
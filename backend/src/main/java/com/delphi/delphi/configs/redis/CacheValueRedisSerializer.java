@@ -0,0 +1,46 @@
+package com.delphi.delphi.configs.redis;
+
+import java.util.List;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.lang.Nullable;
+
+/**
+ * Redis value serializer backed by {@link CacheValueCodec}s. Values are always written with
+ * a single codec, but are read with whichever registered codec recognises the stored bytes,
+ * so switching the write format migrates the cache gradually as entries are rewritten or expire,
+ * and switching back is equally safe.
+ */
+public class CacheValueRedisSerializer implements RedisSerializer<Object> {
+
+    private final CacheValueCodec writer;
+    private final List<CacheValueCodec> readers;
+
+    public CacheValueRedisSerializer(CacheValueCodec writer, List<CacheValueCodec> readers) {
+        this.writer = writer;
+        this.readers = readers;
+    }
+
+    @Override
+    public byte[] serialize(@Nullable Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        return writer.encode(value);
+    }
+
+    @Override
+    @Nullable
+    public Object deserialize(@Nullable byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        for (CacheValueCodec reader : readers) {
+            if (reader.canDecode(bytes)) {
+                return reader.decode(bytes);
+            }
+        }
+        throw new SerializationException("No cache value codec recognises the stored format");
+    }
+}
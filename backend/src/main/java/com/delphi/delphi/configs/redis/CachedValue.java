@@ -0,0 +1,29 @@
+package com.delphi.delphi.configs.redis;
+
+/**
+ * Envelope stored by {@link StampedeProtectedCache} around a cached value. It records
+ * when the value expires, which early refresh needs and a plain Redis GET does not return.
+ */
+public class CachedValue {
+
+    private Object value;
+    private long expiresAt;
+
+    // Default constructor for JSON deserialization
+    public CachedValue() {
+    }
+
+    public CachedValue(Object value, long expiresAt) {
+        this.value = value;
+        this.expiresAt = expiresAt;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    // Epoch milliseconds, or 0 if the value does not expire
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+}
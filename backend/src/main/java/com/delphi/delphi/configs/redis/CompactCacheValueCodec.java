@@ -0,0 +1,93 @@
+package com.delphi.delphi.configs.redis;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.springframework.data.redis.serializer.SerializationException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compact cache format. Values are written with short registered type ids instead of class
+ * names (see {@link CompactTypeIdResolver}) and payloads above a threshold are deflated,
+ * which mostly matters for large lists such as attempt lists and chat histories.
+ *
+ * Layout: {@code MAGIC, flags, payload}. The magic byte can never start a JSON document,
+ * which is how values written by {@link JsonCacheValueCodec} are told apart.
+ */
+public class CompactCacheValueCodec implements CacheValueCodec {
+
+    public static final String NAME = "compact";
+
+    static final byte MAGIC = (byte) 0xC7;
+    private static final byte FLAG_DEFLATED = 0x01;
+    private static final int HEADER_LENGTH = 2;
+
+    private final ObjectMapper objectMapper;
+    private final int deflateThreshold;
+
+    /**
+     * @param objectMapper     A mapper configured with {@link CompactTypeIdResolver#defaultTyping()}
+     * @param deflateThreshold Payloads of at least this many bytes are deflated
+     */
+    public CompactCacheValueCodec(ObjectMapper objectMapper, int deflateThreshold) {
+        this.objectMapper = objectMapper;
+        this.deflateThreshold = deflateThreshold;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        try {
+            byte[] payload = objectMapper.writeValueAsBytes(value);
+            boolean deflate = payload.length >= deflateThreshold;
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(deflate ? payload.length / 3 : payload.length + HEADER_LENGTH);
+            out.write(MAGIC);
+            out.write(deflate ? FLAG_DEFLATED : 0);
+            if (deflate) {
+                Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                try (OutputStream deflaterOut = new DeflaterOutputStream(out, deflater)) {
+                    deflaterOut.write(payload);
+                } finally {
+                    deflater.end();
+                }
+            } else {
+                out.write(payload);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Could not write compact cache value: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object decode(byte[] bytes) {
+        try {
+            if ((bytes[1] & FLAG_DEFLATED) == 0) {
+                return objectMapper.readValue(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH, Object.class);
+            }
+            try (InputStream payload = new InflaterInputStream(
+                    new ByteArrayInputStream(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH))) {
+                return objectMapper.readValue(payload, Object.class);
+            }
+        } catch (IOException e) {
+            throw new SerializationException("Could not read compact cache value: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean canDecode(byte[] bytes) {
+        return bytes.length >= HEADER_LENGTH && bytes[0] == MAGIC;
+    }
+}
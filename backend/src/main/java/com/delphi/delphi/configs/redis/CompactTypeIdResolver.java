@@ -0,0 +1,117 @@
+package com.delphi.delphi.configs.redis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import com.delphi.delphi.dtos.FetchToolCallDto;
+import com.delphi.delphi.dtos.FetchToolResponseDto;
+import com.delphi.delphi.dtos.PaginatedResponseDto;
+import com.delphi.delphi.dtos.cache.AssessmentCacheDto;
+import com.delphi.delphi.dtos.cache.CandidateAttemptCacheDto;
+import com.delphi.delphi.dtos.cache.CandidateCacheDto;
+import com.delphi.delphi.dtos.cache.ChatMessageCacheDto;
+import com.delphi.delphi.dtos.cache.EvaluationCacheDto;
+import com.delphi.delphi.dtos.cache.RefreshTokenCacheDto;
+import com.delphi.delphi.dtos.cache.UserCacheDto;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DatabindContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.cfg.MapperConfig;
+import com.fasterxml.jackson.databind.jsontype.NamedType;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.TypeIdResolver;
+import com.fasterxml.jackson.databind.jsontype.TypeResolverBuilder;
+import com.fasterxml.jackson.databind.jsontype.impl.ClassNameIdResolver;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+
+/**
+ * Type id resolver that writes short registered ids for the cache DTOs and common collection
+ * types, and falls back to class names for anything else.
+ *
+ * Ids are persisted in Redis, so an id must never be reused or reassigned once released;
+ * new types get new ids.
+ */
+class CompactTypeIdResolver extends ClassNameIdResolver {
+
+    private static final Map<String, Class<?>> TYPES_BY_ID = Map.ofEntries(
+            Map.entry("#1", AssessmentCacheDto.class),
+            Map.entry("#2", CandidateAttemptCacheDto.class),
+            Map.entry("#3", CandidateCacheDto.class),
+            Map.entry("#4", ChatMessageCacheDto.class),
+            Map.entry("#5", EvaluationCacheDto.class),
+            Map.entry("#6", RefreshTokenCacheDto.class),
+            Map.entry("#7", UserCacheDto.class),
+            Map.entry("#8", FetchToolCallDto.class),
+            Map.entry("#9", FetchToolResponseDto.class),
+            Map.entry("#10", PaginatedResponseDto.class),
+            Map.entry("#11", CachedValue.class),
+            Map.entry("#20", ArrayList.class),
+            Map.entry("#21", LinkedList.class),
+            Map.entry("#22", HashMap.class),
+            Map.entry("#23", LinkedHashMap.class),
+            Map.entry("#24", TreeMap.class),
+            Map.entry("#25", HashSet.class),
+            Map.entry("#26", LinkedHashSet.class));
+
+    private static final Map<Class<?>, String> IDS_BY_TYPE = TYPES_BY_ID.entrySet().stream()
+            .collect(Collectors.toUnmodifiableMap(Map.Entry::getValue, Map.Entry::getKey));
+
+    CompactTypeIdResolver(JavaType baseType, TypeFactory typeFactory, Collection<NamedType> subtypes,
+            PolymorphicTypeValidator validator) {
+        super(baseType, typeFactory, subtypes, validator);
+    }
+
+    /**
+     * Default typing equivalent to the JSON codec's NON_FINAL / WRAPPER_ARRAY setup,
+     * but resolving type ids through this class.
+     */
+    static TypeResolverBuilder<?> defaultTyping() {
+        TypeResolverBuilder<?> typer = new ObjectMapper.DefaultTypeResolverBuilder(
+                ObjectMapper.DefaultTyping.NON_FINAL, LaissezFaireSubTypeValidator.instance) {
+            @Override
+            protected TypeIdResolver idResolver(MapperConfig<?> config, JavaType baseType,
+                    PolymorphicTypeValidator subtypeValidator, Collection<NamedType> subtypes,
+                    boolean forSer, boolean forDeser) {
+                return new CompactTypeIdResolver(baseType, config.getTypeFactory(), subtypes, subtypeValidator);
+            }
+        };
+        return typer.init(JsonTypeInfo.Id.CLASS, null).inclusion(JsonTypeInfo.As.WRAPPER_ARRAY);
+    }
+
+    @Override
+    public String idFromValue(Object value) {
+        String id = IDS_BY_TYPE.get(value.getClass());
+        return id != null ? id : super.idFromValue(value);
+    }
+
+    @Override
+    public String idFromValueAndType(Object value, Class<?> type) {
+        String id = IDS_BY_TYPE.get(type);
+        return id != null ? id : super.idFromValueAndType(value, type);
+    }
+
+    @Override
+    public JavaType typeFromId(DatabindContext context, String id) throws IOException {
+        Class<?> type = TYPES_BY_ID.get(id);
+        if (type != null) {
+            return context.getTypeFactory().constructSpecializedType(_baseType, type);
+        }
+        return super.typeFromId(context, id);
+    }
+
+    @Override
+    public String getDescForKnownTypeIds() {
+        return "registered compact type id or class name";
+    }
+}
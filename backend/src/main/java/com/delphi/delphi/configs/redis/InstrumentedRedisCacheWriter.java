@@ -0,0 +1,111 @@
+package com.delphi.delphi.configs.redis;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import com.delphi.delphi.components.CacheMetrics;
+
+/**
+ * Cache writer that records the serialized size of every value Spring caches write to Redis.
+ * This is the only layer that sees both the cache name and the encoded bytes; hits, misses
+ * and evictions come from the statistics the wrapped writer already collects.
+ */
+class InstrumentedRedisCacheWriter implements RedisCacheWriter {
+
+    private final RedisCacheWriter delegate;
+    private final CacheMetrics cacheMetrics;
+
+    InstrumentedRedisCacheWriter(RedisCacheWriter delegate, CacheMetrics cacheMetrics) {
+        this.delegate = delegate;
+        this.cacheMetrics = cacheMetrics;
+    }
+
+    @Override
+    @Nullable
+    public byte[] get(@NonNull String name, @NonNull byte[] key) {
+        return delegate.get(name, key);
+    }
+
+    @Override
+    @Nullable
+    public byte[] get(@NonNull String name, @NonNull byte[] key, @Nullable Duration ttl) {
+        return delegate.get(name, key, ttl);
+    }
+
+    @Override
+    @Nullable
+    public byte[] get(@NonNull String name, @NonNull byte[] key, @NonNull Supplier<byte[]> valueLoader,
+            @Nullable Duration ttl, boolean timeToIdleEnabled) {
+        return delegate.get(name, key, () -> recordPayload(name, valueLoader.get()), ttl, timeToIdleEnabled);
+    }
+
+    @Override
+    public boolean supportsAsyncRetrieve() {
+        return delegate.supportsAsyncRetrieve();
+    }
+
+    @Override
+    @NonNull
+    public CompletableFuture<byte[]> retrieve(@NonNull String name, @NonNull byte[] key, @Nullable Duration ttl) {
+        return delegate.retrieve(name, key, ttl);
+    }
+
+    @Override
+    public void put(@NonNull String name, @NonNull byte[] key, @NonNull byte[] value, @Nullable Duration ttl) {
+        delegate.put(name, key, recordPayload(name, value), ttl);
+    }
+
+    @Override
+    @NonNull
+    public CompletableFuture<Void> store(@NonNull String name, @NonNull byte[] key, @NonNull byte[] value,
+            @Nullable Duration ttl) {
+        return delegate.store(name, key, recordPayload(name, value), ttl);
+    }
+
+    @Override
+    @Nullable
+    public byte[] putIfAbsent(@NonNull String name, @NonNull byte[] key, @NonNull byte[] value, @Nullable Duration ttl) {
+        return delegate.putIfAbsent(name, key, recordPayload(name, value), ttl);
+    }
+
+    @Override
+    public void remove(@NonNull String name, @NonNull byte[] key) {
+        delegate.remove(name, key);
+    }
+
+    @Override
+    public void clean(@NonNull String name, @NonNull byte[] pattern) {
+        delegate.clean(name, pattern);
+    }
+
+    @Override
+    public void clearStatistics(@NonNull String name) {
+        delegate.clearStatistics(name);
+    }
+
+    @Override
+    @NonNull
+    public RedisCacheWriter withStatisticsCollector(@NonNull CacheStatisticsCollector cacheStatisticsCollector) {
+        return new InstrumentedRedisCacheWriter(delegate.withStatisticsCollector(cacheStatisticsCollector), cacheMetrics);
+    }
+
+    @Override
+    @NonNull
+    public CacheStatistics getCacheStatistics(@NonNull String cacheName) {
+        return delegate.getCacheStatistics(cacheName);
+    }
+
+    private byte[] recordPayload(String name, byte[] value) {
+        if (value != null) {
+            cacheMetrics.recordPayload(name, "cache:" + name, value.length);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,59 @@
+package com.delphi.delphi.configs.redis;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded in-process cache used as the first tier of a {@link NearCache}.
+ * Entries are evicted least-recently-used once the store is full, and are
+ * treated as absent once they are older than the configured time to live.
+ */
+class LocalCacheStore {
+
+    private record Entry(Object value, long expiresAtNanos) {
+    }
+
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries;
+
+    LocalCacheStore(int maxSize, Duration ttl) {
+        this.ttlNanos = ttl.toNanos();
+        // access-ordered so the eldest entry is always the least recently used one
+        this.entries = new LinkedHashMap<>(Math.min(maxSize, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    // Returns the cached value, or null if it is missing or expired
+    synchronized Object get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAtNanos() > 0) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value();
+    }
+
+    synchronized void put(String key, Object value) {
+        entries.put(key, new Entry(value, System.nanoTime() + ttlNanos));
+    }
+
+    synchronized void evict(String key) {
+        entries.remove(key);
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,192 @@
+package com.delphi.delphi.configs.redis;
+
+import java.util.concurrent.Callable;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Two-tier cache: a bounded in-process store (L1) in front of a Redis cache (L2).
+ * Reads are served from L1 when possible and fall back to Redis, populating L1 on the way.
+ * Every write or eviction is applied to both tiers and then broadcast through the
+ * {@link NearCacheManager} so other nodes drop their L1 copy of the key.
+ *
+ * Values served from L1 are shared instances, so callers must not mutate what they get back.
+ */
+class NearCache implements Cache {
+
+    private final Cache redisCache;
+    private final LocalCacheStore localStore;
+    private final NearCacheManager manager;
+
+    private final Counter l1Hits;
+    private final Counter l1Misses;
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+
+    NearCache(Cache redisCache, NearCacheSpec spec, NearCacheManager manager, MeterRegistry meterRegistry) {
+        this.redisCache = redisCache;
+        this.localStore = new LocalCacheStore(spec.maxSize(), spec.ttl());
+        this.manager = manager;
+
+        String name = redisCache.getName();
+        this.l1Hits = requestCounter(meterRegistry, name, "l1", "hit");
+        this.l1Misses = requestCounter(meterRegistry, name, "l1", "miss");
+        this.l2Hits = requestCounter(meterRegistry, name, "l2", "hit");
+        this.l2Misses = requestCounter(meterRegistry, name, "l2", "miss");
+        Gauge.builder("cache.near.size", localStore, LocalCacheStore::size)
+                .tag("cache", name)
+                .description("Number of entries held in the in-process tier")
+                .register(meterRegistry);
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String cacheName, String tier, String result) {
+        return Counter.builder("cache.near.requests")
+                .tag("cache", cacheName)
+                .tag("tier", tier)
+                .tag("result", result)
+                .description("Cache lookups per tier")
+                .register(meterRegistry);
+    }
+
+    @Override
+    @NonNull
+    public String getName() {
+        return redisCache.getName();
+    }
+
+    @Override
+    @NonNull
+    public Object getNativeCache() {
+        return redisCache.getNativeCache();
+    }
+
+    @Override
+    @Nullable
+    public ValueWrapper get(@NonNull Object key) {
+        String localKey = toLocalKey(key);
+        Object local = localStore.get(localKey);
+        if (local != null) {
+            l1Hits.increment();
+            return new SimpleValueWrapper(local);
+        }
+        l1Misses.increment();
+
+        ValueWrapper remote = redisCache.get(key);
+        if (remote == null || remote.get() == null) {
+            l2Misses.increment();
+            return remote;
+        }
+        l2Hits.increment();
+        localStore.put(localKey, remote.get());
+        return remote;
+    }
+
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NonNull Object key, @Nullable Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NonNull Object key, @NonNull Callable<T> valueLoader) {
+        String localKey = toLocalKey(key);
+        Object local = localStore.get(localKey);
+        if (local != null) {
+            l1Hits.increment();
+            return (T) local;
+        }
+        l1Misses.increment();
+
+        T value = redisCache.get(key, valueLoader);
+        if (value != null) {
+            localStore.put(localKey, value);
+        }
+        return value;
+    }
+
+    @Override
+    public void put(@NonNull Object key, @Nullable Object value) {
+        redisCache.put(key, value);
+        String localKey = toLocalKey(key);
+        if (value != null) {
+            localStore.put(localKey, value);
+        } else {
+            localStore.evict(localKey);
+        }
+        manager.publishEviction(getName(), localKey);
+    }
+
+    @Override
+    @Nullable
+    public ValueWrapper putIfAbsent(@NonNull Object key, @Nullable Object value) {
+        ValueWrapper existing = redisCache.putIfAbsent(key, value);
+        String localKey = toLocalKey(key);
+        localStore.evict(localKey);
+        if (existing == null) {
+            manager.publishEviction(getName(), localKey);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(@NonNull Object key) {
+        redisCache.evict(key);
+        String localKey = toLocalKey(key);
+        localStore.evict(localKey);
+        manager.publishEviction(getName(), localKey);
+    }
+
+    @Override
+    public boolean evictIfPresent(@NonNull Object key) {
+        boolean evicted = redisCache.evictIfPresent(key);
+        String localKey = toLocalKey(key);
+        localStore.evict(localKey);
+        manager.publishEviction(getName(), localKey);
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        redisCache.clear();
+        localStore.clear();
+        manager.publishClear(getName());
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean invalidated = redisCache.invalidate();
+        localStore.clear();
+        manager.publishClear(getName());
+        return invalidated;
+    }
+
+    // Called when another node changed this cache
+    void evictLocal(String localKey) {
+        localStore.evict(localKey);
+    }
+
+    void clearLocal() {
+        localStore.clear();
+    }
+
+    // RedisCache converts keys to strings as well, so two keys that collide in Redis also collide here
+    private static String toLocalKey(Object key) {
+        return String.valueOf(key);
+    }
+}
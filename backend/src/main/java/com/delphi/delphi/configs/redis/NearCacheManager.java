@@ -0,0 +1,169 @@
+package com.delphi.delphi.configs.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.actuate.metrics.cache.RedisCacheMetrics;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import com.delphi.delphi.components.CacheLoadGuard;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * Cache manager that layers an in-process tier over the caches of a {@link RedisCacheManager}.
+ * Caches with a {@link NearCacheSpec} are served through a {@link NearCache}; every other cache
+ * goes straight to Redis. Writes and evictions are broadcast on a Redis pub/sub channel so that
+ * every node drops its in-process copy of the affected key.
+ *
+ * Invalidation messages have the form {@code <op>|<nodeId>|<cacheName>|<key>}, where op is
+ * {@code E} for a single key and {@code C} for the whole cache.
+ *
+ * When a {@link CacheLoadGuard} is given, every cache is additionally wrapped in a
+ * {@link StampedeProtectedCache} so {@code @Cacheable} loads are coalesced and refreshed early.
+ *
+ * Caches that the optional replica cache manager also knows are read through it, i.e. from
+ * replicas; writes, evictions and stampede polls of those caches still go to the primary.
+ */
+public class NearCacheManager implements CacheManager, MessageListener, InitializingBean {
+
+    public static final String INVALIDATION_CHANNEL = "cache:near:invalidation";
+
+    private static final Logger log = LoggerFactory.getLogger(NearCacheManager.class);
+
+    private final RedisCacheManager redisCacheManager;
+    @Nullable
+    private final RedisCacheManager replicaCacheManager;
+    private final Map<String, NearCacheSpec> specs;
+    private final StringRedisTemplate publisher;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+    private final CacheLoadGuard loadGuard;
+    private final boolean transactionAware;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+    private final Map<String, NearCache> nearCaches = new ConcurrentHashMap<>();
+
+    public NearCacheManager(RedisCacheManager redisCacheManager, @Nullable RedisCacheManager replicaCacheManager,
+            Map<String, NearCacheSpec> specs, StringRedisTemplate publisher,
+            RedisMessageListenerContainer listenerContainer, MeterRegistry meterRegistry,
+            @Nullable CacheLoadGuard loadGuard, boolean transactionAware) {
+        this.redisCacheManager = redisCacheManager;
+        this.replicaCacheManager = replicaCacheManager;
+        this.specs = specs;
+        this.publisher = publisher;
+        this.listenerContainer = listenerContainer;
+        this.meterRegistry = meterRegistry;
+        this.loadGuard = loadGuard;
+        this.transactionAware = transactionAware;
+    }
+
+    // Subscribed once constructed, so the container never sees a partially built listener
+    @Override
+    public void afterPropertiesSet() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    @Override
+    @Nullable
+    public Cache getCache(@NonNull String name) {
+        Cache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache redisCache = redisCacheManager.getCache(name);
+        if (redisCache == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, cacheName -> decorate(redisCache));
+    }
+
+    private Cache decorate(Cache primaryCache) {
+        Cache replicaCache = replicaCacheManager != null ? replicaCacheManager.getCache(primaryCache.getName()) : null;
+        Cache redisCache = replicaCache != null ? replicaCache : primaryCache;
+        if (redisCache instanceof RedisCache rawCache) {
+            // Spring Boot only binds metrics for caches it can unwrap, which the decorators below hide
+            new RedisCacheMetrics(rawCache, Tags.of("cache.manager", "cacheManager")).bindTo(meterRegistry);
+        }
+        Cache cache = redisCache;
+        NearCacheSpec spec = specs.get(redisCache.getName());
+        if (spec != null) {
+            NearCache nearCache = new NearCache(redisCache, spec, this, meterRegistry);
+            nearCaches.put(redisCache.getName(), nearCache);
+            cache = nearCache;
+        }
+        StampedeProtectedCache stampedeProtectedCache = null;
+        if (loadGuard != null && redisCache instanceof RedisCache rawCache) {
+            stampedeProtectedCache = new StampedeProtectedCache(cache,
+                    rawCache.getCacheConfiguration().getTtlFunction(), loadGuard, primaryCache);
+            cache = stampedeProtectedCache;
+        }
+        // Defer puts and evictions until commit, as RedisCacheManager.transactionAware() would,
+        // so the in-process tier never holds a value from a rolled back transaction
+        Cache decorated = transactionAware ? new TransactionAwareCacheDecorator(cache) : cache;
+        if (stampedeProtectedCache != null) {
+            // Values the guard loads are put through the decorator too
+            stampedeProtectedCache.putThrough(decorated);
+        }
+        return decorated;
+    }
+
+    @Override
+    @NonNull
+    public Collection<String> getCacheNames() {
+        return redisCacheManager.getCacheNames();
+    }
+
+    void publishEviction(String cacheName, String key) {
+        publish("E|" + nodeId + "|" + cacheName + "|" + key);
+    }
+
+    void publishClear(String cacheName) {
+        publish("C|" + nodeId + "|" + cacheName + "|");
+    }
+
+    private void publish(String message) {
+        try {
+            publisher.convertAndSend(INVALIDATION_CHANNEL, message);
+        } catch (Exception e) {
+            // Other nodes fall back to the in-process TTL if the message is lost
+            log.warn("Failed to publish near cache invalidation '{}': {}", message, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(@NonNull Message message, @Nullable byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 4);
+        if (parts.length < 4 || nodeId.equals(parts[1])) {
+            return;
+        }
+        NearCache nearCache = nearCaches.get(parts[2]);
+        if (nearCache == null) {
+            return;
+        }
+        if ("C".equals(parts[0])) {
+            nearCache.clearLocal();
+        } else {
+            nearCache.evictLocal(parts[3]);
+        }
+    }
+}
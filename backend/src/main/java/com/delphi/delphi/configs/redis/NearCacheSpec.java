@@ -0,0 +1,13 @@
+package com.delphi.delphi.configs.redis;
+
+import java.time.Duration;
+
+/**
+ * Sizing of the in-process tier for a single cache.
+ *
+ * @param maxSize The maximum number of entries held in memory
+ * @param ttl     How long an entry may be served from memory before Redis is consulted again.
+ *                Keep this short: it bounds staleness if an invalidation message is lost.
+ */
+public record NearCacheSpec(int maxSize, Duration ttl) {
+}
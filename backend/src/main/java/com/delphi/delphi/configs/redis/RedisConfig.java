@@ -2,35 +2,52 @@ package com.delphi.delphi.configs.redis;
 
 import java.lang.reflect.Method;
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.CachingConfigurer;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.interceptor.CacheErrorHandler;
 import org.springframework.cache.interceptor.KeyGenerator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
 import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisSentinelConfiguration;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
-import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 
+import com.delphi.delphi.components.CacheLoadGuard;
+import com.delphi.delphi.components.CacheMetrics;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
@@ -39,8 +56,16 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Configuration
-@EnableCaching
+// Ahead of the transaction interceptor, so a cached method waiting for another node's load
+// does not hold a transaction and its connection; loads run in a transaction of their own
+@EnableCaching(order = 0)
 public class RedisConfig implements CachingConfigurer {
 
     private final String REDIS_HOST;
@@ -52,6 +77,13 @@ public class RedisConfig implements CachingConfigurer {
     private final int REDIS_MIN_IDLE;
     private final int REDIS_MAX_WAIT;
     private final int REDIS_TIMEOUT;
+    private final String CACHE_SERIALIZATION_FORMAT;
+    private final String REDIS_MODE;
+    private final String REDIS_READ_FROM;
+    private final String REDIS_SENTINEL_MASTER;
+    private final List<String> REDIS_SENTINEL_NODES;
+    private final List<String> REDIS_CLUSTER_NODES;
+    private final int REDIS_CLUSTER_MAX_REDIRECTS;
     private static final Logger logger = LoggerFactory.getLogger(RedisConfig.class);
 
     public RedisConfig(@Value("${spring.data.redis.host}") String redisHost,
@@ -62,7 +94,14 @@ public class RedisConfig implements CachingConfigurer {
             @Value("${spring.data.redis.lettuce.pool.max-idle}") int redisMaxIdle,
             @Value("${spring.data.redis.lettuce.pool.min-idle}") int redisMinIdle,
             @Value("${spring.data.redis.lettuce.pool.max-wait}") int redisMaxWait,
-            @Value("${spring.data.redis.lettuce.shutdown-timeout}") int redisTimeout) {
+            @Value("${spring.data.redis.lettuce.shutdown-timeout}") int redisTimeout,
+            @Value("${themus.cache.serialization.format:json}") String cacheSerializationFormat,
+            @Value("${themus.redis.mode:standalone}") String redisMode,
+            @Value("${themus.redis.read-from:replicaPreferred}") String redisReadFrom,
+            @Value("${spring.data.redis.sentinel.master:}") String redisSentinelMaster,
+            @Value("${spring.data.redis.sentinel.nodes:}") List<String> redisSentinelNodes,
+            @Value("${spring.data.redis.cluster.nodes:}") List<String> redisClusterNodes,
+            @Value("${spring.data.redis.cluster.max-redirects:3}") int redisClusterMaxRedirects) {
         this.REDIS_HOST = redisHost;
         this.REDIS_PORT = redisPort;
         this.REDIS_DATABASE = redisDatabase;
@@ -72,6 +111,13 @@ public class RedisConfig implements CachingConfigurer {
         this.REDIS_MIN_IDLE = redisMinIdle;
         this.REDIS_MAX_WAIT = redisMaxWait;
         this.REDIS_TIMEOUT = redisTimeout;
+        this.CACHE_SERIALIZATION_FORMAT = cacheSerializationFormat;
+        this.REDIS_MODE = redisMode;
+        this.REDIS_READ_FROM = redisReadFrom;
+        this.REDIS_SENTINEL_MASTER = redisSentinelMaster;
+        this.REDIS_SENTINEL_NODES = redisSentinelNodes;
+        this.REDIS_CLUSTER_NODES = redisClusterNodes;
+        this.REDIS_CLUSTER_MAX_REDIRECTS = redisClusterMaxRedirects;
     }
 
     @Bean
@@ -88,14 +134,38 @@ public class RedisConfig implements CachingConfigurer {
         };
     }
 
+    // Outermost advice on @Cacheable methods, so guarded loads and early refreshes can call them through their proxy
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor cacheInvocationAdvisor() {
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(
+                AnnotationMatchingPointcut.forMethodAnnotation(Cacheable.class), new CacheInvocationInterceptor());
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return advisor;
+    }
+
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory) {
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        return container;
+    }
+
+    @Bean
+    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory,
+            RedisMessageListenerContainer redisMessageListenerContainer,
+            StringRedisTemplate stringRedisTemplate,
+            MeterRegistry meterRegistry,
+            CacheLoadGuard cacheLoadGuard,
+            CacheMetrics cacheMetrics,
+            @Value("${themus.cache.near.enabled:true}") boolean nearCacheEnabled,
+            @Value("${themus.redis.replica-read-caches:}") List<String> replicaReadCaches) {
         // Default cache configuration
         RedisCacheConfiguration defaultCacheConfig = RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(Duration.ofMinutes(30)) // Default 30 minutes
                 .disableCachingNullValues()
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(jackson2JsonRedisSerializer(createObjectMapper())))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(cacheValueSerializer()))
                 .computePrefixWith(cacheName -> "cache:" + cacheName + ":");
 
         // Cache-specific configurations
@@ -109,12 +179,51 @@ public class RedisConfig implements CachingConfigurer {
             "rate-limits", defaultCacheConfig.entryTtl(Duration.ofMinutes(1))
         );
 
-        return RedisCacheManager.builder(redisConnectionFactory)
+        // Transaction awareness is applied by the near cache manager around both tiers.
+        // The writer records payload sizes; hit, miss and eviction statistics are bound
+        // to Micrometer by the near cache manager as each cache is created
+        RedisCacheWriter cacheWriter = new InstrumentedRedisCacheWriter(
+                RedisCacheWriter.nonLockingRedisCacheWriter(redisConnectionFactory), cacheMetrics);
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(cacheWriter)
                 .cacheDefaults(defaultCacheConfig)
                 .withInitialCacheConfigurations(cacheConfigurations)
-                .transactionAware()
                 .enableStatistics() // Enable cache statistics
                 .build();
+        redisCacheManager.afterPropertiesSet();
+
+        // Caches opted in to replica reads are read through a second manager on the replica
+        // reading factory; only caches that tolerate replication lag should be listed, since a
+        // read right after a write or an eviction may still see the old value
+        RedisCacheManager replicaCacheManager = null;
+        List<String> replicaCaches = replicaReadCaches.stream().filter(name -> !name.isBlank()).toList();
+        if (!replicaCaches.isEmpty() && !REDIS_MODE.equalsIgnoreCase("standalone")) {
+            Map<String, RedisCacheConfiguration> replicaCacheConfigurations = new HashMap<>();
+            replicaCaches.forEach(name -> replicaCacheConfigurations.put(name,
+                    cacheConfigurations.getOrDefault(name, defaultCacheConfig)));
+            replicaCacheManager = RedisCacheManager.builder(new InstrumentedRedisCacheWriter(
+                            RedisCacheWriter.nonLockingRedisCacheWriter(replicaReadConnectionFactory()), cacheMetrics))
+                    .cacheDefaults(defaultCacheConfig)
+                    .withInitialCacheConfigurations(replicaCacheConfigurations)
+                    .disableCreateOnMissingCache()
+                    .enableStatistics()
+                    .build();
+            replicaCacheManager.afterPropertiesSet();
+            logger.info("Reading caches {} from Redis replicas ({})", replicaCaches, REDIS_READ_FROM);
+        }
+
+        // In-process tier for the caches read on most requests; TTLs are kept short since
+        // they bound how stale a node can be if an invalidation message is missed
+        Map<String, NearCacheSpec> nearCacheSpecs = !nearCacheEnabled ? Map.of() : Map.of(
+            "users", new NearCacheSpec(10_000, Duration.ofMinutes(2)),
+            "assessments", new NearCacheSpec(5_000, Duration.ofMinutes(1)),
+            "candidates", new NearCacheSpec(5_000, Duration.ofMinutes(1)),
+            "attempts", new NearCacheSpec(10_000, Duration.ofMinutes(1)),
+            "evaluations", new NearCacheSpec(2_000, Duration.ofMinutes(1))
+        );
+
+        // @Cacheable loads are coalesced and refreshed ahead of expiry by the load guard
+        return new NearCacheManager(redisCacheManager, replicaCacheManager, nearCacheSpecs, stringRedisTemplate,
+                redisMessageListenerContainer, meterRegistry, cacheLoadGuard, true);
     }
 
     @Override
@@ -147,62 +256,98 @@ public class RedisConfig implements CachingConfigurer {
         };
     }
 
-    // @Bean
-    // public CacheMetricsRegistrar cacheMetricsRegistrar() {
-    //     return new CacheMetricsRegistrar();
-    // }
-
     @Bean
-    public RedisTemplate<String, Object> redisTemplate() {
-        return getTemplate(redisConnectionFactory());
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory) {
+        return getTemplate(redisConnectionFactory);
     }
 
-    private RedisConnectionFactory redisConnectionFactory() {
-        return connectionFactory(REDIS_MAX_ACTIVE, REDIS_MAX_IDLE, REDIS_MIN_IDLE, REDIS_MAX_WAIT, REDIS_HOST,
-                REDIS_PASSWORD, REDIS_TIMEOUT, REDIS_PORT, REDIS_DATABASE);
+    /**
+     * The connection factory shared by every template, the cache manager and the pub/sub
+     * listener container. themus.redis.mode selects the topology:
+     * <ul>
+     * <li>standalone - spring.data.redis.host/port/database</li>
+     * <li>sentinel - spring.data.redis.sentinel.master and spring.data.redis.sentinel.nodes</li>
+     * <li>cluster - spring.data.redis.cluster.nodes</li>
+     * </ul>
+     * Every command goes to the primary, so ownership records, checkpoints, summaries, leases
+     * and anything read right after it was written are never read stale from a replica. Caches
+     * listed in themus.redis.replica-read-caches are read through
+     * {@link #replicaReadConnectionFactory()} instead.
+     *
+     * @return
+     */
+    @Bean
+    @Primary
+    public LettuceConnectionFactory redisConnectionFactory() {
+        return connectionFactory(null);
     }
 
     /**
-     * Creates a connection factory for the Redis database
-     * 
-     * @param maxActive
-     * @param maxIdle
-     * @param minIdle
-     * @param maxWait
-     * @param host
-     * @param password
-     * @param timeout
-     * @param port
-     * @param database
+     * A second connection factory on the same topology whose read-only commands (GET, MGET,
+     * PTTL...) are served according to themus.redis.read-from, replicas first by default; writes
+     * and Lua scripts still go to the primary. Only created with Sentinel or Cluster when a cache
+     * opts in to replica reads, and not injected anywhere else.
+     *
      * @return
      */
-    private RedisConnectionFactory connectionFactory(Integer maxActive,
-            Integer maxIdle,
-            Integer minIdle,
-            Integer maxWait,
-            String host,
-            String password,
-            Integer timeout,
-            Integer port,
-            Integer database) {
-        RedisStandaloneConfiguration redisStandaloneConfiguration = new RedisStandaloneConfiguration();
-        redisStandaloneConfiguration.setHostName(host);
-        redisStandaloneConfiguration.setPort(port);
-        redisStandaloneConfiguration.setDatabase(database);
-        redisStandaloneConfiguration.setPassword(RedisPassword.of(password));
+    @Bean(autowireCandidate = false)
+    @Lazy
+    public LettuceConnectionFactory replicaReadConnectionFactory() {
+        return connectionFactory(ReadFrom.valueOf(REDIS_READ_FROM));
+    }
 
-        GenericObjectPoolConfig poolConfig = new GenericObjectPoolConfig();
-        poolConfig.setMaxTotal(maxActive);
-        poolConfig.setMinIdle(minIdle);
-        poolConfig.setMaxIdle(maxIdle);
-        poolConfig.setMaxWait(Duration.ofMillis(maxWait));
-        LettuceClientConfiguration lettucePoolingConfig = LettucePoolingClientConfiguration.builder()
-                .poolConfig(poolConfig).shutdownTimeout(Duration.ofMillis(timeout)).build();
-        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(redisStandaloneConfiguration,
-                lettucePoolingConfig);
-        connectionFactory.afterPropertiesSet();
+    // A factory for themus.redis.mode; readFrom is only applied to Sentinel and Cluster, null reads the primary
+    private LettuceConnectionFactory connectionFactory(@Nullable ReadFrom readFrom) {
+        GenericObjectPoolConfig<StatefulConnection<?, ?>> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setMaxTotal(REDIS_MAX_ACTIVE);
+        poolConfig.setMinIdle(REDIS_MIN_IDLE);
+        poolConfig.setMaxIdle(REDIS_MAX_IDLE);
+        poolConfig.setMaxWait(Duration.ofMillis(REDIS_MAX_WAIT));
+        LettucePoolingClientConfiguration.LettucePoolingClientConfigurationBuilder clientConfig =
+                LettucePoolingClientConfiguration.builder()
+                        .poolConfig(poolConfig)
+                        .shutdownTimeout(Duration.ofMillis(REDIS_TIMEOUT));
 
-        return connectionFactory;
+        switch (REDIS_MODE.toLowerCase()) {
+            case "sentinel" -> {
+                RedisSentinelConfiguration sentinelConfiguration = new RedisSentinelConfiguration(
+                        REDIS_SENTINEL_MASTER, new HashSet<>(REDIS_SENTINEL_NODES));
+                sentinelConfiguration.setDatabase(REDIS_DATABASE);
+                sentinelConfiguration.setPassword(RedisPassword.of(REDIS_PASSWORD));
+                if (readFrom != null) {
+                    clientConfig.readFrom(readFrom);
+                }
+                logger.info("Connecting to Redis through Sentinel master '{}', reading from {}", REDIS_SENTINEL_MASTER,
+                        readFrom != null ? readFrom : ReadFrom.UPSTREAM);
+                return new LettuceConnectionFactory(sentinelConfiguration, clientConfig.build());
+            }
+            case "cluster" -> {
+                RedisClusterConfiguration clusterConfiguration = new RedisClusterConfiguration(REDIS_CLUSTER_NODES);
+                clusterConfiguration.setMaxRedirects(REDIS_CLUSTER_MAX_REDIRECTS);
+                clusterConfiguration.setPassword(RedisPassword.of(REDIS_PASSWORD));
+                // Follow failovers and resharding without waiting for a MOVED error on every node
+                ClusterTopologyRefreshOptions topologyRefresh = ClusterTopologyRefreshOptions.builder()
+                        .enablePeriodicRefresh(Duration.ofSeconds(30))
+                        .enableAllAdaptiveRefreshTriggers()
+                        .build();
+                clientConfig.clientOptions(ClusterClientOptions.builder().topologyRefreshOptions(topologyRefresh).build());
+                if (readFrom != null) {
+                    clientConfig.readFrom(readFrom);
+                }
+                logger.info("Connecting to Redis Cluster, reading from {}", readFrom != null ? readFrom : ReadFrom.UPSTREAM);
+                return new LettuceConnectionFactory(clusterConfiguration, clientConfig.build());
+            }
+            case "standalone" -> {
+                RedisStandaloneConfiguration standaloneConfiguration = new RedisStandaloneConfiguration();
+                standaloneConfiguration.setHostName(REDIS_HOST);
+                standaloneConfiguration.setPort(REDIS_PORT);
+                standaloneConfiguration.setDatabase(REDIS_DATABASE);
+                standaloneConfiguration.setPassword(RedisPassword.of(REDIS_PASSWORD));
+                return new LettuceConnectionFactory(standaloneConfiguration, clientConfig.build());
+            }
+            default -> throw new IllegalArgumentException("Unknown Redis mode: " + REDIS_MODE
+                    + " (expected standalone, sentinel or cluster)");
+        }
     }
 
     /**
@@ -215,14 +360,13 @@ public class RedisConfig implements CachingConfigurer {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(factory);
 
-        ObjectMapper objectMapper = createObjectMapper();
-        Jackson2JsonRedisSerializer<Object> jsonSerializer = jackson2JsonRedisSerializer(objectMapper);
+        CacheValueRedisSerializer valueSerializer = cacheValueSerializer();
         StringRedisSerializer stringSerializer = new StringRedisSerializer();
 
-        template.setValueSerializer(jsonSerializer);
+        template.setValueSerializer(valueSerializer);
         template.setKeySerializer(stringSerializer);
         template.setHashKeySerializer(stringSerializer);
-        template.setHashValueSerializer(jsonSerializer);
+        template.setHashValueSerializer(valueSerializer);
 
         // TODO: Enable transaction support?
         // template.setEnableTransactionSupport(true);
@@ -231,20 +375,24 @@ public class RedisConfig implements CachingConfigurer {
     }
 
     /**
-     * Serializes the value to JSON
+     * Serializes values with the codec selected by themus.cache.serialization.format
+     * ("json" or "compact"). Both formats are always readable, so the setting can be
+     * flipped in either direction without flushing Redis.
      *
-     * @param objectMapper
      * @return
      */
-    private Jackson2JsonRedisSerializer<Object> jackson2JsonRedisSerializer(ObjectMapper objectMapper) {
-        // objectMapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL,
-        //         JsonTypeInfo.As.WRAPPER_ARRAY);
-        // objectMapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+    private CacheValueRedisSerializer cacheValueSerializer() {
+        CacheValueCodec json = new JsonCacheValueCodec(createObjectMapper());
+        ObjectMapper compactMapper = createObjectMapper();
+        compactMapper.setDefaultTyping(CompactTypeIdResolver.defaultTyping());
+        CacheValueCodec compact = new CompactCacheValueCodec(compactMapper, 1024);
 
-        return new Jackson2JsonRedisSerializer<>(objectMapper, Object.class);
+        CacheValueCodec writer = CompactCacheValueCodec.NAME.equalsIgnoreCase(CACHE_SERIALIZATION_FORMAT) ? compact : json;
+        return new CacheValueRedisSerializer(writer, List.of(compact, json));
     }
     
-    private ObjectMapper createObjectMapper() {
+    // Shared by both codecs; package-private so the codec benchmark builds the same mapper
+    static ObjectMapper createObjectMapper() {
         ObjectMapper mapper = new ObjectMapper();
         mapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, 
                                     ObjectMapper.DefaultTyping.NON_FINAL, 
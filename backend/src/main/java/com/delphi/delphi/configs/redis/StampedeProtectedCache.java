@@ -0,0 +1,262 @@
+package com.delphi.delphi.configs.redis;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.cache.Cache;
+import org.springframework.cache.annotation.SpringCacheAnnotationParser;
+import org.springframework.cache.interceptor.CacheOperation;
+import org.springframework.cache.interceptor.CacheableOperation;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import com.delphi.delphi.components.CacheLoadGuard;
+
+/**
+ * Cache decorator that routes {@code @Cacheable} loads through the {@link CacheLoadGuard}, so an
+ * expired hot key is loaded once across the cluster and refreshed ahead of expiry. Values are
+ * stored wrapped in a {@link CachedValue} that carries their expiry; values written without the
+ * wrapper (e.g. directly through RedisService) are still read, they are just never refreshed
+ * early.
+ *
+ * Loads and early refreshes call the cached method again through its proxy (see
+ * {@link CacheInvocationInterceptor}) with the cache lookup skipped, so the method runs with its
+ * transaction as on a miss, and its result is put by the caching advice. With
+ * {@code sync = true} the guard runs the caller's value loader instead. A miss of a non-sync
+ * method waits here for the load, and the caching advice then sees a hit. Lookups outside a
+ * proxied call, e.g. direct {@link Cache#get} calls, are plain reads.
+ *
+ * If the cache reads from replicas, a waiter polls the given primary cache for the value another
+ * node is loading, so replication lag does not make it give up and load the value itself.
+ */
+class StampedeProtectedCache implements Cache {
+
+    private final Cache delegate;
+    private final RedisCacheWriter.TtlFunction ttlFunction;
+    // The cache key an early refresh on this thread is reloading, so its call skips the lookup
+    private static final ThreadLocal<String> REFRESHING = new ThreadLocal<>();
+
+    // Names of the caches each @Cacheable method reads through
+    private static final Map<Method, Set<String>> CACHEABLE_NAMES = new ConcurrentHashMap<>();
+
+    private final CacheLoadGuard loadGuard;
+    private final Cache primary;
+    // The cache as the application sees it, e.g. transaction aware, which loaded values are put through
+    private volatile Cache outer = this;
+
+    StampedeProtectedCache(Cache delegate, RedisCacheWriter.TtlFunction ttlFunction, CacheLoadGuard loadGuard,
+            Cache primary) {
+        this.delegate = delegate;
+        this.ttlFunction = ttlFunction;
+        this.loadGuard = loadGuard;
+        this.primary = primary;
+    }
+
+    // Put loaded values through the cache that decorates this one
+    void putThrough(Cache outer) {
+        this.outer = outer;
+    }
+
+    @Override
+    @NonNull
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    @NonNull
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    @Nullable
+    public ValueWrapper get(@NonNull Object key) {
+        ProxyMethodInvocation invocation = claimLookup();
+        String cacheKey = cacheKey(key);
+        if (cacheKey.equals(REFRESHING.get())) {
+            // The reload of this key on this thread; miss, so the method runs and its result is put
+            return null;
+        }
+        CacheLoadGuard.Lookup<Object> cached = lookup(delegate, key);
+        if (invocation == null) {
+            return cached.isHit() ? new SimpleValueWrapper(cached.value()) : null;
+        }
+        Supplier<Object> reload = reloadThroughProxy(invocation, cacheKey);
+        if (cached.isHit()) {
+            loadGuard.refreshEarlyIfDue(getName(), cacheKey, cached.ttlMillis(), reload);
+            return new SimpleValueWrapper(cached.value());
+        }
+        try {
+            return new SimpleValueWrapper(
+                    loadGuard.get(getName(), cacheKey, () -> cached, () -> lookup(primary, key), reload));
+        } catch (RuntimeException e) {
+            // Miss, so the caching advice calls the method itself and its exception reaches the caller as thrown
+            return null;
+        }
+    }
+
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NonNull Object key, @Nullable Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NonNull Object key, @NonNull Callable<T> valueLoader) {
+        ProxyMethodInvocation invocation = claimLookup();
+        String cacheKey = cacheKey(key);
+        Supplier<Object> load = () -> {
+            T value;
+            try {
+                value = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            if (value != null) {
+                outer.put(key, value);
+            }
+            return value;
+        };
+        if (cacheKey.equals(REFRESHING.get())) {
+            return (T) load.get();
+        }
+
+        CacheLoadGuard.Lookup<Object> cached = lookup(delegate, key);
+        if (cached.isHit()) {
+            if (invocation != null) {
+                loadGuard.refreshEarlyIfDue(getName(), cacheKey, cached.ttlMillis(),
+                        reloadThroughProxy(invocation, cacheKey));
+            }
+            return (T) cached.value();
+        }
+        return (T) loadGuard.get(getName(), cacheKey, () -> cached, () -> lookup(primary, key), load);
+    }
+
+    private String cacheKey(Object key) {
+        return "cache:" + getName() + ":" + key;
+    }
+
+    // The @Cacheable call in progress on this thread, if this lookup is its lookup of this cache
+    @Nullable
+    private ProxyMethodInvocation claimLookup() {
+        ProxyMethodInvocation invocation = CacheInvocationInterceptor.claimLookup();
+        if (invocation == null || !cacheableNames(invocation.getMethod()).contains(getName())) {
+            return null;
+        }
+        return invocation;
+    }
+
+    private static Set<String> cacheableNames(Method method) {
+        return CACHEABLE_NAMES.computeIfAbsent(method, cachedMethod -> {
+            Collection<CacheOperation> operations = new SpringCacheAnnotationParser().parseCacheAnnotations(cachedMethod);
+            if (operations == null) {
+                return Set.of();
+            }
+            return operations.stream()
+                    .filter(CacheableOperation.class::isInstance)
+                    .flatMap(operation -> operation.getCacheNames().stream())
+                    .collect(Collectors.toUnmodifiableSet());
+        });
+    }
+
+    // Calls the cached method again through its proxy, reloading the key
+    private static Supplier<Object> reloadThroughProxy(ProxyMethodInvocation invocation, String cacheKey) {
+        Object proxy = invocation.getProxy();
+        Method method = invocation.getMethod();
+        Object[] arguments = invocation.getArguments().clone();
+        return () -> {
+            String previous = REFRESHING.get();
+            REFRESHING.set(cacheKey);
+            try {
+                return AopUtils.invokeJoinpointUsingReflection(proxy, method, arguments);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Failed to reload " + cacheKey + " through " + method, e);
+            } finally {
+                if (previous != null) {
+                    REFRESHING.set(previous);
+                } else {
+                    REFRESHING.remove();
+                }
+            }
+        };
+    }
+
+    private static CacheLoadGuard.Lookup<Object> lookup(Cache cache, Object key) {
+        ValueWrapper wrapper = cache.get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value == null) {
+            return CacheLoadGuard.Lookup.miss();
+        }
+        if (value instanceof CachedValue cachedValue) {
+            long ttlMillis = cachedValue.getExpiresAt() > 0 ? cachedValue.getExpiresAt() - System.currentTimeMillis() : -1;
+            return new CacheLoadGuard.Lookup<>(cachedValue.getValue(), ttlMillis);
+        }
+        return new CacheLoadGuard.Lookup<>(value, -1);
+    }
+
+    @Override
+    public void put(@NonNull Object key, @Nullable Object value) {
+        delegate.put(key, wrap(key, value));
+    }
+
+    @Override
+    @Nullable
+    public ValueWrapper putIfAbsent(@NonNull Object key, @Nullable Object value) {
+        ValueWrapper existing = delegate.putIfAbsent(key, wrap(key, value));
+        if (existing != null && existing.get() instanceof CachedValue cachedValue) {
+            return new SimpleValueWrapper(cachedValue.getValue());
+        }
+        return existing;
+    }
+
+    // Null values are passed through so the delegate applies its own null handling
+    private Object wrap(Object key, Object value) {
+        if (value == null) {
+            return null;
+        }
+        Duration ttl = ttlFunction.getTimeToLive(key, value);
+        long expiresAt = ttl.isZero() || ttl.isNegative() ? 0 : System.currentTimeMillis() + ttl.toMillis();
+        return new CachedValue(value, expiresAt);
+    }
+
+    @Override
+    public void evict(@NonNull Object key) {
+        delegate.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(@NonNull Object key) {
+        return delegate.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        return delegate.invalidate();
+    }
+}
@@ -27,6 +27,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -57,6 +58,7 @@ import com.delphi.delphi.services.CandidateAttemptService;
 import com.delphi.delphi.services.ChatService;
 import com.delphi.delphi.services.GithubService;
 import com.delphi.delphi.services.UserService;
+import com.delphi.delphi.utils.Blocking;
 import com.delphi.delphi.utils.enums.AssessmentStatus;
 import com.delphi.delphi.utils.enums.AttemptStatus;
 import com.delphi.delphi.utils.enums.JobStatus;
@@ -64,6 +66,7 @@ import com.delphi.delphi.utils.enums.JobType;
 
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import reactor.core.scheduler.Schedulers;
 
 @RestController
 @RequestMapping("/api/assessments")
@@ -182,10 +185,14 @@ public class AssessmentController {
     // }
 
     @GetMapping("/chat-history/{assessmentId}")
-    public ResponseEntity<?> getChatHistory(@PathVariable Long assessmentId) {
+    public ResponseEntity<?> getChatHistory(@PathVariable Long assessmentId,
+            @RequestParam(required = false) Integer limit) {
         try {
             verifyAssessmentOwnership(assessmentId);
-            List<ChatMessageCacheDto> messages = chatService.getMessagesByAssessmentId(assessmentId);
+            // With a limit, only the most recent messages are returned
+            List<ChatMessageCacheDto> messages = limit != null
+                    ? chatService.getRecentMessagesByAssessmentId(assessmentId, limit)
+                    : chatService.getMessagesByAssessmentId(assessmentId);
             return ResponseEntity.ok(messages);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
@@ -295,8 +302,8 @@ public class AssessmentController {
             }
 
             log.info("User is connected to github, validating credentials");
-            Map<String, Object> githubCredentialsValid = githubService
-                    .validateGithubCredentials(user.getGithubAccessToken());
+            Map<String, Object> githubCredentialsValid = Blocking.await(githubService
+                    .validateGithubCredentials(user.getGithubAccessToken()));
             log.info("Github credentials validated: {}", githubCredentialsValid);
             if (githubCredentialsValid == null) {
                 log.info("Github credentials are invalid, redirecting to installation page");
@@ -315,27 +322,29 @@ public class AssessmentController {
             final UUID jobId = job.getId();
 
             SseEmitter emitter = new SseEmitter(300000L); // 5 minutes timeout
-            chatService.registerSseEmitter(jobId, emitter);
+            chatService.registerSseEmitter(jobId, emitter, user.getId());
 
             // Handle emitter completion/error
             emitter.onCompletion(() -> {
                 log.info("SSE emitter completed for assessment creation job: {}", jobId);
-                chatService.removeSseEmitter(jobId);
-                // update assessment setup instructions
-                String readme = githubService.getRepoReadMe(user.getGithubAccessToken(), user.getGithubUsername(), assessment.getGithubRepoName());
-                String setupInstructions = readme.split("## Getting Started")[1].split("## ")[0].trim();
-                assessmentService.updateSetupInstructions(assessment, setupInstructions);
+                chatService.removeSseEmitter(jobId, emitter);
+                // update assessment setup instructions; not waited for, so the completing thread is not held
+                githubService.getRepoReadMe(user.getGithubAccessToken(), user.getGithubUsername(), assessment.getGithubRepoName())
+                        .map(readme -> readme.split("## Getting Started")[1].split("## ")[0].trim())
+                        .publishOn(Schedulers.boundedElastic())
+                        .subscribe(setupInstructions -> assessmentService.updateSetupInstructions(assessment, setupInstructions),
+                                e -> log.warn("Failed to update setup instructions of assessment {}: {}", assessment.getId(), e.getMessage()));
             });
 
             emitter.onTimeout(() -> {
                 log.info("SSE emitter timed out for assessment creation job: {}", jobId);
-                chatService.removeSseEmitter(jobId);
+                chatService.removeSseEmitter(jobId, emitter);
                 emitter.complete();
             });
 
             emitter.onError((ex) -> {
                 log.error("SSE emitter error for assessment creation job: {}", jobId, ex);
-                chatService.removeSseEmitter(jobId);
+                chatService.removeSseEmitter(jobId, emitter);
                 emitter.completeWithError(ex);
             });
 
@@ -438,23 +447,23 @@ public class AssessmentController {
             final UUID jobId = job.getId();
             
             SseEmitter emitter = new SseEmitter(300000L); // 5 minutes timeout
-            chatService.registerSseEmitter(jobId, emitter);
+            chatService.registerSseEmitter(jobId, emitter, user.getId());
 
             // Handle emitter completion/error
             emitter.onCompletion(() -> {
                 log.info("SSE emitter completed for assessment creation job: {}", jobId);
-                chatService.removeSseEmitter(jobId);
+                chatService.removeSseEmitter(jobId, emitter);
             });
 
             emitter.onTimeout(() -> {
                 log.info("SSE emitter timed out for assessment creation job: {}", jobId);
-                chatService.removeSseEmitter(jobId);
+                chatService.removeSseEmitter(jobId, emitter);
                 emitter.complete();
             });
 
             emitter.onError((ex) -> {
                 log.error("SSE emitter error for assessment creation job: {}", jobId, ex);
-                chatService.removeSseEmitter(jobId);
+                chatService.removeSseEmitter(jobId, emitter);
                 emitter.completeWithError(ex);
             });
 
@@ -512,6 +521,50 @@ public class AssessmentController {
         }
     }
 
+    /**
+     * Reconnect to the SSE stream of a running or recently finished job.
+     * Sends the events logged after the Last-Event-ID header (or lastEventId query parameter),
+     * then the job's live events.
+     */
+    @GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> resumeJobEvents(@PathVariable UUID jobId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
+        try {
+            UserCacheDto user = getCurrentUser();
+            if (!chatService.isSseStreamOwner(jobId, user.getId())) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No event stream found for job: " + jobId);
+            }
+            String lastEventId = lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam;
+
+            SseEmitter emitter = new SseEmitter(300000L); // 5 minutes timeout
+
+            emitter.onCompletion(() -> {
+                log.info("Resumed SSE emitter completed for job: {}", jobId);
+                chatService.removeSseEmitter(jobId, emitter);
+            });
+
+            emitter.onTimeout(() -> {
+                log.info("Resumed SSE emitter timed out for job: {}", jobId);
+                chatService.removeSseEmitter(jobId, emitter);
+                emitter.complete();
+            });
+
+            emitter.onError((ex) -> {
+                log.error("Resumed SSE emitter error for job: {}", jobId, ex);
+                chatService.removeSseEmitter(jobId, emitter);
+                emitter.completeWithError(ex);
+            });
+
+            chatService.resumeSseEmitter(jobId, emitter, lastEventId);
+            return ResponseEntity.ok(emitter);
+
+        } catch (Exception e) {
+            log.error("Error resuming SSE stream for job {}: {}", jobId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error resuming SSE stream: " + e.getMessage());
+        }
+    }
+
     // Chat with the AI agent (legacy synchronous endpoint)
     // @PostMapping("/chat")
     // public ResponseEntity<?> chat(@RequestBody NewUserMessageDto messageDto) {
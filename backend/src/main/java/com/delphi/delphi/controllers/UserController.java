@@ -29,6 +29,7 @@ import com.delphi.delphi.entities.User;
 import com.delphi.delphi.services.EncryptionService;
 import com.delphi.delphi.services.GithubService;
 import com.delphi.delphi.services.UserService;
+import com.delphi.delphi.utils.Blocking;
 import com.delphi.delphi.utils.CacheUtils;
 import com.delphi.delphi.utils.git.GithubAccountType;
 
@@ -135,8 +136,8 @@ public class UserController {
             // }
             log.info("Usercontroller - Validating github credentials...");
             // check if github credentials are valid
-            Map<String, Object> githubCredentialsValid = githubService
-                    .validateGithubCredentials(user.getGithubAccessToken());
+            Map<String, Object> githubCredentialsValid = Blocking.await(githubService
+                    .validateGithubCredentials(user.getGithubAccessToken()));
 
             log.info("Github credentials valid: {}", githubCredentialsValid);
 
@@ -520,11 +521,11 @@ public class UserController {
         try {
             UserCacheDto user = userService.getUserByEmail(providedEmail);
             log.info("Current user: {}", user.getEmail());
-            Map<String, Object> accessTokenResponse = githubService.getAccessToken(code);
+            Map<String, Object> accessTokenResponse = Blocking.await(githubService.getAccessToken(code));
             String githubAccessToken = (String) accessTokenResponse.get("access_token");
 
             log.info("Obtaining github credentials for user: {}", user.getEmail());
-            Map<String, Object> githubCredentialsResponse = githubService.validateGithubCredentials(githubAccessToken);
+            Map<String, Object> githubCredentialsResponse = Blocking.await(githubService.validateGithubCredentials(githubAccessToken));
             String githubUsername = (String) githubCredentialsResponse.get("login");
             String accountType = (String) githubCredentialsResponse.get("type");
 
@@ -556,17 +557,17 @@ public class UserController {
             log.info("Getting github token and username from redis for candidate: {}", email);
             Object candidateGithubToken = redisService.get(CacheUtils.tokenCacheKeyPrefix + email);
             // get a new token if the candidate doesn't have one or if the token is invalid
-            if (candidateGithubToken == null || githubService
-                    .validateGithubCredentials(encryptionService.decrypt(candidateGithubToken.toString())) == null) {
+            if (candidateGithubToken == null || Blocking.await(githubService
+                    .validateGithubCredentials(encryptionService.decrypt(candidateGithubToken.toString()))) == null) {
                 // request a token from github api
                 log.info("Candidate needs a new token");
-                Map<String, Object> accessTokenResponse = githubService.getAccessToken(code);
+                Map<String, Object> accessTokenResponse = Blocking.await(githubService.getAccessToken(code));
                 String githubAccessToken = (String) accessTokenResponse.get("access_token");
                 // get candidate's github username
                 // TODO: store github username and/or encrypted github token in DB candidate
                 // entity
-                Map<String, Object> githubCredentialsResponse = githubService
-                        .validateGithubCredentials(githubAccessToken);
+                Map<String, Object> githubCredentialsResponse = Blocking.await(githubService
+                        .validateGithubCredentials(githubAccessToken));
                 String githubUsername = (String) githubCredentialsResponse.get("login");
 
                 // store the token and username in redis
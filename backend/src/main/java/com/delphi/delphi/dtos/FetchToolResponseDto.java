@@ -9,6 +9,9 @@ public class FetchToolResponseDto {
     private String name;
     private String responseData;
 
+    public FetchToolResponseDto() {
+    }
+
     public FetchToolResponseDto(String id, String name, String responseData) {
         this.id = id;
         this.name = name;
@@ -27,6 +27,7 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 
 @Entity
@@ -38,8 +39,10 @@ import jakarta.persistence.Table;
  * ToolResponseMessages contain the result of a tool call.
  */
 public class ChatMessage {
+    // Pooled sequence ids, shared with ChatMessageWriter, so inserts can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chat_messages_id_seq")
+    @SequenceGenerator(name = "chat_messages_id_seq", sequenceName = "chat_messages_id_seq", allocationSize = 50)
     private Long id;
 
     @CreationTimestamp
@@ -38,6 +38,31 @@ public class Job {
     @Column(name = "result", columnDefinition = "TEXT")
     private String result;
 
+    /* Run summary, see AgentMetrics */
+
+    // Time between the job being published and a worker starting it
+    @Column(name = "queue_wait_ms")
+    private Long queueWaitMs;
+
+    // Model calls that returned a response
+    @Column(name = "iterations")
+    private Integer iterations;
+
+    @Column(name = "llm_latency_ms")
+    private Long llmLatencyMs;
+
+    @Column(name = "prompt_tokens")
+    private Long promptTokens;
+
+    @Column(name = "completion_tokens")
+    private Long completionTokens;
+
+    @Column(name = "tool_calls")
+    private Integer toolCalls;
+
+    @Column(name = "tool_latency_ms")
+    private Long toolLatencyMs;
+
     public Job() {}
 
     public Job(JobStatus status, JobType jobType) {
@@ -76,5 +101,61 @@ public class Job {
     public void setJobType(JobType jobType) {
         this.jobType = jobType;
     }
+
+    public Long getQueueWaitMs() {
+        return queueWaitMs;
+    }
+
+    public void setQueueWaitMs(Long queueWaitMs) {
+        this.queueWaitMs = queueWaitMs;
+    }
+
+    public Integer getIterations() {
+        return iterations;
+    }
+
+    public void setIterations(Integer iterations) {
+        this.iterations = iterations;
+    }
+
+    public Long getLlmLatencyMs() {
+        return llmLatencyMs;
+    }
+
+    public void setLlmLatencyMs(Long llmLatencyMs) {
+        this.llmLatencyMs = llmLatencyMs;
+    }
+
+    public Long getPromptTokens() {
+        return promptTokens;
+    }
+
+    public void setPromptTokens(Long promptTokens) {
+        this.promptTokens = promptTokens;
+    }
+
+    public Long getCompletionTokens() {
+        return completionTokens;
+    }
+
+    public void setCompletionTokens(Long completionTokens) {
+        this.completionTokens = completionTokens;
+    }
+
+    public Integer getToolCalls() {
+        return toolCalls;
+    }
+
+    public void setToolCalls(Integer toolCalls) {
+        this.toolCalls = toolCalls;
+    }
+
+    public Long getToolLatencyMs() {
+        return toolLatencyMs;
+    }
+
+    public void setToolLatencyMs(Long toolLatencyMs) {
+        this.toolLatencyMs = toolLatencyMs;
+    }
     
 }
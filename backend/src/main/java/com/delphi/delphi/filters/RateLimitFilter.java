@@ -1,15 +1,18 @@
 package com.delphi.delphi.filters;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
 
 import com.delphi.delphi.components.JwtService;
-import com.delphi.delphi.components.RedisService;
+import com.delphi.delphi.components.RateLimiter;
+import com.delphi.delphi.configs.RateLimitProperties;
 
 import jakarta.servlet.Filter;
 import jakarta.servlet.FilterChain;
@@ -22,20 +25,23 @@ import jakarta.servlet.http.HttpServletResponse;
 
 @Component
 @Order(4) // Run after JWT filter and Security filter
-// Token bucket rate limiting
+// GCRA rate limiting per user and route group, see RateLimiter
 public class RateLimitFilter implements Filter {
 
-    private static final int RATE_LIMIT_PER_MINUTE = 20;
-    private static final String RATE_LIMIT_KEY_PREFIX = "ratelimit:";
+    private static final String DEFAULT_GROUP = "default";
 
-    private final RedisService redisService;
+    private final RateLimiter rateLimiter;
+    private final RateLimitProperties properties;
     private final JwtService jwtService;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
     private final Logger log = LoggerFactory.getLogger(RateLimitFilter.class);
 
     private final String appEnv;
 
-    public RateLimitFilter(RedisService redisService, JwtService jwtService, @Value("${app.env}") String appEnv) {
-        this.redisService = redisService;
+    public RateLimitFilter(RateLimiter rateLimiter, RateLimitProperties properties, JwtService jwtService,
+            @Value("${app.env}") String appEnv) {
+        this.rateLimiter = rateLimiter;
+        this.properties = properties;
         this.jwtService = jwtService;
         this.appEnv = appEnv;
     }
@@ -48,7 +54,7 @@ public class RateLimitFilter implements Filter {
         
         // Skip rate limiting for permitted endpoints
         String requestPath = req.getRequestURI();
-        if (requestPath.startsWith("/api/auth/") || requestPath.startsWith("/actuator/") || requestPath.startsWith("/api/users/is-authenticated") || requestPath.startsWith("/api/users/github/callback") || requestPath.startsWith("/api/attempts/live") || requestPath.equals("/")) {
+        if (!properties.isEnabled() || requestPath.startsWith("/api/auth/") || requestPath.startsWith("/actuator/") || requestPath.startsWith("/api/users/is-authenticated") || requestPath.startsWith("/api/users/github/callback") || requestPath.startsWith("/api/attempts/live") || requestPath.equals("/")) {
             log.info("RateLimitFilter - Skipping rate limiting for permitted endpoint: {}", requestPath);
             chain.doFilter(request, response);
             return;
@@ -102,45 +108,49 @@ public class RateLimitFilter implements Filter {
         String email = jwtService.extractUsername(jwt);
         log.info("RateLimitFilter - Checking rate limit for user: {}", email);
         
-        // Implement the rate limiting algorithm from pseudocode
-        if (!isRequestAllowed(email)) {
-            // Line 3: Show error message and end connection
-            log.warn("RateLimitFilter - Rate limit exceeded for user: {}", email);
+        RateLimitProperties.RouteGroup group = resolveGroup(requestPath);
+        String groupName = group != null ? group.getName() : DEFAULT_GROUP;
+        RateLimitProperties.LimitClass limit = group != null ? group.getLimit() : properties.getDefaultLimit();
+        RateLimiter.Decision decision = rateLimiter.tryAcquire(groupName, email, limit);
+        writeRateLimitHeaders(res, decision, limit);
+
+        if (!decision.allowed()) {
+            log.warn("RateLimitFilter - Rate limit exceeded for user: {} in group: {}", email, groupName);
             res.setStatus(429); // HTTP 429 Too Many Requests
+            res.setHeader("Retry-After", Long.toString(toSeconds(decision.retryAfterMillis())));
             res.setContentType("application/json");
-            res.getWriter().write("{\"error\":\"Rate limit exceeded. Maximum " + RATE_LIMIT_PER_MINUTE + " requests per minute.\"}");
+            res.getWriter().write("{\"error\":\"Rate limit exceeded. Maximum " + limit.getRequests() + " requests per "
+                    + limit.getPeriod().toSeconds() + " seconds.\"}");
             return;
         }
 
-        // Line 5: Allow request - do service stuff (continue to next filter)
         log.info("RateLimitFilter - Request allowed for user: {}", email);
         chain.doFilter(request, response);
     }
 
-    private boolean isRequestAllowed(String email) {
-        // Get current minute number (timestamp divided by 60 seconds)
-        long currentMinute = System.currentTimeMillis() / (60 * 1000);
-        String rateLimitKey = RATE_LIMIT_KEY_PREFIX + email + ":" + currentMinute;
-
-        // Line 1: GET [user-api-key]:[current minute number]
-        Long currentCount = redisService.getLong(rateLimitKey);
-
-        // Line 2: If the result is less than 20 (or unset) go to 4, otherwise line 3
-        if (currentCount >= RATE_LIMIT_PER_MINUTE) {
-            return false; // Rate limit exceeded
+    // First route group with a path pattern matching the request, or null for the default limit
+    private RateLimitProperties.RouteGroup resolveGroup(String requestPath) {
+        for (RateLimitProperties.RouteGroup group : properties.getGroups()) {
+            for (String pattern : group.getPaths()) {
+                if (pathMatcher.match(pattern, requestPath)) {
+                    return group;
+                }
+            }
         }
+        return null;
+    }
 
-        // Line 4: MULTI/INCR/EXPIRE/EXEC transaction (atomic operation)
-        try {
-            // This implements the exact pseudocode: INCR and EXPIRE in a single transaction
-            Long newCount = redisService.incrementAndExpire(rateLimitKey, 59);
-            
-            // Check if the new count exceeds the limit
-            return newCount <= RATE_LIMIT_PER_MINUTE;
-        } catch (Exception e) {
-            log.error("RateLimitFilter - Redis error, allowing request: {}", e.getMessage());
-            // In case of Redis error, allow the request (fail open)
-            return true;
-        }
+    // RateLimit header fields as described in the IETF httpapi-ratelimit-headers draft
+    private void writeRateLimitHeaders(HttpServletResponse res, RateLimiter.Decision decision,
+            RateLimitProperties.LimitClass limit) {
+        res.setHeader("RateLimit-Limit", Integer.toString(decision.limit()));
+        res.setHeader("RateLimit-Remaining", Long.toString(decision.remaining()));
+        res.setHeader("RateLimit-Reset", Long.toString(toSeconds(decision.resetMillis())));
+        res.setHeader("RateLimit-Policy", limit.getRequests() + ";w=" + limit.getPeriod().toSeconds());
+    }
+
+    // Whole seconds, rounded up so clients never retry too early
+    private long toSeconds(long millis) {
+        return (millis + TimeUnit.SECONDS.toMillis(1) - 1) / TimeUnit.SECONDS.toMillis(1);
     }
 }
@@ -1,12 +1,15 @@
 package com.delphi.delphi.services;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -22,8 +25,12 @@ import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.delphi.delphi.components.CacheLoadGuard;
+import com.delphi.delphi.components.ChatHistoryCache;
+import com.delphi.delphi.components.NormalizedCache;
 import com.delphi.delphi.components.RedisService;
 import com.delphi.delphi.components.messaging.candidates.CandidateInvitationPublisher;
 import com.delphi.delphi.configs.kafka.KafkaTopicsConfig;
@@ -38,6 +45,7 @@ import com.delphi.delphi.dtos.cache.UserCacheDto;
 import com.delphi.delphi.dtos.messaging.emails.PublishSendEmailJobDto;
 import com.delphi.delphi.entities.Assessment;
 import com.delphi.delphi.entities.Candidate;
+import com.delphi.delphi.entities.ChatMessage;
 import com.delphi.delphi.entities.CandidateAttempt;
 import com.delphi.delphi.entities.Job;
 import com.delphi.delphi.entities.User;
@@ -47,6 +55,7 @@ import com.delphi.delphi.repositories.CandidateRepository;
 import com.delphi.delphi.repositories.JobRepository;
 import com.delphi.delphi.repositories.UserRepository;
 import com.delphi.delphi.specifications.AssessmentSpecifications;
+import com.delphi.delphi.utils.Blocking;
 import com.delphi.delphi.utils.CacheUtils;
 import com.delphi.delphi.utils.Constants;
 import com.delphi.delphi.utils.enums.AssessmentStatus;
@@ -78,14 +87,18 @@ public class AssessmentService {
     private final CandidateInvitationPublisher candidateInvitationPublisher;
     private final CandidateRepository candidateRepository;
     private final Logger log = LoggerFactory.getLogger(AssessmentService.class);
+    private static final Duration ASSESSMENT_CACHE_TTL = Duration.ofMinutes(15);
     private final RedisService redisService;
+    private final NormalizedCache normalizedCache;
+    private final CacheLoadGuard cacheLoadGuard;
+    private final ChatHistoryCache chatHistoryCache;
     private final String appClientDomain;
     private final EncryptionService encryptionService;      
 
     public AssessmentService(AssessmentRepository assessmentRepository, GithubService githubService,
             CandidateAttemptRepository candidateAttemptRepository,
             CandidateInvitationPublisher candidateInvitationPublisher, UserRepository userRepository,
-            CandidateRepository candidateRepository, RedisService redisService, JobRepository jobRepository, KafkaTemplate<String, Object> kafkaTemplate, @Value("${app.client-domain}") String appClientDomain, EncryptionService encryptionService) {
+            CandidateRepository candidateRepository, RedisService redisService, NormalizedCache normalizedCache, CacheLoadGuard cacheLoadGuard, ChatHistoryCache chatHistoryCache, JobRepository jobRepository, KafkaTemplate<String, Object> kafkaTemplate, @Value("${app.client-domain}") String appClientDomain, EncryptionService encryptionService) {
         this.assessmentRepository = assessmentRepository;
         this.githubService = githubService;
         this.candidateAttemptRepository = candidateAttemptRepository;
@@ -93,6 +106,9 @@ public class AssessmentService {
         this.userRepository = userRepository;
         this.candidateRepository = candidateRepository;
         this.redisService = redisService;
+        this.normalizedCache = normalizedCache;
+        this.cacheLoadGuard = cacheLoadGuard;
+        this.chatHistoryCache = chatHistoryCache;
         this.jobRepository = jobRepository;
         this.kafkaTemplate = kafkaTemplate;
         this.appClientDomain = appClientDomain;
@@ -154,10 +170,10 @@ public class AssessmentService {
 
         // create github repo for the assessment
         if (user.getGithubAccountType() == GithubAccountType.USER) {
-            githubService.createPersonalRepo(user.getGithubAccessToken(), user.getGithubUsername(), assessment.getGithubRepoName());
+            Blocking.await(githubService.createPersonalRepo(user.getGithubAccessToken(), user.getGithubUsername(), assessment.getGithubRepoName()));
         } else {
-            githubService.createOrgRepo(user.getGithubAccessToken(), user.getGithubUsername(),
-                    assessment.getGithubRepoName());
+            Blocking.await(githubService.createOrgRepo(user.getGithubAccessToken(), user.getGithubUsername(),
+                    assessment.getGithubRepoName()));
         }
         log.info("adding themus assessments as contributor to the repo...");
 
@@ -208,15 +224,17 @@ public class AssessmentService {
                 .orElseThrow(() -> new AssessmentNotFoundException("Assessment not found with id: " + id));
     }
 
-    // Get chat history by assessment ID
-    @Cacheable(value = "chat_messages", key = "'assessment:' + #id")
-    @Transactional(readOnly = true)
+    // Get chat history by assessment ID, read through the append-only history cache; the cache
+    // loads in a transaction of its own, so a miss waiting for another node's load holds no connection
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<ChatMessageCacheDto> getChatMessagesById(Long id) {
-        return assessmentRepository.findById(id)
+        return chatHistoryCache.getAll(id, () -> assessmentRepository.findById(id)
                 .orElseThrow(() -> new AssessmentNotFoundException("Assessment not found with id: " + id))
                 .getChatMessages().stream()
+                // Same order as the history list, which messages are appended to as they are saved
+                .sorted(Comparator.comparing(ChatMessage::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder())))
                 .map(ChatMessageCacheDto::new)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
     }
 
     // Get all assessments with pagination
@@ -234,6 +252,9 @@ public class AssessmentService {
      * - Other filters (status, skills, languageOptions, assessmentStartDate, assessmentEndDate) are applied in memory
      * - This reduces cache key proliferation and improves cache hit rates
      * 
+     * Not transactional: the cache loads in a transaction of its own, so a miss waiting for
+     * another node's load holds no database connection.
+     * 
      * @param user            The user whose assessments to retrieve
      * @param status          Filter by assessment status (applied in memory)
      * @param startDate       Start date for creation date range filter (used in cache key)
@@ -246,7 +267,7 @@ public class AssessmentService {
      * @return PaginatedResponseDto containing filtered assessments and pagination metadata
      * 
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public PaginatedResponseDto<AssessmentCacheDto> getAssessmentsWithFilters(UserCacheDto user, AssessmentStatus status,
             LocalDateTime createdAfter, LocalDateTime createdBefore, LocalDateTime assessmentStartDate, LocalDateTime assessmentEndDate,
             List<String> skills, List<String> languageOptions, Pageable pageable) {
@@ -265,29 +286,28 @@ public class AssessmentService {
         String specificCacheKey = generateSpecificCacheKey(user.getId(), status, createdAfter, createdBefore, 
                                                           assessmentStartDate, assessmentEndDate, skills, languageOptions);
         
-        // Try to get from specific cache first
-        List<AssessmentCacheDto> cachedSpecificResult = getCachedAssessmentList(specificCacheKey);
-        if (cachedSpecificResult != null) {
-            return applyPaginationToList(cachedSpecificResult, pageable);
-        }
-        
-        // Try to get from general cache and apply filters in memory
-        String generalCacheKey = generateGeneralCacheKey(user.getId());
-        List<AssessmentCacheDto> cachedGeneralResult = getCachedAssessmentList(generalCacheKey);
-        if (cachedGeneralResult != null) {
-            List<AssessmentCacheDto> filteredResult = applyFiltersInMemory(cachedGeneralResult, status, 
-                    createdAfter, createdBefore, assessmentStartDate, assessmentEndDate, skills, languageOptions);
-            
-            // Cache the filtered result for future use
-            cacheAssessmentList(specificCacheKey, filteredResult);
+        // Try to get from specific cache first; concurrent misses share a single load
+        List<AssessmentCacheDto> filteredResult = cacheLoadGuard.get("user_assessments", specificCacheKey,
+                () -> getCachedAssessmentList(specificCacheKey), () -> {
+            // Try to get from general cache and apply filters in memory
+            List<AssessmentCacheDto> cachedGeneralResult = getCachedGeneralAssessments(user.getId()).value();
+            if (cachedGeneralResult != null) {
+                List<AssessmentCacheDto> filtered = applyFiltersInMemory(cachedGeneralResult, status, 
+                        createdAfter, createdBefore, assessmentStartDate, assessmentEndDate, skills, languageOptions);
+                
+                // Cache the filtered result for future use
+                cacheSpecificAssessmentList(specificCacheKey, filtered);
+                
+                return filtered;
+            }
             
-            return applyPaginationToList(filteredResult, pageable);
-        }
+            // No cache hit - fetch from database with all filters
+            return fetchFromDatabaseWithFilters(user, status, createdAfter, createdBefore, 
+                                              assessmentStartDate, assessmentEndDate, skills, languageOptions, 
+                                              specificCacheKey);
+        });
         
-        // No cache hit - fetch from database with all filters
-        return fetchFromDatabaseWithFilters(user, status, createdAfter, createdBefore, 
-                                          assessmentStartDate, assessmentEndDate, skills, languageOptions, 
-                                          pageable, specificCacheKey);
+        return applyPaginationToList(filteredResult, pageable);
     }
 
     // Update assessment
@@ -765,15 +785,12 @@ public class AssessmentService {
     /**
      * Cache key generation methods
      */
-    private String generateGeneralCacheKey(Long userId) {
-        return "cache:user_assessments:" + userId;
-    }
-    
     private String generateSpecificCacheKey(Long userId, AssessmentStatus status, LocalDateTime createdAfter, 
                                           LocalDateTime createdBefore, LocalDateTime assessmentStartDate, 
                                           LocalDateTime assessmentEndDate, List<String> skills, List<String> languageOptions) {
         StringBuilder keyBuilder = new StringBuilder();
-        keyBuilder.append("cache:user_assessments:").append(userId).append(":");
+        keyBuilder.append("cache:user_assessments:").append(CacheUtils.userHashTag(userId)).append(":");
+        keyBuilder.append(cacheGeneration(CacheUtils.userAssessmentsGeneration(userId))).append(":");
         
         // Add status
         keyBuilder.append(status != null ? status.toString() : "null").append(":");
@@ -806,21 +823,46 @@ public class AssessmentService {
      * Cache operations helper methods
      */
     @SuppressWarnings("unchecked")
-    private List<AssessmentCacheDto> getCachedAssessmentList(String cacheKey) {
+    private CacheLoadGuard.Lookup<List<AssessmentCacheDto>> getCachedAssessmentList(String cacheKey) {
         try {
-            Object cached = redisService.get(cacheKey);
-            if (cached instanceof List<?>) {
-                return (List<AssessmentCacheDto>) cached;
+            RedisService.TimedValue cached = redisService.getWithTtl(cacheKey);
+            if (cached.value() instanceof List<?>) {
+                return new CacheLoadGuard.Lookup<>((List<AssessmentCacheDto>) cached.value(), cached.ttlMillis());
             }
         } catch (Exception e) {
             log.warn("Failed to retrieve cached assessment list for key: {}, error: {}", cacheKey, e.getMessage());
         }
-        return null;
+        return CacheLoadGuard.Lookup.miss();
     }
     
-    private void cacheAssessmentList(String cacheKey, List<AssessmentCacheDto> assessments) {
+    // The general list is an index of assessment ids hydrated from the shared assessment entries
+    private CacheLoadGuard.Lookup<List<AssessmentCacheDto>> getCachedGeneralAssessments(Long userId) {
+        try {
+            NormalizedCache.IndexPage<AssessmentCacheDto> cached = normalizedCache.getIndex(
+                    CacheUtils.userAssessmentsIndex(userId), CacheUtils.assessmentEntityType);
+            if (cached != null) {
+                return new CacheLoadGuard.Lookup<>(cached.content(), cached.ttlMillis());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to retrieve cached assessment index for user {}, error: {}", userId, e.getMessage());
+        }
+        return CacheLoadGuard.Lookup.miss();
+    }
+
+    private void cacheGeneralAssessments(Long userId, List<AssessmentCacheDto> assessments) {
         try {
             // Cache for 15 minutes (matching the assessments cache configuration)
+            normalizedCache.storeIndex(CacheUtils.userAssessmentsIndex(userId), CacheUtils.assessmentEntityType,
+                    assessments, AssessmentCacheDto::getId, assessment -> NormalizedCache.score(assessment.getCreatedDate()),
+                    ASSESSMENT_CACHE_TTL, ASSESSMENT_CACHE_TTL);
+        } catch (Exception e) {
+            log.warn("Failed to cache assessment index for user {}, error: {}", userId, e.getMessage());
+        }
+    }
+
+    // Filtered list keys embed the user's cache generation, so they are never deleted individually
+    private void cacheSpecificAssessmentList(String cacheKey, List<AssessmentCacheDto> assessments) {
+        try {
             redisService.setWithExpiration(cacheKey, assessments, 15, TimeUnit.MINUTES);
         } catch (Exception e) {
             log.warn("Failed to cache assessment list for key: {}, error: {}", cacheKey, e.getMessage());
@@ -828,29 +870,50 @@ public class AssessmentService {
     }
     
     private PaginatedResponseDto<AssessmentCacheDto> getGeneralUserAssessments(UserCacheDto user, Pageable pageable) {
-        String generalCacheKey = generateGeneralCacheKey(user.getId());
-        List<AssessmentCacheDto> cachedResult = getCachedAssessmentList(generalCacheKey);
+        String index = CacheUtils.userAssessmentsIndex(user.getId());
         
-        if (cachedResult != null) {
-            return applyPaginationToList(cachedResult, pageable);
+        // Pages ordered by creation date are read straight from the index
+        if (NormalizedCache.canPage(pageable.getSort(), "createdDate")) {
+            try {
+                NormalizedCache.IndexPage<AssessmentCacheDto> page = normalizedCache.getPage(
+                        index, CacheUtils.assessmentEntityType,
+                        pageable.getOffset(), pageable.getPageSize(),
+                        NormalizedCache.isDescending(pageable.getSort(), "createdDate"));
+                if (page != null) {
+                    cacheLoadGuard.refreshEarlyIfDue("user_assessments", NormalizedCache.indexKey(index),
+                            page.ttlMillis(), () -> loadGeneralAssessments(user.getId()));
+                    return new PaginatedResponseDto<>(page.content(), pageable.getPageNumber(), pageable.getPageSize(),
+                            page.total());
+                }
+            } catch (Exception e) {
+                log.warn("Failed to retrieve cached assessment page for user {}, error: {}", user.getId(), e.getMessage());
+            }
         }
         
+        // Read the whole list; concurrent misses share a single database query
+        List<AssessmentCacheDto> assessments = cacheLoadGuard.get("user_assessments", NormalizedCache.indexKey(index),
+                () -> getCachedGeneralAssessments(user.getId()), () -> loadGeneralAssessments(user.getId()));
+        
+        return applyPaginationToList(assessments, pageable);
+    }
+
+    private List<AssessmentCacheDto> loadGeneralAssessments(Long userId) {
         // Fetch from database with only user filter
-        Specification<Assessment> spec = AssessmentSpecifications.belongsToUser(user.getId());
+        Specification<Assessment> spec = AssessmentSpecifications.belongsToUser(userId);
         List<Assessment> assessments = assessmentRepository.findAll(spec);
         List<AssessmentCacheDto> assessmentDtos = assessments.stream()
                 .map(AssessmentCacheDto::new)
                 .collect(Collectors.toList());
         
         // Cache the general result
-        cacheAssessmentList(generalCacheKey, assessmentDtos);
+        cacheGeneralAssessments(userId, assessmentDtos);
         
-        return applyPaginationToList(assessmentDtos, pageable);
+        return assessmentDtos;
     }
     
-    private PaginatedResponseDto<AssessmentCacheDto> fetchFromDatabaseWithFilters(UserCacheDto user, AssessmentStatus status,
+    private List<AssessmentCacheDto> fetchFromDatabaseWithFilters(UserCacheDto user, AssessmentStatus status,
             LocalDateTime createdAfter, LocalDateTime createdBefore, LocalDateTime assessmentStartDate, LocalDateTime assessmentEndDate,
-            List<String> skills, List<String> languageOptions, Pageable pageable, String specificCacheKey) {
+            List<String> skills, List<String> languageOptions, String specificCacheKey) {
         
         // Build specification with all filters
         Specification<Assessment> spec = AssessmentSpecifications.belongsToUser(user.getId());
@@ -885,9 +948,9 @@ public class AssessmentService {
                 .collect(Collectors.toList());
         
         // Cache the specific filtered result
-        cacheAssessmentList(specificCacheKey, assessmentDtos);
+        cacheSpecificAssessmentList(specificCacheKey, assessmentDtos);
         
-        return applyPaginationToList(assessmentDtos, pageable);
+        return assessmentDtos;
     }
     
     /**
@@ -968,53 +1031,57 @@ public class AssessmentService {
      * Cache update methods for CRUD operations
      */
     private void updateCacheAfterAssessmentCreation(Long userId, AssessmentCacheDto newAssessment) {
-        // Add to general cache if it exists
-        String generalCacheKey = generateGeneralCacheKey(userId);
-        List<AssessmentCacheDto> cachedAssessments = getCachedAssessmentList(generalCacheKey);
-        if (cachedAssessments != null) {
-            cachedAssessments.add(newAssessment);
-            cacheAssessmentList(generalCacheKey, cachedAssessments);
-        }
+        // Store the assessment and add it to the general index if it exists
+        putGeneralAssessment(userId, newAssessment);
         
         // Evict all specific filter caches for this user
         evictUserAssessmentsSpecificCaches(userId);
     }
     
     private void updateCacheAfterAssessmentUpdate(Long userId, AssessmentCacheDto updatedAssessment) {
-        // Update in general cache if it exists
-        String generalCacheKey = generateGeneralCacheKey(userId);
-        List<AssessmentCacheDto> cachedAssessments = getCachedAssessmentList(generalCacheKey);
-        if (cachedAssessments != null) {
-            // Find and replace the assessment
-            for (int i = 0; i < cachedAssessments.size(); i++) {
-                if (cachedAssessments.get(i).getId().equals(updatedAssessment.getId())) {
-                    cachedAssessments.set(i, updatedAssessment);
-                    break;
-                }
-            }
-            cacheAssessmentList(generalCacheKey, cachedAssessments);
-        }
+        // Overwrite the shared assessment entry, which every list hydrates from
+        putGeneralAssessment(userId, updatedAssessment);
         
         // Evict all specific filter caches for this user
         evictUserAssessmentsSpecificCaches(userId);
     }
     
     private void updateCacheAfterAssessmentDeletion(Long userId, AssessmentCacheDto deletedAssessment) {
-        // Remove from general cache if it exists
-        String generalCacheKey = generateGeneralCacheKey(userId);
-        List<AssessmentCacheDto> cachedAssessments = getCachedAssessmentList(generalCacheKey);
-        if (cachedAssessments != null) {
-            cachedAssessments.removeIf(assessment -> assessment.getId().equals(deletedAssessment.getId()));
-            cacheAssessmentList(generalCacheKey, cachedAssessments);
+        // Remove from general index if it exists
+        try {
+            normalizedCache.remove(CacheUtils.assessmentEntityType, deletedAssessment.getId(),
+                    List.of(CacheUtils.userAssessmentsIndex(userId)));
+        } catch (Exception e) {
+            log.warn("Failed to remove assessment {} from cache, error: {}", deletedAssessment.getId(), e.getMessage());
         }
         
         // Evict all specific filter caches for this user
         evictUserAssessmentsSpecificCaches(userId);
     }
 
+    private void putGeneralAssessment(Long userId, AssessmentCacheDto assessment) {
+        try {
+            normalizedCache.put(CacheUtils.assessmentEntityType, assessment.getId(), assessment, ASSESSMENT_CACHE_TTL,
+                    Map.of(CacheUtils.userAssessmentsIndex(userId), NormalizedCache.score(assessment.getCreatedDate())));
+        } catch (Exception e) {
+            log.warn("Failed to cache assessment {} for user {}, error: {}", assessment.getId(), userId, e.getMessage());
+        }
+    }
+
     private void evictUserAssessmentsSpecificCaches(Long userId) {
-        // Evict all specific filter caches but keep the general cache
-        redisService.evictCache("cache:user_assessments:" + userId + ":*:*");
+        // Move all specific filter caches to a new generation but keep the general cache
+        redisService.bumpGeneration(CacheUtils.userAssessmentsGeneration(userId));
+    }
+
+    // Current generation of a filtered cache namespace. If it cannot be read, a unique one is
+    // used instead so that nothing stale is served; the entries written under it simply expire
+    private String cacheGeneration(String namespace) {
+        try {
+            return "v" + redisService.currentGeneration(namespace);
+        } catch (Exception e) {
+            log.warn("Failed to read cache generation for namespace: {}, error: {}", namespace, e.getMessage());
+            return "v" + UUID.randomUUID();
+        }
     }
 
 }
@@ -1,13 +1,17 @@
 package com.delphi.delphi.services;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -20,8 +24,12 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.delphi.delphi.components.CacheLoadGuard;
+import com.delphi.delphi.components.GithubRequestScheduler;
+import com.delphi.delphi.components.NormalizedCache;
 import com.delphi.delphi.components.RedisService;
 import com.delphi.delphi.dtos.AuthenticateCandidateDto;
 import com.delphi.delphi.dtos.PaginatedResponseDto;
@@ -36,6 +44,7 @@ import com.delphi.delphi.entities.CandidateAttempt;
 import com.delphi.delphi.repositories.CandidateAttemptRepository;
 import com.delphi.delphi.repositories.projections.RecentEventView;
 import com.delphi.delphi.specifications.CandidateAttemptSpecifications;
+import com.delphi.delphi.utils.Blocking;
 import com.delphi.delphi.utils.CacheUtils;
 import com.delphi.delphi.utils.Constants;
 import com.delphi.delphi.utils.enums.AttemptStatus;
@@ -58,13 +67,21 @@ public class CandidateAttemptService {
 
     private final CandidateAttemptRepository candidateAttemptRepository;
     private final Logger log = LoggerFactory.getLogger(CandidateAttemptService.class);
+    private static final Duration ATTEMPT_CACHE_TTL = Duration.ofMinutes(10);
+    // Referenced entries keep the TTLs of their own caches, which outlive the attempt indexes
+    private static final Duration ASSESSMENT_CACHE_TTL = Duration.ofMinutes(15);
+    private static final Duration CANDIDATE_CACHE_TTL = Duration.ofMinutes(30);
     private final RedisService redisService;
+    private final NormalizedCache normalizedCache;
+    private final CacheLoadGuard cacheLoadGuard;
     private final GithubService githubService;
     private final String appInstallBaseUrl;
 
-    public CandidateAttemptService(CandidateAttemptRepository candidateAttemptRepository, RedisService redisService, EncryptionService encryptionService, @Value("${themus.github.app.name}") String githubAppName, GithubService githubService) {
+    public CandidateAttemptService(CandidateAttemptRepository candidateAttemptRepository, RedisService redisService, NormalizedCache normalizedCache, CacheLoadGuard cacheLoadGuard, EncryptionService encryptionService, @Value("${themus.github.app.name}") String githubAppName, GithubService githubService) {
         this.candidateAttemptRepository = candidateAttemptRepository;
         this.redisService = redisService;
+        this.normalizedCache = normalizedCache;
+        this.cacheLoadGuard = cacheLoadGuard;
         this.encryptionService = encryptionService;
         this.appInstallBaseUrl = String.format("https://github.com/apps/%s/installations/new", githubAppName);
         this.githubService = githubService;
@@ -158,7 +175,7 @@ public class CandidateAttemptService {
         Object candidateGithubUsername = redisService.get(CacheUtils.usernameCacheKeyPrefix + email);
 
         return !(candidateGithubToken == null || candidateGithubUsername == null
-                || githubService.validateGithubCredentials(candidateGithubToken.toString()) == null);
+                || Blocking.await(githubService.validateGithubCredentials(candidateGithubToken.toString())) == null);
     }
 
     public boolean authenticateCandidate(AuthenticateCandidateDto authenticateCandidateDto) {
@@ -233,10 +250,13 @@ public class CandidateAttemptService {
         }
 
         try {
-            // Clones the template repo in the Themus GitHub account
-            githubService.createCandidateRepo(userGithubUsername, templateRepoName, repoName);
-            // add candidate as a contributor to the repo
-            githubService.addCollaboratorToCandidateRepo(repoName, candidateGithubUsername.toString(), candidateGithubToken.toString());
+            // The candidate is waiting on these, so they go ahead of background GitHub requests
+            Blocking.await(GithubRequestScheduler.withPriority(GithubRequestScheduler.Priority.INTERACTIVE,
+                    // Clones the template repo in the Themus GitHub account
+                    githubService.createCandidateRepo(userGithubUsername, templateRepoName, repoName)
+                            // add candidate as a contributor to the repo
+                            .then(githubService.addCollaboratorToCandidateRepo(repoName,
+                                    candidateGithubUsername.toString(), candidateGithubToken.toString()))));
         } catch (Exception e) {
             log.error("Error decrypting github access token and creating repo: {}", e.getMessage());
             throw new RuntimeException("Error decrypting github access token: " + e.getMessage());
@@ -252,8 +272,8 @@ public class CandidateAttemptService {
         Object candidateGithubToken = redisService.get(CacheUtils.tokenCacheKeyPrefix + candidateEmail);
         // get a new token if the candidate doesn't have one or if the token is invalid
         try {
-            if (candidateGithubToken == null || githubService
-            .validateGithubCredentials(encryptionService.decrypt(candidateGithubToken.toString())) == null) {
+            if (candidateGithubToken == null || Blocking.await(githubService
+            .validateGithubCredentials(encryptionService.decrypt(candidateGithubToken.toString()))) == null) {
                 return false;
             }
         } catch (Exception e) {
@@ -324,6 +344,9 @@ public class CandidateAttemptService {
      * - Other filters (assessmentId, status, completedAfter, completedBefore) are applied in memory
      * - This reduces cache key proliferation and improves cache hit rates
      * 
+     * Not transactional: the cache loads in a transaction of its own, so a miss waiting for
+     * another node's load holds no database connection.
+     * 
      * @param candidateId The candidate whose attempts to retrieve
      * @param assessmentId Filter by assessment ID (applied in memory)
      * @param statuses Filter by attempt status (applied in memory)
@@ -334,7 +357,7 @@ public class CandidateAttemptService {
      * @param pageable Pagination and sorting parameters (applied in memory)
      * @return List of filtered and paginated candidate attempts
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public PaginatedResponseDto<CandidateAttemptCacheDto> getCandidateAttemptsWithFilters(Long candidateId, Long assessmentId, 
                                                                  List<AttemptStatus> statuses, LocalDateTime startedAfter, 
                                                                  LocalDateTime startedBefore, LocalDateTime completedAfter, 
@@ -374,36 +397,36 @@ public class CandidateAttemptService {
         String specificCacheKey = generateSpecificCacheKey(candidateId, assessmentId, statuses, 
                                                           startedAfter, startedBefore, completedAfter, completedBefore);
         
-        // Try to get from specific cache first
-        List<CandidateAttemptCacheDto> cachedSpecificResult = getCachedAttemptList(specificCacheKey);
-        if (cachedSpecificResult != null) {
-            return applyPaginationToList(cachedSpecificResult, pageable);
-        }
-        
-        // Try to get from general cache and apply filters in memory
-        List<CandidateAttemptCacheDto> cachedGeneralResult = null;
-        
-        // Determine which general cache to use based on parameters
-        if (candidateId != null) {
-            cachedGeneralResult = getCachedAttemptList(generateCandidateGeneralCacheKey(candidateId));
-        } else if (assessmentId != null) {
-            cachedGeneralResult = getCachedAttemptList(generateAssessmentGeneralCacheKey(assessmentId));
-        }
-        
-        if (cachedGeneralResult != null) {
-            List<CandidateAttemptCacheDto> filteredResult = applyFiltersInMemory(cachedGeneralResult, candidateId, 
-                    assessmentId, statuses, startedAfter, startedBefore, completedAfter, completedBefore);
+        // Try to get from specific cache first; concurrent misses share a single load
+        List<CandidateAttemptCacheDto> filteredResult = cacheLoadGuard.get("all_attempts", specificCacheKey,
+                () -> getCachedAttemptList(specificCacheKey), () -> {
+            // Try to get from general cache and apply filters in memory
+            List<CandidateAttemptCacheDto> cachedGeneralResult = null;
             
-            // Cache the filtered result for future use
-            cacheAttemptList(specificCacheKey, filteredResult);
+            // Determine which general cache to use based on parameters
+            if (candidateId != null) {
+                cachedGeneralResult = getCachedGeneralAttempts(CacheUtils.candidateAttemptsIndex(candidateId)).value();
+            } else if (assessmentId != null) {
+                cachedGeneralResult = getCachedGeneralAttempts(CacheUtils.assessmentAttemptsIndex(assessmentId)).value();
+            }
             
-            return applyPaginationToList(filteredResult, pageable);
-        }
+            if (cachedGeneralResult != null) {
+                List<CandidateAttemptCacheDto> filtered = applyFiltersInMemory(cachedGeneralResult, candidateId, 
+                        assessmentId, statuses, startedAfter, startedBefore, completedAfter, completedBefore);
+                
+                // Cache the filtered result for future use
+                cacheSpecificAttemptList(specificCacheKey, filtered);
+                
+                return filtered;
+            }
+            
+            // No cache hit - fetch from database with all filters
+            return fetchFromDatabaseWithFilters(candidateId, assessmentId, statuses, 
+                                              startedAfter, startedBefore, completedAfter, completedBefore, 
+                                              specificCacheKey);
+        });
         
-        // No cache hit - fetch from database with all filters
-        return fetchFromDatabaseWithFilters(candidateId, assessmentId, statuses, 
-                                          startedAfter, startedBefore, completedAfter, completedBefore, 
-                                          pageable, specificCacheKey);
+        return applyPaginationToList(filteredResult, pageable);
     }
 
     // Update candidate attempt
@@ -482,8 +505,8 @@ public class CandidateAttemptService {
         
         // IMPORTANT: Invalidate the available candidates cache for this assessment
         // This ensures the candidate appears in the available candidates list after deletion
-        // We need to invalidate all user_candidates caches since we don't know which user is viewing the assessment
-        redisService.evictCache("cache:user_candidates:" + userId + ":*");
+        // The assessment's owner is the only user whose candidate lists can contain this attempt
+        evictAvailableCandidatesCache(userId);
     }
 
     // Get attempts by candidate ID
@@ -686,7 +709,7 @@ public class CandidateAttemptService {
     }
 
     // Get quick overview statistics for dashboard (combines individual methods)
-    @Cacheable(value = "attempts", key = "'quick_overview' + ':' + #userId")
+    @Cacheable(value = "attempts", key = "'quick_overview' + ':' + #userId", sync = true)
     @Transactional(readOnly = true)
     public Map<String, Object> getQuickOverview(Long userId) {
         return Map.of(
@@ -735,7 +758,7 @@ public class CandidateAttemptService {
         }
 
         String ownerAndRepoName = attempt.getGithubRepositoryLink().split("https://github.com/")[1];
-        GitHubPullRequest candidatePullRequest = githubService.getPullRequests(ownerAndRepoName).getFirst();
+        GitHubPullRequest candidatePullRequest = Blocking.await(githubService.getPullRequests(ownerAndRepoName)).getFirst();
 
         candidateAttemptRepository.updateStatus(id, AttemptStatus.COMPLETED);
         attempt.setStatus(AttemptStatus.COMPLETED);
@@ -854,23 +877,25 @@ public class CandidateAttemptService {
     /**
      * Cache key generation methods
      */
-    private String generateCandidateGeneralCacheKey(Long candidateId) {
-        return "cache:candidate_attempts:" + candidateId;
-    }
-    
-    private String generateAssessmentGeneralCacheKey(Long assessmentId) {
-        return "cache:assessment_attempts:" + assessmentId;
-    }
-    
     private String generateSpecificCacheKey(Long candidateId, Long assessmentId, List<AttemptStatus> statuses,
                                           LocalDateTime startedAfter, LocalDateTime startedBefore,
                                           LocalDateTime completedAfter, LocalDateTime completedBefore) {
         StringBuilder keyBuilder = new StringBuilder();
         keyBuilder.append("cache:all_attempts:");
+
+        // Lists are scoped and versioned by assessment when one is given, otherwise by candidate,
+        // since an attempt can only appear in lists scoped to its own assessment or candidate
+        keyBuilder.append(assessmentId != null
+                ? CacheUtils.assessmentHashTag(assessmentId)
+                : CacheUtils.candidateHashTag(candidateId)).append(":");
         
         // Add assessment and candidate IDs
         keyBuilder.append(assessmentId != null ? assessmentId.toString() : "null").append(":");
         keyBuilder.append(candidateId != null ? candidateId.toString() : "null").append(":");
+
+        keyBuilder.append(cacheGeneration(assessmentId != null
+                ? CacheUtils.assessmentAttemptsGeneration(assessmentId)
+                : CacheUtils.candidateAttemptsGeneration(candidateId))).append(":");
         
         // Add attempt statuses (sorted for consistent keys)
         if (statuses != null && !statuses.isEmpty()) {
@@ -893,72 +918,188 @@ public class CandidateAttemptService {
      * Cache operations helper methods
      */
     @SuppressWarnings("unchecked")
-    private List<CandidateAttemptCacheDto> getCachedAttemptList(String cacheKey) {
+    private CacheLoadGuard.Lookup<List<CandidateAttemptCacheDto>> getCachedAttemptList(String cacheKey) {
         try {
-            Object cached = redisService.get(cacheKey);
-            if (cached instanceof List<?>) {
-                return (List<CandidateAttemptCacheDto>) cached;
+            RedisService.TimedValue cached = redisService.getWithTtl(cacheKey);
+            if (cached.value() instanceof List<?>) {
+                return new CacheLoadGuard.Lookup<>((List<CandidateAttemptCacheDto>) cached.value(), cached.ttlMillis());
             }
         } catch (Exception e) {
             log.warn("Failed to retrieve cached attempt list for key: {}, error: {}", cacheKey, e.getMessage());
         }
-        return null;
+        return CacheLoadGuard.Lookup.miss();
     }
     
-    private void cacheAttemptList(String cacheKey, List<CandidateAttemptCacheDto> attempts) {
+    // General lists are indexes of attempt ids; attempts are hydrated and then joined with their
+    // assessment and candidate, which are stored once as their own entries
+    private CacheLoadGuard.Lookup<List<CandidateAttemptCacheDto>> getCachedGeneralAttempts(String index) {
+        try {
+            NormalizedCache.IndexPage<CandidateAttemptCacheDto> cached = normalizedCache.getIndex(index,
+                    CacheUtils.attemptEntityType);
+            List<CandidateAttemptCacheDto> attempts = cached != null ? attachReferences(cached.content()) : null;
+            if (attempts != null) {
+                return new CacheLoadGuard.Lookup<>(attempts, cached.ttlMillis());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to retrieve cached attempt index {}, error: {}", index, e.getMessage());
+        }
+        return CacheLoadGuard.Lookup.miss();
+    }
+
+    private PaginatedResponseDto<CandidateAttemptCacheDto> getCachedGeneralAttemptPage(String index, Pageable pageable,
+            Specification<CandidateAttempt> spec) {
+        try {
+            NormalizedCache.IndexPage<CandidateAttemptCacheDto> page = normalizedCache.getPage(index,
+                    CacheUtils.attemptEntityType, pageable.getOffset(), pageable.getPageSize(),
+                    NormalizedCache.isDescending(pageable.getSort(), "createdDate"));
+            List<CandidateAttemptCacheDto> content = page != null ? attachReferences(page.content()) : null;
+            if (content != null) {
+                cacheLoadGuard.refreshEarlyIfDue("attempts_index", NormalizedCache.indexKey(index), page.ttlMillis(),
+                        () -> loadGeneralAttempts(index, spec));
+                return new PaginatedResponseDto<>(content, pageable.getPageNumber(), pageable.getPageSize(), page.total());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to retrieve cached attempt page {}, error: {}", index, e.getMessage());
+        }
+        return null;
+    }
+
+    private void cacheGeneralAttempts(String index, List<CandidateAttemptCacheDto> attempts) {
         try {
             // Cache for 10 minutes (matching the attempts cache configuration)
-            redisService.setWithExpiration(cacheKey, attempts, 10, java.util.concurrent.TimeUnit.MINUTES);
+            normalizedCache.putAll(new NormalizedCache.Entities()
+                    .add(CacheUtils.assessmentEntityType,
+                            distinctById(attempts.stream().map(CandidateAttemptCacheDto::getAssessment).toList(), AssessmentCacheDto::getId),
+                            AssessmentCacheDto::getId, ASSESSMENT_CACHE_TTL)
+                    .add(CacheUtils.candidateEntityType,
+                            distinctById(attempts.stream().map(CandidateAttemptCacheDto::getCandidate).toList(), CandidateCacheDto::getId),
+                            CandidateCacheDto::getId, CANDIDATE_CACHE_TTL));
+            normalizedCache.storeIndex(index, CacheUtils.attemptEntityType,
+                    attempts.stream().map(this::toIndexEntry).toList(), CandidateAttemptCacheDto::getId,
+                    attempt -> NormalizedCache.score(attempt.getCreatedDate()), ATTEMPT_CACHE_TTL, ATTEMPT_CACHE_TTL);
+        } catch (Exception e) {
+            log.warn("Failed to cache attempt index {}, error: {}", index, e.getMessage());
+        }
+    }
+
+    private static <T> List<T> distinctById(List<T> entities, Function<T, Long> idFn) {
+        Map<Long, T> byId = new LinkedHashMap<>();
+        for (T entity : entities) {
+            if (entity != null) {
+                byId.putIfAbsent(idFn.apply(entity), entity);
+            }
+        }
+        return new ArrayList<>(byId.values());
+    }
+
+    // Copy of an attempt whose assessment and candidate are reduced to their ids
+    private CandidateAttemptCacheDto toIndexEntry(CandidateAttemptCacheDto attempt) {
+        CandidateAttemptCacheDto entry = new CandidateAttemptCacheDto();
+        entry.setId(attempt.getId());
+        entry.setGithubRepositoryLink(attempt.getGithubRepositoryLink());
+        entry.setStatus(attempt.getStatus());
+        entry.setLanguageChoice(attempt.getLanguageChoice());
+        entry.setCreatedDate(attempt.getCreatedDate());
+        entry.setUpdatedDate(attempt.getUpdatedDate());
+        entry.setStartedDate(attempt.getStartedDate());
+        entry.setCompletedDate(attempt.getCompletedDate());
+        entry.setEvaluatedDate(attempt.getEvaluatedDate());
+        entry.setEvaluation(attempt.getEvaluation());
+        if (attempt.getAssessment() != null) {
+            AssessmentCacheDto assessment = new AssessmentCacheDto();
+            assessment.setId(attempt.getAssessment().getId());
+            entry.setAssessment(assessment);
+        }
+        if (attempt.getCandidate() != null) {
+            CandidateCacheDto candidate = new CandidateCacheDto();
+            candidate.setId(attempt.getCandidate().getId());
+            entry.setCandidate(candidate);
+        }
+        return entry;
+    }
+
+    // Replaces the id-only references of cached attempts with the cached entries; null if any is missing
+    private List<CandidateAttemptCacheDto> attachReferences(List<CandidateAttemptCacheDto> attempts) {
+        if (attempts == null) {
+            return null;
+        }
+        List<Long> assessmentIds = attempts.stream().filter(attempt -> attempt.getAssessment() != null)
+                .map(attempt -> attempt.getAssessment().getId()).distinct().toList();
+        List<Long> candidateIds = attempts.stream().filter(attempt -> attempt.getCandidate() != null)
+                .map(attempt -> attempt.getCandidate().getId()).distinct().toList();
+        List<Object> assessments = normalizedCache.hydrate(CacheUtils.assessmentEntityType, assessmentIds);
+        List<Object> candidates = normalizedCache.hydrate(CacheUtils.candidateEntityType, candidateIds);
+        if (assessments == null || candidates == null) {
+            return null;
+        }
+        Map<Long, AssessmentCacheDto> assessmentsById = assessments.stream().map(AssessmentCacheDto.class::cast)
+                .collect(Collectors.toMap(AssessmentCacheDto::getId, assessment -> assessment));
+        Map<Long, CandidateCacheDto> candidatesById = candidates.stream().map(CandidateCacheDto.class::cast)
+                .collect(Collectors.toMap(CandidateCacheDto::getId, candidate -> candidate));
+        for (CandidateAttemptCacheDto attempt : attempts) {
+            if (attempt.getAssessment() != null) {
+                attempt.setAssessment(assessmentsById.get(attempt.getAssessment().getId()));
+            }
+            if (attempt.getCandidate() != null) {
+                attempt.setCandidate(candidatesById.get(attempt.getCandidate().getId()));
+            }
+        }
+        return attempts;
+    }
+
+    // Filtered list keys embed a cache generation, so they are never deleted individually
+    private void cacheSpecificAttemptList(String cacheKey, List<CandidateAttemptCacheDto> attempts) {
+        try {
+            redisService.setWithExpiration(cacheKey, attempts, 10, TimeUnit.MINUTES);
         } catch (Exception e) {
             log.warn("Failed to cache attempt list for key: {}, error: {}", cacheKey, e.getMessage());
         }
     }
     
     private PaginatedResponseDto<CandidateAttemptCacheDto> getGeneralCandidateAttempts(Long candidateId, Pageable pageable) {
-        String generalCacheKey = generateCandidateGeneralCacheKey(candidateId);
-        List<CandidateAttemptCacheDto> cachedResult = getCachedAttemptList(generalCacheKey);
-        
-        if (cachedResult != null) {
-            return applyPaginationToList(cachedResult, pageable);
-        }
-        
-        // Fetch from database with only candidate filter
-        Specification<CandidateAttempt> spec = CandidateAttemptSpecifications.hasCandidateId(candidateId);
-        List<CandidateAttempt> attempts = candidateAttemptRepository.findAll(spec);
-        List<CandidateAttemptCacheDto> attemptDtos = attempts.stream()
-                .map(CandidateAttemptCacheDto::new)
-                .collect(Collectors.toList());
-        
-        // Cache the general result
-        cacheAttemptList(generalCacheKey, attemptDtos);
-        
-        return applyPaginationToList(attemptDtos, pageable);
+        // Fetch from database with only candidate filter on a miss
+        return getGeneralAttempts(CacheUtils.candidateAttemptsIndex(candidateId),
+                CandidateAttemptSpecifications.hasCandidateId(candidateId), pageable);
     }
     
     private PaginatedResponseDto<CandidateAttemptCacheDto> getGeneralAssessmentAttempts(Long assessmentId, Pageable pageable) {
-        String generalCacheKey = generateAssessmentGeneralCacheKey(assessmentId);
-        List<CandidateAttemptCacheDto> cachedResult = getCachedAttemptList(generalCacheKey);
-        
-        if (cachedResult != null) {
-            return applyPaginationToList(cachedResult, pageable);
+        // Fetch from database with only assessment filter on a miss
+        return getGeneralAttempts(CacheUtils.assessmentAttemptsIndex(assessmentId),
+                CandidateAttemptSpecifications.hasAssessmentId(assessmentId), pageable);
+    }
+
+    private PaginatedResponseDto<CandidateAttemptCacheDto> getGeneralAttempts(String index,
+            Specification<CandidateAttempt> spec, Pageable pageable) {
+        // Pages ordered by creation date are read straight from the index
+        if (NormalizedCache.canPage(pageable.getSort(), "createdDate")) {
+            PaginatedResponseDto<CandidateAttemptCacheDto> cachedPage = getCachedGeneralAttemptPage(index, pageable, spec);
+            if (cachedPage != null) {
+                return cachedPage;
+            }
         }
         
-        // Fetch from database with only assessment filter
-        Specification<CandidateAttempt> spec = CandidateAttemptSpecifications.hasAssessmentId(assessmentId);
+        // Read the whole list; concurrent misses share a single database query
+        List<CandidateAttemptCacheDto> attempts = cacheLoadGuard.get("attempts_index", NormalizedCache.indexKey(index),
+                () -> getCachedGeneralAttempts(index), () -> loadGeneralAttempts(index, spec));
+        
+        return applyPaginationToList(attempts, pageable);
+    }
+
+    private List<CandidateAttemptCacheDto> loadGeneralAttempts(String index, Specification<CandidateAttempt> spec) {
         List<CandidateAttempt> attempts = candidateAttemptRepository.findAll(spec);
         List<CandidateAttemptCacheDto> attemptDtos = attempts.stream()
                 .map(CandidateAttemptCacheDto::new)
                 .collect(Collectors.toList());
         
         // Cache the general result
-        cacheAttemptList(generalCacheKey, attemptDtos);
+        cacheGeneralAttempts(index, attemptDtos);
         
-        return applyPaginationToList(attemptDtos, pageable);
+        return attemptDtos;
     }
     
-    private PaginatedResponseDto<CandidateAttemptCacheDto> fetchFromDatabaseWithFilters(Long candidateId, Long assessmentId,
+    private List<CandidateAttemptCacheDto> fetchFromDatabaseWithFilters(Long candidateId, Long assessmentId,
             List<AttemptStatus> statuses, LocalDateTime startedAfter, LocalDateTime startedBefore,
-            LocalDateTime completedAfter, LocalDateTime completedBefore, Pageable pageable, String specificCacheKey) {
+            LocalDateTime completedAfter, LocalDateTime completedBefore, String specificCacheKey) {
         
         // Build specification with all filters
         Specification<CandidateAttempt> spec = CandidateAttemptSpecifications.hasAssessmentId(assessmentId);
@@ -991,9 +1132,9 @@ public class CandidateAttemptService {
                 .collect(Collectors.toList());
         
         // Cache the specific filtered result
-        cacheAttemptList(specificCacheKey, attemptDtos);
+        cacheSpecificAttemptList(specificCacheKey, attemptDtos);
         
-        return applyPaginationToList(attemptDtos, pageable);
+        return attemptDtos;
     }
     
     /**
@@ -1076,96 +1217,122 @@ public class CandidateAttemptService {
      * Cache update methods for CRUD operations
      */
     private void updateCacheAfterAttemptCreation(Long candidateId, Long assessmentId, CandidateAttemptCacheDto newAttempt) {
-        // Add to candidate general cache if it exists
-        String candidateGeneralCacheKey = generateCandidateGeneralCacheKey(candidateId);
-        List<CandidateAttemptCacheDto> cachedCandidateAttempts = getCachedAttemptList(candidateGeneralCacheKey);
-        if (cachedCandidateAttempts != null) {
-            cachedCandidateAttempts.add(newAttempt);
-            cacheAttemptList(candidateGeneralCacheKey, cachedCandidateAttempts);
-        }
-        
-        // Add to assessment general cache if it exists
-        String assessmentGeneralCacheKey = generateAssessmentGeneralCacheKey(assessmentId);
-        List<CandidateAttemptCacheDto> cachedAssessmentAttempts = getCachedAttemptList(assessmentGeneralCacheKey);
-        if (cachedAssessmentAttempts != null) {
-            cachedAssessmentAttempts.add(newAttempt);
-            cacheAttemptList(assessmentGeneralCacheKey, cachedAssessmentAttempts);
-        }
+        // Store the attempt and add it to the candidate and assessment general indexes if they exist
+        putGeneralAttempt(candidateId, assessmentId, newAttempt);
+        updateReferencingEntities(candidateId, assessmentId, newAttempt.getId(), newAttempt.getStatus());
         
         // Evict all specific filter caches
         evictSpecificAttemptsCache(assessmentId, candidateId);
         
-        // Evict available candidates cache for this assessment
-        evictAvailableCandidatesCache();
+        // Evict available candidates cache for the assessment's owner
+        evictAvailableCandidatesCache(newAttempt.getAssessment().getUserId());
     }
     
     private void updateCacheAfterAttemptUpdate(Long candidateId, Long assessmentId, CandidateAttemptCacheDto updatedAttempt) {
-        // Update in candidate general cache if it exists
-        String candidateGeneralCacheKey = generateCandidateGeneralCacheKey(candidateId);
-        List<CandidateAttemptCacheDto> cachedCandidateAttempts = getCachedAttemptList(candidateGeneralCacheKey);
-        if (cachedCandidateAttempts != null) {
-            // Find and replace the attempt
-            for (int i = 0; i < cachedCandidateAttempts.size(); i++) {
-                if (cachedCandidateAttempts.get(i).getId().equals(updatedAttempt.getId())) {
-                    cachedCandidateAttempts.set(i, updatedAttempt);
-                    break;
-                }
-            }
-            cacheAttemptList(candidateGeneralCacheKey, cachedCandidateAttempts);
-        }
-        
-        // Update in assessment general cache if it exists
-        String assessmentGeneralCacheKey = generateAssessmentGeneralCacheKey(assessmentId);
-        List<CandidateAttemptCacheDto> cachedAssessmentAttempts = getCachedAttemptList(assessmentGeneralCacheKey);
-        if (cachedAssessmentAttempts != null) {
-            // Find and replace the attempt
-            for (int i = 0; i < cachedAssessmentAttempts.size(); i++) {
-                if (cachedAssessmentAttempts.get(i).getId().equals(updatedAttempt.getId())) {
-                    cachedAssessmentAttempts.set(i, updatedAttempt);
-                    break;
-                }
-            }
-            cacheAttemptList(assessmentGeneralCacheKey, cachedAssessmentAttempts);
-        }
+        // Overwrite the shared attempt entry, which both general indexes hydrate from
+        putGeneralAttempt(candidateId, assessmentId, updatedAttempt);
+        updateReferencingEntities(candidateId, assessmentId, updatedAttempt.getId(), updatedAttempt.getStatus());
         
         // Evict all specific filter caches
         evictSpecificAttemptsCache(assessmentId, candidateId);
     }
     
     private void updateCacheAfterAttemptDeletion(Long candidateId, Long assessmentId, CandidateAttemptCacheDto deletedAttempt) {
-        // Remove from candidate general cache if it exists
-        String candidateGeneralCacheKey = generateCandidateGeneralCacheKey(candidateId);
-        List<CandidateAttemptCacheDto> cachedCandidateAttempts = getCachedAttemptList(candidateGeneralCacheKey);
-        if (cachedCandidateAttempts != null) {
-            cachedCandidateAttempts.removeIf(attempt -> attempt.getId().equals(deletedAttempt.getId()));
-            cacheAttemptList(candidateGeneralCacheKey, cachedCandidateAttempts);
-        }
-        
-        // Remove from assessment general cache if it exists
-        String assessmentGeneralCacheKey = generateAssessmentGeneralCacheKey(assessmentId);
-        List<CandidateAttemptCacheDto> cachedAssessmentAttempts = getCachedAttemptList(assessmentGeneralCacheKey);
-        if (cachedAssessmentAttempts != null) {
-            cachedAssessmentAttempts.removeIf(attempt -> attempt.getId().equals(deletedAttempt.getId()));
-            cacheAttemptList(assessmentGeneralCacheKey, cachedAssessmentAttempts);
+        // Remove from the candidate and assessment general indexes if they exist
+        try {
+            normalizedCache.remove(CacheUtils.attemptEntityType, deletedAttempt.getId(),
+                    List.of(CacheUtils.candidateAttemptsIndex(candidateId), CacheUtils.assessmentAttemptsIndex(assessmentId)));
+        } catch (Exception e) {
+            log.warn("Failed to remove attempt {} from cache, error: {}", deletedAttempt.getId(), e.getMessage());
         }
+        updateReferencingEntities(candidateId, assessmentId, deletedAttempt.getId(), null);
         
         // Evict all specific filter caches
         evictSpecificAttemptsCache(assessmentId, candidateId);
     }
 
-    private void evictSpecificAttemptsCache(Long assessmentId, Long candidateId) {
-        if (assessmentId != null && candidateId != null) {
-            redisService.evictCache("cache:all_attempts:" + assessmentId + ":" + candidateId + ":*");
+    // The entry and both index updates are sent in one pipeline
+    private void putGeneralAttempt(Long candidateId, Long assessmentId, CandidateAttemptCacheDto attempt) {
+        try {
+            double score = NormalizedCache.score(attempt.getCreatedDate());
+            normalizedCache.put(CacheUtils.attemptEntityType, attempt.getId(), toIndexEntry(attempt), ATTEMPT_CACHE_TTL,
+                    Map.of(CacheUtils.candidateAttemptsIndex(candidateId), score,
+                            CacheUtils.assessmentAttemptsIndex(assessmentId), score));
+        } catch (Exception e) {
+            log.warn("Failed to cache attempt {} for candidate {} and assessment {}, error: {}",
+                    attempt.getId(), candidateId, assessmentId, e.getMessage());
+        }
+    }
+
+    /**
+     * Keeps the attempt ids, and the candidate's assessment statuses, of the cached candidate and
+     * assessment entities in step with an attempt. Both entities are read with one MGET and
+     * compared-and-set in one pipeline.
+     *
+     * @param status The attempt's current status, or null if the attempt was deleted
+     */
+    private void updateReferencingEntities(Long candidateId, Long assessmentId, Long attemptId, AttemptStatus status) {
+        try {
+            normalizedCache.updateAll(Map.of(
+                    NormalizedCache.entityKey(CacheUtils.candidateEntityType, candidateId), CANDIDATE_CACHE_TTL,
+                    NormalizedCache.entityKey(CacheUtils.assessmentEntityType, assessmentId), ASSESSMENT_CACHE_TTL),
+                    entity -> {
+                        if (entity instanceof CandidateCacheDto candidate) {
+                            candidate.setCandidateAttemptIds(withId(candidate.getCandidateAttemptIds(), attemptId, status != null));
+                            Map<AttemptStatus, List<Long>> statuses = new HashMap<>();
+                            if (candidate.getAssessmentStatuses() != null) {
+                                candidate.getAssessmentStatuses().forEach((s, ids) -> statuses.put(s, withId(ids, assessmentId, false)));
+                            }
+                            if (status != null) {
+                                statuses.put(status, withId(statuses.get(status), assessmentId, true));
+                            }
+                            candidate.setAssessmentStatuses(statuses);
+                        } else if (entity instanceof AssessmentCacheDto assessment) {
+                            assessment.setCandidateAttemptIds(withId(assessment.getCandidateAttemptIds(), attemptId, status != null));
+                        }
+                        return entity;
+                    });
+        } catch (Exception e) {
+            log.warn("Failed to update cached candidate {} and assessment {} for attempt {}, error: {}",
+                    candidateId, assessmentId, attemptId, e.getMessage());
+        }
+    }
+
+    // Copy of ids with id added (once) or removed
+    private static List<Long> withId(List<Long> ids, Long id, boolean present) {
+        List<Long> copy = ids != null ? new ArrayList<>(ids) : new ArrayList<>();
+        copy.remove(id);
+        if (present) {
+            copy.add(id);
         }
+        return copy;
+    }
+
+    private void evictSpecificAttemptsCache(Long assessmentId, Long candidateId) {
         if (assessmentId != null) {
-            redisService.evictCache("cache:assessment_attempts:" + assessmentId + ":*");
+            redisService.bumpGeneration(CacheUtils.assessmentAttemptsGeneration(assessmentId));
+        }
+        if (candidateId != null) {
+            redisService.bumpGeneration(CacheUtils.candidateAttemptsGeneration(candidateId));
         }
     }
     
-    private void evictAvailableCandidatesCache() {
-        // Evict all available candidates cache entries for this assessment
-        // TODO: evict the cache for the specific user
-        redisService.evictCache("cache:user_candidates:*");
+    private void evictAvailableCandidatesCache(Long userId) {
+        // Invalidate the available candidates cache entries of the user who owns the assessment
+        if (userId != null) {
+            redisService.bumpGeneration(CacheUtils.userCandidatesGeneration(userId));
+        }
+    }
+
+    // Current generation of a filtered cache namespace. If it cannot be read, a unique one is
+    // used instead so that nothing stale is served; the entries written under it simply expire
+    private String cacheGeneration(String namespace) {
+        try {
+            return "v" + redisService.currentGeneration(namespace);
+        } catch (Exception e) {
+            log.warn("Failed to read cache generation for namespace: {}, error: {}", namespace, e.getMessage());
+            return "v" + UUID.randomUUID();
+        }
     }
 
 }
\ No newline at end of file
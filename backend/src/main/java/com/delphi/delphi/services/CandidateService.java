@@ -1,9 +1,11 @@
 package com.delphi.delphi.services;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -16,8 +18,11 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.delphi.delphi.components.CacheLoadGuard;
+import com.delphi.delphi.components.NormalizedCache;
 import com.delphi.delphi.components.RedisService;
 import com.delphi.delphi.dtos.PaginatedResponseDto;
 import com.delphi.delphi.dtos.cache.CandidateCacheDto;
@@ -46,15 +51,20 @@ public class CandidateService {
 
     private final UserRepository userRepository;
     private final Logger log = LoggerFactory.getLogger(CandidateService.class);
+    private static final Duration CANDIDATE_CACHE_TTL = Duration.ofMinutes(30);
     private final CandidateRepository candidateRepository;
 
     private final RedisService redisService;
+    private final NormalizedCache normalizedCache;
+    private final CacheLoadGuard cacheLoadGuard;
 
     public CandidateService(CandidateRepository candidateRepository, UserRepository userRepository,
-            RedisService redisService) {
+            RedisService redisService, NormalizedCache normalizedCache, CacheLoadGuard cacheLoadGuard) {
         this.candidateRepository = candidateRepository;
         this.userRepository = userRepository;
         this.redisService = redisService;
+        this.normalizedCache = normalizedCache;
+        this.cacheLoadGuard = cacheLoadGuard;
     }
 
     // Create a new candidate
@@ -149,6 +159,9 @@ public class CandidateService {
      * memory
      * - This reduces cache key proliferation and improves cache hit rates
      * 
+     * Not transactional: the cache loads in a transaction of its own, so a miss waiting for
+     * another node's load holds no database connection.
+     * 
      * @param userId                 The user whose candidates to retrieve
      * @param assessmentId           Filter by assessment ID
      * @param attemptStatuses          Filter by attempt status
@@ -160,7 +173,7 @@ public class CandidateService {
      * @return PaginatedResponseDto containing filtered candidates and pagination
      *         metadata
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public PaginatedResponseDto<CandidateCacheDto> getCandidatesWithFiltersForUser(Long userId, Long assessmentId,
             List<AttemptStatus> attemptStatuses,
             LocalDateTime createdAfter, LocalDateTime createdBefore,
@@ -179,33 +192,35 @@ public class CandidateService {
         String specificCacheKey = generateSpecificCacheKey(userId, assessmentId, attemptStatuses, 
                                                           createdAfter, createdBefore);
         
-        // Try to get from specific cache first
-        List<CandidateCacheDto> cachedSpecificResult = getCachedCandidateList(specificCacheKey);
-        if (cachedSpecificResult != null) {
-            return applyPaginationToList(cachedSpecificResult, pageable);
-        }
-        
-        // Try to get from general cache and apply filters in memory
-        String generalCacheKey = generateGeneralCacheKey(userId);
-        List<CandidateCacheDto> cachedGeneralResult = getCachedCandidateList(generalCacheKey);
-        if (cachedGeneralResult != null) {
-            List<CandidateCacheDto> filteredResult = applyFiltersInMemory(cachedGeneralResult, assessmentId, 
-                    attemptStatuses, createdAfter, createdBefore);
-            
-            // Cache the filtered result for future use
-            cacheCandidateList(specificCacheKey, filteredResult);
+        // Try to get from specific cache first; concurrent misses share a single load
+        List<CandidateCacheDto> filteredResult = cacheLoadGuard.get("user_candidates", specificCacheKey,
+                () -> getCachedCandidateList(specificCacheKey), () -> {
+            // Try to get from general cache and apply filters in memory
+            List<CandidateCacheDto> cachedGeneralResult = getCachedGeneralCandidates(userId).value();
+            if (cachedGeneralResult != null) {
+                List<CandidateCacheDto> filtered = applyFiltersInMemory(cachedGeneralResult, assessmentId, 
+                        attemptStatuses, createdAfter, createdBefore);
+                
+                // Cache the filtered result for future use
+                cacheSpecificCandidateList(specificCacheKey, filtered);
+                
+                return filtered;
+            }
             
-            return applyPaginationToList(filteredResult, pageable);
-        }
+            // No cache hit - fetch from database with all filters
+            return fetchFromDatabaseWithFilters(userId, assessmentId, attemptStatuses, 
+                                              createdAfter, createdBefore, specificCacheKey);
+        });
         
-        // No cache hit - fetch from database with all filters
-        return fetchFromDatabaseWithFilters(userId, assessmentId, attemptStatuses, 
-                                          createdAfter, createdBefore, pageable, specificCacheKey);
+        return applyPaginationToList(filteredResult, pageable);
     }
 
     /**
      * Get candidates who are NOT in a specific assessment (available candidates for adding to assessment)
      * 
+     * Not transactional: the cache loads in a transaction of its own, so a miss waiting for
+     * another node's load holds no database connection.
+     * 
      * @param userId                 The user whose candidates to retrieve
      * @param excludeAssessmentId    Assessment ID to exclude (candidates NOT in this assessment)
      * @param createdAfter           Start date for date range filter (used in cache key)
@@ -213,7 +228,7 @@ public class CandidateService {
      * @param pageable               Pagination and sorting parameters (applied in memory)
      * @return PaginatedResponseDto containing filtered candidates and pagination metadata
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public PaginatedResponseDto<CandidateCacheDto> getAvailableCandidatesForAssessment(Long userId, Long excludeAssessmentId,
             LocalDateTime createdAfter, LocalDateTime createdBefore,
             Pageable pageable) {
@@ -224,27 +239,28 @@ public class CandidateService {
         // Generate cache key with only user ID and date range to reduce cache key proliferation
         String normalizedCreatedAfter = CacheUtils.normalizeDateTime(createdAfter);
         String normalizedCreatedBefore = CacheUtils.normalizeDateTime(createdBefore);
-        String cacheKey = "cache:user_candidates:" + userId + ":" + normalizedCreatedAfter + ":"
+        String cacheKey = "cache:user_candidates:" + CacheUtils.userHashTag(userId) + ":"
+                + cacheGeneration(CacheUtils.userCandidatesGeneration(userId)) + ":" + normalizedCreatedAfter + ":"
                 + normalizedCreatedBefore;
 
-        // Check if cache exists
-        List<CandidateCacheDto> cachedCandidates = getCachedCandidateList(cacheKey);
-
-        // If cache doesn't exist, fetch from DB with only user and date filters
-        if (cachedCandidates == null) {
+        // Check if cache exists; concurrent misses share a single load
+        List<CandidateCacheDto> cachedCandidates = cacheLoadGuard.get("user_candidates", cacheKey,
+                () -> getCachedCandidateList(cacheKey), () -> {
+            // If cache doesn't exist, fetch from DB with only user and date filters
             Specification<Candidate> spec = Specification.allOf(
                     CandidateSpecifications.belongsToUser(userId),
                     CandidateSpecifications.createdAfter(createdAfter),
                     CandidateSpecifications.createdBefore(createdBefore));
 
             // Fetch all candidates for the user within date range (no pagination at DB level)
-            cachedCandidates = candidateRepository.findAll(spec).stream()
+            List<CandidateCacheDto> candidates = candidateRepository.findAll(spec).stream()
                     .map(CandidateCacheDto::new)
                     .collect(Collectors.toList());
 
             // Store in cache for future requests
-            cacheCandidateList(cacheKey, cachedCandidates);
-        }
+            cacheSpecificCandidateList(cacheKey, candidates);
+            return candidates;
+        });
 
         // Apply exclude assessment filter in memory
         List<CandidateCacheDto> filteredCandidates = cachedCandidates.stream()
@@ -551,14 +567,11 @@ public class CandidateService {
     /**
      * Cache key generation methods
      */
-    private String generateGeneralCacheKey(Long userId) {
-        return "cache:user_candidates:" + userId;
-    }
-    
     private String generateSpecificCacheKey(Long userId, Long assessmentId, List<AttemptStatus> attemptStatuses,
                                           LocalDateTime createdAfter, LocalDateTime createdBefore) {
         StringBuilder keyBuilder = new StringBuilder();
-        keyBuilder.append("cache:user_candidates:").append(userId).append(":");
+        keyBuilder.append("cache:user_candidates:").append(CacheUtils.userHashTag(userId)).append(":");
+        keyBuilder.append(cacheGeneration(CacheUtils.userCandidatesGeneration(userId))).append(":");
         
         // Add assessment ID
         keyBuilder.append(assessmentId != null ? assessmentId.toString() : "null").append(":");
@@ -582,21 +595,46 @@ public class CandidateService {
      * Cache operations helper methods
      */
     @SuppressWarnings("unchecked")
-    private List<CandidateCacheDto> getCachedCandidateList(String cacheKey) {
+    private CacheLoadGuard.Lookup<List<CandidateCacheDto>> getCachedCandidateList(String cacheKey) {
         try {
-            Object cached = redisService.get(cacheKey);
-            if (cached instanceof List<?>) {
-                return (List<CandidateCacheDto>) cached;
+            RedisService.TimedValue cached = redisService.getWithTtl(cacheKey);
+            if (cached.value() instanceof List<?>) {
+                return new CacheLoadGuard.Lookup<>((List<CandidateCacheDto>) cached.value(), cached.ttlMillis());
             }
         } catch (Exception e) {
             log.warn("Failed to retrieve cached candidate list for key: {}, error: {}", cacheKey, e.getMessage());
         }
-        return null;
+        return CacheLoadGuard.Lookup.miss();
     }
     
-    private void cacheCandidateList(String cacheKey, List<CandidateCacheDto> candidates) {
+    // The general list is an index of candidate ids hydrated from the shared candidate entries
+    private CacheLoadGuard.Lookup<List<CandidateCacheDto>> getCachedGeneralCandidates(Long userId) {
+        try {
+            NormalizedCache.IndexPage<CandidateCacheDto> cached = normalizedCache.getIndex(
+                    CacheUtils.userCandidatesIndex(userId), CacheUtils.candidateEntityType);
+            if (cached != null) {
+                return new CacheLoadGuard.Lookup<>(cached.content(), cached.ttlMillis());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to retrieve cached candidate index for user {}, error: {}", userId, e.getMessage());
+        }
+        return CacheLoadGuard.Lookup.miss();
+    }
+
+    private void cacheGeneralCandidates(Long userId, List<CandidateCacheDto> candidates) {
         try {
             // Cache for 30 minutes (matching the candidates cache configuration)
+            normalizedCache.storeIndex(CacheUtils.userCandidatesIndex(userId), CacheUtils.candidateEntityType,
+                    candidates, CandidateCacheDto::getId, candidate -> NormalizedCache.score(candidate.getCreatedDate()),
+                    CANDIDATE_CACHE_TTL, CANDIDATE_CACHE_TTL);
+        } catch (Exception e) {
+            log.warn("Failed to cache candidate index for user {}, error: {}", userId, e.getMessage());
+        }
+    }
+
+    // Filtered list keys embed the user's cache generation, so they are never deleted individually
+    private void cacheSpecificCandidateList(String cacheKey, List<CandidateCacheDto> candidates) {
+        try {
             redisService.setWithExpiration(cacheKey, candidates, 30, java.util.concurrent.TimeUnit.MINUTES);
         } catch (Exception e) {
             log.warn("Failed to cache candidate list for key: {}, error: {}", cacheKey, e.getMessage());
@@ -604,13 +642,34 @@ public class CandidateService {
     }
     
     private PaginatedResponseDto<CandidateCacheDto> getGeneralUserCandidates(Long userId, Pageable pageable) {
-        String generalCacheKey = generateGeneralCacheKey(userId);
-        List<CandidateCacheDto> cachedResult = getCachedCandidateList(generalCacheKey);
-        
-        if (cachedResult != null) {
-            return applyPaginationToList(cachedResult, pageable);
+        String index = CacheUtils.userCandidatesIndex(userId);
+        
+        // Pages ordered by creation date are read straight from the index
+        if (NormalizedCache.canPage(pageable.getSort(), "createdDate")) {
+            try {
+                NormalizedCache.IndexPage<CandidateCacheDto> page = normalizedCache.getPage(
+                        index, CacheUtils.candidateEntityType,
+                        pageable.getOffset(), pageable.getPageSize(),
+                        NormalizedCache.isDescending(pageable.getSort(), "createdDate"));
+                if (page != null) {
+                    cacheLoadGuard.refreshEarlyIfDue("user_candidates", NormalizedCache.indexKey(index),
+                            page.ttlMillis(), () -> loadGeneralCandidates(userId));
+                    return new PaginatedResponseDto<>(page.content(), pageable.getPageNumber(), pageable.getPageSize(),
+                            page.total());
+                }
+            } catch (Exception e) {
+                log.warn("Failed to retrieve cached candidate page for user {}, error: {}", userId, e.getMessage());
+            }
         }
         
+        // Read the whole list; concurrent misses share a single database query
+        List<CandidateCacheDto> candidates = cacheLoadGuard.get("user_candidates", NormalizedCache.indexKey(index),
+                () -> getCachedGeneralCandidates(userId), () -> loadGeneralCandidates(userId));
+        
+        return applyPaginationToList(candidates, pageable);
+    }
+
+    private List<CandidateCacheDto> loadGeneralCandidates(Long userId) {
         // Fetch from database with only user filter
         Specification<Candidate> spec = CandidateSpecifications.belongsToUser(userId);
         List<Candidate> candidates = candidateRepository.findAll(spec);
@@ -619,14 +678,14 @@ public class CandidateService {
                 .collect(Collectors.toList());
         
         // Cache the general result
-        cacheCandidateList(generalCacheKey, candidateDtos);
+        cacheGeneralCandidates(userId, candidateDtos);
         
-        return applyPaginationToList(candidateDtos, pageable);
+        return candidateDtos;
     }
     
-    private PaginatedResponseDto<CandidateCacheDto> fetchFromDatabaseWithFilters(Long userId, Long assessmentId,
+    private List<CandidateCacheDto> fetchFromDatabaseWithFilters(Long userId, Long assessmentId,
             List<AttemptStatus> attemptStatuses, LocalDateTime createdAfter, LocalDateTime createdBefore,
-            Pageable pageable, String specificCacheKey) {
+            String specificCacheKey) {
         
         // Build specification with all filters
         Specification<Candidate> spec = CandidateSpecifications.belongsToUser(userId);
@@ -660,9 +719,9 @@ public class CandidateService {
         }
         
         // Cache the specific filtered result
-        cacheCandidateList(specificCacheKey, candidateDtos);
+        cacheSpecificCandidateList(specificCacheKey, candidateDtos);
         
-        return applyPaginationToList(candidateDtos, pageable);
+        return candidateDtos;
     }
     
     /**
@@ -738,53 +797,57 @@ public class CandidateService {
      * Cache update methods for CRUD operations
      */
     private void updateCacheAfterCandidateCreation(Long userId, CandidateCacheDto newCandidate) {
-        // Add to general cache if it exists
-        String generalCacheKey = generateGeneralCacheKey(userId);
-        List<CandidateCacheDto> cachedCandidates = getCachedCandidateList(generalCacheKey);
-        if (cachedCandidates != null) {
-            cachedCandidates.add(newCandidate);
-            cacheCandidateList(generalCacheKey, cachedCandidates);
-        }
+        // Store the candidate and add it to the general index if it exists
+        putGeneralCandidate(userId, newCandidate);
         
         // Evict all specific filter caches for this user
         evictUserCandidatesSpecificCaches(userId);
     }
     
     private void updateCacheAfterCandidateUpdate(Long userId, CandidateCacheDto updatedCandidate) {
-        // Update in general cache if it exists
-        String generalCacheKey = generateGeneralCacheKey(userId);
-        List<CandidateCacheDto> cachedCandidates = getCachedCandidateList(generalCacheKey);
-        if (cachedCandidates != null) {
-            // Find and replace the candidate
-            for (int i = 0; i < cachedCandidates.size(); i++) {
-                if (cachedCandidates.get(i).getId().equals(updatedCandidate.getId())) {
-                    cachedCandidates.set(i, updatedCandidate);
-                    break;
-                }
-            }
-            cacheCandidateList(generalCacheKey, cachedCandidates);
-        }
+        // Overwrite the shared candidate entry, which every list hydrates from
+        putGeneralCandidate(userId, updatedCandidate);
         
         // Evict all specific filter caches for this user
         evictUserCandidatesSpecificCaches(userId);
     }
     
     private void updateCacheAfterCandidateDeletion(Long userId, CandidateCacheDto deletedCandidate) {
-        // Remove from general cache if it exists
-        String generalCacheKey = generateGeneralCacheKey(userId);
-        List<CandidateCacheDto> cachedCandidates = getCachedCandidateList(generalCacheKey);
-        if (cachedCandidates != null) {
-            cachedCandidates.removeIf(candidate -> candidate.getId().equals(deletedCandidate.getId()));
-            cacheCandidateList(generalCacheKey, cachedCandidates);
+        // Remove from general index if it exists
+        try {
+            normalizedCache.remove(CacheUtils.candidateEntityType, deletedCandidate.getId(),
+                    List.of(CacheUtils.userCandidatesIndex(userId)));
+        } catch (Exception e) {
+            log.warn("Failed to remove candidate {} from cache, error: {}", deletedCandidate.getId(), e.getMessage());
         }
         
         // Evict all specific filter caches for this user
         evictUserCandidatesSpecificCaches(userId);
     }
 
+    private void putGeneralCandidate(Long userId, CandidateCacheDto candidate) {
+        try {
+            normalizedCache.put(CacheUtils.candidateEntityType, candidate.getId(), candidate, CANDIDATE_CACHE_TTL,
+                    Map.of(CacheUtils.userCandidatesIndex(userId), NormalizedCache.score(candidate.getCreatedDate())));
+        } catch (Exception e) {
+            log.warn("Failed to cache candidate {} for user {}, error: {}", candidate.getId(), userId, e.getMessage());
+        }
+    }
+
     private void evictUserCandidatesSpecificCaches(Long userId) {
-        // Evict all specific filter caches but keep the general cache
-        redisService.evictCache("cache:user_candidates:" + userId + ":*:*");
+        // Move all specific filter caches to a new generation but keep the general cache
+        redisService.bumpGeneration(CacheUtils.userCandidatesGeneration(userId));
+    }
+
+    // Current generation of a filtered cache namespace. If it cannot be read, a unique one is
+    // used instead so that nothing stale is served; the entries written under it simply expire
+    private String cacheGeneration(String namespace) {
+        try {
+            return "v" + redisService.currentGeneration(namespace);
+        } catch (Exception e) {
+            log.warn("Failed to read cache generation for namespace: {}, error: {}", namespace, e.getMessage());
+            return "v" + UUID.randomUUID();
+        }
     }
 
 }
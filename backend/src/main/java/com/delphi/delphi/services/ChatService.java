@@ -1,11 +1,14 @@
 package com.delphi.delphi.services;
 
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -26,26 +29,34 @@ import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.ai.openai.api.OpenAiApi;
 import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.client.RestClientException;
+import org.springframework.web.reactive.function.client.WebClientException;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import com.delphi.delphi.components.AgentCheckpointStore;
+import com.delphi.delphi.components.AgentCheckpointStore.AgentCheckpoint;
+import com.delphi.delphi.components.AgentMetrics;
+import com.delphi.delphi.components.ChatHistoryCache;
+import com.delphi.delphi.components.ChatMessageWriter;
+import com.delphi.delphi.components.ContextCompactor;
 import com.delphi.delphi.components.GithubTools;
 import com.delphi.delphi.components.RedisService;
-import com.delphi.delphi.components.ToolCallHandler;
+import com.delphi.delphi.components.RepoChangeset;
+import com.delphi.delphi.components.ToolCallAssembler;
+import com.delphi.delphi.components.ToolCallExecutor;
+import com.delphi.delphi.components.messaging.chat.JobEventBus;
+import com.delphi.delphi.dtos.FetchToolCallDto;
 import com.delphi.delphi.dtos.cache.ChatMessageCacheDto;
-import com.delphi.delphi.entities.ChatMessage;
 import com.delphi.delphi.repositories.ChatMessageRepository;
-import com.delphi.delphi.repositories.OpenAIToolCallRepository;
-import com.delphi.delphi.repositories.OpenAIToolResponseRepository;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 @Service
-@Transactional
 /*
  * Service for managing user chat history and messages.
  * 
@@ -61,47 +72,74 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * 2. chat_histories - the list of chat messages for an assessment
  * 
  * TODO: cache intermediate chat messages in Redis
+ *
+ * Not transactional at the class level: the agent loop spends minutes waiting on the model and
+ * the GitHub API, and must not hold a database connection meanwhile. Messages are written in
+ * short transactions of their own by ChatMessageWriter, and reads are readOnly per method.
  */
 public class ChatService {
 
     private final ChatMessageRepository chatMessageRepository;
 
-    private final OpenAIToolCallRepository openAIToolCallRepository;
-
-    private final OpenAIToolResponseRepository openAIToolResponseRepository;
-
     private final ChatModel chatModel;
 
-    private final ToolCallHandler toolCallHandler;
+    private final ToolCallExecutor toolCallExecutor;
 
     private final GithubTools githubTools;
 
     private final RedisService redisService;
 
+    private final ChatHistoryCache chatHistoryCache;
+
+    private final ChatMessageWriter chatMessageWriter;
+
+    private final AgentCheckpointStore agentCheckpointStore;
+
+    private final ContextCompactor contextCompactor;
+
+    private final AgentMetrics agentMetrics;
+
     private final ObjectMapper objectMapper;
 
+    private final boolean streamingEnabled;
+
+    // Share of agent runs whose messages are logged at debug level
+    private final double debugLogSampleRate;
+
     private final String PRESET = "assessment-creation";
     private final boolean PARALLEL_TOOL_CALLS = true;
 
-    // SSE emitter management
-    private final Map<UUID, SseEmitter> sseEmitters = new ConcurrentHashMap<>();
+    // SSE emitter management, across nodes
+    private final JobEventBus jobEventBus;
 
     private static final Logger log = LoggerFactory.getLogger(ChatService.class);
 
     public ChatService(ChatMessageRepository chatMessageRepository, ChatModel chatModel,
-            OpenAIToolCallRepository openAIToolCallRepository,
-            OpenAIToolResponseRepository openAIToolResponseRepository,
-            ToolCallHandler toolCallHandler,
+            ToolCallExecutor toolCallExecutor,
             GithubTools githubTools,
-            RedisService redisService) {
+            RedisService redisService,
+            ChatHistoryCache chatHistoryCache,
+            ChatMessageWriter chatMessageWriter,
+            AgentCheckpointStore agentCheckpointStore,
+            ContextCompactor contextCompactor,
+            JobEventBus jobEventBus,
+            AgentMetrics agentMetrics,
+            @Value("${themus.agent.streaming.enabled:true}") boolean streamingEnabled,
+            @Value("${themus.agent.debug-log-sample-rate:0.05}") double debugLogSampleRate) {
         this.chatMessageRepository = chatMessageRepository;
         this.chatModel = chatModel;
-        this.openAIToolCallRepository = openAIToolCallRepository;
-        this.openAIToolResponseRepository = openAIToolResponseRepository;
-        this.toolCallHandler = toolCallHandler;
+        this.toolCallExecutor = toolCallExecutor;
         this.githubTools = githubTools;
         this.redisService = redisService;
+        this.chatHistoryCache = chatHistoryCache;
+        this.chatMessageWriter = chatMessageWriter;
+        this.agentCheckpointStore = agentCheckpointStore;
+        this.contextCompactor = contextCompactor;
+        this.jobEventBus = jobEventBus;
+        this.agentMetrics = agentMetrics;
         this.objectMapper = new ObjectMapper();
+        this.streamingEnabled = streamingEnabled;
+        this.debugLogSampleRate = debugLogSampleRate;
     }
 
     /**
@@ -129,6 +167,17 @@ public class ChatService {
         }
     }
 
+    /**
+     * Runs the agent loop for a job. The run is checkpointed after every step, see
+     * {@link AgentCheckpointStore}: if the job already has a checkpoint (it is being redelivered),
+     * the run resumes from it. Its messages are taken from the checkpoint instead of being
+     * produced again, existingMessages is cut back to the context the run started with, and
+     * tool calls that already completed are not run again.
+     *
+     * Model calls, token usage and tool calls are recorded in {@link AgentMetrics}; the worker
+     * running the job collects the run's totals. The messages of a sampled share of runs are
+     * logged at debug level.
+     */
     public List<ChatMessageCacheDto> getChatCompletion(UUID jobId, List<Message> existingMessages, Message userMessage,
             String model, Long assessmentId, String encryptedGithubToken, String githubUsername,
             String githubRepoName) {
@@ -137,34 +186,47 @@ public class ChatService {
                 throw new Exception("User message cannot be empty");
             }
             boolean endConversation = false;
+            agentMetrics.startRun(jobId, model);
+            // Decided once per run so a sampled run is logged in full
+            boolean logDetails = log.isDebugEnabled() && ThreadLocalRandom.current().nextDouble() < debugLogSampleRate;
             
-            // TODO: create a cache in Redis to temporarily store new messages until they are added to the chat_messages cache
             List<Message> newMessages = new ArrayList<>();
+            // New messages are handed to the write-behind writer as they are produced
+            List<ChatMessageCacheDto> savedMessages = new ArrayList<>();
             /*
             Entire context window represented as:
             Stream.concat(existingMessages.stream(), newMessages.stream()).toList()
             */
 
-            // update conversation history in memory
-            // TODO: add the user message to the cache in Redis
-            newMessages.add(userMessage);
-            //sendSseEvent(jobId, "message", userMsg);
-
-            // printing all messages in context window
-            log.info("--------------------------------");
-            log.info("MESSAGES IN CONTEXT WINDOW:");
-            for (Message message : Stream.concat(existingMessages.stream(), newMessages.stream()).toList()) {
-                log.info("Message Type: {}", message.getMessageType().toString());
-                String messageText = message.getText();
-                if (messageText != null) {
-                    log.info("Message: {}...{}", messageText.substring(0, Math.min(messageText.length(), 50)),
-                            messageText.substring(Math.max(messageText.length() - 30, 0)));
-                } else {
-                    log.info("Message: null");
+            AgentCheckpoint checkpoint = agentCheckpointStore.load(jobId);
+            if (checkpoint != null && Objects.equals(assessmentId, checkpoint.assessmentId())) {
+                if (checkpoint.stage() == AgentCheckpointStore.Stage.DONE) {
+                    log.info("Agent run for job {} already finished, returning its {} messages", jobId,
+                            checkpoint.messages().size());
+                    return new ArrayList<>(checkpoint.messages());
+                }
+                log.info("Resuming agent run for job {} at {} after {} messages", jobId, checkpoint.stage(),
+                        checkpoint.messages().size());
+                // The saved history now also holds the messages of the interrupted attempt
+                existingMessages = existingMessages.subList(0, Math.min(checkpoint.contextSize(), existingMessages.size()));
+                savedMessages.addAll(checkpoint.messages());
+                checkpoint.messages().forEach(message -> newMessages.add(message.toMessage()));
+                endConversation = checkpoint.endConversation();
+            } else {
+                checkpoint = new AgentCheckpoint(assessmentId, existingMessages.size(), AgentCheckpointStore.Stage.CALL_MODEL,
+                        List.of(), List.of(), false);
+                // update conversation history in memory
+                newMessages.add(userMessage);
+                savedMessages.addAll(addMessagesToChatHistory(List.of(userMessage), assessmentId, model));
+                checkpoint = checkpoint(jobId, checkpoint, AgentCheckpointStore.Stage.CALL_MODEL, savedMessages, List.of(), false);
+                //sendSseEvent(jobId, "message", userMsg);
+            }
+
+            if (logDetails) {
+                for (Message message : Stream.concat(existingMessages.stream(), newMessages.stream()).toList()) {
+                    log.debug("Context message for job {}: {} {}", jobId, message.getMessageType(), abbreviate(message.getText()));
                 }
-                log.info("Message Metadata: {}", message.getMetadata().toString());
             }
-            log.info("--------------------------------");
 
             // creating a prompt with a system message and a user message
             OpenAiChatOptions chatOptions = OpenAiChatOptions.builder()
@@ -173,184 +235,323 @@ public class ChatService {
                     .toolChoice(OpenAiApi.ChatCompletionRequest.ToolChoiceBuilder.AUTO)
                     .internalToolExecutionEnabled(false) // disable framework-enabled tool execution
                     .parallelToolCalls(PARALLEL_TOOL_CALLS)
+                    // Streamed responses only report token usage when asked to
+                    .streamUsage(streamingEnabled)
                     .build();
 
-            // TODO: load newmessages from redis cache
-            Prompt prompt = new Prompt(
-                Stream.concat(existingMessages.stream(), newMessages.stream()).toList(),
-                    chatOptions);
-
-            // adding LLM response to chat history
-            int count = 0;
-            ChatResponse response;
-            // Retrying in case the LLM generates a faulty response
-            try {
-                response = chatModel.call(prompt);
-            } catch (RestClientException e) {
-                log.error("Error calling OpenRouter via Spring AI: {}. Retrying...", e.getMessage(), e);
-                try {
-                    response = chatModel.call(prompt);
-                } catch (Exception ex) {
-                    log.error("Error calling OpenRouter via Spring AI: {}", ex.getMessage(), ex);
-                    throw new RuntimeException("Failed to get completion from AI service: " + ex.getMessage(), ex);
-                }
+            // An interrupted attempt may have stopped while streaming a response whose tool calls had
+            // started. Only the calls are known, so the response is saved with them and no text;
+            // they are finished below instead of the model being asked for new ones
+            if (checkpoint.stage() == AgentCheckpointStore.Stage.STREAM_TOOLS) {
+                List<ToolCall> startedToolCalls = checkpoint.pendingToolCalls().stream()
+                        .map(FetchToolCallDto::toToolCall).toList();
+                AssistantMessage interruptedMessage = new AssistantMessage("", Map.of(), startedToolCalls);
+                newMessages.add(interruptedMessage);
+                savedMessages.addAll(addMessagesToChatHistory(List.of(interruptedMessage), assessmentId, model));
+                checkpoint = checkpoint(jobId, checkpoint, AgentCheckpointStore.Stage.RUN_TOOLS, savedMessages,
+                        checkpoint.pendingToolCalls(), endConversation);
             }
-            log.info("Response created");
-            for (Generation generation : response.getResults()) {
-                log.info("--------------------------------");
-                log.info("GENERATION {}:", count);
-                log.info("GENERATION MESSAGE TYPE: {}", generation.getOutput().getMessageType().toString());
-                log.info("Generation Text: {}", generation.getOutput().getText().substring(0,
-                        Math.min(generation.getOutput().getText().length(), 50)) + "...");
-                log.info("Generation Tool Calls: {}", generation.getOutput().getToolCalls().toString());
-                log.info("--------------------------------");
-
-                // addMessageToChatHistory(generation.getOutput(), assessment, model);
-                // TODO: dont add message to chat history if it wasnt generated by the
-                // sendMessageToUser tool call?
-                //newMessages.add(generation.getOutput());
-                if (!generation.getOutput().hasToolCalls()) {
-                    // TODO: add the message to the newMessagescache in Redis
-                    newMessages.add(generation.getOutput());
-                    sendSseEvent(jobId, "message", generation.getOutput());
-                }
-                count++;
+
+            // An interrupted attempt may have stopped between an assistant message and its tool responses
+            if (checkpoint.stage() == AgentCheckpointStore.Stage.RUN_TOOLS) {
+                List<ToolCall> pendingToolCalls = checkpoint.pendingToolCalls().stream()
+                        .map(FetchToolCallDto::toToolCall).toList();
+                List<ToolResponse> toolResponses = runToolCalls(jobId, pendingToolCalls, null,
+                        toolCallExecutor.newChangeset(encryptedGithubToken, githubUsername, githubRepoName),
+                        encryptedGithubToken, githubUsername, githubRepoName);
+                ToolResponseMessage toolResponseMessage = new ToolResponseMessage(toolResponses);
+                newMessages.add(toolResponseMessage);
+                savedMessages.addAll(addMessagesToChatHistory(List.of(toolResponseMessage), assessmentId, model));
+                sendSseEvent(jobId, "message", toolResponseMessage);
+                checkpoint = checkpoint(jobId, checkpoint, AgentCheckpointStore.Stage.CALL_MODEL, savedMessages, List.of(),
+                        endConversation);
             }
 
             // Agent loop
             // NOTE: I dont think we need to get tool responses for sendMessageToUser tool
             // calls since it would trigger the LLM again and cause it to send another
             // message back to user
-            while (response.hasToolCalls() && !endConversation) {
+            int count = 0;
+            long tokensSaved = 0;
+            while (!endConversation) {
+                // Stale tool results are truncated and older turns summarized to keep the prompt within budget
+                ContextCompactor.CompactedContext context = contextCompactor.compact(assessmentId, model,
+                        Stream.concat(existingMessages.stream(), newMessages.stream()).toList());
+                tokensSaved += context.tokensSaved();
+                log.debug("Prompt for job {}: {} tokens ({} before compaction)", jobId, context.tokens(),
+                        context.originalTokens());
+                Prompt prompt = new Prompt(context.messages(), chatOptions);
+                // The turn's file writes are committed together once its tool calls have finished
+                RepoChangeset changeset = toolCallExecutor.newChangeset(encryptedGithubToken, githubUsername,
+                        githubRepoName);
+                ModelTurn turn;
+                // A streamed response starts its tool calls before it is saved, so each start is
+                // checkpointed for a resumed attempt to finish them
+                AgentCheckpoint turnCheckpoint = checkpoint;
+                Consumer<List<ToolCall>> onToolCallsStarted = startedToolCalls -> checkpoint(jobId, turnCheckpoint,
+                        AgentCheckpointStore.Stage.STREAM_TOOLS, savedMessages, startedToolCalls.stream()
+                                .map(toolCall -> new FetchToolCallDto(toolCall.id(), toolCall.name(), toolCall.arguments()))
+                                .toList(),
+                        false);
+                // Retrying in case the LLM generates a faulty response
+                try {
+                    turn = callModel(jobId, model, prompt, changeset, onToolCallsStarted, encryptedGithubToken,
+                            githubUsername, githubRepoName);
+                } catch (RestClientException | WebClientException e) {
+                    log.error("Error calling OpenRouter via Spring AI: {}. Retrying...", e.getMessage(), e);
+                    try {
+                        turn = callModel(jobId, model, prompt, changeset, onToolCallsStarted, encryptedGithubToken,
+                                githubUsername, githubRepoName);
+                    } catch (Exception ex) {
+                        log.error("Error calling OpenRouter via Spring AI: {}", ex.getMessage(), ex);
+                        throw new RuntimeException("Failed to get completion from AI service: " + ex.getMessage(), ex);
+                    }
+                }
+                ChatResponse response = turn.response();
+
+                if (!response.hasToolCalls()) {
+                    // A plain answer ends the run
+                    for (Generation generation : response.getResults()) {
+                        if (logDetails) {
+                            log.debug("Generation {} for job {}: {}", count, jobId, abbreviate(generation.getOutput().getText()));
+                        }
+                        newMessages.add(generation.getOutput());
+                        savedMessages.addAll(addMessagesToChatHistory(List.of(generation.getOutput()), assessmentId, model));
+                        sendSseEvent(jobId, "message", generation.getOutput());
+                        count++;
+                    }
+                    break;
+                }
+
                 try {
-                    // log.info("Executing tool calls...");
-
-                    // Check if any tool call is sendUserMessage
-                    // boolean hasSendUserMessage = false;
-                    // for (Generation generation : response.getResults()) {
-                    // if (generation.getOutput().getToolCalls() != null) {
-                    // for (ToolCall toolCall : generation.getOutput().getToolCalls()) {
-                    // if ("sendUserMessage".equals(toolCall.name())) {
-                    // hasSendUserMessage = true;
-                    // log.info("Detected sendUserMessage tool call - stopping conversation");
-                    // break;
-                    // }
-                    // }
-                    // }
-                    // }
-
-                    // TODO: make tool calls asynchronous (virtual threads or @async annotations)
                     for (Generation generation : response.getResults()) {
-                        log.info("--------------------------------");
-                        log.info("GENERATION MESSAGE TYPE: {}", generation.getOutput().getMessageType().toString());
-                        log.info("Generation Text: {}", generation.getOutput().getText().substring(0,
-                                Math.min(generation.getOutput().getText().length(), 50)) + "...");
-                        log.info("Generation Tool Calls: {}", generation.getOutput().getToolCalls().toString());
-                        log.info("--------------------------------");
-
-                        // TODO: add the message to the newMessagescache in Redis
+                        if (logDetails) {
+                            log.debug("Generation {} for job {}: {}, tool calls: {}", count, jobId,
+                                    abbreviate(generation.getOutput().getText()), generation.getOutput().getToolCalls());
+                        }
+                        count++;
+
                         // if generation.getOutput() contains a sendMessageToUser tool call, add the text argument to the assistant message text field
                         AssistantMessage asstMsg = getGenerationOutput(generation.getOutput());
                         newMessages.add(asstMsg);
+                        savedMessages.addAll(addMessagesToChatHistory(List.of(asstMsg), assessmentId, model));
                         sendSseEvent(jobId, "message", asstMsg);
-                        
-                        //sendSseEvent(jobId, "message", generation.getOutput());
 
-                        log.info("Going through tool calls...");
-                        List<ToolResponse> toolResponses = new ArrayList<>();
+                        // Calls after a sendMessageToUser are not executed
+                        List<ToolCall> toolCalls = new ArrayList<>();
                         for (ToolCall toolCall : generation.getOutput().getToolCalls()) {
-                            log.info("Tool Call Name: {}", toolCall.name());
-                            log.info("Tool Call Arguments: {}", toolCall.arguments());
                             if (toolCall.name().equals("sendMessageToUser")) {
-                                log.info("Detected sendMessageToUser tool call - stopping conversation");
+                                log.debug("Detected sendMessageToUser tool call for job {} - stopping conversation", jobId);
                                 endConversation = true;
                                 break;
                             }
-                            // executeToolCall should return a ToolResponse object
-                            log.info("Executing tool call: {}", toolCall.name());
-                            ToolResponse toolResponse = toolCallHandler.executeToolCall(toolCall, encryptedGithubToken, githubUsername, githubRepoName);
-                            if (toolResponse != null) {
-                                toolResponses.add(toolResponse);
-                            }
-                            // addMessageToChatHistory(new ToolResponseMessage(/* List of ToolResponse
-                            // objects here */), assessment, model);
+                            toolCalls.add(toolCall);
                         }
+                        checkpoint = checkpoint(jobId, checkpoint, AgentCheckpointStore.Stage.RUN_TOOLS, savedMessages,
+                                toolCalls.stream().map(toolCall -> new FetchToolCallDto(toolCall.id(), toolCall.name(),
+                                        toolCall.arguments())).toList(),
+                                endConversation);
+
+                        // Independent calls run concurrently; responses come back in call order.
+                        // A streamed response has already started its calls while it was generated
+                        log.debug("Executing {} tool calls for job {}", toolCalls.size(), jobId);
+                        List<ToolResponse> toolResponses = runToolCalls(jobId, toolCalls, turn.toolCalls(), changeset,
+                                encryptedGithubToken, githubUsername, githubRepoName);
                         // generate a tool response message
-                        // TODO: add the message to the newMessagescache in Redis
-                        newMessages.add(new ToolResponseMessage(toolResponses));
-                        sendSseEvent(jobId, "message", new ToolResponseMessage(toolResponses));
+                        ToolResponseMessage toolResponseMessage = new ToolResponseMessage(toolResponses);
+                        newMessages.add(toolResponseMessage);
+                        savedMessages.addAll(addMessagesToChatHistory(List.of(toolResponseMessage), assessmentId, model));
+                        sendSseEvent(jobId, "message", toolResponseMessage);
+                        checkpoint = checkpoint(jobId, checkpoint, AgentCheckpointStore.Stage.CALL_MODEL, savedMessages,
+                                List.of(), endConversation);
                     }
-
-                    if (endConversation) {
-                        break;
-                    }
-
-                    // ToolExecutionResult toolExecutionResult =
-                    // toolCallingManager.executeToolCalls(prompt, response);
-                    // log.info("--------------------------------");
-                    // log.info("TOOL EXECUTION RESULT CONVERSATION HISTORY:");
-                    // for (Message message : toolExecutionResult.conversationHistory()) {
-                    // log.info("Message Type: {}", message.getMessageType().toString());
-                    // log.info("Message: {}...{}", message.getText().substring(0,
-                    // Math.min(message.getText().length(), 50)),
-                    // message.getText().substring(Math.max(message.getText().length() - 30, 0)));
-                    // }
-                    // log.info("--------------------------------");
-
-                    // If sendUserMessage was called, stop the conversation
-                    // if (hasSendUserMessage) {
-                    // log.info("Stopping conversation due to sendUserMessage tool call");
-                    // // Add the tool execution result to chat history
-                    // for (Message message : toolExecutionResult.conversationHistory()) {
-                    // if (message instanceof AbstractMessage abstractMessage) {
-                    // addMessageToChatHistory(abstractMessage, assessment, model);
-                    // }
-                    // }
-                    // break;
-                    // }
-
-                    // Getting the next response from the LLM
-                    // TODO: load newmessages from redis cache
-                    prompt = new Prompt(Stream.concat(existingMessages.stream(), newMessages.stream()).toList(), chatOptions);
-
-                    response = chatModel.call(prompt);
-                    // add message to chat history
-                    // addMessageToChatHistory(response.getResult().getOutput(), assessment, model);
-                    // log.info("--------------------------------");
-                    // log.info("RESPONSE:");
-                    // log.info("RESPONSE METADATA: {}",
-                    // response.getResult().getMetadata().toString());
-                    // log.info("RESPONSE MESSAGE TYPE: {}",
-                    // response.getResult().getOutput().getMessageType().toString());
-                    // log.info("RESPONSE TEXT: {}", response.getResult().getOutput().getText());
-                    // log.info("RESPONSE TOOL CALLS: {}",
-                    // response.getResult().getOutput().getToolCalls().toString());
                 } catch (Exception e) {
                     log.error("Error executing tool calls: {}", e.getMessage(), e);
                     throw e;
                 }
             }
             // agent loop is finished executing
-            log.info("--------------------------------");
-
-            // log.info("Response: {}", response.getResults().stream().map(r ->
-            // r.getOutput().getText()).collect(Collectors.joining("\n\n")));
-            // for (Generation generation : response.getResults()) {
-            // log.info("Generation {}: {}", count,
-            // generation.getOutput().getText().substring(0,
-            // Math.min(generation.getOutput().getText().length(), 100)) + "...");
-            // count++;
-            // }
-            // TODO: add each message in newMessages to chat_messages cache
-            // ...
-            // save new messages to primary DB (batch write)
-            return addMessagesToChatHistory(newMessages, assessmentId, model);
+            checkpoint(jobId, checkpoint, AgentCheckpointStore.Stage.DONE, savedMessages, List.of(), true);
+            contextCompactor.recordRunSavings(model, tokensSaved);
+
+            // Write the run's messages now rather than waiting for the next scheduled flush
+            try {
+                chatMessageWriter.flush();
+            } catch (Exception e) {
+                log.warn("Failed to flush chat messages for assessment {}, error: {}", assessmentId, e.getMessage());
+            }
+            return savedMessages;
         } catch (Exception e) {
             log.error("Error calling OpenRouter via Spring AI: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to get completion from AI service: " + e.getMessage(), e);
         }
     }
 
+    // Save the run's progress after a step
+    private AgentCheckpoint checkpoint(UUID jobId, AgentCheckpoint checkpoint, AgentCheckpointStore.Stage stage,
+            List<ChatMessageCacheDto> savedMessages, List<FetchToolCallDto> pendingToolCalls, boolean endConversation) {
+        AgentCheckpoint next = checkpoint.withStep(stage, savedMessages, pendingToolCalls, endConversation);
+        agentCheckpointStore.save(jobId, next);
+        return next;
+    }
+
+    /**
+     * Runs the tool calls of an assistant message, or waits for them if a streamed response
+     * already started them, then commits the file writes they staged in the turn's changeset.
+     * Calls whose responses were recorded by an earlier attempt of the job are answered from
+     * the checkpoint instead of being run again. The responses of staged writes are only
+     * recorded once the commit has succeeded, so a resumed step stages them again.
+     *
+     * @return The tool responses in the order of the tool calls
+     */
+    private List<ToolResponse> runToolCalls(UUID jobId, List<ToolCall> toolCalls, ToolCallExecutor.Batch startedCalls,
+            RepoChangeset changeset, String encryptedGithubToken, String githubUsername, String githubRepoName) {
+        long start = System.nanoTime();
+        if (startedCalls != null) {
+            List<ToolResponse> responses = startedCalls.await();
+            commitChangeset(jobId, changeset, responses, encryptedGithubToken, githubUsername, githubRepoName);
+            agentMetrics.recordToolCalls(jobId, startedCalls.size(), System.nanoTime() - start);
+            return responses;
+        }
+        Map<String, ToolResponse> completed = agentCheckpointStore.toolResponses(jobId);
+        List<ToolCall> remaining = toolCalls.stream().filter(toolCall -> !completed.containsKey(toolCall.id())).toList();
+        if (remaining.size() < toolCalls.size()) {
+            log.info("Skipping {} tool calls that already completed for job {}", toolCalls.size() - remaining.size(), jobId);
+        }
+        Map<String, ToolResponse> responses = new HashMap<>(completed);
+        List<ToolResponse> newResponses = toolCallExecutor.executeAll(remaining, encryptedGithubToken, githubUsername,
+                githubRepoName, changeset, response -> recordToolResponse(jobId, changeset, response));
+        newResponses.forEach(response -> responses.put(response.id(), response));
+        commitChangeset(jobId, changeset, newResponses, encryptedGithubToken, githubUsername, githubRepoName);
+        agentMetrics.recordToolCalls(jobId, remaining.size(), System.nanoTime() - start);
+        return toolCalls.stream().map(toolCall -> responses.get(toolCall.id())).filter(Objects::nonNull).toList();
+    }
+
+    // Checkpoint a tool response unless it is a staged write, which is recorded once committed
+    private void recordToolResponse(UUID jobId, RepoChangeset changeset, ToolResponse response) {
+        if (!changeset.isStaged(response.id())) {
+            agentCheckpointStore.recordToolResponse(jobId, response);
+        }
+    }
+
+    // Commit the turn's staged writes, then checkpoint the responses of the calls that made them
+    private void commitChangeset(UUID jobId, RepoChangeset changeset, List<ToolResponse> responses,
+            String encryptedGithubToken, String githubUsername, String githubRepoName) {
+        Set<String> stagedCallIds = changeset.stagedCallIds();
+        if (stagedCallIds.isEmpty()) {
+            return;
+        }
+        List<String> commits = toolCallExecutor.commitChangeset(changeset, encryptedGithubToken, githubUsername,
+                githubRepoName);
+        log.info("Committed {} staged writes for job {} in {} commits", stagedCallIds.size(), jobId, commits.size());
+        responses.stream().filter(response -> stagedCallIds.contains(response.id()))
+                .forEach(response -> agentCheckpointStore.recordToolResponse(jobId, response));
+    }
+
+    /**
+     * A model response. When it was streamed, its tool calls were started while it was
+     * being generated and toolCalls holds them; otherwise toolCalls is null.
+     */
+    private record ModelTurn(ChatResponse response, ToolCallExecutor.Batch toolCalls) {
+    }
+
+    // Get the next model response, streaming it to the job's SSE emitter if enabled
+    private ModelTurn callModel(UUID jobId, String model, Prompt prompt, RepoChangeset changeset,
+            Consumer<List<ToolCall>> onToolCallsStarted, String encryptedGithubToken, String githubUsername,
+            String githubRepoName) {
+        long start = System.nanoTime();
+        ChatResponse response = null;
+        try {
+            ModelTurn turn = streamingEnabled
+                    ? streamModel(jobId, prompt, changeset, onToolCallsStarted, encryptedGithubToken, githubUsername,
+                            githubRepoName)
+                    : new ModelTurn(chatModel.call(prompt), null);
+            response = turn.response();
+            return turn;
+        } finally {
+            agentMetrics.recordModelCall(jobId, model, System.nanoTime() - start, response);
+        }
+    }
+
+    // The start and end of a message's text, for debug logs
+    private static String abbreviate(String text) {
+        if (text == null || text.length() <= 80) {
+            return text;
+        }
+        return text.substring(0, 50) + "..." + text.substring(text.length() - 30);
+    }
+
+    /**
+     * Streams a model response. Text deltas are forwarded to the job's SSE emitter as "delta"
+     * events as they arrive; they are not logged for replay, the complete message event is.
+     * Tool calls are assembled from their fragments and each one is executed as soon as its
+     * arguments are complete, announced with a "tool_call" event; calls after a
+     * sendMessageToUser are not executed, as in the blocking agent loop. Before a call is
+     * started, onToolCallsStarted is given every call started so far.
+     *
+     * Failures before the first chunk are thrown as is so the caller can retry; later failures
+     * are wrapped, since the client has already received part of the response. Either way the
+     * calls already started are waited for first, so none outlives the turn; their staged
+     * writes are dropped with the turn and redone if the job is resumed.
+     */
+    private ModelTurn streamModel(UUID jobId, Prompt prompt, RepoChangeset changeset,
+            Consumer<List<ToolCall>> onToolCallsStarted, String encryptedGithubToken, String githubUsername,
+            String githubRepoName) {
+        ToolCallExecutor.Batch batch = toolCallExecutor.newBatch(encryptedGithubToken, githubUsername, githubRepoName,
+                changeset, toolResponse -> recordToolResponse(jobId, changeset, toolResponse));
+        boolean[] messageToUserSeen = {false};
+        List<ToolCall> startedToolCalls = new ArrayList<>();
+        ToolCallAssembler assembler = new ToolCallAssembler(toolCall -> {
+            if (messageToUserSeen[0] || "sendMessageToUser".equals(toolCall.name())) {
+                messageToUserSeen[0] = true;
+                return;
+            }
+            startedToolCalls.add(toolCall);
+            onToolCallsStarted.accept(List.copyOf(startedToolCalls));
+            sendSseEvent(jobId, "tool_call", Map.of("id", toolCall.id(), "name", toolCall.name()));
+            batch.submit(toolCall);
+        });
+
+        StringBuilder text = new StringBuilder();
+        Map<String, Object> metadata = new HashMap<>();
+        ChatResponse lastChunk = null;
+        try {
+            for (ChatResponse chunk : chatModel.stream(prompt).toIterable()) {
+                lastChunk = chunk;
+                Generation generation = chunk.getResult();
+                if (generation == null || generation.getOutput() == null) {
+                    continue;
+                }
+                AssistantMessage delta = generation.getOutput();
+                String deltaText = delta.getText();
+                if (deltaText != null && !deltaText.isEmpty()) {
+                    text.append(deltaText);
+                    sendLiveSseEvent(jobId, "delta", Map.of("text", deltaText));
+                }
+                metadata.putAll(delta.getMetadata());
+                assembler.accept(delta.getToolCalls());
+            }
+        } catch (RuntimeException e) {
+            try {
+                batch.await();
+            } catch (RuntimeException toolCallError) {
+                e.addSuppressed(toolCallError);
+            }
+            if (lastChunk == null) {
+                throw e;
+            }
+            throw new RuntimeException("Model response stream failed: " + e.getMessage(), e);
+        }
+        assembler.finish();
+
+        AssistantMessage output = new AssistantMessage(text.toString(), metadata, assembler.toolCalls());
+        ChatResponse response = lastChunk != null && lastChunk.getMetadata() != null
+                ? new ChatResponse(List.of(new Generation(output)), lastChunk.getMetadata())
+                : new ChatResponse(List.of(new Generation(output)));
+        log.debug("Streamed model response for job {}: {} characters, {} tool calls started", jobId, text.length(), batch.size());
+        return new ModelTurn(response, batch);
+    }
+
     private AssistantMessage getGenerationOutput(AssistantMessage output) {
         List<ToolCall> toolCalls = output.getToolCalls();
         if (toolCalls != null && !toolCalls.isEmpty()) {
@@ -655,12 +856,10 @@ public class ChatService {
 
     /**
      * Storing in memory conversation history to primary DB
-     * Writing a batch of chat messages to PostgreSQL at a time
+     * Messages are buffered in a Redis stream and written to PostgreSQL in batches, see {@link ChatMessageWriter}
      */
     public List<ChatMessageCacheDto> addMessagesToChatHistory(List<Message> messages, Long assessmentId, String model) {
-        List<ChatMessageCacheDto> savedDtos = new ArrayList<>();
-        String assessmentCacheKey = "cache:chat_messages:assessment:" + assessmentId;
-        List<ChatMessageCacheDto> existingMessages = getMessagesByAssessmentId(assessmentId);
+        List<Message> filtered = new ArrayList<>();
 
         for (Message message : messages) {
             // Ignore empty assistant messages with no tool calls
@@ -669,7 +868,7 @@ public class ChatService {
                     boolean noText = assistantMessage.getText() == null || assistantMessage.getText().isBlank();
                     boolean noToolCalls = assistantMessage.getToolCalls() == null || assistantMessage.getToolCalls().isEmpty();
                     if (noText && noToolCalls) {
-                        log.info("AssistantMessage text and tool calls are empty or null, skipping...");
+                        log.debug("AssistantMessage text and tool calls are empty or null, skipping...");
                         continue;
                     }
                 }
@@ -677,7 +876,7 @@ public class ChatService {
                     boolean noText = toolResponseMessage.getText() == null || toolResponseMessage.getText().isBlank();
                     boolean noResponses = toolResponseMessage.getResponses() == null || toolResponseMessage.getResponses().isEmpty();
                     if (noText && noResponses) {
-                        log.info("ToolResponseMessage text and tool responses are empty or null, skipping...");
+                        log.debug("ToolResponseMessage text and tool responses are empty or null, skipping...");
                         continue;
                     }
                 }
@@ -685,50 +884,12 @@ public class ChatService {
                 }
             }
 
-            // Persist the chat message
-            ChatMessage savedChatMessage = chatMessageRepository.save(new ChatMessage(message, assessmentId, model));
-
-            // 1. Update individual message cache
-            redisService.set("cache:chat_messages:message:" + savedChatMessage.getId(), new ChatMessageCacheDto(savedChatMessage));
-
-            // 2. Update assessment cache by adding the new message to the existing list
-            
-            // Add the new message to the existing list
-            existingMessages.add(new ChatMessageCacheDto(savedChatMessage));
-            
-            // Update the assessment cache with the updated list
-            redisService.set(assessmentCacheKey, existingMessages);
-            // Persist tool calls or tool responses depending on message type
-            switch (savedChatMessage.getMessageType()) {
-                case MessageType.ASSISTANT -> {
-                    log.info("ADDING ASSISTANT MESSAGE TO CHAT HISTORY");
-                    if (savedChatMessage.getToolCalls() != null && !savedChatMessage.getToolCalls().isEmpty()) {
-                        savedChatMessage.getToolCalls().stream().map(toolCall -> {
-                            toolCall.setChatMessage(savedChatMessage);
-                            return openAIToolCallRepository.save(toolCall);
-                        }).collect(Collectors.toList());
-                    }
-                }
-                case MessageType.USER -> {
-                    log.info("ADDING USER MESSAGE TO CHAT HISTORY");
-                }
-                case MessageType.TOOL -> {
-                    log.info("ADDING TOOL RESPONSE MESSAGE TO CHAT HISTORY");
-                    if (savedChatMessage.getToolResponses() != null && !savedChatMessage.getToolResponses().isEmpty()) {
-                        savedChatMessage.getToolResponses().stream().map(toolResponse -> {
-                            toolResponse.setChatMessage(savedChatMessage);
-                            return openAIToolResponseRepository.save(toolResponse);
-                        }).collect(Collectors.toList());
-                    }
-                }
-                default -> throw new IllegalArgumentException("Invalid message type: " + savedChatMessage.getMessageType());
-            }
-
-            savedDtos.add(new ChatMessageCacheDto(savedChatMessage));
-                        
+            filtered.add(message);
         }
 
-        log.info("Saved {} chat messages to DB", savedDtos.size());
+        // Ids are assigned right away; the rows are written in batches by the background writer
+        List<ChatMessageCacheDto> savedDtos = chatMessageWriter.enqueue(filtered, assessmentId, model);
+        log.debug("Queued {} chat messages for writing", savedDtos.size());
         return savedDtos;
     }
 
@@ -981,9 +1142,26 @@ public class ChatService {
     // return chatMessageRepository.save(message);
     // }
 
-    @Cacheable(value = "chat_messages", key = "'assessment:' + #assessmentId")
-    @Transactional(readOnly = true)
+    /*
+     * Get an assessment's chat history, read through the append-only history cache. Not
+     * transactional: the cache loads in a transaction of its own, so a miss waiting for another
+     * node's load holds no connection
+     */
     public List<ChatMessageCacheDto> getMessagesByAssessmentId(Long assessmentId) {
+        return chatHistoryCache.getAll(assessmentId, () -> loadMessagesByAssessmentId(assessmentId));
+    }
+
+    // Get a slice of an assessment's chat history, oldest message first
+    public List<ChatMessageCacheDto> getMessagesByAssessmentId(Long assessmentId, long offset, int limit) {
+        return chatHistoryCache.getRange(assessmentId, offset, limit, () -> loadMessagesByAssessmentId(assessmentId));
+    }
+
+    // Get the most recent messages of an assessment's chat history, oldest first
+    public List<ChatMessageCacheDto> getRecentMessagesByAssessmentId(Long assessmentId, int count) {
+        return chatHistoryCache.getTail(assessmentId, count, () -> loadMessagesByAssessmentId(assessmentId));
+    }
+
+    private List<ChatMessageCacheDto> loadMessagesByAssessmentId(Long assessmentId) {
         return chatMessageRepository.findByAssessmentIdOrderByCreatedAtAsc(assessmentId).stream()
                 .map(ChatMessageCacheDto::new).collect(Collectors.toList());
     }
@@ -1026,70 +1204,46 @@ public class ChatService {
      * SSE Emitter Management Methods
      */
     
+    // Emitters are held by the node the client connected to; events reach them from any node
     public void registerSseEmitter(UUID jobId, SseEmitter emitter) {
-        sseEmitters.put(jobId, emitter);
-        log.info("Registered SSE emitter for job: {}", jobId);
+        jobEventBus.register(jobId, emitter);
+    }
+
+    // Register the emitter of the user who started the job, who may reconnect to it later
+    public void registerSseEmitter(UUID jobId, SseEmitter emitter, Long userId) {
+        jobEventBus.recordOwner(jobId, userId);
+        jobEventBus.register(jobId, emitter);
+    }
+
+    // Register the emitter of a reconnecting client and replay the events it missed
+    public void resumeSseEmitter(UUID jobId, SseEmitter emitter, String lastEventId) {
+        jobEventBus.resume(jobId, emitter, lastEventId);
+    }
+
+    public boolean isSseStreamOwner(UUID jobId, Long userId) {
+        return jobEventBus.isOwner(jobId, userId);
     }
     
     public void removeSseEmitter(UUID jobId) {
-        SseEmitter emitter = sseEmitters.remove(jobId);
-        if (emitter != null) {
-            log.info("Removed SSE emitter for job: {}", jobId);
-        }
+        jobEventBus.remove(jobId);
+    }
+
+    // Remove the job's emitter only if it has not been replaced by a reconnect
+    public void removeSseEmitter(UUID jobId, SseEmitter emitter) {
+        jobEventBus.remove(jobId, emitter);
     }
     
     public void sendSseEvent(UUID jobId, String eventName, Object data) {
-        SseEmitter emitter = sseEmitters.get(jobId);
-        if (emitter != null) {
-            try {
-                emitter.send(SseEmitter.event()
-                    .name(eventName)
-                    .id(jobId.toString())
-                    .data(data));
-                log.info("Sent SSE event '{}' for job: {}", eventName, jobId);
-            } catch (IOException e) {
-                log.error("Error sending SSE event '{}' for job: {} - {}", eventName, jobId, e.getMessage());
-                // Complete the emitter properly on IO error to prevent hanging connections
-                try {
-                    emitter.completeWithError(e);
-                } catch (Exception ex) {
-                    log.error("Error completing SSE emitter with error for job: {}", jobId, ex);
-                }
-                removeSseEmitter(jobId);
-            } catch (IllegalStateException e) {
-                log.warn("SSE emitter already completed for job: {} - {}", jobId, e.getMessage());
-                removeSseEmitter(jobId);
-            }
-        } else {
-            log.warn("No SSE emitter found for job: {}", jobId);
-        }
+        jobEventBus.publish(jobId, eventName, data);
+    }
+
+    // For events a reconnecting client does not need replayed, since a logged event supersedes them
+    public void sendLiveSseEvent(UUID jobId, String eventName, Object data) {
+        jobEventBus.publishLive(jobId, eventName, data);
     }
     
     public void completeSseEmitter(UUID jobId) {
-        SseEmitter emitter = sseEmitters.remove(jobId); // Remove and get in one operation
-        if (emitter != null) {
-            try {
-                // Send a final event to indicate completion before closing
-                emitter.send(SseEmitter.event()
-                    .name("stream_complete")
-                    .data(Map.of("message", "Stream completed successfully", "jobId", jobId.toString())));
-                emitter.complete();
-                log.info("Completed SSE emitter for job: {}", jobId);
-            } catch (IOException e) {
-                log.error("Error sending final SSE event for job: {} - {}", jobId, e.getMessage());
-                try {
-                    emitter.completeWithError(e);
-                } catch (Exception ex) {
-                    log.error("Error completing SSE emitter with error for job: {}", jobId, ex);
-                }
-            } catch (IllegalStateException e) {
-                log.warn("SSE emitter already completed for job: {} - {}", jobId, e.getMessage());
-            } catch (Exception e) {
-                log.error("Error completing SSE emitter for job: {}", jobId, e);
-            } finally {
-                removeSseEmitter(jobId);
-            }
-        }
+        jobEventBus.complete(jobId);
     }
 
 }
\ No newline at end of file
@@ -7,8 +7,12 @@ import java.security.PrivateKey;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.KeySpec;
 import java.security.spec.PKCS8EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -16,13 +20,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import com.delphi.delphi.components.GithubHttpTransport;
+import com.delphi.delphi.components.GithubRequestScheduler;
+import com.delphi.delphi.components.GithubResponseCache;
+import com.delphi.delphi.components.GithubTokenCache;
+import com.delphi.delphi.components.TransactionHttpGuard;
 import com.delphi.delphi.utils.Constants;
 import com.delphi.delphi.utils.git.GitHubPullRequest;
 import com.delphi.delphi.utils.git.GithubBranchDetails;
@@ -34,7 +46,11 @@ import com.delphi.delphi.utils.git.GithubRepoContents;
 import com.delphi.delphi.utils.git.GithubRepoInvitation;
 
 import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
 @Service
 /*
@@ -73,8 +89,20 @@ public class GithubService {
 
     private PrivateKey privateKey;
 
+    // App JWT and installation tokens, reused until shortly before they expire; created with the private key in init()
+    private GithubTokenCache tokenCache;
+    private final Duration jwtMargin;
+    private final Duration installationMargin;
+    private final Duration refreshAhead;
+    private final MeterRegistry meterRegistry;
+
     private final String THEMUS_GITHUB_TOKEN;
 
+    // Blobs of a multi-file commit uploaded at once
+    private final int blobConcurrency;
+    // Times a multi-file commit is rebuilt when its branch moved while it was being made
+    private final int commitRetries;
+
     public GithubService(@Value("${github.app.app-id}") String appId,
             @Value("${github.app.client-id}") String clientId,
             @Value("${github.app.client-secret}") String clientSecret,
@@ -84,23 +112,47 @@ public class GithubService {
             // candidateAppClientSecret,
             @Value("${spring.security.oauth2.client.registration.github.scope}") String githubScope,
             @Value("${themus.github.token}") String themusGithubToken,
-            EncryptionService encryptionService) {
+            @Value("${themus.github.commit.blob-concurrency:8}") int blobConcurrency,
+            @Value("${themus.github.commit.retries:3}") int commitRetries,
+            @Value("${themus.github.tokens.jwt-margin-seconds:60}") long jwtMarginSeconds,
+            @Value("${themus.github.tokens.installation-margin-seconds:300}") long installationMarginSeconds,
+            @Value("${themus.github.tokens.refresh-ahead-seconds:600}") long refreshAheadSeconds,
+            EncryptionService encryptionService,
+            TransactionHttpGuard transactionHttpGuard,
+            GithubResponseCache responseCache,
+            GithubRequestScheduler requestScheduler,
+            GithubHttpTransport httpTransport,
+            MeterRegistry meterRegistry) {
         this.appId = appId;
         this.clientId = clientId;
         this.clientSecret = clientSecret;
         this.privateKeyRaw = privateKeyRaw;
         this.githubScope = githubScope;
         this.THEMUS_GITHUB_TOKEN = themusGithubToken;
+        this.blobConcurrency = Math.max(1, blobConcurrency);
+        this.commitRetries = Math.max(0, commitRetries);
         // this.candidateAppClientId = candidateAppClientId;
         // this.candidateAppClientSecret = candidateAppClientSecret;
         this.webClient = WebClient.builder()
+                // Shared HTTP/2 client with pooled keep-alive connections and timeouts
+                .clientConnector(httpTransport.connector())
                 .baseUrl("https://api.github.com")
                 .defaultHeader("Accept", "application/vnd.github.v3+json")
+                .filter(transactionHttpGuard.exchangeFilter())
+                // Repeated reads are sent as conditional requests and 304s answered from the cache
+                .filter(responseCache.exchangeFilter())
+                // Queued by priority and held back or retried according to GitHub's rate limits
+                .filter(requestScheduler.exchangeFilter())
+                // Response times of the requests actually sent, retries included
+                .filter(httpTransport.exchangeFilter())
                 .build();
         this.base64Encoder = Base64.getEncoder();
         this.base64Decoder = Base64.getDecoder();
 
-        loadPrivateKey();
+        this.jwtMargin = Duration.ofSeconds(jwtMarginSeconds);
+        this.installationMargin = Duration.ofSeconds(installationMarginSeconds);
+        this.refreshAhead = Duration.ofSeconds(refreshAheadSeconds);
+        this.meterRegistry = meterRegistry;
 
         // this.chatMessageRepository = chatMessageRepository;
 
@@ -116,6 +168,14 @@ public class GithubService {
         // this.chatMessageRepository = chatMessageRepository;
     }
 
+    // Load the app's private key and create the token cache, which calls back into this service, once it is constructed
+    @PostConstruct
+    public void init() {
+        loadPrivateKey();
+        this.tokenCache = new GithubTokenCache(this::signAppToken, this::mintInstallationToken, jwtMargin,
+                installationMargin, refreshAhead, meterRegistry);
+    }
+
     private void loadPrivateKey() {
         try {
             // Clean up the private key string - remove line continuations and normalize
@@ -175,51 +235,61 @@ public class GithubService {
         }
     }
 
-    // Generate JWT for app authentication
+    // Get the JWT for app authentication, signed again only when the cached one is about to expire
     public String generateAppToken() {
+        return tokenCache.appToken();
+    }
+
+    // Sign a new JWT for app authentication
+    private GithubTokenCache.Token signAppToken() {
         long now = System.currentTimeMillis() / 1000;
+        long expiresAt = now + 600; // 10 minutes
 
-        return Jwts.builder()
+        String token = Jwts.builder()
                 .issuer(appId)
                 .issuedAt(new Date(now * 1000))
-                .expiration(new Date((now + 600) * 1000)) // 10 minutes
+                .expiration(new Date(expiresAt * 1000))
                 .signWith(privateKey, Jwts.SIG.RS256)
                 .compact();
+        return new GithubTokenCache.Token(token, Instant.ofEpochSecond(expiresAt));
     }
 
-    // Get installation access token
-    public String getInstallationToken(String installationId) {
-        // jwt token
-        String appToken = generateAppToken();
+    // Get installation access token, minting a new one only when the cached one is about to expire
+    public Mono<String> getInstallationToken(String installationId) {
+        return tokenCache.installationToken(installationId);
+    }
+
+    // Renew installation tokens in use before they expire
+    @Scheduled(fixedDelayString = "${themus.github.tokens.refresh-interval-ms:60000}")
+    public void refreshInstallationTokens() {
+        tokenCache.refreshExpiring();
+    }
 
-        log.info("Getting installation token for installation ID: {}", installationId);
+    // Mint a new installation access token
+    private Mono<GithubTokenCache.Token> mintInstallationToken(String installationId) {
+        log.info("Minting installation token for installation ID: {}", installationId);
 
-        // generates the installation token
-        Map<String, Object> response = webClient
+        return webClient
                 .post()
                 .uri("/app/installations/{installationId}/access_tokens", installationId)
-                .header("Authorization", "Bearer " + appToken)
+                .header("Authorization", "Bearer " + generateAppToken())
                 .header("Accept", "application/vnd.github.v3+json")
                 .retrieve()
                 .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {
                 })
-                .block();
-
-        if (response == null) {
-            throw new RuntimeException("Failed to get installation token - null response");
-        }
-
-        log.info("Installation token response keys: {}", response.keySet());
-
-        Object tokenObj = response.get("token");
-        if (tokenObj == null) {
-            throw new RuntimeException("Failed to get installation token - no token in response: " + response);
-        }
-
-        String token = tokenObj.toString();
-        log.info("Installation token prefix: {}...", token.substring(0, Math.min(10, token.length())));
-
-        return token;
+                .switchIfEmpty(Mono.error(new RuntimeException("Failed to get installation token - null response")))
+                .map(response -> {
+                    Object token = response.get("token");
+                    if (token == null) {
+                        throw new RuntimeException("Failed to get installation token - no token in response: "
+                                + response.keySet());
+                    }
+                    // Installation tokens last an hour
+                    Object expiresAt = response.get("expires_at");
+                    return new GithubTokenCache.Token(token.toString(), expiresAt != null
+                            ? Instant.parse(expiresAt.toString())
+                            : Instant.now().plus(Duration.ofHours(1)));
+                });
     }
 
     // Get installation information
@@ -254,7 +324,7 @@ public class GithubService {
     }
 
     // Exchange code for github app user access token
-    public Map<String, Object> getAccessToken(String code) {
+    public Mono<Map<String, Object>> getAccessToken(String code) {
         MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
         params.add("client_id", clientId);
         params.add("client_secret", clientSecret);
@@ -264,7 +334,7 @@ public class GithubService {
         // params.add("grant_type", "authorization_code");
         // params.add("refresh_token", refreshToken);
 
-        Map<String, Object> response = webClient
+        return webClient
                 .post()
                 .uri("https://github.com/login/oauth/access_token")
                 .header("Accept", "application/json")
@@ -281,24 +351,21 @@ public class GithubService {
                 })
                 .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {
                 })
-                .block();
-
-        if (response == null || response.get("access_token") == null) {
-            throw new RuntimeException("Failed to get access token: " + response);
-        }
-
-        return response;
+                .flatMap(response -> response.get("access_token") != null ? Mono.just(response)
+                        : Mono.error(new RuntimeException("Failed to get access token: " + response)))
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Failed to get access token: null")));
     }
 
     /*
      * Uses the user's user access token to get their user information from the
      * GitHub API (if the token is valid)
      * MAKE SURE TO USE THE DECRYPTED ACCESS TOKEN, NOT THE ENCRYPTED ONE
+     * Empty if the token is missing or invalid
      */
-    public Map<String, Object> validateGithubCredentials(String githubAccessToken) {
+    public Mono<Map<String, Object>> validateGithubCredentials(String githubAccessToken) {
         try {
             if (githubAccessToken == null) {
-                return null;
+                return Mono.empty();
             }
             // decrypting the access token if it is encrypted
             String token = githubAccessToken;
@@ -307,7 +374,7 @@ public class GithubService {
             }
             String uri = "/user";
             // String token = encryptionService.decrypt(user.getGithubAccessToken());
-            Map<String, Object> result = webClient.get()
+            return webClient.get()
                     .uri(uri)
                     .header("Authorization", "Bearer " + token)
                     .retrieve()
@@ -323,18 +390,14 @@ public class GithubService {
                     })
                     .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {
                     })
-                    .block();
-
-            if (result == null) {
-                // throw new RuntimeException("Github credentials are null");
-                return null;
-            }
-
-            log.info("Github credentials valid, result: {}", result.toString());
-            return result;
+                    .doOnNext(result -> log.info("Github credentials valid, result: {}", result.toString()))
+                    .onErrorResume(e -> {
+                        log.error("Error checking github credentials, {}", e.getMessage());
+                        return Mono.empty();
+                    });
         } catch (Exception e) {
             log.error("Error checking github credentials, {}", e);
-            return null;
+            return Mono.empty();
         }
     }
 
@@ -380,13 +443,12 @@ public class GithubService {
     // .onErrorReturn("Error retrieving scopes");
     // }
 
-    public GithubRepoContents createPersonalRepo(String token, String owner, String repoName) {
+    public Mono<GithubRepoContents> createPersonalRepo(String token, String owner, String repoName) {
         try {
             String githubAccessToken = token;
             if (!token.startsWith("ghu_") && !token.startsWith("gho_")) {
                 githubAccessToken = encryptionService.decrypt(token);
             }
-            log.info("Creating personal repo with token: {}...", githubAccessToken);
             // For GitHub App installation tokens, we need to create repo in the
             // installation's account
             String url = "https://api.github.com/user/repos";
@@ -401,7 +463,8 @@ public class GithubService {
             log.info("Creating repo '{}' with token: {}...", repoName,
                     githubAccessToken.substring(0, Math.min(10, token.length())));
 
-            GithubRepoContents repo = webClient.post()
+            final String accessToken = githubAccessToken;
+            return webClient.post()
                     .uri(url)
                     .header("Authorization", "Bearer " + githubAccessToken)
                     .header("Accept", "application/vnd.github.v3+json")
@@ -409,43 +472,26 @@ public class GithubService {
                     .bodyValue(body)
                     .retrieve()
                     .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(), response -> {
-                        log.error("Error creating personal repo - Status: {}, Body: {}", response.statusCode(),
-                                response.bodyToMono(String.class).block());
                         return response.bodyToMono(String.class)
                                 .flatMap(errorBody -> {
-                                    log.error("GitHub API error - Status: {}, Body: {}", response.statusCode(),
-                                            errorBody);
+                                    log.error("Error creating personal repo - Status: {}, Body: {}",
+                                            response.statusCode(), errorBody);
                                     return Mono.error(new RuntimeException(
                                             String.format("GitHub API error %d: %s", response.statusCode().value(),
                                                     errorBody)));
                                 });
                     })
                     .bodyToMono(GithubRepoContents.class)
-                    .block();
-
-            if (repo == null) {
-                throw new RuntimeException(
-                        "Failed to create personal repo: repo details from Github API response is null");
-            }
-
-            // add the Themus GitHub account as collaborator to the repo
-            // necessary so the candidate repos can be created in the Themus GitHub org
-            // account
-            addCollaborator(githubAccessToken, owner, repoName, Constants.THEMUS_USERNAME);
-
-            // Get all invitations for the repo
-            List<GithubRepoInvitation> invitations = getInvitations(githubAccessToken, owner, repoName);
-            // Accept all invitations
-            for (GithubRepoInvitation invitation : invitations) {
-                if (invitation.getInvitee().getLogin().equals(Constants.THEMUS_USERNAME)) {
-                    acceptInvitation(THEMUS_GITHUB_TOKEN, invitation.getId());
-                }
-            }
-
-            return repo;
-        } catch (RestClientException e) {
-            log.error("RestClient error creating repo: {}", e.getMessage(), e);
-            throw new RuntimeException("Error creating repo: " + e.getMessage(), e);
+                    .switchIfEmpty(Mono.error(() -> new RuntimeException(
+                            "Failed to create personal repo: repo details from Github API response is null")))
+                    // add the Themus GitHub account as collaborator to the repo
+                    // necessary so the candidate repos can be created in the Themus GitHub org
+                    // account
+                    .flatMap(repo -> addThemusCollaborator(accessToken, owner, repoName).thenReturn(repo))
+                    .onErrorMap(e -> {
+                        log.error("Error creating personal repo: {}", e.getMessage(), e);
+                        return new RuntimeException("Error creating repo: " + e.getMessage(), e);
+                    });
         } catch (Exception e) {
             log.error("Error creating personal repo: {}", e.getMessage(), e);
             throw new RuntimeException("Error creating repo: " + e.getMessage(), e);
@@ -459,12 +505,16 @@ public class GithubService {
      * @param repoName
      * @return
      */
-    public GithubRepoContents createCandidateRepo(String userGithubUsername, String templateRepoName, String repoName) {
-        GithubRepoContents repo = createPersonalRepoFromTemplate(THEMUS_GITHUB_TOKEN, userGithubUsername,
-                templateRepoName, repoName);
-        // create a branch for the candidate to work in
-        addBranch(THEMUS_GITHUB_TOKEN, Constants.THEMUS_ORG_NAME, repoName, "assessment", "main");
-        return repo;
+    public Mono<GithubRepoContents> createCandidateRepo(String userGithubUsername, String templateRepoName,
+            String repoName) {
+        return createPersonalRepoFromTemplate(THEMUS_GITHUB_TOKEN, userGithubUsername, templateRepoName, repoName)
+                // create a branch for the candidate to work in; templates generated with all
+                // their branches may already have it
+                .flatMap(repo -> addBranch(THEMUS_GITHUB_TOKEN, Constants.THEMUS_ORG_NAME, repoName, "assessment", "main")
+                        .doOnError(e -> log.warn("Could not create the assessment branch of {}: {}", repoName,
+                                e.getMessage()))
+                        .onErrorResume(e -> Mono.empty())
+                        .thenReturn(repo));
     }
 
     /**
@@ -474,30 +524,27 @@ public class GithubService {
      * @param repoName
      * @param candidateGithubUsername
      */
-    public void addCollaboratorToCandidateRepo(String repoName, String candidateGithubUsername,
+    public Mono<Void> addCollaboratorToCandidateRepo(String repoName, String candidateGithubUsername,
             String candidateGithubToken) {
-        addCollaborator(THEMUS_GITHUB_TOKEN, Constants.THEMUS_ORG_NAME, repoName, candidateGithubUsername);
         try {
-            // Get all invitations for the repo
             String githubAccessToken = candidateGithubToken;
             if (!candidateGithubToken.startsWith("ghu_") && !candidateGithubToken.startsWith("gho_")) {
                 githubAccessToken = encryptionService.decrypt(candidateGithubToken);
             }
-            List<GithubRepoInvitation> invitations = getInvitations(THEMUS_GITHUB_TOKEN, Constants.THEMUS_ORG_NAME,
-                    repoName);
-            // Accept all invitations
-            for (GithubRepoInvitation invitation : invitations) {
-                if (invitation.getInvitee().getLogin().equals(candidateGithubUsername)) {
-                    acceptInvitation(githubAccessToken, invitation.getId());
-                }
-            }
+            return addCollaborator(THEMUS_GITHUB_TOKEN, Constants.THEMUS_ORG_NAME, repoName, candidateGithubUsername)
+                    .then(acceptInvitations(THEMUS_GITHUB_TOKEN, githubAccessToken, Constants.THEMUS_ORG_NAME,
+                            repoName, candidateGithubUsername))
+                    .onErrorMap(e -> {
+                        log.error("Error adding collaborator to candidate repo: {}", e.getMessage(), e);
+                        return new RuntimeException("Error adding collaborator to candidate repo: " + e.getMessage(), e);
+                    });
         } catch (Exception e) {
             log.error("Error adding collaborator to candidate repo: {}", e.getMessage(), e);
             throw new RuntimeException("Error adding collaborator to candidate repo: " + e.getMessage(), e);
         }
     }
 
-    public void addCollaborator(String token, String owner, String repo, String username) {
+    public Mono<Void> addCollaborator(String token, String owner, String repo, String username) {
         try {
             log.info("Adding collaborator {} to repo {}/{}", username, owner, repo);
             String githubAccessToken = token;
@@ -505,29 +552,46 @@ public class GithubService {
                 githubAccessToken = encryptionService.decrypt(token);
             }
             String url = String.format("https://api.github.com/repos/%s/%s/collaborators/%s", owner, repo, username);
-            webClient.put()
+            return webClient.put()
                     .uri(url)
                     .header("Authorization", "Bearer " + githubAccessToken)
                     .retrieve()
                     .bodyToMono(String.class)
-                    .block();
-        } catch (RestClientException e) {
-            log.error("RestClient error adding contributor: {}", e.getMessage(), e);
-            throw new RuntimeException("Error adding contributor: " + e.getMessage(), e);
+                    .then()
+                    .onErrorMap(e -> {
+                        log.error("Error adding contributor: {}", e.getMessage(), e);
+                        return new RuntimeException("Error adding contributor: " + e.getMessage(), e);
+                    });
         } catch (Exception e) {
             log.error("Error adding contributor: {}", e.getMessage(), e);
             throw new RuntimeException("Error adding contributor: " + e.getMessage(), e);
         }
     }
 
-    public GithubRepoContents createPersonalRepoFromTemplate(String token, String templateOwner,
+    // Add the Themus account as a collaborator of a repository and accept the invitation
+    private Mono<Void> addThemusCollaborator(String githubAccessToken, String owner, String repoName) {
+        return addCollaborator(githubAccessToken, owner, repoName, Constants.THEMUS_USERNAME)
+                .then(acceptInvitations(githubAccessToken, THEMUS_GITHUB_TOKEN, owner, repoName,
+                        Constants.THEMUS_USERNAME));
+    }
+
+    // Accept the repository's pending invitations of the invitee, with the invitee's token
+    private Mono<Void> acceptInvitations(String ownerToken, String inviteeToken, String owner, String repoName,
+            String invitee) {
+        return getInvitations(ownerToken, owner, repoName)
+                .flatMapMany(Flux::fromIterable)
+                .filter(invitation -> invitation.getInvitee().getLogin().equals(invitee))
+                .concatMap(invitation -> acceptInvitation(inviteeToken, invitation.getId()))
+                .then();
+    }
+
+    public Mono<GithubRepoContents> createPersonalRepoFromTemplate(String token, String templateOwner,
             String templateRepoName, String repoName) {
         try {
             String githubAccessToken = token;
             if (!token.startsWith("ghu_") && !token.startsWith("gho_")) {
                 githubAccessToken = encryptionService.decrypt(token);
             }
-            log.info("Creating personal repo from template with token: {}...", githubAccessToken);
             log.info("Template owner: {}", templateOwner);
             log.info("Template repo name: {}", templateRepoName);
             log.info("Repo name: {}", repoName);
@@ -545,7 +609,7 @@ public class GithubService {
             log.info("Creating candidate repo '{}' from template repo '{}' with token: {}...", repoName,
                     templateRepoName, githubAccessToken.substring(0, Math.min(10, token.length())));
 
-            GithubRepoContents repo = webClient.post()
+            return webClient.post()
                     .uri(url)
                     .header("Authorization", "Bearer " + githubAccessToken)
                     .header("Accept", "application/vnd.github.v3+json")
@@ -553,36 +617,29 @@ public class GithubService {
                     .bodyValue(body)
                     .retrieve()
                     .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(), response -> {
-                        log.error("Error creating personal repo - Status: {}, Body: {}", response.statusCode(),
-                                response.bodyToMono(String.class).block());
                         return response.bodyToMono(String.class)
                                 .flatMap(errorBody -> {
-                                    log.error("GitHub API error - Status: {}, Body: {}", response.statusCode(),
-                                            errorBody);
+                                    log.error("Error creating personal repo - Status: {}, Body: {}",
+                                            response.statusCode(), errorBody);
                                     return Mono.error(new RuntimeException(
                                             String.format("GitHub API error %d: %s", response.statusCode().value(),
                                                     errorBody)));
                                 });
                     })
                     .bodyToMono(GithubRepoContents.class)
-                    .block();
-
-            if (repo == null) {
-                throw new RuntimeException(
-                        "Failed to create personal repo: repo details from Github API response is null");
-            }
-
-            return repo;
-        } catch (RestClientException e) {
-            log.error("RestClient error creating repo: {}", e.getMessage(), e);
-            throw new RuntimeException("Error creating repo: " + e.getMessage(), e);
+                    .switchIfEmpty(Mono.error(() -> new RuntimeException(
+                            "Failed to create personal repo: repo details from Github API response is null")))
+                    .onErrorMap(e -> {
+                        log.error("Error creating personal repo: {}", e.getMessage(), e);
+                        return new RuntimeException("Error creating repo: " + e.getMessage(), e);
+                    });
         } catch (Exception e) {
             log.error("Error creating personal repo: {}", e.getMessage(), e);
             throw new RuntimeException("Error creating repo: " + e.getMessage(), e);
         }
     }
 
-    public GithubRepoContents createOrgRepo(String token, String orgName, String repoName) {
+    public Mono<GithubRepoContents> createOrgRepo(String token, String orgName, String repoName) {
         try {
             String githubAccessToken = token;
             if (!token.startsWith("ghu_") && !token.startsWith("gho_")) {
@@ -605,7 +662,8 @@ public class GithubService {
             log.info("Creating repo '{}' with token: {}...", repoName,
                     githubAccessToken.substring(0, Math.min(10, token.length())));
 
-            GithubRepoContents repo = webClient.post()
+            final String accessToken = githubAccessToken;
+            return webClient.post()
                     .uri(url)
                     .header("Authorization", "Bearer " + githubAccessToken)
                     .header("Accept", "application/vnd.github.v3+json")
@@ -623,35 +681,21 @@ public class GithubService {
                                 });
                     })
                     .bodyToMono(GithubRepoContents.class)
-                    .block();
-
-            if (repo == null) {
-                throw new RuntimeException("Failed to create org repo: repo details from Github API response is null");
-            }
-
-            // adding the Themus org as a contributor to the repo
-            addCollaborator(githubAccessToken, orgName, repoName, Constants.THEMUS_USERNAME);
-
-            // Get all invitations for the repo
-            List<GithubRepoInvitation> invitations = getInvitations(githubAccessToken, orgName, repoName);
-            // Accept all invitations
-            for (GithubRepoInvitation invitation : invitations) {
-                if (invitation.getInvitee().getLogin().equals(Constants.THEMUS_USERNAME)) {
-                    acceptInvitation(THEMUS_GITHUB_TOKEN, invitation.getId());
-                }
-            }
-
-            return repo;
-        } catch (RestClientException e) {
-            log.error("RestClient error creating repo: {}", e.getMessage(), e);
-            throw new RuntimeException("Error creating repo: " + e.getMessage(), e);
+                    .switchIfEmpty(Mono.error(() -> new RuntimeException(
+                            "Failed to create org repo: repo details from Github API response is null")))
+                    // adding the Themus org as a contributor to the repo
+                    .flatMap(repo -> addThemusCollaborator(accessToken, orgName, repoName).thenReturn(repo))
+                    .onErrorMap(e -> {
+                        log.error("Error creating org repo: {}", e.getMessage(), e);
+                        return new RuntimeException("Error creating repo: " + e.getMessage(), e);
+                    });
         } catch (Exception e) {
             log.error("Error creating org repo: {}", e.getMessage(), e);
             throw new RuntimeException("Error creating repo: " + e.getMessage(), e);
         }
     }
 
-    public List<GithubRepoInvitation> getInvitations(String token, String owner, String repo) {
+    public Mono<List<GithubRepoInvitation>> getInvitations(String token, String owner, String repo) {
         try {
             String githubAccessToken = token;
             if (!token.startsWith("ghu_") && !token.startsWith("gho_")) {
@@ -668,14 +712,18 @@ public class GithubService {
                     .retrieve()
                     .bodyToMono(new ParameterizedTypeReference<List<GithubRepoInvitation>>() {
                     })
-                    .block();
+                    .defaultIfEmpty(List.of())
+                    .onErrorMap(e -> {
+                        log.error("Error getting invitation: {}", e.getMessage(), e);
+                        return new RuntimeException("Error getting invitation: " + e.getMessage(), e);
+                    });
         } catch (Exception e) {
             log.error("Error getting invitation: {}", e.getMessage(), e);
             throw new RuntimeException("Error getting invitation: " + e.getMessage(), e);
         }
     }
 
-    public String acceptInvitation(String token, Long invitationId) {
+    public Mono<String> acceptInvitation(String token, Long invitationId) {
         try {
             String githubAccessToken = token;
             if (!token.startsWith("ghu_") && !token.startsWith("gho_")) {
@@ -691,7 +739,10 @@ public class GithubService {
                     .header("User-Agent", "Themus-App/1.0")
                     .retrieve()
                     .bodyToMono(String.class)
-                    .block();
+                    .onErrorMap(e -> {
+                        log.error("Error accepting invitation: {}", e.getMessage(), e);
+                        return new RuntimeException("Error accepting invitation: " + e.getMessage(), e);
+                    });
         } catch (Exception e) {
             log.error("Error accepting invitation: {}", e.getMessage(), e);
             throw new RuntimeException("Error accepting invitation: " + e.getMessage(), e);
@@ -793,8 +844,6 @@ public class GithubService {
                     .bodyValue(body)
                     .retrieve()
                     .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(), response -> {
-                        log.error("Github API Error - Status: {}, Body: {}", response.statusCode(),
-                                response.bodyToMono(String.class).block());
                         return response.bodyToMono(String.class)
                                 .flatMap(errorBody -> {
                                     log.error("GitHub API error - Status: {}, Body: {}", response.statusCode(),
@@ -813,7 +862,7 @@ public class GithubService {
         }
     }
 
-    public GithubRepoContents getRepoContents(String token, String owner, String repo,
+    public Mono<GithubRepoContents> getRepoContents(String token, String owner, String repo,
             String path, String branch) {
         try {
             String githubAccessToken = token;
@@ -826,19 +875,18 @@ public class GithubService {
                 url += "?ref=" + branch;
             }
 
-            GithubRepoContents repoContentsResponse = webClient.get()
+            return webClient.get()
                     .uri(url)
                     .header("Authorization", "token " + githubAccessToken)
                     .retrieve()
-                    .bodyToMono(GithubRepoContents.class).block();
-
-            if (repoContentsResponse != null) {
-                if (repoContentsResponse.getType().equals("file")) {
-                    repoContentsResponse.setContent(decodeFromBase64(repoContentsResponse.getContent()));
-                }
-                return repoContentsResponse;
-            }
-            return null;
+                    .bodyToMono(GithubRepoContents.class)
+                    .map(repoContentsResponse -> {
+                        if (repoContentsResponse.getType().equals("file")) {
+                            repoContentsResponse.setContent(decodeFromBase64(repoContentsResponse.getContent()));
+                        }
+                        return repoContentsResponse;
+                    })
+                    .onErrorMap(e -> new RuntimeException("Error getting repo contents: " + e.getMessage(), e));
         } catch (RestClientException e) {
             throw new RuntimeException("Error making request to get repo contents: " + e.getMessage());
         } catch (Exception e) {
@@ -878,25 +926,22 @@ public class GithubService {
 
             String url = String.format("https://api.github.com/repos/%s/%s/git/refs", owner, repo);
 
+            final String accessToken = githubAccessToken;
             // Get the SHA of the base branch first
-            Mono<GithubBranchDetails> branchResponse = getBranchDetails(githubAccessToken, owner, repo, baseBranch);
-            GithubBranchDetails branchBody = branchResponse.block();
-            if (branchBody == null) {
-                throw new RuntimeException("Failed to get base branch details");
-            }
-
-            String sha = branchBody.getCommit().getSha();
-
-            Map<String, Object> body = Map.of(
-                    "ref", "refs/heads/" + branchName,
-                    "sha", sha);
-
-            return webClient.post()
-                    .uri(url)
-                    .header("Authorization", "token " + githubAccessToken)
-                    .bodyValue(body)
-                    .retrieve()
-                    .bodyToMono(GithubReference.class);
+            return getBranchDetails(githubAccessToken, owner, repo, baseBranch)
+                    .switchIfEmpty(Mono.error(() -> new RuntimeException("Failed to get base branch details")))
+                    .flatMap(branchBody -> {
+                        Map<String, Object> body = Map.of(
+                                "ref", "refs/heads/" + branchName,
+                                "sha", branchBody.getCommit().getSha());
+
+                        return webClient.post()
+                                .uri(url)
+                                .header("Authorization", "token " + accessToken)
+                                .bodyValue(body)
+                                .retrieve()
+                                .bodyToMono(GithubReference.class);
+                    });
         } catch (RestClientException e) {
             throw new RuntimeException("Error making request to add branch: " + e.getMessage());
         } catch (Exception e) {
@@ -964,6 +1009,124 @@ public class GithubService {
         }
     }
 
+    // The name of the repository's default branch
+    public Mono<String> getDefaultBranch(String token, String owner, String repo) {
+        try {
+            String githubAccessToken = token;
+            if (!token.startsWith("ghu_") && !token.startsWith("gho_")) {
+                githubAccessToken = encryptionService.decrypt(token);
+            }
+
+            String repoUrl = String.format("https://api.github.com/repos/%s/%s", owner, repo);
+
+            return gitRequest(HttpMethod.GET, repoUrl, githubAccessToken, null)
+                    .map(repository -> (String) repository.get("default_branch"))
+                    .onErrorMap(e -> new RuntimeException("Error getting default branch: " + e.getMessage(), e));
+        } catch (Exception e) {
+            throw new RuntimeException("Error getting default branch: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Commits changes to several files of a branch as a single commit through the Git Data API.
+     * The new contents are uploaded as blobs in parallel, then a tree is built on the branch
+     * head's tree and committed, and the branch is moved to the commit. If the branch moved in
+     * the meantime, the tree and commit are rebuilt on the new head.
+     *
+     * @param branch  The branch, or null for the repository's default branch
+     * @param changes New file contents by path; a null content deletes the file
+     * @return The sha of the new commit, or of the branch head if the changes leave its tree as is
+     */
+    public Mono<String> commitFiles(String token, String owner, String repo, String branch,
+            Map<String, String> changes, String commitMessage) {
+        try {
+            String githubAccessToken = token;
+            if (!token.startsWith("ghu_") && !token.startsWith("gho_")) {
+                githubAccessToken = encryptionService.decrypt(token);
+            }
+            final String accessToken = githubAccessToken;
+
+            String repoUrl = String.format("https://api.github.com/repos/%s/%s", owner, repo);
+
+            Mono<String> branchName = branch != null ? Mono.just(branch) : getDefaultBranch(accessToken, owner, repo);
+            Mono<Map<String, String>> blobShas = Flux.fromIterable(changes.entrySet())
+                    .filter(change -> change.getValue() != null)
+                    .flatMap(change -> gitRequest(HttpMethod.POST, repoUrl + "/git/blobs", accessToken,
+                            Map.of("content", encodeToBase64(change.getValue()), "encoding", "base64"))
+                            .map(blob -> Map.entry(change.getKey(), (String) blob.get("sha"))), blobConcurrency)
+                    .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+
+            return Mono.zip(branchName, blobShas)
+                    .flatMap(resolved -> Mono.defer(() -> commitTree(accessToken, repoUrl, resolved.getT1(), changes,
+                            resolved.getT2(), commitMessage))
+                            // Only a rejected ref update is retried; a 422 from the tree or commit is final
+                            .retryWhen(Retry.max(commitRetries).filter(e -> e instanceof BranchMovedException)
+                                    .onRetryExhaustedThrow((spec, signal) -> signal.failure())))
+                    .doOnNext(sha -> log.info("Committed {} files to {}/{} as {}", changes.size(), owner, repo, sha))
+                    .onErrorMap(e -> new RuntimeException("Error committing files: " + e.getMessage(), e));
+        } catch (Exception e) {
+            throw new RuntimeException("Error committing files: " + e.getMessage());
+        }
+    }
+
+    // Build a tree with the changes on the branch head, commit it and move the branch to the commit
+    private Mono<String> commitTree(String githubAccessToken, String repoUrl, String branch,
+            Map<String, String> changes, Map<String, String> blobShas, String commitMessage) {
+        List<Map<String, Object>> entries = new ArrayList<>();
+        changes.forEach((path, content) -> {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("path", path);
+            entry.put("mode", "100644");
+            entry.put("type", "blob");
+            // A null sha removes the file from the tree
+            entry.put("sha", content != null ? blobShas.get(path) : null);
+            entries.add(entry);
+        });
+
+        return gitRequest(HttpMethod.GET, repoUrl + "/git/ref/heads/" + branch, githubAccessToken, null)
+                .map(ref -> (String) ((Map<?, ?>) ref.get("object")).get("sha"))
+                .flatMap(headSha -> gitRequest(HttpMethod.GET, repoUrl + "/git/commits/" + headSha, githubAccessToken, null)
+                        .map(head -> (String) ((Map<?, ?>) head.get("tree")).get("sha"))
+                        .flatMap(baseTreeSha -> gitRequest(HttpMethod.POST, repoUrl + "/git/trees", githubAccessToken,
+                                Map.of("base_tree", baseTreeSha, "tree", entries))
+                                .flatMap(tree -> {
+                                    String treeSha = (String) tree.get("sha");
+                                    if (baseTreeSha.equals(treeSha)) {
+                                        // Nothing changed, e.g. the same changes were committed by an earlier attempt
+                                        return Mono.just(headSha);
+                                    }
+                                    return gitRequest(HttpMethod.POST, repoUrl + "/git/commits", githubAccessToken,
+                                            Map.of("message", commitMessage, "tree", treeSha, "parents", List.of(headSha),
+                                                    "author", Constants.AUTHOR))
+                                            .map(commit -> (String) commit.get("sha"))
+                                            .flatMap(commitSha -> gitRequest(HttpMethod.PATCH,
+                                                    repoUrl + "/git/refs/heads/" + branch, githubAccessToken,
+                                                    Map.of("sha", commitSha, "force", false))
+                                                    // 422: not a fast forward, the branch moved since its head was read
+                                                    .onErrorMap(WebClientResponseException.UnprocessableEntity.class,
+                                                            BranchMovedException::new)
+                                                    .thenReturn(commitSha));
+                                })));
+    }
+
+    // The ref update of a commit was rejected because the branch moved; the commit is rebuilt on the new head
+    private static class BranchMovedException extends RuntimeException {
+        BranchMovedException(WebClientResponseException cause) {
+            super("Branch moved while committing: " + cause.getMessage(), cause);
+        }
+    }
+
+    // A Git Data API request with a JSON response
+    private Mono<Map<String, Object>> gitRequest(HttpMethod method, String url, String githubAccessToken, Object body) {
+        WebClient.RequestBodySpec request = webClient.method(method)
+                .uri(url)
+                .header("Authorization", "token " + githubAccessToken);
+        return (body != null ? request.bodyValue(body) : request)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {
+                });
+    }
+
     public Mono<GithubBranchDetails> getBranchDetails(String token, String owner, String repo, String branch) {
         try {
             String githubAccessToken = token;
@@ -1010,7 +1173,7 @@ public class GithubService {
     /**
      * Get PRs from the candidate's repository
      */
-    public List<GitHubPullRequest> getPullRequests(String ownerAndRepoName) {
+    public Mono<List<GitHubPullRequest>> getPullRequests(String ownerAndRepoName) {
         try {
             String url = String.format("https://api.github.com/repos/%s/pulls", Constants.THEMUS_ORG_NAME,
                     ownerAndRepoName);
@@ -1020,7 +1183,8 @@ public class GithubService {
                     .header("Authorization", "token " + THEMUS_GITHUB_TOKEN)
                     .retrieve()
                     .bodyToMono(new ParameterizedTypeReference<List<GitHubPullRequest>>() {
-                    }).block();
+                    })
+                    .onErrorMap(e -> new RuntimeException("Error getting pull requests: " + e.getMessage(), e));
         } catch (RestClientException e) {
             throw new RuntimeException("Error getting pull requests: " + e.getMessage());
         } catch (Exception e) {
@@ -1029,7 +1193,7 @@ public class GithubService {
 
     }
 
-    public String getRepoReadMe(String token, String owner, String repoName) {
+    public Mono<String> getRepoReadMe(String token, String owner, String repoName) {
         try {
             String githubAccessToken = token;
             if (!token.startsWith("ghu_") && !token.startsWith("gho_")) {
@@ -1038,15 +1202,14 @@ public class GithubService {
 
             String url = String.format("https://api.github.com/repos/%s/%s/readme", owner, repoName);
 
-            GithubRepoContents repoContents = webClient.get()
+            return webClient.get()
                     .uri(url)
                     .header("Authorization", "token " + githubAccessToken)
                     .retrieve()
-                    .bodyToMono(GithubRepoContents.class).block();
-            if (repoContents == null) {
-                throw new RuntimeException("Failed to get repo readme");
-            }
-            return decodeFromBase64(repoContents.getContent());
+                    .bodyToMono(GithubRepoContents.class)
+                    .switchIfEmpty(Mono.error(() -> new RuntimeException("Failed to get repo readme")))
+                    .map(repoContents -> decodeFromBase64(repoContents.getContent()))
+                    .onErrorMap(e -> new RuntimeException("Error getting repo readme: " + e.getMessage(), e));
         } catch (RestClientException e) {
             throw new RuntimeException("Error getting repo readme: " + e.getMessage());
         } catch (Exception e) {
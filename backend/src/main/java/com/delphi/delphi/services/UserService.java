@@ -6,6 +6,8 @@ import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
@@ -35,13 +37,16 @@ public class UserService {
 
     private final RedisService redisService;
 
+    private final CacheManager cacheManager;
+
     private final String appInstallBaseUrl;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, EncryptionService encryptionService, RedisService redisService, @Value("${themus.github.app.name}") String githubAppName) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, EncryptionService encryptionService, RedisService redisService, CacheManager cacheManager, @Value("${themus.github.app.name}") String githubAppName) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.encryptionService = encryptionService;
         this.redisService = redisService;
+        this.cacheManager = cacheManager;
         this.appInstallBaseUrl = String.format("https://github.com/apps/%s/installations/new", githubAppName);
     }
     
@@ -342,7 +347,8 @@ public class UserService {
 
         // redisService.set("cache:users:gh_username_exists:" + githubUsername, true);
         // redisService.set("cache:users:gh_access_token_exists:" + githubAccessToken, true);
-        redisService.set("cache:users:connected_github:" + userId, true);
+        // through the cache manager, so the near cache of every node is updated as well
+        usersCache().put("connected_github:" + userId, true);
 
         User savedUser = userRepository.save(user);
         return new UserCacheDto(savedUser);
@@ -445,15 +451,25 @@ public class UserService {
     }
 
     private String getEncryptedGithubToken(Long userId) {
-        Object encryptedGithubToken = redisService.get("cache:users:encrypted_github_access_token:" + userId);
-        if (encryptedGithubToken == null) {
+        Cache.ValueWrapper encryptedGithubToken = usersCache().get("encrypted_github_access_token:" + userId);
+        if (encryptedGithubToken == null || encryptedGithubToken.get() == null) {
             return null;
         }
-        return encryptedGithubToken.toString();
+        return encryptedGithubToken.get().toString();
+    }
+
+    // evicted through the cache manager, which drops the keys from every node's near cache too
+    private void evictGithubCaches(Long userId) {
+        Cache users = usersCache();
+        users.evict("connected_github:" + userId);
+        users.evict("encrypted_github_access_token:" + userId);
     }
 
-    private void evictGithubCaches(Long userId) {   
-        redisService.evictCache("cache:users:connected_github:" + userId + ":*");
-        redisService.evictCache("cache:users:encrypted_github_access_token:" + userId);
+    private Cache usersCache() {
+        Cache users = cacheManager.getCache("users");
+        if (users == null) {
+            throw new IllegalStateException("Cache 'users' is not configured");
+        }
+        return users;
     }
 }
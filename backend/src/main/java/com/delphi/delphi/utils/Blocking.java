@@ -0,0 +1,26 @@
+package com.delphi.delphi.utils;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/*
+ * The bridge from the reactive GitHub integration to blocking callers. GithubService only returns
+ * Monos; controllers, services and agent tool calls that need the result wait for it here, so
+ * every place that blocks on a GitHub call can be found by looking for Blocking.await. Callers
+ * should be on threads that may block cheaply, preferably virtual threads (agent tool calls run
+ * on them); an event loop or other non-blocking thread is refused instead of stalled.
+ */
+public class Blocking {
+
+    private Blocking() {
+    }
+
+    // Wait for the call's result; null if it completes empty
+    public static <T> T await(Mono<T> call) {
+        if (Schedulers.isInNonBlockingThread()) {
+            throw new IllegalStateException("Blocking on a GitHub call is not allowed on non-blocking thread "
+                    + Thread.currentThread().getName());
+        }
+        return call.block();
+    }
+}
@@ -3,6 +3,8 @@ package com.delphi.delphi.utils;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class CacheUtils {
@@ -11,6 +13,123 @@ public class CacheUtils {
     public static final String tokenCacheKeyPrefix = "candidate_github_token:";
     public static final String usernameCacheKeyPrefix = "candidate_github_username:";
 
+    // Entity types of the normalized list caches
+    public static final String assessmentEntityType = "assessment";
+    public static final String candidateEntityType = "candidate";
+    public static final String attemptEntityType = "attempt";
+    public static final String chatMessageEntityType = "chat_message";
+
+    // Key segments that name a family of keys rather than identify one of them
+    private static final Pattern prefixSegment = Pattern.compile("[a-z_-]+");
+
+    /*
+     * Hash tags: Redis Cluster places a key by the part between its first pair of braces, so
+     * every key of one owner (indexes, their markers, generation counters and filtered lists)
+     * lands in the same slot. Multi-key scripts on them are then allowed, and their pipelines
+     * go to a single node.
+     */
+    public static String userHashTag(Long userId) {
+        return "{user:" + userId + "}";
+    }
+
+    public static String assessmentHashTag(Long assessmentId) {
+        return "{assessment:" + assessmentId + "}";
+    }
+
+    public static String candidateHashTag(Long candidateId) {
+        return "{candidate:" + candidateId + "}";
+    }
+
+    // Whether a key carries a hash tag, i.e. a non-empty {...} section
+    public static boolean hasHashTag(String key) {
+        int open = key.indexOf('{');
+        return open >= 0 && key.indexOf('}', open) > open + 1;
+    }
+
+    // A key derived from another one that is guaranteed to be in the same cluster slot
+    public static String sameSlotKey(String key, String suffix) {
+        return hasHashTag(key) ? key + suffix : "{" + key + "}" + suffix;
+    }
+
+    // Generation namespace of a user's filtered assessment list caches
+    public static String userAssessmentsGeneration(Long userId) {
+        return "user_assessments:" + userHashTag(userId);
+    }
+
+    // Generation namespace of a user's filtered and available candidate list caches
+    public static String userCandidatesGeneration(Long userId) {
+        return "user_candidates:" + userHashTag(userId);
+    }
+
+    // Generation namespace of filtered attempt list caches scoped to an assessment
+    public static String assessmentAttemptsGeneration(Long assessmentId) {
+        return "all_attempts:assessment:" + assessmentHashTag(assessmentId);
+    }
+
+    // Generation namespace of filtered attempt list caches scoped to a candidate only
+    public static String candidateAttemptsGeneration(Long candidateId) {
+        return "all_attempts:candidate:" + candidateHashTag(candidateId);
+    }
+
+    // Append-only list of the ids of an assessment's chat messages
+    public static String chatHistoryKey(Long assessmentId) {
+        return "cache:chat_history:" + assessmentHashTag(assessmentId);
+    }
+
+    // Checkpoint of an agent run, and the responses of its completed tool calls in the same slot
+    public static String agentCheckpointKey(UUID jobId) {
+        return "agent:checkpoint:{job:" + jobId + "}";
+    }
+
+    // Rolling summary of the older part of an assessment's chat, used to compact the agent's context
+    public static String contextSummaryKey(Long assessmentId) {
+        return "agent:context_summary:" + assessmentHashTag(assessmentId);
+    }
+
+    // Index of all of a user's assessments
+    public static String userAssessmentsIndex(Long userId) {
+        return "user_assessments:" + userHashTag(userId);
+    }
+
+    // Index of all of a user's candidates
+    public static String userCandidatesIndex(Long userId) {
+        return "user_candidates:" + userHashTag(userId);
+    }
+
+    // Index of all attempts by a candidate
+    public static String candidateAttemptsIndex(Long candidateId) {
+        return "candidate_attempts:" + candidateHashTag(candidateId);
+    }
+
+    // Index of all attempts on an assessment
+    public static String assessmentAttemptsIndex(Long assessmentId) {
+        return "assessment_attempts:" + assessmentHashTag(assessmentId);
+    }
+
+    /**
+     * Returns the family a key belongs to, e.g. {@code cache:user_assessments} for
+     * {@code cache:user_assessments:42:ACTIVE:...} or {@code stripe:user} for {@code stripe:user:7}.
+     * Takes the leading segments up to the first one that looks like an id, email or filter value,
+     * and at most two of them (three for the {@code cache:entity} and {@code cache:index} layouts),
+     * so the number of distinct prefixes stays small.
+     */
+    public static String keyPrefix(String key) {
+        String[] segments = key.replace("{", "").replace("}", "").split(":", 4);
+        int maxDepth = segments.length > 2 && "cache".equals(segments[0])
+                && ("entity".equals(segments[1]) || "index".equals(segments[1])) ? 3 : 2;
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < Math.min(maxDepth, segments.length); i++) {
+            if (!prefixSegment.matcher(segments[i]).matches()) {
+                break;
+            }
+            if (i > 0) {
+                prefix.append(':');
+            }
+            prefix.append(segments[i]);
+        }
+        return prefix.length() > 0 ? prefix.toString() : "other";
+    }
+
     public static String normalizeDateTime(LocalDateTime dt) {
         if (dt == null) {
             return "null";
@@ -0,0 +1,7 @@
+-- Chat message ids are allocated in blocks of 50 (ChatMessage allocationSize and
+-- ChatMessageWriter.ID_ALLOCATION_SIZE), so inserts no longer need the IDENTITY round trip
+ALTER SEQUENCE themus.chat_messages_id_seq INCREMENT BY 50;
+
+-- Move past existing ids so the first block allocated never overlaps them
+SELECT setval('themus.chat_messages_id_seq',
+              GREATEST(COALESCE((SELECT MAX(id) FROM themus.chat_messages), 0), 1) + 50);
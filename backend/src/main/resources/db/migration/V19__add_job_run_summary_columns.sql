@@ -0,0 +1,7 @@
+ALTER TABLE themus.jobs ADD COLUMN queue_wait_ms BIGINT;
+ALTER TABLE themus.jobs ADD COLUMN iterations INTEGER;
+ALTER TABLE themus.jobs ADD COLUMN llm_latency_ms BIGINT;
+ALTER TABLE themus.jobs ADD COLUMN prompt_tokens BIGINT;
+ALTER TABLE themus.jobs ADD COLUMN completion_tokens BIGINT;
+ALTER TABLE themus.jobs ADD COLUMN tool_calls INTEGER;
+ALTER TABLE themus.jobs ADD COLUMN tool_latency_ms BIGINT;
@@ -0,0 +1,110 @@
+package com.delphi.delphi.components;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.testcontainers.containers.GenericContainer;
+
+import com.delphi.delphi.configs.redis.RedisTestSupport;
+import com.delphi.delphi.utils.CacheUtils;
+
+/**
+ * Latency of invalidating a user's filtered assessment caches against the size of the keyspace.
+ * bumpGeneration is what evictions do since the per-owner generation counters: one script that
+ * increments the user's counter. currentGeneration is what every filtered read adds to build its
+ * key. keysLookup is the KEYS call the pattern eviction before them started with; it walks the
+ * whole keyspace, and the DEL of the matched keys came on top of it.
+ *
+ * The keyspace holds the given number of other users' filtered entries plus 20 of the evicted
+ * user's. Needs Docker, a Redis is started with Testcontainers. Run with:
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.delphi.delphi.components.CacheGenerationBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheGenerationBenchmark {
+
+    private static final long USER_ID = 42;
+    private static final Duration TTL = Duration.ofMinutes(30);
+
+    @Param({ "1000", "10000", "100000" })
+    public int keyspaceSize;
+
+    private GenericContainer<?> redis;
+    private RedisTestSupport.RedisFixture fixture;
+    private RedisConnection connection;
+    private byte[] pattern;
+
+    @Setup
+    public void setUp() {
+        redis = RedisTestSupport.redisContainer();
+        redis.start();
+        fixture = RedisTestSupport.connect(redis);
+        RedisService redisService = fixture.redisService();
+
+        long generation = redisService.currentGeneration(CacheUtils.userAssessmentsGeneration(USER_ID));
+        for (int start = 0; start < keyspaceSize; start += 1000) {
+            int from = start;
+            redisService.executePipelined(batch -> {
+                for (int i = from; i < Math.min(from + 1000, keyspaceSize); i++) {
+                    batch.setWithExpiration(filteredKey(1000 + i, 1, "ACTIVE:" + i), "[]", TTL);
+                }
+            });
+        }
+        redisService.executePipelined(batch -> {
+            for (int i = 0; i < 20; i++) {
+                batch.setWithExpiration(filteredKey(USER_ID, generation, "ACTIVE:" + i), "[]", TTL);
+            }
+        });
+
+        connection = fixture.connectionFactory().getConnection();
+        pattern = ("cache:user_assessments:" + CacheUtils.userHashTag(USER_ID) + ":*").getBytes();
+    }
+
+    @TearDown
+    public void tearDown() {
+        connection.close();
+        fixture.close();
+        redis.stop();
+    }
+
+    @Benchmark
+    public long bumpGeneration() {
+        return fixture.redisService().bumpGeneration(CacheUtils.userAssessmentsGeneration(USER_ID));
+    }
+
+    @Benchmark
+    public long currentGeneration() {
+        return fixture.redisService().currentGeneration(CacheUtils.userAssessmentsGeneration(USER_ID));
+    }
+
+    @Benchmark
+    public int keysLookup() {
+        return connection.keyCommands().keys(pattern).size();
+    }
+
+    // A filtered entry as the assessment service keys it, under a generation of its user's namespace
+    private static String filteredKey(long userId, long generation, String filter) {
+        return "cache:user_assessments:" + CacheUtils.userHashTag(userId) + ":v" + generation + ":" + filter;
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args.length > 0 ? args : new String[] { CacheGenerationBenchmark.class.getSimpleName() });
+    }
+}
@@ -0,0 +1,227 @@
+package com.delphi.delphi.components;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+
+import com.delphi.delphi.configs.redis.RedisTestSupport;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Time to persist a 200 message agent run: 100 turns of an assistant message with a tool call
+ * followed by the tool's response.
+ *
+ * writeBehind enqueues every turn and flushes once, which is what the agent and the scheduled
+ * flush do now; enqueue is the part of it the agent waits for. perRow inserts the run the way
+ * the repository saves did before, one INSERT per message returning its IDENTITY id and one
+ * INSERT per tool call or response, in one transaction.
+ *
+ * Needs Docker, a Postgres and a Redis are started with Testcontainers. The Postgres schema is
+ * reduced to the tables the writer inserts into. Run with:
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.delphi.delphi.components.ChatMessageWriterBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChatMessageWriterBenchmark {
+
+    private static final long ASSESSMENT_ID = 1;
+    private static final String MODEL = "gpt-4o-mini";
+    private static final int TURNS = 100;
+
+    private static final String SCHEMA = """
+            CREATE SCHEMA themus;
+            CREATE TYPE themus.message_type AS ENUM ('USER', 'ASSISTANT', 'SYSTEM', 'TOOL');
+            CREATE TABLE themus.assessments (id BIGSERIAL PRIMARY KEY);
+            CREATE TABLE themus.chat_messages (
+                id BIGSERIAL PRIMARY KEY,
+                created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                text TEXT NOT NULL,
+                model VARCHAR(255),
+                assessment_id BIGINT NOT NULL REFERENCES themus.assessments(id) ON DELETE CASCADE,
+                message_type themus.message_type NOT NULL
+            );
+            ALTER SEQUENCE themus.chat_messages_id_seq INCREMENT BY 50;
+            CREATE TABLE themus.openai_tool_calls (
+                id VARCHAR(255) PRIMARY KEY,
+                tool_name VARCHAR(255),
+                arguments TEXT,
+                message_id BIGINT NOT NULL REFERENCES themus.chat_messages(id) ON DELETE CASCADE
+            );
+            CREATE TABLE themus.openai_tool_responses (
+                id VARCHAR(255) PRIMARY KEY,
+                name VARCHAR(255),
+                response_data TEXT,
+                message_id BIGINT NOT NULL REFERENCES themus.chat_messages(id) ON DELETE CASCADE
+            );
+            CREATE INDEX idx_chat_messages_assessment_id ON themus.chat_messages(assessment_id);
+            CREATE INDEX idx_openai_tool_calls_message_id ON themus.openai_tool_calls(message_id);
+            CREATE INDEX idx_openai_tool_responses_message_id ON themus.openai_tool_responses(message_id);
+            INSERT INTO themus.assessments (id) VALUES (1);
+            """;
+
+    private GenericContainer<?> postgres;
+    private GenericContainer<?> redis;
+    private RedisTestSupport.RedisFixture fixture;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private ChatMessageWriter writer;
+    private List<List<Message>> turns;
+
+    @Setup
+    public void setUp() {
+        postgres = new GenericContainer<>("postgres:16-alpine")
+                .withEnv("POSTGRES_PASSWORD", "postgres")
+                .withExposedPorts(5432)
+                .waitingFor(Wait.forLogMessage(".*database system is ready to accept connections.*\\s", 2));
+        postgres.start();
+        redis = RedisTestSupport.redisContainer();
+        redis.start();
+        fixture = RedisTestSupport.connect(redis);
+
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:postgresql://" + postgres.getHost() + ":" + postgres.getMappedPort(5432) + "/postgres",
+                "postgres", "postgres");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute(SCHEMA);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        CacheMetrics cacheMetrics = new CacheMetrics(new SimpleMeterRegistry());
+        RedisService redisService = fixture.redisService();
+        ChatHistoryCache chatHistoryCache = new ChatHistoryCache(redisService,
+                new NormalizedCache(redisService, cacheMetrics),
+                new CacheLoadGuard(redisService, cacheMetrics, transactionManager, 1.0, 10_000, 2_000),
+                cacheMetrics);
+        writer = new ChatMessageWriter(redisService, chatHistoryCache, jdbcTemplate, transactionManager,
+                100, 30_000, 5);
+
+        turns = new ArrayList<>(TURNS);
+        for (int i = 0; i < TURNS; i++) {
+            String callId = "call_" + i;
+            turns.add(List.of(
+                    new AssistantMessage("Writing the aggregation endpoint.", Map.of(),
+                            List.of(new AssistantMessage.ToolCall(callId, "function", "writeFile",
+                                    "{\"path\":\"src/main/java/App.java\",\"content\":\"class App {}\"}"))),
+                    new ToolResponseMessage(List.of(new ToolResponseMessage.ToolResponse(callId, "writeFile",
+                            "Staged src/main/java/App.java")))));
+        }
+    }
+
+    // Tool call and response ids are primary keys, so every run starts from empty tables
+    @Setup(Level.Invocation)
+    public void truncate() {
+        writer.flush();
+        jdbcTemplate.execute("TRUNCATE themus.chat_messages CASCADE");
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+        redis.stop();
+        postgres.stop();
+    }
+
+    @Benchmark
+    public int writeBehind() {
+        for (List<Message> turn : turns) {
+            writer.enqueue(turn, ASSESSMENT_ID, MODEL);
+        }
+        return writer.flush();
+    }
+
+    @Benchmark
+    public int enqueue() {
+        int enqueued = 0;
+        for (List<Message> turn : turns) {
+            enqueued += writer.enqueue(turn, ASSESSMENT_ID, MODEL).size();
+        }
+        return enqueued;
+    }
+
+    // The inserts Hibernate issued for repository saves of ChatMessage with an IDENTITY id
+    @Benchmark
+    public int perRow() {
+        Integer inserted = transactionTemplate.execute(status -> {
+            int rows = 0;
+            for (List<Message> turn : turns) {
+                for (Message message : turn) {
+                    long messageId = insertMessage(message);
+                    rows++;
+                    if (message instanceof AssistantMessage assistantMessage) {
+                        for (AssistantMessage.ToolCall toolCall : assistantMessage.getToolCalls()) {
+                            jdbcTemplate.update(
+                                    "INSERT INTO themus.openai_tool_calls (id, tool_name, arguments, message_id) VALUES (?, ?, ?, ?)",
+                                    toolCall.id(), toolCall.name(), toolCall.arguments(), messageId);
+                        }
+                    } else if (message instanceof ToolResponseMessage toolResponseMessage) {
+                        for (ToolResponseMessage.ToolResponse toolResponse : toolResponseMessage.getResponses()) {
+                            jdbcTemplate.update(
+                                    "INSERT INTO themus.openai_tool_responses (id, name, response_data, message_id) VALUES (?, ?, ?, ?)",
+                                    toolResponse.id(), toolResponse.name(), toolResponse.responseData(), messageId);
+                        }
+                    }
+                }
+            }
+            return rows;
+        });
+        return inserted != null ? inserted : 0;
+    }
+
+    private long insertMessage(Message message) {
+        Long id = jdbcTemplate.execute((Connection connection) -> {
+            try (PreparedStatement ps = connection.prepareStatement("""
+                    INSERT INTO themus.chat_messages (created_at, text, model, assessment_id, message_type)
+                    VALUES (?, ?, ?, ?, CAST(? AS themus.message_type))""", Statement.RETURN_GENERATED_KEYS)) {
+                ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+                ps.setString(2, message.getText() != null ? message.getText() : "");
+                ps.setString(3, MODEL);
+                ps.setLong(4, ASSESSMENT_ID);
+                ps.setString(5, message.getMessageType().name());
+                ps.executeUpdate();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    keys.next();
+                    return keys.getLong("id");
+                }
+            }
+        });
+        return id != null ? id : 0;
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args.length > 0 ? args : new String[] { ChatMessageWriterBenchmark.class.getSimpleName() });
+    }
+}
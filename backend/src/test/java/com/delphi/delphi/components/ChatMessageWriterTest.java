@@ -0,0 +1,189 @@
+package com.delphi.delphi.components;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.delphi.delphi.dtos.cache.ChatMessageCacheDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ChatMessageWriterTest {
+
+    private static final String STREAM_KEY = "stream:chat_messages";
+    private static final String DEAD_LETTER_KEY = "stream:chat_messages:dead";
+    private static final String GROUP = "chat-message-writers";
+    private static final long ASSESSMENT_ID = 7;
+    // The id of a message whose row the database rejects, e.g. since its assessment was deleted
+    private static final long REJECTED_ID = 2;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private RedisService redisService;
+    private ChatHistoryCache chatHistoryCache;
+    private JdbcTemplate jdbcTemplate;
+    private ChatMessageWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        redisService = mock(RedisService.class);
+        chatHistoryCache = mock(ChatHistoryCache.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        writer = new ChatMessageWriter(redisService, chatHistoryCache, jdbcTemplate,
+                mock(PlatformTransactionManager.class), 100, 30_000, 5);
+
+        when(redisService.streamClaimIdle(anyString(), anyString(), anyString(), any(), anyInt()))
+                .thenReturn(List.of());
+        when(redisService.streamReadGroup(anyString(), anyString(), anyString(), anyInt()))
+                .thenReturn(List.of());
+        doAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            Collection<?> rows = invocation.getArgument(1);
+            if (sql.contains("themus.chat_messages") && rows.stream()
+                    .anyMatch(row -> row instanceof ChatMessageWriter.BufferedMessage message && message.id() == REJECTED_ID)) {
+                throw new DataIntegrityViolationException("insert or update on table \"chat_messages\" violates foreign key constraint");
+            }
+            return new int[0][];
+        }).when(jdbcTemplate).batchUpdate(anyString(), anyList(), anyInt(), any());
+    }
+
+    @Test
+    public void enqueueAllocatesIdsFromTheSequenceAndBuffersMessages() {
+        when(jdbcTemplate.queryForObject("SELECT nextval('themus.chat_messages_id_seq')", Long.class)).thenReturn(50L);
+
+        List<Message> messages = List.of(new UserMessage("Add a health check"), new UserMessage("And a readiness probe"));
+        List<ChatMessageCacheDto> saved = writer.enqueue(messages, ASSESSMENT_ID, "gpt-4o-mini");
+
+        assertEquals(List.of(1L, 2L), saved.stream().map(ChatMessageCacheDto::getId).toList());
+        verify(redisService, times(2)).streamAdd(eq(STREAM_KEY), any());
+        verify(chatHistoryCache).append(ASSESSMENT_ID, saved, true);
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList(), anyInt(), any());
+    }
+
+    @Test
+    public void enqueueWritesDirectlyWhenTheStreamIsUnavailable() {
+        when(jdbcTemplate.queryForObject("SELECT nextval('themus.chat_messages_id_seq')", Long.class)).thenReturn(50L);
+        when(redisService.streamAdd(eq(STREAM_KEY), any()))
+                .thenThrow(new RedisConnectionFailureException("Connection refused"));
+
+        List<ChatMessageCacheDto> saved = writer.enqueue(List.of(new UserMessage("Add a health check")),
+                ASSESSMENT_ID, "gpt-4o-mini");
+
+        verify(jdbcTemplate).batchUpdate(eq(insertMessageSql()), anyList(), anyInt(), any());
+        // Already in the database, so not pending in the cached history
+        verify(chatHistoryCache).append(ASSESSMENT_ID, saved, false);
+    }
+
+    @Test
+    public void flushWritesAndAcknowledgesABatch() {
+        when(redisService.streamReadGroup(anyString(), anyString(), anyString(), anyInt()))
+                .thenReturn(List.of(entry("1-0", 1, 1), entry("3-0", 3, 1)), List.of());
+
+        assertEquals(2, writer.flush());
+
+        verify(redisService).streamCreateGroup(STREAM_KEY, GROUP);
+        verify(redisService).streamAckAndDelete(STREAM_KEY, GROUP, List.of("1-0", "3-0"));
+        verify(chatHistoryCache).removePending(ASSESSMENT_ID, List.of(1L, 3L));
+        verify(chatHistoryCache, never()).evict(any());
+    }
+
+    @Test
+    public void rejectedBatchIsWrittenRowByRowAndTheRejectedRowStaysPending() {
+        when(redisService.streamReadGroup(anyString(), anyString(), anyString(), anyInt()))
+                .thenReturn(List.of(entry("1-0", 1, 1), entry("2-0", REJECTED_ID, 1), entry("3-0", 3, 1)), List.of());
+
+        assertEquals(2, writer.flush());
+
+        verify(redisService).streamAckAndDelete(STREAM_KEY, GROUP, List.of("1-0", "3-0"));
+        verify(redisService, never()).streamAdd(eq(DEAD_LETTER_KEY), any());
+        verify(chatHistoryCache).removePending(ASSESSMENT_ID, List.of(1L, 3L));
+        verify(chatHistoryCache, never()).evict(any());
+    }
+
+    @Test
+    public void rejectedRowIsDeadLetteredOnItsLastDelivery() {
+        when(redisService.streamClaimIdle(anyString(), anyString(), anyString(), any(), anyInt()))
+                .thenReturn(List.of(entry("2-0", REJECTED_ID, 5)));
+
+        assertEquals(0, writer.flush());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, String>> deadLettered = ArgumentCaptor.forClass(Map.class);
+        verify(redisService).streamAdd(eq(DEAD_LETTER_KEY), deadLettered.capture());
+        assertEquals(message(REJECTED_ID), deadLettered.getValue().get("message"));
+        assertTrue(deadLettered.getValue().get("error").contains("foreign key"));
+        verify(redisService).streamAckAndDelete(STREAM_KEY, GROUP, List.of("2-0"));
+        // The message will never be in the database, so neither may the cached history keep it
+        verify(chatHistoryCache).removePending(ASSESSMENT_ID, List.of(REJECTED_ID));
+        verify(chatHistoryCache).evict(ASSESSMENT_ID);
+    }
+
+    @Test
+    public void malformedEntryIsDeadLetteredRightAway() {
+        RedisService.StreamEntry malformed = new RedisService.StreamEntry("4-0", Map.of("message", "{\"id\":"), 1);
+        when(redisService.streamReadGroup(anyString(), anyString(), anyString(), anyInt()))
+                .thenReturn(List.of(malformed), List.of());
+
+        assertEquals(0, writer.flush());
+
+        verify(redisService).streamAdd(eq(DEAD_LETTER_KEY), any());
+        verify(redisService).streamAckAndDelete(STREAM_KEY, GROUP, List.of("4-0"));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList(), anyInt(), any());
+    }
+
+    @Test
+    public void newEntriesAreReadWhenReclaimingFails() {
+        when(redisService.streamClaimIdle(anyString(), anyString(), anyString(), any(), anyInt()))
+                .thenThrow(new RedisConnectionFailureException("Connection reset"));
+        when(redisService.streamReadGroup(anyString(), anyString(), anyString(), anyInt()))
+                .thenReturn(List.of(entry("5-0", 5, 1)), List.of());
+
+        assertEquals(1, writer.flush());
+
+        verify(redisService).streamAckAndDelete(STREAM_KEY, GROUP, List.of("5-0"));
+    }
+
+    private RedisService.StreamEntry entry(String entryId, long messageId, long deliveries) {
+        return new RedisService.StreamEntry(entryId, Map.of("message", message(messageId)), deliveries);
+    }
+
+    private String message(long messageId) {
+        try {
+            return objectMapper.writeValueAsString(new ChatMessageWriter.BufferedMessage(messageId, ASSESSMENT_ID,
+                    "gpt-4o-mini", "USER", "Add a health check", LocalDateTime.of(2025, 1, 1, 9, 0).toString(),
+                    List.of(), List.of()));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String insertMessageSql() {
+        return """
+                INSERT INTO themus.chat_messages (id, created_at, text, model, assessment_id, message_type)
+                VALUES (?, ?, ?, ?, ?, CAST(? AS themus.message_type))
+                ON CONFLICT (id) DO NOTHING""";
+    }
+}
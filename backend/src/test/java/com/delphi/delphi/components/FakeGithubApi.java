@@ -0,0 +1,85 @@
+package com.delphi.delphi.components;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Answers the requests of a GitHub WebClient in process, in place of the HTTP connection.
+ * Requests are recorded with their body and answered by the given handler; applied as the
+ * client's last filter, every filter before it runs as in production.
+ */
+public class FakeGithubApi implements ExchangeFunction {
+
+    /**
+     * A request as it would have been sent.
+     *
+     * @param path The path of the URL, e.g. /repos/octocat/hello/git/trees
+     * @param body The request body, empty if none
+     */
+    public record Request(HttpMethod method, String path, HttpHeaders headers, String body) {
+    }
+
+    private final Function<Request, Mono<ClientResponse>> handler;
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+
+    public FakeGithubApi(Function<Request, Mono<ClientResponse>> handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public Mono<ClientResponse> exchange(ClientRequest request) {
+        MockClientHttpRequest outbound = new MockClientHttpRequest(request.method(), request.url());
+        return request.writeTo(outbound, ExchangeStrategies.withDefaults())
+                .then(Mono.defer(outbound::getBodyAsString))
+                .defaultIfEmpty("")
+                .flatMap(body -> {
+                    Request recorded = new Request(request.method(), request.url().getPath(), request.headers(), body);
+                    requests.add(recorded);
+                    return handler.apply(recorded);
+                });
+    }
+
+    // Ends the filter chain here instead of sending the request
+    public ExchangeFilterFunction exchangeFilter() {
+        return (request, next) -> exchange(request);
+    }
+
+    public List<Request> requests() {
+        return List.copyOf(requests);
+    }
+
+    public List<Request> requests(HttpMethod method, String pathSuffix) {
+        return requests.stream()
+                .filter(request -> request.method().equals(method) && request.path().endsWith(pathSuffix))
+                .toList();
+    }
+
+    public static Mono<ClientResponse> json(HttpStatus status, String body) {
+        return Mono.just(ClientResponse.create(status)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build());
+    }
+
+    public static Mono<ClientResponse> json(HttpStatus status, String body, HttpHeaders headers) {
+        return Mono.just(ClientResponse.create(status)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .headers(responseHeaders -> responseHeaders.addAll(headers))
+                .body(body)
+                .build());
+    }
+}
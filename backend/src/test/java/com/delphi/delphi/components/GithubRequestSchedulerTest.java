@@ -0,0 +1,220 @@
+package com.delphi.delphi.components;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+
+import com.delphi.delphi.components.GithubRequestScheduler.Priority;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+public class GithubRequestSchedulerTest {
+
+    private static final String TOKEN = "token ghu_test";
+
+    private MeterRegistry meterRegistry;
+    // Responses the fake API holds back until a test completes them, in the order they were requested
+    private Queue<Sinks.One<ClientResponse>> held;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        held = new ConcurrentLinkedQueue<>();
+    }
+
+    @Test
+    public void sendsQueuedRequestsInPriorityOrder() throws Exception {
+        GithubRequestScheduler scheduler = scheduler(1, 200, 3);
+        FakeGithubApi github = new FakeGithubApi(request -> request.path().endsWith("/first") ? hold() : ok());
+
+        CompletableFuture<ClientResponse> first = send(scheduler, github, Priority.DEFAULT, "first");
+        CompletableFuture<ClientResponse> background = send(scheduler, github, Priority.BACKGROUND, "background");
+        CompletableFuture<ClientResponse> normal = send(scheduler, github, Priority.DEFAULT, "default");
+        CompletableFuture<ClientResponse> interactive = send(scheduler, github, Priority.INTERACTIVE, "interactive");
+        // Only the first request holds the single slot
+        assertEquals(1, github.requests().size());
+
+        release();
+
+        for (CompletableFuture<ClientResponse> response : List.of(first, background, normal, interactive)) {
+            assertEquals(HttpStatus.OK, response.get(5, TimeUnit.SECONDS).statusCode());
+        }
+        assertEquals(List.of("/repos/octocat/first", "/repos/octocat/interactive", "/repos/octocat/default",
+                "/repos/octocat/background"), github.requests().stream().map(FakeGithubApi.Request::path).toList());
+    }
+
+    @Test
+    public void sendsAtMostMaxConcurrentRequestsOfAToken() throws Exception {
+        GithubRequestScheduler scheduler = scheduler(2, 200, 3);
+        FakeGithubApi github = new FakeGithubApi(request -> hold());
+
+        List<CompletableFuture<ClientResponse>> responses = List.of(
+                send(scheduler, github, Priority.DEFAULT, "1"), send(scheduler, github, Priority.DEFAULT, "2"),
+                send(scheduler, github, Priority.DEFAULT, "3"), send(scheduler, github, Priority.DEFAULT, "4"));
+        assertEquals(2, github.requests().size());
+
+        release();
+        assertEquals(3, github.requests().size());
+        release();
+        release();
+        release();
+
+        for (CompletableFuture<ClientResponse> response : responses) {
+            assertEquals(HttpStatus.OK, response.get(5, TimeUnit.SECONDS).statusCode());
+        }
+    }
+
+    @Test
+    public void sendsAgainAfterATooManyRequestsResponse() throws Exception {
+        GithubRequestScheduler scheduler = scheduler(8, 200, 3);
+        AtomicInteger attempts = new AtomicInteger();
+        FakeGithubApi github = new FakeGithubApi(request -> attempts.incrementAndGet() == 1
+                ? rateLimited(HttpStatus.TOO_MANY_REQUESTS, "") : ok());
+
+        ClientResponse response = send(scheduler, github, Priority.DEFAULT, "limited").get(5, TimeUnit.SECONDS);
+
+        assertEquals(HttpStatus.OK, response.statusCode());
+        assertEquals(2, github.requests().size());
+        assertEquals(1.0, meterRegistry.counter("github.ratelimit.retries", "status", "429").count());
+    }
+
+    @Test
+    public void givesUpAfterMaxRetries() throws Exception {
+        GithubRequestScheduler scheduler = scheduler(8, 200, 2);
+        FakeGithubApi github = new FakeGithubApi(request -> rateLimited(HttpStatus.TOO_MANY_REQUESTS, ""));
+
+        ClientResponse response = send(scheduler, github, Priority.DEFAULT, "limited").get(5, TimeUnit.SECONDS);
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.statusCode());
+        assertEquals(3, github.requests().size());
+    }
+
+    @Test
+    public void sendsAgainAfterASecondaryRateLimit() throws Exception {
+        GithubRequestScheduler scheduler = scheduler(8, 200, 3);
+        AtomicInteger attempts = new AtomicInteger();
+        FakeGithubApi github = new FakeGithubApi(request -> attempts.incrementAndGet() == 1
+                ? FakeGithubApi.json(HttpStatus.FORBIDDEN, "{\"message\":\"You have exceeded a secondary rate limit.\"}")
+                : ok());
+
+        ClientResponse response = send(scheduler, github, Priority.DEFAULT, "limited").get(5, TimeUnit.SECONDS);
+
+        assertEquals(HttpStatus.OK, response.statusCode());
+        assertEquals(2, github.requests().size());
+    }
+
+    @Test
+    public void returnsAForbiddenResponseThatIsNotARateLimit() throws Exception {
+        GithubRequestScheduler scheduler = scheduler(8, 200, 3);
+        FakeGithubApi github = new FakeGithubApi(request -> FakeGithubApi.json(HttpStatus.FORBIDDEN,
+                "{\"message\":\"Resource not accessible by integration\"}"));
+
+        ClientResponse response = send(scheduler, github, Priority.DEFAULT, "forbidden").get(5, TimeUnit.SECONDS);
+
+        assertEquals(HttpStatus.FORBIDDEN, response.statusCode());
+        assertEquals(1, github.requests().size());
+        // The body was read to tell a permission error from a rate limit, and is still there
+        assertTrue(response.bodyToMono(String.class).block(Duration.ofSeconds(5)).contains("not accessible"));
+    }
+
+    @Test
+    public void backgroundRequestsLeaveTheReserveToOthers() throws Exception {
+        GithubRequestScheduler scheduler = scheduler(8, 10, 3);
+        long resetAt = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 3600;
+        FakeGithubApi github = new FakeGithubApi(request -> quota(5, resetAt));
+
+        send(scheduler, github, Priority.DEFAULT, "first").get(5, TimeUnit.SECONDS);
+
+        // Holding the request until the reset would take longer than max-wait-seconds
+        ExecutionException rejected = assertThrows(ExecutionException.class,
+                () -> send(scheduler, github, Priority.BACKGROUND, "agent").get(5, TimeUnit.SECONDS));
+        assertTrue(rejected.getCause().getMessage().contains("rate limit exhausted"));
+        assertEquals(HttpStatus.OK, send(scheduler, github, Priority.INTERACTIVE, "candidate")
+                .get(5, TimeUnit.SECONDS).statusCode());
+        assertEquals(2, github.requests().size());
+        assertEquals(1.0, meterRegistry.counter("github.ratelimit.rejected", "priority", "background").count());
+    }
+
+    @Test
+    public void keepsTheQuotasOfDifferentTokensApart() throws Exception {
+        GithubRequestScheduler scheduler = scheduler(8, 0, 3);
+        long resetAt = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 3600;
+        FakeGithubApi github = new FakeGithubApi(request -> TOKEN.equals(request.headers().getFirst(HttpHeaders.AUTHORIZATION))
+                ? quota(0, resetAt) : ok());
+
+        send(scheduler, github, Priority.DEFAULT, "first").get(5, TimeUnit.SECONDS);
+
+        assertThrows(ExecutionException.class,
+                () -> send(scheduler, github, Priority.DEFAULT, "exhausted").get(5, TimeUnit.SECONDS));
+        ClientRequest otherToken = ClientRequest.create(HttpMethod.GET, URI.create("https://api.github.com/repos/octocat/other"))
+                .header(HttpHeaders.AUTHORIZATION, "token ghs_installation")
+                .build();
+        ClientResponse response = scheduler.exchangeFilter().filter(otherToken, github).block(Duration.ofSeconds(5));
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK, response.statusCode());
+    }
+
+    private GithubRequestScheduler scheduler(int maxConcurrent, long reserve, int maxRetries) {
+        return new GithubRequestScheduler(meterRegistry, maxConcurrent, reserve, maxRetries, 1, 120);
+    }
+
+    private static CompletableFuture<ClientResponse> send(GithubRequestScheduler scheduler, FakeGithubApi github,
+            Priority priority, String repo) {
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("https://api.github.com/repos/octocat/" + repo))
+                .header(HttpHeaders.AUTHORIZATION, TOKEN)
+                .build();
+        return GithubRequestScheduler.withPriority(priority, scheduler.exchangeFilter().filter(request, github)).toFuture();
+    }
+
+    private Mono<ClientResponse> hold() {
+        Sinks.One<ClientResponse> response = Sinks.one();
+        held.add(response);
+        return response.asMono();
+    }
+
+    // Answer the oldest held request
+    private void release() {
+        Sinks.One<ClientResponse> response = held.poll();
+        assertNotNull(response, "no request is held");
+        response.tryEmitValue(ClientResponse.create(HttpStatus.OK).build());
+    }
+
+    private static Mono<ClientResponse> ok() {
+        return FakeGithubApi.json(HttpStatus.OK, "{}");
+    }
+
+    private static Mono<ClientResponse> quota(long remaining, long resetAtSeconds) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-RateLimit-Remaining", String.valueOf(remaining));
+        headers.add("X-RateLimit-Reset", String.valueOf(resetAtSeconds));
+        headers.add("X-RateLimit-Resource", "core");
+        return FakeGithubApi.json(HttpStatus.OK, "{}", headers);
+    }
+
+    private static Mono<ClientResponse> rateLimited(HttpStatus status, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.RETRY_AFTER, "0");
+        return FakeGithubApi.json(status, body, headers);
+    }
+}
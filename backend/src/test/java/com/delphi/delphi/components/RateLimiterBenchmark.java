@@ -0,0 +1,104 @@
+package com.delphi.delphi.components;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.testcontainers.containers.GenericContainer;
+
+import com.delphi.delphi.configs.RateLimitProperties.LimitClass;
+import com.delphi.delphi.configs.redis.RedisTestSupport;
+
+/**
+ * Per-request cost of the rate limit check in the filter. gcra is the current check, one script
+ * call or a local rejection; fixedWindow is the check the filter used before, a GET of the
+ * client's counter for the current minute followed by MULTI/INCR/EXPIRE/EXEC when allowed.
+ *
+ * With outcome=allowed every request is within the limit. With outcome=rejected the client is
+ * over its limit, which the GCRA limiter answers from its local bucket and the fixed window
+ * with the GET alone.
+ *
+ * Needs Docker, a Redis is started with Testcontainers. Run with:
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.delphi.delphi.components.RateLimiterBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+
+    private static final String CLIENT = "candidate@example.com";
+
+    @Param({ "allowed", "rejected" })
+    public String outcome;
+
+    private GenericContainer<?> redis;
+    private RedisTestSupport.RedisFixture fixture;
+    private RateLimiter rateLimiter;
+    private LimitClass limit;
+    private int fixedWindowLimit;
+
+    @Setup
+    public void setUp() {
+        redis = RedisTestSupport.redisContainer();
+        redis.start();
+        fixture = RedisTestSupport.connect(redis);
+        rateLimiter = new RateLimiter(fixture.redisService());
+
+        limit = new LimitClass();
+        if ("allowed".equals(outcome)) {
+            // Far more budget than a run can use up
+            limit.setRequests(1_000_000_000);
+            limit.setPeriod(Duration.ofMillis(1_000_000_000));
+            fixedWindowLimit = Integer.MAX_VALUE;
+        } else {
+            limit.setRequests(1);
+            limit.setPeriod(Duration.ofHours(1));
+            rateLimiter.tryAcquire("benchmark", CLIENT, limit);
+            fixedWindowLimit = 0;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+        redis.stop();
+    }
+
+    @Benchmark
+    public boolean gcra() {
+        return rateLimiter.tryAcquire("benchmark", CLIENT, limit).allowed();
+    }
+
+    // The check RateLimitFilter made before the GCRA limiter
+    @Benchmark
+    public boolean fixedWindow() {
+        RedisService redisService = fixture.redisService();
+        long currentMinute = System.currentTimeMillis() / (60 * 1000);
+        String rateLimitKey = "ratelimit:" + CLIENT + ":" + currentMinute;
+        if (redisService.getLong(rateLimitKey) >= fixedWindowLimit) {
+            return false;
+        }
+        Long newCount = redisService.incrementAndExpire(rateLimitKey, 59);
+        return newCount != null && newCount <= fixedWindowLimit;
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args.length > 0 ? args : new String[] { RateLimiterBenchmark.class.getSimpleName() });
+    }
+}
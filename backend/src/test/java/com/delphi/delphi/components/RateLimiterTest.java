@@ -0,0 +1,134 @@
+package com.delphi.delphi.components;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.delphi.delphi.configs.RateLimitProperties.LimitClass;
+import com.delphi.delphi.configs.redis.RedisTestSupport;
+
+@Testcontainers(disabledWithoutDocker = true)
+public class RateLimiterTest {
+
+    @Container
+    @SuppressWarnings("resource")
+    static GenericContainer<?> redis = RedisTestSupport.redisContainer();
+
+    private static RedisTestSupport.RedisFixture fixture;
+
+    @BeforeAll
+    static void connect() {
+        fixture = RedisTestSupport.connect(redis);
+    }
+
+    @AfterAll
+    static void close() {
+        fixture.close();
+    }
+
+    @Test
+    public void allowsTheBurstThenRejectsWithRetryAfter() {
+        RateLimiter rateLimiter = new RateLimiter(fixture.redisService());
+        String client = client();
+        LimitClass limit = limit(5, Duration.ofMinutes(1), 3);
+
+        for (int i = 0; i < 3; i++) {
+            RateLimiter.Decision decision = rateLimiter.tryAcquire("agent", client, limit);
+            assertTrue(decision.allowed(), "request " + i + " is within the burst");
+            assertEquals(5, decision.limit());
+            assertEquals(2 - i, decision.remaining());
+        }
+
+        RateLimiter.Decision rejected = rateLimiter.tryAcquire("agent", client, limit);
+        assertFalse(rejected.allowed());
+        assertEquals(0, rejected.remaining());
+        // One emission interval of 12s, less the time the test took so far
+        assertTrue(rejected.retryAfterMillis() > 0 && rejected.retryAfterMillis() <= 12_000,
+                "retry after " + rejected.retryAfterMillis());
+        assertTrue(rejected.resetMillis() > 0);
+    }
+
+    @Test
+    public void allowsTheNextRequestOnceTheIntervalHasPassed() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(fixture.redisService());
+        String client = client();
+        // 100ms between requests, no burst beyond one
+        LimitClass limit = limit(10, Duration.ofSeconds(1), 1);
+
+        assertTrue(rateLimiter.tryAcquire("default", client, limit).allowed());
+        RateLimiter.Decision rejected = rateLimiter.tryAcquire("default", client, limit);
+        assertFalse(rejected.allowed());
+
+        Thread.sleep(rejected.retryAfterMillis() + 20);
+        assertTrue(rateLimiter.tryAcquire("default", client, limit).allowed());
+    }
+
+    @Test
+    public void sharesTheBudgetBetweenNodes() {
+        // Two limiters on one Redis, as on two application nodes
+        RateLimiter first = new RateLimiter(fixture.redisService());
+        RateLimiter second = new RateLimiter(fixture.redisService());
+        String client = client();
+        LimitClass limit = limit(4, Duration.ofMinutes(1), 4);
+
+        for (int i = 0; i < 2; i++) {
+            assertTrue(first.tryAcquire("agent", client, limit).allowed());
+            assertTrue(second.tryAcquire("agent", client, limit).allowed());
+        }
+        assertFalse(first.tryAcquire("agent", client, limit).allowed());
+        assertFalse(second.tryAcquire("agent", client, limit).allowed());
+    }
+
+    @Test
+    public void keepsASeparateBudgetPerGroup() {
+        RateLimiter rateLimiter = new RateLimiter(fixture.redisService());
+        String client = client();
+        LimitClass limit = limit(1, Duration.ofMinutes(1), 1);
+
+        assertTrue(rateLimiter.tryAcquire("agent", client, limit).allowed());
+        assertFalse(rateLimiter.tryAcquire("agent", client, limit).allowed());
+        assertTrue(rateLimiter.tryAcquire("default", client, limit).allowed());
+    }
+
+    @Test
+    public void appliesTheLocalLimitWhenRedisIsUnavailable() {
+        RedisService redisService = mock(RedisService.class);
+        when(redisService.executeScript(any(), anyList(), any(String[].class)))
+                .thenThrow(new RedisConnectionFailureException("Connection refused"));
+        RateLimiter rateLimiter = new RateLimiter(redisService);
+        LimitClass limit = limit(2, Duration.ofMinutes(1), 2);
+
+        assertTrue(rateLimiter.tryAcquire("agent", "candidate@example.com", limit).allowed());
+        assertTrue(rateLimiter.tryAcquire("agent", "candidate@example.com", limit).allowed());
+        RateLimiter.Decision rejected = rateLimiter.tryAcquire("agent", "candidate@example.com", limit);
+        assertFalse(rejected.allowed());
+        assertTrue(rejected.retryAfterMillis() > 0);
+    }
+
+    private static LimitClass limit(int requests, Duration period, int burst) {
+        LimitClass limit = new LimitClass();
+        limit.setRequests(requests);
+        limit.setPeriod(period);
+        limit.setBurst(burst);
+        return limit;
+    }
+
+    // Every test counts against its own client, so tests share the Redis without interfering
+    private static String client() {
+        return UUID.randomUUID() + "@example.com";
+    }
+}
@@ -0,0 +1,88 @@
+package com.delphi.delphi.components;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.delphi.delphi.configs.redis.RedisTestSupport;
+
+@Testcontainers(disabledWithoutDocker = true)
+public class RedisServiceBatchTest {
+
+    @Container
+    @SuppressWarnings("resource")
+    static GenericContainer<?> redis = RedisTestSupport.redisContainer();
+
+    private RedisTestSupport.RedisFixture fixture;
+    private RedisService redisService;
+
+    @BeforeEach
+    void connect() {
+        fixture = RedisTestSupport.connect(redis);
+        redisService = fixture.redisService();
+        fixture.redisTemplate().execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+    }
+
+    @AfterEach
+    void close() {
+        fixture.close();
+    }
+
+    @Test
+    public void multiSetWithExpirationAppliesEachKeysTtl() {
+        redisService.multiSetWithExpiration(Map.of("a", "1", "b", "2", "c", "3"),
+                Map.of("a", Duration.ofMinutes(10), "b", Duration.ofMinutes(30)));
+
+        assertEquals(List.of("1", "2", "3"), redisService.multiGet(List.of("a", "b", "c")));
+        Long a = fixture.redisTemplate().getExpire("a");
+        Long b = fixture.redisTemplate().getExpire("b");
+        assertTrue(a > 500 && a <= 600, "a expires in " + a);
+        assertTrue(b > 1700 && b <= 1800, "b expires in " + b);
+        assertEquals(Long.valueOf(-1), fixture.redisTemplate().getExpire("c"));
+    }
+
+    @Test
+    public void compareAndUpdateRewritesCachedValuesAndSkipsMissingOnes() {
+        redisService.set("list:1", new ArrayList<>(List.of(1, 2)));
+
+        redisService.compareAndUpdate(Map.of("list:1", Duration.ofMinutes(5), "list:2", Duration.ofMinutes(5)),
+                (List<Integer> ids) -> {
+                    List<Integer> updated = new ArrayList<>(ids);
+                    updated.add(3);
+                    return updated;
+                });
+
+        assertEquals(List.of(1, 2, 3), redisService.get("list:1"));
+        assertNull(redisService.get("list:2"));
+        assertTrue(fixture.redisTemplate().getExpire("list:1") > 0);
+    }
+
+    @Test
+    public void compareAndUpdateDropsAValueThatKeepsChanging() {
+        redisService.set("counter", 0);
+
+        // Every read is followed by a concurrent write, so no compare-and-set can succeed
+        redisService.compareAndUpdate(Map.of("counter", Duration.ofMinutes(5)), (Integer value) -> {
+            redisService.set("counter", value + 100);
+            return value + 1;
+        });
+
+        assertFalse(fixture.redisTemplate().hasKey("counter"));
+    }
+}
@@ -0,0 +1,127 @@
+package com.delphi.delphi.components;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.delphi.delphi.services.GithubService;
+
+import reactor.core.publisher.Mono;
+
+public class RepoChangesetTest {
+
+    @Test
+    public void readsWithinTheTurnSeeTheLatestStagedContent() {
+        RepoChangeset changeset = new RepoChangeset();
+        changeset.stage("call_1", "main", "/src/App.java", "class App {}", "Add the app");
+        changeset.stage("call_2", "main", "src/App.java", "class App { void run() {} }", "Add run");
+
+        assertEquals("class App { void run() {} }", changeset.staged("main", "/src/App.java").content());
+        assertNull(changeset.staged("feature", "src/App.java"));
+        assertNull(changeset.staged("main", "README.md"));
+        assertEquals(Set.of("call_1", "call_2"), changeset.stagedCallIds());
+    }
+
+    @Test
+    public void drainGroupsTheChangesByBranch() {
+        RepoChangeset changeset = new RepoChangeset();
+        changeset.stage("call_1", null, "src/App.java", "class App {}", "Add the app");
+        changeset.stage("call_2", "feature", "README.md", "# Hello", "Add a readme");
+        changeset.stage("call_3", "", "old.txt", null, "Remove old.txt");
+
+        List<RepoChangeset.BranchChanges> changes = changeset.drain();
+
+        assertEquals(2, changes.size());
+        // Writes without a branch go to the default branch, which the commit resolves
+        assertNull(changes.get(0).branch());
+        Map<String, String> contents = new LinkedHashMap<>();
+        contents.put("src/App.java", "class App {}");
+        contents.put("old.txt", null);
+        assertEquals(contents, changes.get(0).contents());
+        assertTrue(changes.get(0).files().get("old.txt").deleted());
+        assertEquals("feature", changes.get(1).branch());
+        assertEquals("Add a readme", changes.get(1).message());
+
+        assertTrue(changeset.isEmpty());
+        assertFalse(changeset.isStaged("call_1"));
+    }
+
+    @Test
+    public void commitMessageSummarizesSeveralChanges() {
+        RepoChangeset changeset = new RepoChangeset();
+        changeset.stage("call_1", "main", "src/App.java", "class App {}", "Add the app");
+        changeset.stage("call_2", "main", "src/AppTest.java", "class AppTest {}", "Add a test");
+        changeset.stage("call_3", "main", "pom.xml", "<project/>", "");
+
+        assertEquals("Update 3 files\n\n- Add the app\n- Add a test", changeset.drain().get(0).message());
+    }
+
+    @Test
+    public void commitChangesetMakesOneCommitPerBranch() {
+        GithubService githubService = mock(GithubService.class);
+        when(githubService.commitFiles(anyString(), anyString(), anyString(), any(), anyMap(), anyString()))
+                .thenReturn(Mono.just("sha-1"), Mono.just("sha-2"));
+        ToolCallHandler toolCallHandler = new ToolCallHandler(githubService);
+        RepoChangeset changeset = new RepoChangeset();
+        changeset.stage("call_1", "main", "src/App.java", "class App {}", "Add the app");
+        changeset.stage("call_2", "main", "src/AppTest.java", "class AppTest {}", "Add a test");
+        changeset.stage("call_3", "feature", "README.md", "# Hello", "Add a readme");
+
+        List<String> commits = toolCallHandler.commitChangeset(changeset, "ghu_test", "octocat", "hello");
+
+        assertEquals(List.of("sha-1", "sha-2"), commits);
+        verify(githubService).commitFiles("ghu_test", "octocat", "hello", "main",
+                Map.of("src/App.java", "class App {}", "src/AppTest.java", "class AppTest {}"),
+                "Update 2 files\n\n- Add the app\n- Add a test");
+        verify(githubService).commitFiles("ghu_test", "octocat", "hello", "feature",
+                Map.of("README.md", "# Hello"), "Add a readme");
+        assertTrue(changeset.isEmpty());
+    }
+
+    @Test
+    public void writesWithoutABranchShareTheDefaultBranchsChanges() {
+        AtomicInteger lookups = new AtomicInteger();
+        RepoChangeset changeset = new RepoChangeset(Mono.fromSupplier(() -> {
+            lookups.incrementAndGet();
+            return "main";
+        }));
+        // addFile names the branch, editFile and deleteFile do not
+        changeset.stage("call_1", "main", "src/App.java", "class App {}", "Add the app");
+        changeset.stage("call_2", null, "README.md", "# Hello", "Edit the readme");
+        changeset.stage("call_3", null, "old.txt", null, "Remove old.txt");
+
+        assertEquals("# Hello", changeset.staged("main", "README.md").content());
+        assertEquals("class App {}", changeset.staged(null, "src/App.java").content());
+        List<RepoChangeset.BranchChanges> changes = changeset.drain();
+        assertEquals(1, changes.size());
+        assertEquals("main", changes.get(0).branch());
+        assertEquals(Set.of("src/App.java", "README.md", "old.txt"), changes.get(0).files().keySet());
+        assertEquals(1, lookups.get());
+    }
+
+    @Test
+    public void emptyChangesetCommitsNothing() {
+        GithubService githubService = mock(GithubService.class);
+
+        List<String> commits = new ToolCallHandler(githubService).commitChangeset(new RepoChangeset(), "ghu_test",
+                "octocat", "hello");
+
+        assertTrue(commits.isEmpty());
+        verify(githubService, never()).commitFiles(anyString(), anyString(), anyString(), any(), anyMap(), anyString());
+    }
+}
@@ -0,0 +1,93 @@
+package com.delphi.delphi.components;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.ai.chat.messages.AssistantMessage.ToolCall;
+import org.springframework.ai.chat.messages.ToolResponseMessage.ToolResponse;
+import org.springframework.core.env.StandardEnvironment;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+public class ToolCallExecutorTest {
+
+    private ToolCallHandler toolCallHandler;
+    private ToolCallExecutor toolCallExecutor;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        toolCallHandler = mock(ToolCallHandler.class);
+        when(toolCallHandler.defaultBranch("ghu_test", "octocat", "hello")).thenReturn(Mono.just("main"));
+        toolCallExecutor = new ToolCallExecutor(toolCallHandler, new SimpleMeterRegistry(), new StandardEnvironment(),
+                4, 5000);
+    }
+
+    @Test
+    public void writesWithoutABranchAreOrderedWithWritesToTheDefaultBranch() {
+        answerAfter(100);
+
+        // Not staged, so each write commits to the branch and moves its head
+        ToolCallExecutor.Batch batch = toolCallExecutor.newBatch("ghu_test", "octocat", "hello", null, null);
+        batch.submit(toolCall("call_1", "editFile", "{\"filePath\":\"a.txt\",\"fileContent\":\"a\",\"sha\":\"1\"}"));
+        batch.submit(toolCall("call_2", "addFile", "{\"filePath\":\"b.txt\",\"fileContent\":\"b\",\"branch\":\"main\"}"));
+        List<ToolResponse> responses = batch.await();
+
+        assertEquals(2, responses.size());
+        assertEquals(1, maxRunning.get());
+        // The default branch is looked up once for the batch
+        verify(toolCallHandler, times(1)).defaultBranch("ghu_test", "octocat", "hello");
+    }
+
+    @Test
+    public void writesToOtherBranchesStillRunInParallel() throws Exception {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        boolean[] overlapped = new boolean[2];
+        when(toolCallHandler.executeToolCall(any(), anyString(), anyString(), anyString(), isNull())).thenAnswer(call -> {
+            ToolCall toolCall = call.getArgument(0);
+            bothStarted.countDown();
+            overlapped[toolCall.id().equals("call_1") ? 0 : 1] = bothStarted.await(2, TimeUnit.SECONDS);
+            return new ToolResponse(toolCall.id(), toolCall.name(), "ok");
+        });
+
+        ToolCallExecutor.Batch batch = toolCallExecutor.newBatch("ghu_test", "octocat", "hello", null, null);
+        batch.submit(toolCall("call_1", "editFile", "{\"filePath\":\"a.txt\",\"fileContent\":\"a\",\"sha\":\"1\"}"));
+        batch.submit(toolCall("call_2", "addFile", "{\"filePath\":\"b.txt\",\"fileContent\":\"b\",\"branch\":\"feature\"}"));
+        batch.await();
+
+        assertTrue(overlapped[0] && overlapped[1]);
+    }
+
+    // Each call runs for the given time, recording how many calls run at once
+    private void answerAfter(long millis) {
+        when(toolCallHandler.executeToolCall(any(), anyString(), anyString(), anyString(), isNull())).thenAnswer(call -> {
+            ToolCall toolCall = call.getArgument(0);
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(millis);
+            } finally {
+                running.decrementAndGet();
+            }
+            return new ToolResponse(toolCall.id(), toolCall.name(), "ok");
+        });
+    }
+
+    private static ToolCall toolCall(String id, String name, String arguments) {
+        return new ToolCall(id, "function", name, arguments);
+    }
+}
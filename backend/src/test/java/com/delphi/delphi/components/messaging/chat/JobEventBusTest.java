@@ -0,0 +1,184 @@
+package com.delphi.delphi.components.messaging.chat;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.delphi.delphi.configs.redis.RedisTestSupport;
+
+/**
+ * Runs two nodes' JobEventBus on one Redis, each with its own connections and listener
+ * container, as two instances of the application would.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class JobEventBusTest {
+
+    @Container
+    @SuppressWarnings("resource")
+    static GenericContainer<?> redis = RedisTestSupport.redisContainer();
+
+    private Node nodeA;
+    private Node nodeB;
+
+    /**
+     * An application instance: its Redis connections, listener container and event bus.
+     */
+    private record Node(RedisTestSupport.RedisFixture fixture, RedisMessageListenerContainer listenerContainer,
+            JobEventBus eventBus) {
+
+        private static Node start() {
+            RedisTestSupport.RedisFixture fixture = RedisTestSupport.connect(redis);
+            RedisMessageListenerContainer listenerContainer = new RedisMessageListenerContainer();
+            listenerContainer.setConnectionFactory(fixture.connectionFactory());
+            listenerContainer.afterPropertiesSet();
+            listenerContainer.start();
+            JobEventBus eventBus = new JobEventBus(new StringRedisTemplate(fixture.connectionFactory()),
+                    listenerContainer, fixture.redisService(), 1000, 30);
+            return new Node(fixture, listenerContainer, eventBus);
+        }
+
+        private void stop() throws Exception {
+            eventBus.shutdown();
+            listenerContainer.destroy();
+            fixture.close();
+        }
+    }
+
+    /**
+     * An SSE event as the client receives it.
+     */
+    private record Event(String id, String name, String data) {
+    }
+
+    // Records what would be written to the client
+    private static final class RecordingEmitter extends SseEmitter {
+        private final List<Event> events = new CopyOnWriteArrayList<>();
+        private volatile boolean completed;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            StringBuilder text = new StringBuilder();
+            builder.build().forEach(part -> text.append(part.getData()));
+            String id = null;
+            String name = null;
+            String data = null;
+            for (String line : text.toString().split("\n")) {
+                if (line.startsWith("id:")) {
+                    id = line.substring("id:".length());
+                } else if (line.startsWith("event:")) {
+                    name = line.substring("event:".length());
+                } else if (line.startsWith("data:")) {
+                    data = line.substring("data:".length());
+                }
+            }
+            events.add(new Event(id, name, data));
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        private List<String> names() {
+            return events.stream().map(Event::name).toList();
+        }
+    }
+
+    @BeforeEach
+    void startNodes() {
+        nodeA = Node.start();
+        nodeB = Node.start();
+    }
+
+    @AfterEach
+    void stopNodes() throws Exception {
+        nodeA.stop();
+        nodeB.stop();
+    }
+
+    @Test
+    public void deliversEventsPublishedOnAnotherNode() throws Exception {
+        UUID jobId = UUID.randomUUID();
+        RecordingEmitter emitter = new RecordingEmitter();
+        nodeA.eventBus().register(jobId, emitter);
+        awaitSubscribers(jobId, 1);
+
+        nodeB.eventBus().publish(jobId, "message", Map.of("text", "hello"));
+        nodeB.eventBus().complete(jobId);
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> emitter.completed);
+        assertEquals(List.of("message", "stream_complete"), emitter.names());
+        Event message = emitter.events.get(0);
+        assertEquals("{\"text\":\"hello\"}", message.data());
+        assertTrue(message.id().matches("\\d+-\\d+"), "sent with its log id " + message.id());
+        // The completed stream no longer listens on the job's channel
+        awaitSubscribers(jobId, 0);
+    }
+
+    @Test
+    public void resumesOnAnotherNodeFromTheLog() throws Exception {
+        UUID jobId = UUID.randomUUID();
+        // Published while no node holds the job's emitter
+        nodeB.eventBus().publish(jobId, "message", Map.of("text", "first"));
+        nodeB.eventBus().publish(jobId, "message", Map.of("text", "second"));
+
+        RecordingEmitter first = new RecordingEmitter();
+        nodeA.eventBus().resume(jobId, first, null);
+        assertEquals(2, first.events.size());
+
+        // The client reconnects to node B, having received only the first event
+        nodeA.eventBus().remove(jobId, first);
+        RecordingEmitter second = new RecordingEmitter();
+        nodeB.eventBus().resume(jobId, second, first.events.get(0).id());
+        assertEquals(List.of(first.events.get(1)), second.events);
+        awaitSubscribers(jobId, 1);
+
+        nodeA.eventBus().publish(jobId, "message", Map.of("text", "third"));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> second.events.size() == 2);
+        assertEquals("{\"text\":\"third\"}", second.events.get(1).data());
+        assertEquals(2, first.events.size());
+    }
+
+    @Test
+    public void liveEventsAreDeliveredButNotLogged() throws Exception {
+        UUID jobId = UUID.randomUUID();
+        RecordingEmitter emitter = new RecordingEmitter();
+        nodeA.eventBus().register(jobId, emitter);
+        awaitSubscribers(jobId, 1);
+
+        nodeB.eventBus().publishLive(jobId, "delta", Map.of("text", "hel"));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> emitter.events.size() == 1);
+        assertNull(emitter.events.get(0).id());
+        RecordingEmitter resumed = new RecordingEmitter();
+        nodeB.eventBus().resume(jobId, resumed, null);
+        assertTrue(resumed.events.isEmpty());
+    }
+
+    // Subscriptions are made asynchronously by the listener container
+    private static void awaitSubscribers(UUID jobId, int subscribers) {
+        await().atMost(Duration.ofSeconds(5)).until(() -> {
+            String[] reply = redis.execInContainer("redis-cli", "pubsub", "numsub", "sse:job:" + jobId)
+                    .getStdout().trim().split("\n");
+            return reply[reply.length - 1].trim().equals(String.valueOf(subscribers));
+        });
+    }
+}
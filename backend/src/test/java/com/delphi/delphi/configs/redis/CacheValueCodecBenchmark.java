@@ -0,0 +1,185 @@
+package com.delphi.delphi.configs.redis;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.messages.MessageType;
+
+import com.delphi.delphi.dtos.FetchToolCallDto;
+import com.delphi.delphi.dtos.FetchToolResponseDto;
+import com.delphi.delphi.dtos.cache.AssessmentCacheDto;
+import com.delphi.delphi.dtos.cache.CandidateAttemptCacheDto;
+import com.delphi.delphi.dtos.cache.CandidateCacheDto;
+import com.delphi.delphi.dtos.cache.ChatMessageCacheDto;
+import com.delphi.delphi.utils.enums.AssessmentStatus;
+import com.delphi.delphi.utils.enums.AttemptStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Encode and decode time of the json and compact cache formats for the lists that dominate
+ * the cache: assessments, attempts (with their nested assessment and candidate) and chat
+ * histories. Payload sizes are deterministic, so {@link #main} prints them once before
+ * running the benchmarks.
+ *
+ * Run with:
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.delphi.delphi.configs.redis.CacheValueCodecBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheValueCodecBenchmark {
+
+    @Param({ "assessments", "attempts", "chat" })
+    public String payload;
+
+    @Param({ JsonCacheValueCodec.NAME, CompactCacheValueCodec.NAME })
+    public String format;
+
+    @Param({ "10", "200" })
+    public int size;
+
+    private CacheValueCodec codec;
+    private Object value;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        codec = codec(format);
+        value = payload(payload, size);
+        encoded = codec.encode(value);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(value);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return codec.decode(encoded);
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%-12s %6s %12s %12s%n", "payload", "size", "json bytes", "compact bytes");
+        for (String payload : List.of("assessments", "attempts", "chat")) {
+            for (int size : List.of(10, 200)) {
+                Object value = payload(payload, size);
+                System.out.printf("%-12s %6d %12d %12d%n", payload, size,
+                        codec(JsonCacheValueCodec.NAME).encode(value).length,
+                        codec(CompactCacheValueCodec.NAME).encode(value).length);
+            }
+        }
+        org.openjdk.jmh.Main.main(args.length > 0 ? args : new String[] { CacheValueCodecBenchmark.class.getSimpleName() });
+    }
+
+    // The codecs as RedisConfig builds them
+    private static CacheValueCodec codec(String format) {
+        if (CompactCacheValueCodec.NAME.equals(format)) {
+            ObjectMapper compactMapper = RedisConfig.createObjectMapper();
+            compactMapper.setDefaultTyping(CompactTypeIdResolver.defaultTyping());
+            return new CompactCacheValueCodec(compactMapper, 1024);
+        }
+        return new JsonCacheValueCodec(RedisConfig.createObjectMapper());
+    }
+
+    private static Object payload(String payload, int size) {
+        List<Object> values = new ArrayList<>(size);
+        for (long i = 1; i <= size; i++) {
+            values.add(switch (payload) {
+                case "assessments" -> assessment(i);
+                case "attempts" -> attempt(i);
+                case "chat" -> chatMessage(i);
+                default -> throw new IllegalArgumentException("Unknown payload: " + payload);
+            });
+        }
+        return values;
+    }
+
+    private static AssessmentCacheDto assessment(long id) {
+        AssessmentCacheDto assessment = new AssessmentCacheDto();
+        assessment.setId(id);
+        assessment.setName("Backend engineer take-home " + id);
+        assessment.setDescription("Build a small REST service that ingests events and serves aggregates.");
+        assessment.setDetails("The repository contains a skeleton Spring Boot project with failing tests.");
+        assessment.setRole("Backend Engineer");
+        assessment.setStatus(AssessmentStatus.ACTIVE);
+        assessment.setStartDate(LocalDateTime.of(2025, 1, 1, 9, 0));
+        assessment.setEndDate(LocalDateTime.of(2025, 3, 1, 9, 0));
+        assessment.setDuration(120);
+        assessment.setGithubRepositoryLink("https://github.com/themus-assessments/backend-take-home-" + id);
+        assessment.setGithubRepoName("backend-take-home-" + id);
+        assessment.setCreatedDate(LocalDateTime.of(2024, 12, 20, 14, 30));
+        assessment.setUpdatedDate(LocalDateTime.of(2024, 12, 21, 10, 15));
+        assessment.setUserId(7L);
+        assessment.setSkills(new ArrayList<>(List.of("Java", "Spring", "PostgreSQL", "Redis")));
+        assessment.setLanguageOptions(new ArrayList<>(List.of("java", "kotlin")));
+        assessment.setMetadata(new HashMap<>(Map.of("difficulty", "medium", "team", "platform")));
+        assessment.setCandidateAttemptIds(new ArrayList<>(List.of(id * 10, id * 10 + 1, id * 10 + 2)));
+        assessment.setCandidateIds(new ArrayList<>(List.of(id * 20, id * 20 + 1)));
+        assessment.setChatMessageIds(new ArrayList<>(List.of(id * 30, id * 30 + 1, id * 30 + 2, id * 30 + 3)));
+        return assessment;
+    }
+
+    private static CandidateAttemptCacheDto attempt(long id) {
+        CandidateCacheDto candidate = new CandidateCacheDto();
+        candidate.setId(id);
+        candidate.setFirstName("Ada");
+        candidate.setLastName("Lovelace " + id);
+        candidate.setEmail("candidate" + id + "@example.com");
+        candidate.setCreatedDate(LocalDateTime.of(2025, 1, 2, 8, 0));
+        candidate.setUpdatedDate(LocalDateTime.of(2025, 1, 2, 8, 0));
+        candidate.setUserId(7L);
+        candidate.setAssessmentIds(new ArrayList<>(List.of(id)));
+        candidate.setCandidateAttemptIds(new ArrayList<>(List.of(id)));
+
+        CandidateAttemptCacheDto attempt = new CandidateAttemptCacheDto();
+        attempt.setId(id);
+        attempt.setGithubRepositoryLink("https://github.com/candidate" + id + "/backend-take-home");
+        attempt.setStatus(AttemptStatus.COMPLETED);
+        attempt.setLanguageChoice("java");
+        attempt.setCreatedDate(LocalDateTime.of(2025, 1, 2, 8, 0));
+        attempt.setUpdatedDate(LocalDateTime.of(2025, 1, 3, 18, 0));
+        attempt.setStartedDate(LocalDateTime.of(2025, 1, 3, 9, 0));
+        attempt.setCompletedDate(LocalDateTime.of(2025, 1, 3, 11, 0));
+        attempt.setAssessment(assessment(id));
+        attempt.setCandidate(candidate);
+        return attempt;
+    }
+
+    private static ChatMessageCacheDto chatMessage(long id) {
+        ChatMessageCacheDto message = new ChatMessageCacheDto();
+        message.setId(id);
+        message.setModel("gpt-4o-mini");
+        message.setCreatedDate(LocalDateTime.of(2025, 1, 1, 9, 0).plusSeconds(id));
+        message.setAssessmentId(42L);
+        if (id % 2 == 0) {
+            message.setMessageType(MessageType.ASSISTANT);
+            message.setText("I added the aggregation endpoint and a repository method for the rollups.");
+            message.setToolCalls(new ArrayList<>(List.of(new FetchToolCallDto("call_" + id, "writeFile",
+                    "{\"path\":\"src/main/java/App.java\",\"content\":\"class App {}\"}"))));
+        } else {
+            message.setMessageType(MessageType.TOOL);
+            message.setToolResponses(new ArrayList<>(List.of(new FetchToolResponseDto("call_" + (id - 1), "writeFile",
+                    "Staged src/main/java/App.java"))));
+        }
+        return message;
+    }
+}
@@ -0,0 +1,61 @@
+package com.delphi.delphi.configs.redis;
+
+import java.util.List;
+
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import com.delphi.delphi.components.CacheMetrics;
+import com.delphi.delphi.components.RedisService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Builds the Redis beans of {@link RedisConfig} the way the application does, for tests and
+ * benchmarks that run against a Redis started with Testcontainers.
+ */
+public final class RedisTestSupport {
+
+    public static final DockerImageName REDIS_IMAGE = DockerImageName.parse("redis:7.4-alpine");
+
+    /**
+     * A connection factory, template and RedisService on one Redis, closed together.
+     */
+    public record RedisFixture(LettuceConnectionFactory connectionFactory, RedisTemplate<String, Object> redisTemplate,
+            RedisService redisService) implements AutoCloseable {
+
+        @Override
+        public void close() {
+            connectionFactory.destroy();
+        }
+    }
+
+    private RedisTestSupport() {
+    }
+
+    // A standalone Redis; start it before use
+    public static GenericContainer<?> redisContainer() {
+        return new GenericContainer<>(REDIS_IMAGE).withExposedPorts(6379);
+    }
+
+    // The configuration of a standalone Redis with a small connection pool
+    public static RedisConfig standaloneConfig(String host, int port) {
+        return new RedisConfig(host, port, 0, "", 16, 8, 0, 1000, 100, JsonCacheValueCodec.NAME, "standalone",
+                "replicaPreferred", "", List.of(), List.of(), 3);
+    }
+
+    public static RedisFixture connect(GenericContainer<?> redis) {
+        return connect(standaloneConfig(redis.getHost(), redis.getMappedPort(6379)));
+    }
+
+    public static RedisFixture connect(RedisConfig config) {
+        LettuceConnectionFactory connectionFactory = config.redisConnectionFactory();
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        RedisTemplate<String, Object> redisTemplate = config.redisTemplate(connectionFactory);
+        return new RedisFixture(connectionFactory, redisTemplate,
+                new RedisService(redisTemplate, new CacheMetrics(new SimpleMeterRegistry())));
+    }
+}
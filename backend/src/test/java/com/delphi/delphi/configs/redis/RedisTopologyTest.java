@@ -0,0 +1,284 @@
+package com.delphi.delphi.configs.redis;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import static org.mockito.Mockito.mock;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.images.builder.Transferable;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.delphi.delphi.components.CacheLoadGuard;
+import com.delphi.delphi.components.CacheMetrics;
+import com.delphi.delphi.components.ChatHistoryCache;
+import com.delphi.delphi.components.NormalizedCache;
+import com.delphi.delphi.components.RateLimiter;
+import com.delphi.delphi.components.RedisService;
+import com.delphi.delphi.configs.RateLimitProperties.LimitClass;
+import com.delphi.delphi.dtos.cache.ChatMessageCacheDto;
+import com.delphi.delphi.utils.CacheUtils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Runs the Redis beans of {@link RedisConfig} against Sentinel and against a Cluster.
+ *
+ * Sentinel and Cluster announce the addresses their nodes see each other at, so the nodes run
+ * on the host network where those addresses are reachable from the test, each on a free port.
+ * The cluster is a single node holding every slot, which enforces the same slot rules for
+ * multi-key commands and scripts as a larger one.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledOnOs(OS.LINUX)
+public class RedisTopologyTest {
+
+    private static final String MASTER_NAME = "mymaster";
+
+    private static final int PRIMARY_PORT = freePort();
+    private static final int REPLICA_PORT = freePort();
+    private static final int SENTINEL_PORT = freePort();
+    private static final int CLUSTER_PORT = freePort();
+
+    @Container
+    @SuppressWarnings("resource")
+    static GenericContainer<?> primary = node(PRIMARY_PORT);
+
+    @Container
+    @SuppressWarnings("resource")
+    static GenericContainer<?> replica = node(REPLICA_PORT, "--replicaof", "127.0.0.1", String.valueOf(PRIMARY_PORT))
+            .dependsOn(primary);
+
+    @Container
+    @SuppressWarnings("resource")
+    static GenericContainer<?> sentinel = new GenericContainer<>(RedisTestSupport.REDIS_IMAGE)
+            .withNetworkMode("host")
+            .withCopyToContainer(Transferable.of("port " + SENTINEL_PORT + "\n"
+                    + "sentinel monitor " + MASTER_NAME + " 127.0.0.1 " + PRIMARY_PORT + " 1\n"
+                    + "sentinel down-after-milliseconds " + MASTER_NAME + " 5000\n"), "/data/sentinel.conf")
+            .withCommand("redis-server", "/data/sentinel.conf", "--sentinel")
+            .waitingFor(Wait.forLogMessage(".*\\+monitor master " + MASTER_NAME + ".*", 1))
+            .dependsOn(replica);
+
+    @Container
+    @SuppressWarnings("resource")
+    static GenericContainer<?> cluster = node(CLUSTER_PORT, "--cluster-enabled", "yes",
+            "--cluster-config-file", "nodes.conf");
+
+    private static AnnotationConfigApplicationContext sentinelContext;
+    private static AnnotationConfigApplicationContext clusterContext;
+
+    /**
+     * The beans RedisConfig depends on, besides those of the application's Redis components.
+     */
+    @Configuration
+    @Import({ RedisConfig.class, RedisService.class, CacheMetrics.class, CacheLoadGuard.class, NormalizedCache.class,
+            ChatHistoryCache.class, RateLimiter.class })
+    static class TopologyTestConfig {
+
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        public StringRedisTemplate stringRedisTemplate(RedisConnectionFactory redisConnectionFactory) {
+            return new StringRedisTemplate(redisConnectionFactory);
+        }
+
+        // Cache loads run in a read-only transaction, which these tests never need
+        @Bean
+        public PlatformTransactionManager transactionManager() {
+            return mock(PlatformTransactionManager.class);
+        }
+    }
+
+    @BeforeAll
+    static void startTopologies() throws Exception {
+        // The sentinel has to know the replica before clients ask it for one
+        await().atMost(Duration.ofSeconds(30)).until(() -> redisCli(replica, REPLICA_PORT, "info", "replication")
+                .contains("master_link_status:up")
+                && redisCli(sentinel, SENTINEL_PORT, "sentinel", "replicas", MASTER_NAME)
+                        .contains(String.valueOf(REPLICA_PORT)));
+        sentinelContext = context(Map.of(
+                "themus.redis.mode", "sentinel",
+                "spring.data.redis.sentinel.master", MASTER_NAME,
+                "spring.data.redis.sentinel.nodes", "127.0.0.1:" + SENTINEL_PORT));
+
+        redisCli(cluster, CLUSTER_PORT, "cluster", "addslotsrange", "0", "16383");
+        await().atMost(Duration.ofSeconds(30))
+                .until(() -> redisCli(cluster, CLUSTER_PORT, "cluster", "info").contains("cluster_state:ok"));
+        clusterContext = context(Map.of(
+                "themus.redis.mode", "cluster",
+                "spring.data.redis.cluster.nodes", "127.0.0.1:" + CLUSTER_PORT));
+    }
+
+    @AfterAll
+    static void closeContexts() {
+        if (sentinelContext != null) {
+            sentinelContext.close();
+        }
+        if (clusterContext != null) {
+            clusterContext.close();
+        }
+    }
+
+    @Test
+    public void sentinelWritesAndReadsThroughThePrimary() throws Exception {
+        RedisService redisService = sentinelContext.getBean(RedisService.class);
+
+        redisService.set("topology:sentinel", "written");
+
+        // Read right after the write, as ownership records and leases are
+        assertEquals("written", redisService.get("topology:sentinel"));
+        assertEquals("1", redisCli(primary, PRIMARY_PORT, "exists", "topology:sentinel").trim());
+    }
+
+    @Test
+    public void sentinelReadsOptedInCachesFromTheReplica() throws Exception {
+        CacheManager cacheManager = sentinelContext.getBean(CacheManager.class);
+        Cache users = cacheManager.getCache("users");
+        Cache assessments = cacheManager.getCache("assessments");
+        users.put("42", "Ada");
+        assessments.put("7", "Backend take-home");
+        await().atMost(Duration.ofSeconds(10)).until(() -> redisCli(replica, REPLICA_PORT, "exists",
+                "cache:users:42", "cache:assessments:7").trim().equals("2"));
+
+        long replicaGets = getCalls(replica, REPLICA_PORT);
+        assertEquals("Ada", users.get("42", String.class));
+        assertEquals(replicaGets + 1, getCalls(replica, REPLICA_PORT), "users is read from the replica");
+
+        replicaGets = getCalls(replica, REPLICA_PORT);
+        assertEquals("Backend take-home", assessments.get("7", String.class));
+        assertEquals(replicaGets, getCalls(replica, REPLICA_PORT), "assessments is read from the primary");
+    }
+
+    @Test
+    public void clusterRunsTheMultiKeyScripts() {
+        RedisService redisService = clusterContext.getBean(RedisService.class);
+        ChatHistoryCache chatHistoryCache = clusterContext.getBean(ChatHistoryCache.class);
+
+        redisService.set("topology:cluster", "written");
+        assertEquals("written", redisService.get("topology:cluster"));
+
+        // The history's list, marker, version and pending keys must share a slot
+        ChatMessageCacheDto message = new ChatMessageCacheDto();
+        message.setId(1001L);
+        message.setAssessmentId(9L);
+        message.setMessageType(MessageType.USER);
+        message.setText("Add a health check");
+        message.setCreatedDate(LocalDateTime.of(2025, 1, 1, 9, 0));
+        chatHistoryCache.append(9L, List.of(message), true);
+
+        // Not in the database yet, so the load merges it in from the pending set
+        List<ChatMessageCacheDto> history = chatHistoryCache.getTail(9L, 10, List::of);
+        assertEquals(List.of(1001L), history.stream().map(ChatMessageCacheDto::getId).toList());
+
+        long generation = redisService.currentGeneration(CacheUtils.userAssessmentsGeneration(5L));
+        assertEquals(generation + 1, redisService.bumpGeneration(CacheUtils.userAssessmentsGeneration(5L)));
+    }
+
+    @Test
+    public void clusterRunsTheRateLimitScript() {
+        RateLimiter rateLimiter = clusterContext.getBean(RateLimiter.class);
+        LimitClass limit = new LimitClass();
+        limit.setRequests(2);
+        limit.setPeriod(Duration.ofMinutes(1));
+
+        assertTrue(rateLimiter.tryAcquire("agent", "cluster@example.com", limit).allowed());
+        assertTrue(rateLimiter.tryAcquire("agent", "cluster@example.com", limit).allowed());
+        assertFalse(rateLimiter.tryAcquire("agent", "cluster@example.com", limit).allowed());
+    }
+
+    // The application's Redis beans, configured as they would be from application.properties
+    private static AnnotationConfigApplicationContext context(Map<String, Object> topology) {
+        Map<String, Object> properties = new HashMap<>(Map.of(
+                "spring.data.redis.host", "127.0.0.1",
+                "spring.data.redis.port", "6379",
+                "spring.data.redis.database", "0",
+                "spring.data.redis.password", "",
+                "spring.data.redis.lettuce.pool.max-active", "8",
+                "spring.data.redis.lettuce.pool.max-idle", "8",
+                "spring.data.redis.lettuce.pool.min-idle", "0",
+                "spring.data.redis.lettuce.pool.max-wait", "1000",
+                "spring.data.redis.lettuce.shutdown-timeout", "100",
+                "themus.cache.near.enabled", "false"));
+        properties.put("themus.redis.replica-read-caches", "users");
+        properties.putAll(topology);
+
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("topology", properties));
+        // Splits the comma separated node lists, as Spring Boot's conversion service does
+        context.getBeanFactory().setConversionService(new DefaultConversionService());
+        context.register(TopologyTestConfig.class);
+        context.refresh();
+        return context;
+    }
+
+    @SuppressWarnings("resource")
+    private static GenericContainer<?> node(int port, String... options) {
+        String[] command = new String[options.length + 3];
+        command[0] = "redis-server";
+        command[1] = "--port";
+        command[2] = String.valueOf(port);
+        System.arraycopy(options, 0, command, 3, options.length);
+        return new GenericContainer<>(RedisTestSupport.REDIS_IMAGE)
+                .withNetworkMode("host")
+                .withCommand(command)
+                .waitingFor(Wait.forLogMessage(".*Ready to accept connections.*", 1));
+    }
+
+    private static String redisCli(GenericContainer<?> node, int port, String... args) throws IOException, InterruptedException {
+        String[] command = new String[args.length + 3];
+        command[0] = "redis-cli";
+        command[1] = "-p";
+        command[2] = String.valueOf(port);
+        System.arraycopy(args, 0, command, 3, args.length);
+        return node.execInContainer(command).getStdout();
+    }
+
+    // The number of GET commands a node has served
+    private static long getCalls(GenericContainer<?> node, int port) throws IOException, InterruptedException {
+        Matcher matcher = Pattern.compile("cmdstat_get:calls=(\\d+)")
+                .matcher(redisCli(node, port, "info", "commandstats"));
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new IllegalStateException("No free port", e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.delphi.delphi.controllers;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.delphi.delphi.components.RedisService;
+import com.delphi.delphi.services.EncryptionService;
+import com.delphi.delphi.services.GithubService;
+import com.delphi.delphi.services.UserService;
+import com.delphi.delphi.utils.CacheUtils;
+
+import reactor.core.publisher.Mono;
+
+public class UserControllerGithubCallbackTest {
+
+    private static final String EMAIL = "candidate@example.com";
+    private static final String STATE = "r4nd0m_candidate_" + EMAIL;
+
+    private GithubService githubService;
+    private RedisService redisService;
+    private EncryptionService encryptionService;
+    private UserController userController;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        githubService = mock(GithubService.class);
+        redisService = mock(RedisService.class);
+        encryptionService = mock(EncryptionService.class);
+        userController = new UserController(mock(UserService.class), "localhost", "test", "themus", githubService,
+                redisService, encryptionService);
+        when(redisService.get(CacheUtils.githubCacheKeyPrefix + EMAIL)).thenReturn("r4nd0m");
+        when(redisService.get(CacheUtils.tokenCacheKeyPrefix + EMAIL)).thenReturn("encrypted-old");
+        when(encryptionService.decrypt("encrypted-old")).thenReturn("ghu_old");
+    }
+
+    @Test
+    public void candidateWithAValidStoredTokenIsAlreadyConnected() {
+        when(githubService.validateGithubCredentials("ghu_old")).thenReturn(Mono.just(Map.of("login", "octocat")));
+
+        ResponseEntity<?> response = userController.callbackRouter("code", STATE);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("Github account already connected. You may close this tab.", response.getBody());
+        verify(githubService, never()).getAccessToken(anyString());
+    }
+
+    @Test
+    public void candidateWithAnInvalidStoredTokenIsGivenANewOne() throws Exception {
+        // An expired or revoked token validates empty
+        when(githubService.validateGithubCredentials("ghu_old")).thenReturn(Mono.empty());
+        when(githubService.getAccessToken("code")).thenReturn(Mono.just(Map.of("access_token", "ghu_new")));
+        when(githubService.validateGithubCredentials("ghu_new")).thenReturn(Mono.just(Map.of("login", "octocat")));
+        when(encryptionService.encrypt("ghu_new")).thenReturn("encrypted-new");
+
+        ResponseEntity<?> response = userController.callbackRouter("code", STATE);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("Github account connected: octocat", response.getBody());
+        verify(redisService).set(CacheUtils.tokenCacheKeyPrefix + EMAIL, "encrypted-new");
+        verify(redisService).set(CacheUtils.usernameCacheKeyPrefix + EMAIL, "octocat");
+    }
+}
@@ -0,0 +1,233 @@
+package com.delphi.delphi.services;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientResponse;
+
+import com.delphi.delphi.components.FakeGithubApi;
+import com.delphi.delphi.components.GithubHttpTransport;
+import com.delphi.delphi.components.GithubRequestScheduler;
+import com.delphi.delphi.components.GithubResponseCache;
+import com.delphi.delphi.components.TransactionHttpGuard;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+public class GithubServiceCommitFilesTest {
+
+    private static final String TOKEN = "ghu_test";
+    private static final String REPO_PATH = "/repos/octocat/hello";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void commitsTheChangesOfABranchAsOneCommit() {
+        FakeRepository repository = new FakeRepository("main");
+        FakeGithubApi github = new FakeGithubApi(repository::handle);
+        Map<String, String> changes = new LinkedHashMap<>();
+        changes.put("src/App.java", "class App {}");
+        changes.put("README.md", "# Hello");
+        changes.put("old.txt", null);
+
+        String sha = githubService(github).commitFiles(TOKEN, "octocat", "hello", "main", changes, "Add the app")
+                .block();
+
+        assertEquals("commit-1", sha);
+        // Deleted files get no blob
+        assertEquals(2, github.requests(HttpMethod.POST, "/git/blobs").size());
+
+        Map<String, Object> tree = body(github.requests(HttpMethod.POST, "/git/trees").get(0));
+        assertEquals("tree-head-1", tree.get("base_tree"));
+        List<Map<String, Object>> entries = entries(tree);
+        assertEquals(List.of("src/App.java", "README.md", "old.txt"),
+                entries.stream().map(entry -> entry.get("path")).toList());
+        assertTrue(entries.get(0).get("sha").toString().startsWith("blob-"));
+        assertTrue(entries.get(2).containsKey("sha"));
+        assertNull(entries.get(2).get("sha"));
+
+        Map<String, Object> commit = body(github.requests(HttpMethod.POST, "/git/commits").get(0));
+        assertEquals("Add the app", commit.get("message"));
+        assertEquals(List.of("head-1"), commit.get("parents"));
+
+        List<FakeGithubApi.Request> refUpdates = github.requests(HttpMethod.PATCH, "/git/refs/heads/main");
+        assertEquals(1, refUpdates.size());
+        assertEquals("commit-1", body(refUpdates.get(0)).get("sha"));
+        assertEquals(false, body(refUpdates.get(0)).get("force"));
+    }
+
+    @Test
+    public void commitsToTheDefaultBranchWhenNoneIsGiven() {
+        FakeRepository repository = new FakeRepository("develop");
+        FakeGithubApi github = new FakeGithubApi(repository::handle);
+
+        String sha = githubService(github).commitFiles(TOKEN, "octocat", "hello", null,
+                Map.of("src/App.java", "class App {}"), "Add the app").block();
+
+        assertEquals("commit-1", sha);
+        assertEquals(1, github.requests(HttpMethod.GET, "/git/ref/heads/develop").size());
+        assertEquals(1, github.requests(HttpMethod.PATCH, "/git/refs/heads/develop").size());
+    }
+
+    @Test
+    public void rebuildsTheCommitOnTheNewHeadWhenTheBranchMoved() {
+        FakeRepository repository = new FakeRepository("main");
+        repository.rejectedRefUpdates.set(1);
+        FakeGithubApi github = new FakeGithubApi(repository::handle);
+
+        String sha = githubService(github).commitFiles(TOKEN, "octocat", "hello", "main",
+                Map.of("src/App.java", "class App {}"), "Add the app").block();
+
+        assertEquals("commit-2", sha);
+        // Blobs are uploaded once; the tree and commit are rebuilt on the head the branch moved to
+        assertEquals(1, github.requests(HttpMethod.POST, "/git/blobs").size());
+        List<FakeGithubApi.Request> commits = github.requests(HttpMethod.POST, "/git/commits");
+        assertEquals(2, commits.size());
+        assertEquals(List.of("head-1"), body(commits.get(0)).get("parents"));
+        assertEquals(List.of("head-2"), body(commits.get(1)).get("parents"));
+        assertEquals("tree-head-2", body(github.requests(HttpMethod.POST, "/git/trees").get(1)).get("base_tree"));
+    }
+
+    @Test
+    public void failsOnceTheRetriesAreUsedUp() {
+        FakeRepository repository = new FakeRepository("main");
+        repository.rejectedRefUpdates.set(Integer.MAX_VALUE);
+        FakeGithubApi github = new FakeGithubApi(repository::handle);
+
+        Mono<String> commit = githubService(github).commitFiles(TOKEN, "octocat", "hello", "main",
+                Map.of("src/App.java", "class App {}"), "Add the app");
+
+        RuntimeException error = assertThrows(RuntimeException.class, commit::block);
+        assertTrue(error.getMessage().startsWith("Error committing files"));
+        // The first attempt and three retries
+        assertEquals(4, github.requests(HttpMethod.PATCH, "/git/refs/heads/main").size());
+    }
+
+    @Test
+    public void doesNotRetryARejectedTree() {
+        FakeRepository repository = new FakeRepository("main");
+        repository.rejectedTrees = true;
+        FakeGithubApi github = new FakeGithubApi(repository::handle);
+        Map<String, String> changes = new LinkedHashMap<>();
+        changes.put("missing.txt", null);
+
+        Mono<String> commit = githubService(github).commitFiles(TOKEN, "octocat", "hello", "main", changes,
+                "Remove missing.txt");
+
+        RuntimeException error = assertThrows(RuntimeException.class, commit::block);
+        assertTrue(error.getMessage().startsWith("Error committing files"));
+        // A 422 from the tree, e.g. deleting a path that does not exist, would fail again on retry
+        assertEquals(1, github.requests(HttpMethod.POST, "/git/trees").size());
+        assertTrue(github.requests(HttpMethod.PATCH, "/git/refs/heads/main").isEmpty());
+    }
+
+    @Test
+    public void returnsTheHeadWhenTheChangesAreAlreadyCommitted() {
+        FakeRepository repository = new FakeRepository("main");
+        repository.unchanged = true;
+        FakeGithubApi github = new FakeGithubApi(repository::handle);
+
+        String sha = githubService(github).commitFiles(TOKEN, "octocat", "hello", "main",
+                Map.of("src/App.java", "class App {}"), "Add the app").block();
+
+        assertEquals("head-1", sha);
+        assertTrue(github.requests(HttpMethod.POST, "/git/commits").isEmpty());
+        assertTrue(github.requests(HttpMethod.PATCH, "/git/refs/heads/main").isEmpty());
+    }
+
+    // The service with its production filters in front of the fake API
+    private static GithubService githubService(FakeGithubApi github) {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        GithubHttpTransport httpTransport = mock(GithubHttpTransport.class);
+        when(httpTransport.exchangeFilter()).thenReturn(github.exchangeFilter());
+        return new GithubService("1", "client-id", "client-secret", "", "repo", "ghp_themus", 8, 3, 60, 300, 600,
+                new EncryptionService("secret"),
+                new TransactionHttpGuard(meterRegistry, false),
+                new GithubResponseCache(meterRegistry, 1 << 20),
+                new GithubRequestScheduler(meterRegistry, 8, 200, 3, 1000, 120),
+                httpTransport,
+                meterRegistry);
+    }
+
+    private Map<String, Object> body(FakeGithubApi.Request request) {
+        try {
+            return objectMapper.readValue(request.body(), new TypeReference<Map<String, Object>>() {
+            });
+        } catch (Exception e) {
+            throw new IllegalStateException("Not a JSON object: " + request.body(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> entries(Map<String, Object> tree) {
+        return (List<Map<String, Object>>) tree.get("tree");
+    }
+
+    /**
+     * The Git Data API of one repository. Every commit moves the branch head to head-n, whose
+     * tree is tree-head-n.
+     */
+    private static final class FakeRepository {
+
+        private final String defaultBranch;
+        private final AtomicInteger blobs = new AtomicInteger();
+        private final AtomicInteger commits = new AtomicInteger();
+        private final AtomicInteger heads = new AtomicInteger(1);
+        // Ref updates to reject as not fast forward, each moving the head as another writer would
+        private final AtomicInteger rejectedRefUpdates = new AtomicInteger();
+        // Whether the tree built from the changes equals the head's tree
+        private volatile boolean unchanged;
+        // Whether trees are rejected as invalid
+        private volatile boolean rejectedTrees;
+
+        private FakeRepository(String defaultBranch) {
+            this.defaultBranch = defaultBranch;
+        }
+
+        private Mono<ClientResponse> handle(FakeGithubApi.Request request) {
+            String path = request.path().substring(REPO_PATH.length());
+            String head = "head-" + heads.get();
+            if (request.method().equals(HttpMethod.GET) && path.isEmpty()) {
+                return FakeGithubApi.json(HttpStatus.OK, "{\"default_branch\":\"" + defaultBranch + "\"}");
+            } else if (request.method().equals(HttpMethod.POST) && path.equals("/git/blobs")) {
+                return FakeGithubApi.json(HttpStatus.CREATED, "{\"sha\":\"blob-" + blobs.incrementAndGet() + "\"}");
+            } else if (request.method().equals(HttpMethod.GET) && path.startsWith("/git/ref/heads/")) {
+                return FakeGithubApi.json(HttpStatus.OK, "{\"object\":{\"sha\":\"" + head + "\"}}");
+            } else if (request.method().equals(HttpMethod.GET) && path.startsWith("/git/commits/")) {
+                String sha = path.substring("/git/commits/".length());
+                return FakeGithubApi.json(HttpStatus.OK, "{\"tree\":{\"sha\":\"tree-" + sha + "\"}}");
+            } else if (request.method().equals(HttpMethod.POST) && path.equals("/git/trees")) {
+                if (rejectedTrees) {
+                    return FakeGithubApi.json(HttpStatus.UNPROCESSABLE_ENTITY,
+                            "{\"message\":\"GitRPC::BadObjectState\"}");
+                }
+                String tree = unchanged ? "tree-" + head : "tree-" + blobs.get() + "-" + commits.get();
+                return FakeGithubApi.json(HttpStatus.CREATED, "{\"sha\":\"" + tree + "\"}");
+            } else if (request.method().equals(HttpMethod.POST) && path.equals("/git/commits")) {
+                return FakeGithubApi.json(HttpStatus.CREATED, "{\"sha\":\"commit-" + commits.incrementAndGet() + "\"}");
+            } else if (request.method().equals(HttpMethod.PATCH) && path.startsWith("/git/refs/heads/")) {
+                if (rejectedRefUpdates.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+                    heads.incrementAndGet();
+                    return FakeGithubApi.json(HttpStatus.UNPROCESSABLE_ENTITY,
+                            "{\"message\":\"Update is not a fast forward\"}");
+                }
+                return FakeGithubApi.json(HttpStatus.OK, "{\"ref\":\"refs/heads/" + defaultBranch + "\"}");
+            }
+            return FakeGithubApi.json(HttpStatus.NOT_FOUND, "{\"message\":\"Not Found\"}");
+        }
+    }
+}